@@ -0,0 +1,149 @@
+package com.example;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 운영 중에 내부 상태를 JSON 으로 확인하는 관리용 컨트롤러
+ */
+@Controller
+public class AdminController {
+  @Autowired
+  ResilientPostsClient postsClient;
+
+  @Autowired
+  PostsBatcher postsBatcher;
+
+  @Autowired
+  ImageDerivatives imageDerivatives;
+
+  @Autowired
+  FragmentCache fragmentCache;
+
+  @Autowired
+  ErrorCapture errorCapture;
+
+  @Autowired
+  GcLogTailer gcLogTailer;
+
+  @Autowired
+  RequestMetrics requestMetrics;
+
+  @Autowired
+  RequestLog requestLog;
+
+  @Autowired
+  ArticleSearchIndex articleSearchIndex;
+
+  @Autowired
+  ArticleBulkImporter articleBulkImporter;
+
+  @Autowired
+  ArticleRepository articleRepository;
+
+  @Autowired
+  ArticleResponseCache articleResponseCache;
+
+  // 원격 posts API 호출의 서킷 브레이커 상태, 거절 수, hedge 수 등
+  @RequestMapping(value = "/admin/posts-client", method = RequestMethod.GET)
+  @ResponseBody
+  public Map<String, Object> postsClient() {
+    return postsClient.metrics();
+  }
+
+  // 배치 모드일 때 큐 길이, 보낸 배치 수와 평균 크기, 거절 수
+  @RequestMapping(value = "/admin/posts-batch", method = RequestMethod.GET)
+  @ResponseBody
+  public Map<String, Object> postsBatch() {
+    return postsBatcher.metrics();
+  }
+
+  // 썸네일 작업 스레드 수, 큐 길이, 끝난/실패한/큐가 가득 차서 미뤄진 작업 수
+  @RequestMapping(value = "/admin/images", method = RequestMethod.GET)
+  @ResponseBody
+  public Map<String, Object> images() {
+    return imageDerivatives.metrics();
+  }
+
+  // 템플릿 조각 캐시의 적중/실패 수
+  @RequestMapping(value = "/admin/fragment-cache", method = RequestMethod.GET)
+  @ResponseBody
+  public Map<String, Object> fragmentCache() {
+    return fragmentCache.metrics();
+  }
+
+  // 컨트롤러에서 발생한 예외를 fingerprint 별로 묶어서 많이 발생한 순서로 보여준다.
+  @RequestMapping(value = "/admin/errors", method = RequestMethod.GET)
+  @ResponseBody
+  public Map<String, Object> errors(@RequestParam(value = "limit", defaultValue = "20") int limit) {
+    if (limit < 1) {
+      throw new BadRequestException("limit must be positive");
+    }
+    Map<String, Object> errors = new LinkedHashMap<>(errorCapture.metrics());
+    errors.put("top", errorCapture.top(limit));
+    return errors;
+  }
+
+  // GC 로그에서 읽은 최근 구간의 pause 분포(p50~p999, 히스토그램), GC 부하, 할당/승격 속도와 경고
+  @RequestMapping(value = "/admin/gc", method = RequestMethod.GET)
+  @ResponseBody
+  public Map<String, Object> gc() {
+    return gcLogTailer.metrics();
+  }
+
+  // route(메소드 + URL 패턴)별 응답 수, 최근 구간의 초당 요청 수와 지연 시간 백분위, 원격 API 호출
+  @RequestMapping(value = "/admin/metrics", method = RequestMethod.GET)
+  @ResponseBody
+  public Map<String, Object> metrics() {
+    return requestMetrics.metrics();
+  }
+
+  // 같은 내용을 Prometheus 가 수집할 수 있는 text format 으로
+  @RequestMapping(value = "/admin/metrics/prometheus", method = RequestMethod.GET, produces = "text/plain; version=0.0.4; charset=utf-8")
+  @ResponseBody
+  public String prometheus() {
+    return requestMetrics.prometheus();
+  }
+
+  // 요청 로그의 쓴/버린/기다린 이벤트 수, 아직 쓰지 않은 이벤트 수, 파일을 밀어낸 횟수
+  @RequestMapping(value = "/admin/request-log", method = RequestMethod.GET)
+  @ResponseBody
+  public Map<String, Object> requestLog() {
+    return requestLog.metrics();
+  }
+
+  // 검색 색인의 글 수, term 수, posting 수와 압축한 posting 의 크기(byte)
+  @RequestMapping(value = "/admin/search-index", method = RequestMethod.GET)
+  @ResponseBody
+  public Map<String, Object> searchIndex() {
+    return articleSearchIndex.metrics();
+  }
+
+  // 진행 중인 bulk 요청 수, 거절한 요청 수, 처리한 줄 수와 만든/바꾼/실패한 글 수
+  @RequestMapping(value = "/admin/article-bulk", method = RequestMethod.GET)
+  @ResponseBody
+  public Map<String, Object> articleBulk() {
+    return articleBulkImporter.metrics();
+  }
+
+  // 글과 댓글 id 할당기가 예약한 id 수, 디스크에 남긴 high-water mark, 블록을 예약한 횟수
+  @RequestMapping(value = "/admin/ids", method = RequestMethod.GET)
+  @ResponseBody
+  public Map<String, Object> ids() {
+    return articleRepository.idMetrics();
+  }
+
+  // GET /api/articles/{id} 응답 캐시의 적중률, 캐시한 바이트 수(JSON + gzip), 내보낸/지운 항목 수
+  @RequestMapping(value = "/admin/article-cache", method = RequestMethod.GET)
+  @ResponseBody
+  public Map<String, Object> articleCache() {
+    return articleResponseCache.metrics();
+  }
+}
@@ -1,6 +1,7 @@
 package com.example;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -13,6 +14,19 @@ public class Article implements Serializable {
   private String content;
   private List<Comment> comments;
 
+  // 낙관적 동시성 제어(ETag/If-Match)에 사용하는 글마다의 버전. 저장소가 변경할 때마다 1씩 올린다.
+  // 응답 본문에는 넣지 않고 ETag 헤더로만 내보낸다.
+  @JsonIgnore
+  private volatile long version;
+
+  // 마지막으로 바뀐 시각(epoch millis). Last-Modified 헤더로 내보낸다. 0 이면 알 수 없음
+  @JsonIgnore
+  private volatile long lastModified;
+
+  // 첨부 파일 목록. 저장소에 함께 저장하지 않고 AttachmentRepository 에 따로 있다. 첨부 파일이 있을 때만 JSON 에 넣는다.
+  @JsonInclude(JsonInclude.Include.NON_EMPTY)
+  private List<Attachment> attachments;
+
   @JsonIgnore
   private MultipartFile file;
   // 파일 명을 받고 싶을면 아래의 주석을 제거, 아래와 같이 file이라는 결과를 받을 수 있다.
@@ -57,6 +71,22 @@ public class Article implements Serializable {
     this.content = content;
   }
 
+  public long getVersion() {
+    return version;
+  }
+
+  public void setVersion(long version) {
+    this.version = version;
+  }
+
+  public long getLastModified() {
+    return lastModified;
+  }
+
+  public void setLastModified(long lastModified) {
+    this.lastModified = lastModified;
+  }
+
   public List<Comment> getComments() {
     return comments;
   }
@@ -64,4 +94,12 @@ public class Article implements Serializable {
   public void setComments(List<Comment> comments) {
     this.comments = comments;
   }
+
+  public List<Attachment> getAttachments() {
+    return attachments;
+  }
+
+  public void setAttachments(List<Attachment> attachments) {
+    this.attachments = attachments;
+  }
 }
@@ -0,0 +1,376 @@
+package com.example;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * NDJSON(한 줄에 글 하나)으로 들어온 대량의 글을 저장하고 줄마다 결과를 NDJSON 으로 돌려주는 컴포넌트
+ *
+ * 요청 스레드가 본문을 줄 단위로 읽어서 batchSize 줄씩 묶고, 묶음의 파싱과 검사는 parser 스레드들이 나눠서 한다.
+ * 요청 스레드는 묶음을 읽은 순서대로 꺼내서 ArticleRepository.saveAll() 로 한 번에 저장하고 결과를 쓴 뒤 flush 한다.
+ * 그래서 파싱은 여러 코어에서 동시에 일어나도 저장과 응답은 본문의 줄 순서를 따른다.
+ *
+ * 한 요청이 들고 있는 묶음은 maxInFlightBatches 개까지다. 그만큼 쌓이면 맨 앞 묶음이 끝날 때까지 본문을 더 읽지 않는다(backpressure).
+ * 본문 전체를 메모리에 올리지 않으므로 몇 GB 짜리 본문도 일정한 메모리로 처리한다.
+ *
+ * 응답의 줄:
+ *   {"line":1,"status":201,"id":1,"version":1}    새로 만든 글(이미 있던 글을 바꿨으면 status 200). id 가 없으면 새로 붙인다.
+ *   {"line":2,"status":400,"error":"..."}         파싱하거나 검사하지 못한 줄. 이 줄만 건너뛴다.
+ *   {"lines":2,"created":1,"replaced":0,"failed":1} 마지막 줄. 이 줄이 없으면 중간에 끊긴 것이다.
+ * 빈 줄은 건너뛰고 결과도 쓰지 않는다. line 은 1 부터 센 본문의 줄 번호다.
+ */
+@Component
+public class ArticleBulkImporter {
+  private static final int READ_BUFFER_BYTES = 64 * 1024;
+
+  @Autowired
+  ArticleBulkProperties properties;
+
+  @Autowired
+  ArticleRepository articleRepository;
+
+  @Autowired
+  ObjectMapper objectMapper;
+
+  private ExecutorService parsers;
+  private Semaphore permits;
+  private ObjectReader articleReader;
+
+  private final AtomicInteger active = new AtomicInteger();
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+  private final AtomicLong lines = new AtomicLong();
+  private final AtomicLong created = new AtomicLong();
+  private final AtomicLong replaced = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private final AtomicLong batches = new AtomicLong();
+
+  @PostConstruct
+  public void start() {
+    int threads = properties.getParserThreads() > 0 ? properties.getParserThreads() : Runtime.getRuntime().availableProcessors();
+    AtomicInteger threadNumber = new AtomicInteger();
+    // 큐는 제한하지 않지만 요청마다 maxInFlightBatches 개, 동시에 maxConcurrentRequests 개까지만 들어온다.
+    parsers = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "article-bulk-parser-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    permits = new Semaphore(properties.getMaxConcurrentRequests());
+    articleReader = objectMapper.readerFor(Article.class);
+  }
+
+  /**
+   * in 의 NDJSON 을 읽어서 저장하고 줄마다 결과를 out 에 쓴다. 결과는 묶음마다 flush 한다.
+   * 동시에 처리할 수 있는 요청 수를 넘으면 아무것도 쓰지 않고 ServiceUnavailableException 을 던진다.
+   *
+   * @return 마지막 줄과 같은 요약
+   */
+  public Map<String, Object> importArticles(InputStream in, OutputStream out) throws IOException {
+    if (!permits.tryAcquire()) {
+      rejected.incrementAndGet();
+      throw new ServiceUnavailableException("too many bulk imports in progress");
+    }
+    requests.incrementAndGet();
+    active.incrementAndGet();
+    ArrayDeque<Batch> pending = new ArrayDeque<>();
+    try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+      generator.setRootValueSeparator(null);
+      LineReader reader = new LineReader(in, properties.getMaxLineBytes());
+      long[] totals = new long[4];
+      Batch batch = null;
+      byte[] line;
+      while ((line = reader.next()) != null) {
+        if (batch == null) {
+          batch = new Batch(properties.getBatchSize());
+        }
+        batch.add(reader.lineNumber(), line);
+        if (batch.size == batch.lines.length) {
+          submit(batch, pending);
+          batch = null;
+        }
+        // 앞의 묶음이 이미 끝났으면 기다리지 않고 바로 결과를 내보낸다. 창이 가득 찼으면 맨 앞 묶음을 기다린다.
+        while (!pending.isEmpty() && (pending.size() >= properties.getMaxInFlightBatches() || pending.peek().parsed.isDone())) {
+          commit(pending.poll(), generator, totals);
+        }
+      }
+      if (batch != null) {
+        submit(batch, pending);
+      }
+      while (!pending.isEmpty()) {
+        commit(pending.poll(), generator, totals);
+      }
+
+      Map<String, Object> summary = new LinkedHashMap<>();
+      summary.put("lines", totals[0]);
+      summary.put("created", totals[1]);
+      summary.put("replaced", totals[2]);
+      summary.put("failed", totals[3]);
+      generator.writeObject(summary);
+      generator.writeRaw('\n');
+      return summary;
+    } finally {
+      // 클라이언트가 끊겼으면 아직 파싱 중인 묶음은 버린다.
+      for (Batch abandoned : pending) {
+        abandoned.parsed.cancel(false);
+      }
+      active.decrementAndGet();
+      permits.release();
+    }
+  }
+
+  private void submit(Batch batch, ArrayDeque<Batch> pending) {
+    batch.parsed = CompletableFuture.runAsync(() -> parse(batch), parsers);
+    pending.add(batch);
+  }
+
+  // parser 스레드에서 실행된다. 줄마다 Article 이나 오류 메시지를 results 에 넣는다.
+  private void parse(Batch batch) {
+    for (int i = 0; i < batch.size; i++) {
+      byte[] line = batch.lines[i];
+      if (line == LineReader.TOO_LONG) {
+        batch.results[i] = "line is longer than " + properties.getMaxLineBytes() + " bytes";
+        continue;
+      }
+      try {
+        Article article = articleReader.readValue(line);
+        String error = validate(article);
+        batch.results[i] = error != null ? error : article;
+      } catch (JsonProcessingException e) {
+        // 위치가 붙은 전체 메시지에는 줄의 내용이 들어가므로 원래 메시지만 쓴다.
+        batch.results[i] = e.getOriginalMessage();
+      } catch (IOException e) {
+        batch.results[i] = e.getMessage();
+      } catch (RuntimeException e) {
+        // 역직렬화나 검사 중에 난 예외도 잘못된 JSON 처럼 그 줄만 실패시킨다. 그냥 두면 묶음 전체와 요청이 함께 끝난다.
+        batch.results[i] = errorOf(e);
+      }
+      // 파싱이 끝난 줄의 바이트는 저장을 기다리는 동안 붙잡고 있을 필요가 없다.
+      batch.lines[i] = null;
+    }
+  }
+
+  private static String errorOf(RuntimeException e) {
+    return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+  }
+
+  private static String validate(Article article) {
+    if (article == null) {
+      return "line must be a JSON object";
+    }
+    if (article.getId() < 0) {
+      return "id must not be negative";
+    }
+    if (article.getTitle() == null || article.getTitle().trim().isEmpty()) {
+      return "title must not be blank";
+    }
+    return null;
+  }
+
+  // 요청 스레드에서 묶음의 올바른 글을 한 번에 저장하고 줄 순서대로 결과를 쓴다.
+  private void commit(Batch batch, JsonGenerator generator, long[] totals) throws IOException {
+    batch.parsed.join();
+    List<Article> valid = new ArrayList<>(batch.size);
+    for (int i = 0; i < batch.size; i++) {
+      if (batch.results[i] instanceof Article) {
+        Article article = (Article) batch.results[i];
+        // 파싱은 여러 스레드에서 하지만 id 는 여기서 붙이므로 줄 순서대로 커진다.
+        try {
+          articleRepository.assignId(article);
+        } catch (RuntimeException e) {
+          batch.results[i] = errorOf(e);
+          continue;
+        }
+        valid.add(article);
+      }
+    }
+    articleRepository.saveAll(valid);
+    batches.incrementAndGet();
+
+    long batchCreated = 0;
+    long batchReplaced = 0;
+    for (int i = 0; i < batch.size; i++) {
+      generator.writeStartObject();
+      generator.writeNumberField("line", batch.lineNumbers[i]);
+      Object result = batch.results[i];
+      if (result instanceof Article) {
+        Article article = (Article) result;
+        boolean isNew = article.getVersion() == 1;
+        if (isNew) {
+          batchCreated++;
+        } else {
+          batchReplaced++;
+        }
+        generator.writeNumberField("status", isNew ? 201 : 200);
+        generator.writeNumberField("id", article.getId());
+        generator.writeNumberField("version", article.getVersion());
+      } else {
+        generator.writeNumberField("status", 400);
+        generator.writeStringField("error", (String) result);
+      }
+      generator.writeEndObject();
+      generator.writeRaw('\n');
+    }
+    generator.flush();
+
+    long batchFailed = batch.size - batchCreated - batchReplaced;
+    totals[0] += batch.size;
+    totals[1] += batchCreated;
+    totals[2] += batchReplaced;
+    totals[3] += batchFailed;
+    lines.addAndGet(batch.size);
+    created.addAndGet(batchCreated);
+    replaced.addAndGet(batchReplaced);
+    failed.addAndGet(batchFailed);
+  }
+
+  public Map<String, Object> metrics() {
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("active", active.get());
+    metrics.put("requests", requests.get());
+    metrics.put("rejected", rejected.get());
+    metrics.put("lines", lines.get());
+    metrics.put("created", created.get());
+    metrics.put("replaced", replaced.get());
+    metrics.put("failed", failed.get());
+    metrics.put("batches", batches.get());
+    return metrics;
+  }
+
+  @PreDestroy
+  public void close() {
+    if (parsers != null) {
+      parsers.shutdownNow();
+    }
+  }
+
+  private static final class Batch {
+    final long[] lineNumbers;
+    final byte[][] lines;
+    // Article 또는 오류 메시지(String)
+    final Object[] results;
+    int size;
+    CompletableFuture<Void> parsed;
+
+    Batch(int capacity) {
+      lineNumbers = new long[capacity];
+      lines = new byte[capacity][];
+      results = new Object[capacity];
+    }
+
+    void add(long lineNumber, byte[] line) {
+      lineNumbers[size] = lineNumber;
+      lines[size++] = line;
+    }
+  }
+
+  /**
+   * 본문을 READ_BUFFER_BYTES 씩 읽어서 '\n' 으로 자른다. 줄 끝의 '\r' 은 뺀다.
+   * maxLineBytes 보다 긴 줄은 끝까지 읽어 버리고 TOO_LONG 을 돌려준다.
+   */
+  static final class LineReader {
+    static final byte[] TOO_LONG = new byte[0];
+
+    private final InputStream in;
+    private final int maxLineBytes;
+    private final byte[] buffer = new byte[READ_BUFFER_BYTES];
+    private int position;
+    private int limit;
+    private byte[] line = new byte[1024];
+    private long lineNumber;
+
+    LineReader(InputStream in, int maxLineBytes) {
+      this.in = in;
+      this.maxLineBytes = maxLineBytes;
+    }
+
+    long lineNumber() {
+      return lineNumber;
+    }
+
+    /**
+     * @return 다음 줄. 빈 줄은 건너뛰고, 본문이 끝났으면 null
+     */
+    byte[] next() throws IOException {
+      while (true) {
+        int length = 0;
+        boolean tooLong = false;
+        boolean terminated = false;
+        boolean any = false;
+        while (!terminated) {
+          if (position == limit) {
+            int read = in.read(buffer);
+            if (read < 0) {
+              break;
+            }
+            position = 0;
+            limit = read;
+            continue;
+          }
+          any = true;
+          int end = position;
+          while (end < limit && buffer[end] != '\n') {
+            end++;
+          }
+          int count = end - position;
+          if (!tooLong) {
+            if (length + count > maxLineBytes) {
+              tooLong = true;
+            } else {
+              if (length + count > line.length) {
+                line = Arrays.copyOf(line, Math.min(maxLineBytes, Math.max(line.length * 2, length + count)));
+              }
+              System.arraycopy(buffer, position, line, length, count);
+              length += count;
+            }
+          }
+          terminated = end < limit;
+          position = terminated ? end + 1 : end;
+        }
+        if (!any) {
+          return null;
+        }
+        lineNumber++;
+        if (tooLong) {
+          return TOO_LONG;
+        }
+        if (length > 0 && line[length - 1] == '\r') {
+          length--;
+        }
+        if (!isBlank(line, length)) {
+          return Arrays.copyOf(line, length);
+        }
+      }
+    }
+
+    private static boolean isBlank(byte[] bytes, int length) {
+      for (int i = 0; i < length; i++) {
+        if (bytes[i] != ' ' && bytes[i] != '\t') {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package com.example;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * application.properties 의 articles.bulk.* 설정
+ * POST /api/articles/_bulk 로 NDJSON 을 받아 저장하는 ArticleBulkImporter 의 설정이다.
+ */
+@Component
+@ConfigurationProperties(prefix = "articles.bulk")
+public class ArticleBulkProperties {
+  // 한 번에 파싱하고 저장소에 저장하는 줄 수. 쓰기 락, 스냅샷 병합, fsync 를 이만큼씩 묶는다.
+  private int batchSize = 1000;
+
+  // JSON 을 파싱하고 검사하는 스레드 수. 0 이면 CPU 코어 수
+  private int parserThreads = 0;
+
+  // 요청 하나가 읽어 둘 수 있는 batch 수. 이만큼 파싱/저장을 기다리고 있으면 본문을 더 읽지 않는다.
+  // 그러면 TCP 수신 버퍼가 차서 클라이언트도 보내기를 멈춘다. 메모리는 대략 batch-size * max-in-flight-batches 줄로 제한된다.
+  private int maxInFlightBatches = 4;
+
+  // 한 줄(글 하나)의 최대 크기(byte). 넘으면 그 줄만 실패로 응답하고 다음 줄로 넘어간다.
+  private int maxLineBytes = 1024 * 1024;
+
+  // 동시에 처리하는 bulk 요청 수. 넘으면 바로 503 으로 거절한다.
+  private int maxConcurrentRequests = 2;
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public void setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  public int getParserThreads() {
+    return parserThreads;
+  }
+
+  public void setParserThreads(int parserThreads) {
+    this.parserThreads = parserThreads;
+  }
+
+  public int getMaxInFlightBatches() {
+    return maxInFlightBatches;
+  }
+
+  public void setMaxInFlightBatches(int maxInFlightBatches) {
+    this.maxInFlightBatches = maxInFlightBatches;
+  }
+
+  public int getMaxLineBytes() {
+    return maxLineBytes;
+  }
+
+  public void setMaxLineBytes(int maxLineBytes) {
+    this.maxLineBytes = maxLineBytes;
+  }
+
+  public int getMaxConcurrentRequests() {
+    return maxConcurrentRequests;
+  }
+
+  public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+    this.maxConcurrentRequests = maxConcurrentRequests;
+  }
+}
@@ -0,0 +1,36 @@
+package com.example;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * 목록 페이지네이션에 사용하는 불투명(opaque) 커서
+ *
+ * 커서는 이전 페이지의 마지막 Article.id 를 base64url 로 감싼 값이다(keyset pagination).
+ * offset 이 아니라 id 를 기준으로 다음 페이지를 찾기 때문에 그 사이에 다른 글이 삭제되어도 중복되거나 건너뛰는 글이 없다.
+ */
+public final class ArticleCursor {
+  private static final byte VERSION = 1;
+
+  private ArticleCursor() {
+  }
+
+  public static String encode(long lastId) {
+    ByteBuffer buffer = ByteBuffer.allocate(9);
+    buffer.put(VERSION).putLong(lastId);
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+  }
+
+  public static long decode(String cursor) {
+    byte[] bytes;
+    try {
+      bytes = Base64.getUrlDecoder().decode(cursor);
+    } catch (IllegalArgumentException e) {
+      throw new BadRequestException("invalid cursor: " + cursor);
+    }
+    if (bytes.length != 9 || bytes[0] != VERSION) {
+      throw new BadRequestException("invalid cursor: " + cursor);
+    }
+    return ByteBuffer.wrap(bytes, 1, 8).getLong();
+  }
+}
@@ -0,0 +1,90 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Article 의 버전을 ETag 로 바꾸고 If-Match 헤더를 해석한다.
+ *
+ * ETag 는 저장소 instanceId 와 버전을 따옴표로 감싼 strong ETag("ix3k2a-3") 이다. If-Match 는 strong 비교만 하므로 W/ 로 시작하는 태그는 어떤 버전과도 맞지 않는다.
+ * 저장소를 쓰지 않으면 재시작할 때 글의 버전이 1 부터 다시 시작하므로, 목록 ETag 처럼 instanceId 를 넣어서 재시작 전의 ETag 와 겹치지 않게 한다.
+ * 첨부 파일이 있으면 첨부 파일 목록의 revision 을 붙인다("ix3k2a-3-1476780000000"). 썸네일이 만들어지면 글의 버전은 그대로지만 JSON 은 바뀌기 때문이다.
+ * If-Match 는 PATCH 로 바꿀 수 있는 글의 필드만 지키면 되므로 instanceId 가 같은 태그의 버전만 비교한다.
+ * Smile, CBOR 로 쓴 표현은 바이트가 다르므로 포맷 이름을 붙인다("ix3k2a-3-smile"). JSON 은 붙이지 않는다.
+ *
+ * 목록의 ETag 는 저장소 instanceId 와 스냅샷 버전, 그리고 응답 형태(페이지, projection, NDJSON)를 구분하는 값으로 만든다.
+ * 본문을 직렬화하거나 해시하지 않기 때문에 304 로 응답할 때 드는 비용은 문자열 하나를 만드는 것뿐이다.
+ */
+public final class ArticleETag {
+  private ArticleETag() {
+  }
+
+  public static String of(String instanceId, Article article) {
+    StringBuilder etag = new StringBuilder(32).append('"').append(instanceId).append('-').append(article.getVersion());
+    long revision = attachmentsRevision(article);
+    if (revision > 0) {
+      etag.append('-').append(revision);
+    }
+    return etag.append('"').toString();
+  }
+
+  public static String of(String instanceId, Article article, ArticleFormat format) {
+    String etag = of(instanceId, article);
+    if (format == ArticleFormat.JSON) {
+      return etag;
+    }
+    return etag.substring(0, etag.length() - 1) + "-" + format.getVariant() + "\"";
+  }
+
+  /**
+   * 글의 Last-Modified. 첨부 파일이 나중에 바뀌었으면 그 시각이다. 0 이면 알 수 없음
+   */
+  public static long lastModified(Article article) {
+    return Math.max(article.getLastModified(), attachmentsRevision(article));
+  }
+
+  private static long attachmentsRevision(Article article) {
+    return article.getAttachments() instanceof AttachmentRepository.AttachmentList
+      ? ((AttachmentRepository.AttachmentList) article.getAttachments()).revision()
+      : 0;
+  }
+
+  public static String ofCollection(String instanceId, long snapshotVersion, long attachmentsRevision, String variant) {
+    StringBuilder etag = new StringBuilder(48).append('"').append(instanceId).append('-').append(snapshotVersion);
+    if (attachmentsRevision > 0) {
+      etag.append('.').append(attachmentsRevision);
+    }
+    if (variant != null) {
+      etag.append('-').append(variant);
+    }
+    return etag.append('"').toString();
+  }
+
+  /**
+   * @return If-Match 에 들어있는 태그 중 instanceId 가 같은 것의 버전들. 헤더가 없거나 * 이면 null
+   */
+  public static List<Long> parseIfMatch(String ifMatch, String instanceId) {
+    if (ifMatch == null || ifMatch.trim().equals("*")) {
+      return null;
+    }
+    List<Long> versions = new ArrayList<>();
+    for (String tag : ifMatch.split(",")) {
+      tag = tag.trim();
+      if (tag.length() < 2 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"') {
+        continue;
+      }
+      // 재시작 전이나 다른 서버가 만든 ETag 는 어떤 버전과도 맞지 않는다.
+      int start = instanceId.length() + 2;
+      if (!tag.startsWith(instanceId + "-", 1) || start >= tag.length()) {
+        continue;
+      }
+      int end = tag.indexOf('-', start);
+      try {
+        versions.add(Long.parseLong(tag.substring(start, end > 0 ? end : tag.length() - 1)));
+      } catch (NumberFormatException e) {
+        // 이 서버가 만든 ETag 가 아니면 어떤 버전과도 맞지 않는다.
+      }
+    }
+    return versions;
+  }
+}
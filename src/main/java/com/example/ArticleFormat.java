@@ -0,0 +1,81 @@
+package com.example;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.StringUtils;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * /api/articles 가 주고받는 인코딩
+ *
+ * JSON 이 기본이고, 내부 서비스끼리는 Accept/Content-Type 으로 Jackson Smile 이나 CBOR 를 고를 수 있다.
+ * 두 포맷 모두 JSON 과 같은 데이터 모델을 바이너리로 쓴 것이라 Article, Comment 의 필드는 그대로이고 텍스트 파싱만 없어진다.
+ * Smile 은 반복되는 필드 이름을 앞에서 나온 것을 가리키는 참조로 쓰기 때문에 댓글이 많은 글에서 특히 작아진다.
+ */
+public enum ArticleFormat {
+  JSON(MediaType.APPLICATION_JSON_UTF8, "json"),
+  SMILE(MediaType.valueOf(ArticleFormat.SMILE_VALUE), "smile"),
+  CBOR(MediaType.valueOf(ArticleFormat.CBOR_VALUE), "cbor");
+
+  public static final String SMILE_VALUE = "application/x-jackson-smile";
+  public static final String CBOR_VALUE = "application/cbor";
+
+  private final MediaType mediaType;
+  private final String variant;
+
+  ArticleFormat(MediaType mediaType, String variant) {
+    this.mediaType = mediaType;
+    this.variant = variant;
+  }
+
+  public MediaType getMediaType() {
+    return mediaType;
+  }
+
+  /**
+   * 같은 버전의 글을 이 포맷으로 쓴 표현을 ETag 에서 구분하는 값
+   */
+  public String getVariant() {
+    return variant;
+  }
+
+  /**
+   * Accept 헤더에서 가장 우선하는 포맷을 고른다. 헤더가 없거나 같은 우선순위면 JSON 이다.
+   *
+   * @throws HttpMediaTypeNotAcceptableException 어느 포맷도 받지 않으면. Spring MVC 가 406 으로 응답한다.
+   */
+  public static ArticleFormat negotiate(String accept) throws HttpMediaTypeNotAcceptableException {
+    if (!StringUtils.hasText(accept)) {
+      return JSON;
+    }
+    List<MediaType> accepted;
+    try {
+      accepted = new ArrayList<>(MediaType.parseMediaTypes(accept));
+    } catch (InvalidMediaTypeException e) {
+      throw new HttpMediaTypeNotAcceptableException("Could not parse 'Accept' header [" + accept + "]: " + e.getMessage());
+    }
+    MediaType.sortBySpecificityAndQuality(accepted);
+    for (MediaType mediaType : accepted) {
+      if (mediaType.getQualityValue() <= 0) {
+        continue;
+      }
+      for (ArticleFormat format : values()) {
+        if (mediaType.includes(format.mediaType)) {
+          return format;
+        }
+      }
+    }
+    throw new HttpMediaTypeNotAcceptableException(supportedMediaTypes());
+  }
+
+  public static List<MediaType> supportedMediaTypes() {
+    List<MediaType> mediaTypes = new ArrayList<>();
+    for (ArticleFormat format : values()) {
+      mediaTypes.add(format.mediaType);
+    }
+    return mediaTypes;
+  }
+}
@@ -0,0 +1,43 @@
+package com.example;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+
+/**
+ * ArticleFormat 마다 쓰는 ObjectMapper
+ *
+ * JSON 은 Spring Boot 가 만든 ObjectMapper 를 그대로 쓰고, Smile 과 CBOR 는 Jackson2ObjectMapperBuilder 의 같은 기본 설정으로 만든다.
+ * 바이너리 ObjectMapper 를 빈으로 등록하면 Spring Boot 가 JSON ObjectMapper 를 만들지 않으므로 이 컴포넌트 안에만 둔다.
+ * WebMvcConfiguration 은 이 ObjectMapper 로 메시지 컨버터를 만들고, show() 는 ArticleResponseCache 에 넣을 바이트를 만든다.
+ */
+@Component
+public class ArticleFormats {
+  @Autowired
+  ObjectMapper objectMapper;
+
+  private final ObjectMapper smileMapper = binaryMapper(new SmileFactory());
+  private final ObjectMapper cborMapper = binaryMapper(new CBORFactory());
+
+  // Spring 4.3 의 Jackson2ObjectMapperBuilder 는 바이너리 factory 를 받지 않으므로 만든 ObjectMapper 에 같은 설정만 적용한다.
+  private static ObjectMapper binaryMapper(JsonFactory factory) {
+    ObjectMapper mapper = new ObjectMapper(factory);
+    Jackson2ObjectMapperBuilder.json().configure(mapper);
+    return mapper;
+  }
+
+  public ObjectMapper mapper(ArticleFormat format) {
+    switch (format) {
+      case SMILE:
+        return smileMapper;
+      case CBOR:
+        return cborMapper;
+      default:
+        return objectMapper;
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package com.example;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Article 목록을 NDJSON(한 줄에 JSON 하나) 으로 출력 스트림에 바로 쓰는 컴포넌트
+ *
+ * @ResponseBody 로 List<Article> 을 반환하면 HttpMessageConverter 가 전체 목록을 한번에 직렬화한다.
+ * 여기서는 Jackson 의 스트리밍 JsonGenerator 로 Article 을 하나씩 쓰기 때문에 generator 버퍼 외에는 추가 메모리가 들지 않는다.
+ */
+@Component
+public class ArticleNdjsonWriter {
+  public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+  public static final MediaType APPLICATION_NDJSON = MediaType.valueOf(APPLICATION_NDJSON_VALUE);
+
+  private final ObjectMapper objectMapper;
+  private final ObjectWriter articleWriter;
+
+  @Autowired
+  public ArticleNdjsonWriter(ObjectMapper objectMapper) {
+    this.objectMapper = objectMapper;
+    // Article 마다 flush 하지 않고 generator 버퍼가 찼을 때만 출력 스트림으로 내보낸다.
+    this.articleWriter = objectMapper.writerFor(Article.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+  }
+
+  public void write(Iterable<Article> articles, OutputStream out) throws IOException {
+    try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+      // 루트 값 사이에 기본으로 들어가는 공백 대신 줄바꿈을 직접 쓴다.
+      generator.setRootValueSeparator(null);
+      for (Article article : articles) {
+        articleWriter.writeValue(generator, article);
+        generator.writeRaw('\n');
+      }
+    }
+  }
+}
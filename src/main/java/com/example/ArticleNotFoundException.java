@@ -0,0 +1,22 @@
+package com.example;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 존재하지 않는 Article 을 요청했을 때 던지는 예외
+ * @ResponseStatus 를 지정하면 컨트롤러 밖으로 던져졌을 때 Spring MVC 가 404 Not Found 로 응답한다.
+ */
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class ArticleNotFoundException extends RuntimeException {
+  private final long id;
+
+  public ArticleNotFoundException(long id) {
+    super("article not found: " + id);
+    this.id = id;
+  }
+
+  public long getId() {
+    return id;
+  }
+}
@@ -0,0 +1,25 @@
+package com.example;
+
+import java.util.List;
+
+/**
+ * 커서 기반 페이지네이션 응답
+ * articles 는 Article 이거나 fields= 로 projection 한 Map 이다. 마지막 페이지면 nextCursor 는 null 이다.
+ */
+public class ArticlePage {
+  private final List<?> articles;
+  private final String nextCursor;
+
+  public ArticlePage(List<?> articles, String nextCursor) {
+    this.articles = articles;
+    this.nextCursor = nextCursor;
+  }
+
+  public List<?> getArticles() {
+    return articles;
+  }
+
+  public String getNextCursor() {
+    return nextCursor;
+  }
+}
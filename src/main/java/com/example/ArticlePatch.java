@@ -0,0 +1,502 @@
+package com.example;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PATCH 요청 본문을 해석해서 저장된 Article 에 바뀐 필드만 적용한다.
+ *
+ * application/merge-patch+json (RFC 7396) 과 application/json-patch+json (RFC 6902) 를 지원한다.
+ * 두 형식 모두 같은 연산(add, remove, replace, move, copy, test)으로 바꾼 다음 순서대로 적용한다.
+ * 바꿀 수 있는 경로는 /title, /content, /comments, /comments/{index}, /comments/{index}/content 이고 /id 는 바꿀 수 없다.
+ *
+ * 저장된 Article 을 직접 고치지 않고 바뀐 필드만 덮어쓴 새 Article 을 만든다.
+ * /comments 를 통째로 바꾸지 않는 한 댓글 목록은 직렬화하지 않고, 추가/수정/삭제된 댓글만 Result 에 담는다.
+ * 같은 패치를 여러 번 적용할 수 있어서(apply) 저장소는 충돌이 나면 새 버전에 대해 다시 계산한다.
+ */
+public final class ArticlePatch {
+  public static final String MERGE_PATCH_VALUE = "application/merge-patch+json";
+  public static final String JSON_PATCH_VALUE = "application/json-patch+json";
+
+  // test 연산에서 1 과 1.0, int 와 long 처럼 표현만 다른 숫자는 같은 값으로 본다(RFC 6902 4.6).
+  private static final Comparator<JsonNode> SAME_VALUE = (a, b) -> {
+    if (a.equals(b)) {
+      return 0;
+    }
+    if (a.isNumber() && b.isNumber()) {
+      return a.decimalValue().compareTo(b.decimalValue());
+    }
+    return 1;
+  };
+
+  private final List<Operation> operations;
+  private final ObjectMapper mapper;
+
+  private ArticlePatch(List<Operation> operations, ObjectMapper mapper) {
+    this.operations = operations;
+    this.mapper = mapper;
+  }
+
+  /**
+   * RFC 7396: 객체에 들어있는 필드는 교체하고 값이 null 인 필드는 지운다. 배열(comments)은 통째로 교체한다.
+   */
+  public static ArticlePatch mergePatch(JsonNode patch, ObjectMapper mapper) {
+    if (patch == null || !patch.isObject()) {
+      throw new BadRequestException("merge patch must be a JSON object");
+    }
+    List<Operation> operations = new ArrayList<>();
+    Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+    while (fields.hasNext()) {
+      Map.Entry<String, JsonNode> field = fields.next();
+      String path = "/" + field.getKey().replace("~", "~0").replace("/", "~1");
+      Pointer.parse(path);
+      if (field.getValue().isNull()) {
+        operations.add(new Operation("remove", path, null, null));
+      } else {
+        operations.add(new Operation("replace", path, null, field.getValue()));
+      }
+    }
+    return new ArticlePatch(operations, mapper);
+  }
+
+  /**
+   * RFC 6902: [{"op": "replace", "path": "/title", "value": "..."}, ...]
+   */
+  public static ArticlePatch jsonPatch(JsonNode patch, ObjectMapper mapper) {
+    if (patch == null || !patch.isArray()) {
+      throw new BadRequestException("json patch must be a JSON array");
+    }
+    List<Operation> operations = new ArrayList<>(patch.size());
+    for (JsonNode node : patch) {
+      String op = node.path("op").asText(null);
+      String path = node.path("path").asText(null);
+      if (op == null || path == null) {
+        throw new BadRequestException("json patch operation needs op and path: " + node);
+      }
+      Pointer.parse(path);
+      String from = null;
+      JsonNode value = null;
+      switch (op) {
+        case "add":
+        case "replace":
+        case "test":
+          if (!node.has("value")) {
+            throw new BadRequestException(op + " needs value: " + node);
+          }
+          value = node.get("value");
+          break;
+        case "move":
+        case "copy":
+          from = node.path("from").asText(null);
+          if (from == null) {
+            throw new BadRequestException(op + " needs from: " + node);
+          }
+          Pointer.parse(from);
+          break;
+        case "remove":
+          break;
+        default:
+          throw new BadRequestException("unknown json patch op: " + op);
+      }
+      operations.add(new Operation(op, path, from, value));
+    }
+    return new ArticlePatch(operations, mapper);
+  }
+
+  /**
+   * current 에 패치를 적용한 결과를 만든다. current 는 바꾸지 않는다.
+   */
+  public Result apply(Article current) {
+    Draft draft = new Draft(current);
+    for (Operation operation : operations) {
+      draft.apply(operation);
+    }
+    return draft.result();
+  }
+
+  /**
+   * 패치를 적용한 결과
+   *
+   * commentsReplaced 가 true 이면 article.comments 가 새 댓글 목록 전체이다.
+   * false 이면 article.comments 는 저장된 목록 그대로이고, 바뀐 댓글은 changedComments(id 가 0 이면 새 댓글)와 removedCommentIds 에 있다.
+   */
+  public static final class Result {
+    private final Article article;
+    private final boolean commentsReplaced;
+    private final List<Comment> changedComments;
+    private final List<Long> removedCommentIds;
+
+    Result(Article article, boolean commentsReplaced, List<Comment> changedComments, List<Long> removedCommentIds) {
+      this.article = article;
+      this.commentsReplaced = commentsReplaced;
+      this.changedComments = changedComments;
+      this.removedCommentIds = removedCommentIds;
+    }
+
+    public Article getArticle() {
+      return article;
+    }
+
+    public boolean isCommentsReplaced() {
+      return commentsReplaced;
+    }
+
+    public List<Comment> getChangedComments() {
+      return changedComments;
+    }
+
+    public List<Long> getRemovedCommentIds() {
+      return removedCommentIds;
+    }
+  }
+
+  private static final class Operation {
+    final String op;
+    final String path;
+    final String from;
+    final JsonNode value;
+
+    Operation(String op, String path, String from, JsonNode value) {
+      this.op = op;
+      this.path = path;
+      this.from = from;
+      this.value = value;
+    }
+  }
+
+  /**
+   * JSON Pointer(RFC 6901) 중 Article 에서 허용하는 경로
+   * field 는 id, title, content, comments 중 하나이고 index 는 "-" 이면 -1, 없으면 -2 이다.
+   */
+  private static final class Pointer {
+    static final int NO_INDEX = -2;
+    static final int END = -1;
+
+    final String field;
+    final int index;
+    final String commentField;
+
+    private Pointer(String field, int index, String commentField) {
+      this.field = field;
+      this.index = index;
+      this.commentField = commentField;
+    }
+
+    static Pointer parse(String path) {
+      if (!path.startsWith("/")) {
+        throw new BadRequestException("invalid json pointer: " + path);
+      }
+      String[] tokens = path.substring(1).split("/", -1);
+      for (int i = 0; i < tokens.length; i++) {
+        tokens[i] = tokens[i].replace("~1", "/").replace("~0", "~");
+      }
+      String field = tokens[0];
+      boolean scalar = field.equals("id") || field.equals("title") || field.equals("content");
+      if (scalar && tokens.length == 1) {
+        return new Pointer(field, NO_INDEX, null);
+      }
+      if (!field.equals("comments") || tokens.length > 3) {
+        throw new BadRequestException("unsupported patch path: " + path);
+      }
+      if (tokens.length == 1) {
+        return new Pointer(field, NO_INDEX, null);
+      }
+      int index;
+      if (tokens[1].equals("-")) {
+        index = END;
+      } else if (tokens[1].matches("0|[1-9][0-9]{0,8}")) {
+        index = Integer.parseInt(tokens[1]);
+      } else {
+        throw new BadRequestException("invalid comment index: " + path);
+      }
+      if (tokens.length == 3) {
+        if (index == END || !(tokens[2].equals("id") || tokens[2].equals("content") || tokens[2].equals("articleId"))) {
+          throw new BadRequestException("unsupported patch path: " + path);
+        }
+        return new Pointer(field, index, tokens[2]);
+      }
+      return new Pointer(field, index, null);
+    }
+
+    boolean isComment() {
+      return index != NO_INDEX;
+    }
+  }
+
+  /**
+   * 연산을 순서대로 적용하는 작업 공간
+   * 댓글 목록은 댓글 하나를 처음 고칠 때 참조만 복사하고(ensureCopied), 그 전까지는 저장된 목록을 그대로 읽는다.
+   */
+  private final class Draft {
+    private final Article current;
+    private final Article article = new Article();
+    private List<Comment> comments;
+    private boolean copied;
+    private boolean replaced;
+    // id 가 있는 댓글 중 바뀐 것, 새로 추가된 댓글, 지워진 기존 댓글 id
+    private final Map<Long, Comment> changed = new LinkedHashMap<>();
+    private final List<Comment> added = new ArrayList<>();
+    private final List<Long> removed = new ArrayList<>();
+
+    Draft(Article current) {
+      this.current = current;
+      article.setId(current.getId());
+      article.setTitle(current.getTitle());
+      article.setContent(current.getContent());
+      article.setVersion(current.getVersion() + 1);
+      comments = current.getComments();
+    }
+
+    void apply(Operation operation) {
+      Pointer path = Pointer.parse(operation.path);
+      switch (operation.op) {
+        case "add":
+          add(path, operation.value);
+          break;
+        case "replace":
+          replace(path, operation.value);
+          break;
+        case "remove":
+          remove(path);
+          break;
+        case "test":
+          if (!get(path).equals(SAME_VALUE, operation.value)) {
+            throw new ConflictException("json patch test failed: " + operation.path);
+          }
+          break;
+        case "copy":
+          add(path, get(Pointer.parse(operation.from)));
+          break;
+        case "move": {
+          Pointer from = Pointer.parse(operation.from);
+          JsonNode value = get(from);
+          remove(from);
+          add(path, value);
+          break;
+        }
+        default:
+          throw new BadRequestException("unknown json patch op: " + operation.op);
+      }
+    }
+
+    Result result() {
+      if (replaced) {
+        article.setComments(comments);
+        return new Result(article, true, Collections.<Comment>emptyList(), Collections.<Long>emptyList());
+      }
+      article.setComments(current.getComments());
+      List<Comment> changedComments = new ArrayList<>(changed.values());
+      changedComments.addAll(added);
+      return new Result(article, false, changedComments, removed);
+    }
+
+    private JsonNode get(Pointer path) {
+      if (!path.isComment()) {
+        switch (path.field) {
+          case "id":
+            return LongNode.valueOf(article.getId());
+          case "title":
+            return text(article.getTitle());
+          case "content":
+            return text(article.getContent());
+          default:
+            return comments == null ? NullNode.getInstance() : mapper.valueToTree(comments);
+        }
+      }
+      Comment comment = element(path.index);
+      if (path.commentField == null) {
+        return mapper.valueToTree(comment);
+      }
+      switch (path.commentField) {
+        case "id":
+          return LongNode.valueOf(comment.getId());
+        case "articleId":
+          return LongNode.valueOf(comment.getArticleId());
+        default:
+          return text(comment.getContent());
+      }
+    }
+
+    // 배열에 대한 add 는 끝(-)에 붙이는 것만 허용한다. 댓글은 id 순으로 정렬되기 때문에 중간에 끼워 넣는 위치는 의미가 없다.
+    private void add(Pointer path, JsonNode value) {
+      if (path.isComment() && path.commentField == null) {
+        if (path.index != Pointer.END && path.index != size()) {
+          throw new BadRequestException("comments can only be appended with /comments/-");
+        }
+        Comment comment = toComment(value);
+        comment.setId(0L);
+        ensureCopied();
+        comments.add(comment);
+        if (!replaced) {
+          added.add(comment);
+        }
+        return;
+      }
+      replace(path, value);
+    }
+
+    private void replace(Pointer path, JsonNode value) {
+      if (!path.isComment()) {
+        switch (path.field) {
+          case "id":
+            if (!value.isIntegralNumber() || value.asLong() != article.getId()) {
+              throw new BadRequestException("id cannot be changed");
+            }
+            return;
+          case "title":
+            article.setTitle(toText(value));
+            return;
+          case "content":
+            article.setContent(toText(value));
+            return;
+          default:
+            replaceComments(value.isNull() ? null : toComments(value));
+            return;
+        }
+      }
+      if (path.index == Pointer.END) {
+        throw new BadRequestException("/comments/- can only be used with add");
+      }
+      Comment existing = element(path.index);
+      Comment comment;
+      if (path.commentField == null) {
+        comment = toComment(value);
+      } else if (path.commentField.equals("content")) {
+        comment = copy(existing);
+        comment.setContent(toText(value));
+      } else {
+        throw new BadRequestException("comment " + path.commentField + " cannot be changed");
+      }
+      comment.setId(existing.getId());
+      comment.setArticleId(existing.getArticleId());
+      ensureCopied();
+      comments.set(path.index, comment);
+      track(existing, comment);
+    }
+
+    private void remove(Pointer path) {
+      if (!path.isComment()) {
+        if (path.field.equals("id")) {
+          throw new BadRequestException("id cannot be removed");
+        }
+        replace(path, NullNode.getInstance());
+        return;
+      }
+      if (path.index == Pointer.END) {
+        throw new BadRequestException("/comments/- can only be used with add");
+      }
+      if (path.commentField != null) {
+        replace(path, NullNode.getInstance());
+        return;
+      }
+      Comment existing = element(path.index);
+      ensureCopied();
+      comments.remove(path.index);
+      if (replaced) {
+        return;
+      }
+      if (!added.remove(existing)) {
+        changed.remove(existing.getId());
+        removed.add(existing.getId());
+      }
+    }
+
+    private void replaceComments(List<Comment> replacement) {
+      comments = replacement;
+      copied = true;
+      replaced = true;
+      changed.clear();
+      added.clear();
+      removed.clear();
+    }
+
+    // 새로 추가한 댓글을 다시 고친 경우에는 추가 목록에서 바꿔치기한다.
+    private void track(Comment existing, Comment comment) {
+      if (replaced) {
+        return;
+      }
+      int addedAt = added.indexOf(existing);
+      if (addedAt >= 0) {
+        added.set(addedAt, comment);
+      } else {
+        changed.put(comment.getId(), comment);
+      }
+    }
+
+    private void ensureCopied() {
+      if (!copied) {
+        comments = comments == null ? new ArrayList<>() : new ArrayList<>(comments);
+        copied = true;
+      }
+    }
+
+    private int size() {
+      return comments == null ? 0 : comments.size();
+    }
+
+    private Comment element(int index) {
+      if (index < 0 || index >= size()) {
+        throw new BadRequestException("no comment at index " + index);
+      }
+      return comments.get(index);
+    }
+
+    private Comment toComment(JsonNode value) {
+      if (value == null || !value.isObject()) {
+        throw new BadRequestException("comment must be a JSON object");
+      }
+      try {
+        Comment comment = mapper.treeToValue(value, Comment.class);
+        comment.setArticleId(article.getId());
+        return comment;
+      } catch (JsonProcessingException e) {
+        throw new BadRequestException("invalid comment: " + e.getOriginalMessage());
+      }
+    }
+
+    private List<Comment> toComments(JsonNode value) {
+      if (!value.isArray()) {
+        throw new BadRequestException("comments must be a JSON array");
+      }
+      List<Comment> list = new ArrayList<>(value.size());
+      for (JsonNode node : value) {
+        list.add(toComment(node));
+      }
+      return list;
+    }
+  }
+
+  private static Comment copy(Comment comment) {
+    Comment copy = new Comment();
+    copy.setId(comment.getId());
+    copy.setArticleId(comment.getArticleId());
+    copy.setContent(comment.getContent());
+    return copy;
+  }
+
+  private static JsonNode text(String value) {
+    return value == null ? NullNode.getInstance() : TextNode.valueOf(value);
+  }
+
+  private static String toText(JsonNode value) {
+    if (value.isNull()) {
+      return null;
+    }
+    if (!value.isTextual()) {
+      throw new BadRequestException("expected a string but was " + value);
+    }
+    return value.asText();
+  }
+}
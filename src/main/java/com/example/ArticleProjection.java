@@ -0,0 +1,86 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * fields= 파라미터로 Article 의 일부 필드만 골라서 응답하기 위한 projection
+ * 예) fields=id,title 이면 comments 는 직렬화하지 않는다.
+ */
+public final class ArticleProjection {
+  enum Field {
+    ID("id"), TITLE("title"), CONTENT("content"), COMMENTS("comments");
+
+    private final String name;
+
+    Field(String name) {
+      this.name = name;
+    }
+  }
+
+  private final Set<Field> fields;
+
+  private ArticleProjection(Set<Field> fields) {
+    this.fields = fields;
+  }
+
+  /**
+   * 콤마로 구분된 필드 이름을 해석한다. 비어 있으면 null(= projection 없음)을 반환한다.
+   */
+  public static ArticleProjection parse(String fields) {
+    if (fields == null || fields.trim().isEmpty()) {
+      return null;
+    }
+    Set<Field> selected = EnumSet.noneOf(Field.class);
+    for (String name : fields.split(",")) {
+      selected.add(field(name.trim()));
+    }
+    return new ArticleProjection(selected);
+  }
+
+  private static Field field(String name) {
+    for (Field field : Field.values()) {
+      if (field.name.equals(name)) {
+        return field;
+      }
+    }
+    throw new BadRequestException("unknown field: " + name);
+  }
+
+  public Map<String, Object> apply(Article article) {
+    Map<String, Object> result = new LinkedHashMap<>();
+    for (Field field : fields) {
+      switch (field) {
+        case ID:
+          result.put(field.name, article.getId());
+          break;
+        case TITLE:
+          result.put(field.name, article.getTitle());
+          break;
+        case CONTENT:
+          result.put(field.name, article.getContent());
+          break;
+        case COMMENTS:
+          result.put(field.name, article.getComments());
+          break;
+      }
+    }
+    return result;
+  }
+
+  public List<Map<String, Object>> apply(List<Article> articles) {
+    if (articles.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<Map<String, Object>> result = new ArrayList<>(articles.size());
+    for (Article article : articles) {
+      result.add(apply(article));
+    }
+    return result;
+  }
+}
@@ -0,0 +1,741 @@
+package com.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Article 을 메모리에 보관하는 저장소
+ *
+ * 애플리케이션이 시작될 때 fixtures.yml 에서 읽은 Article 들을 한번만 적재하고
+ * 이후에는 id(long) 를 키로 하는 ConcurrentLongHashMap 에서 O(1) 로 조회/삭제한다.
+ *
+ * 목록 조회는 ArticleSnapshot 을 그대로 공유한다. 쓰기는 writeLock 안에서 인덱스를 고치고
+ * 새로운 버전의 스냅샷을 만들어 volatile 필드를 교체하기 때문에, 읽는 쪽은 항상 완성된 스냅샷만 보게 된다.
+ *
+ * articles.store.enabled=true 이면 모든 변경을 ArticleStore 의 로그에 남기고, 다시 시작할 때 fixtures.yml 대신
+ * 디스크에서 복구한다. 디스크가 비어 있는 첫 시작에만 fixtures.yml 을 읽어서 초기 스냅샷을 만든다.
+ *
+ * 변경은 fsync 를 기다리기 전에 읽는 쪽에 보인다(read-uncommitted). 쓰기 락 안에서 스냅샷, 검색 인덱스, 응답 캐시 무효화를
+ * 먼저 반영하고 로그에 append 한 뒤, fsync 는 락을 놓고 나서 group commit 으로 기다린다. fsync 까지 락을 잡으면 group commit 이 되지 않기 때문이다.
+ * 그래서 sync-writes 여도 쓰는 요청만 fsync 가 끝난 뒤에 응답하고, 다른 요청은 그 전에 새 버전을 읽거나 그 버전의 ETag 를 받을 수 있다.
+ * 그 사이에 프로세스가 죽으면 읽힌 변경이 복구되지 않는다. fsync 가 실패하면 쓰는 요청은 오류를 받지만 메모리의 변경은 그대로 남는다.
+ * 재시작하면 instanceId 가 바뀌므로 잃어버린 버전의 ETag 는 If-Match 와 If-None-Match 에서 맞지 않는다.
+ *
+ * fixtures.binary 가 지정되면 fixtures.yml 의 articles 대신 MappedArticleFixtures 를 사용한다.
+ * 이 때 인덱스에는 읽거나 수정한 Article 만 올라가고 나머지는 매핑된 파일에 남아 있다.
+ *
+ * 인덱스에 올라간 Article 의 댓글은 CommentStore 가 관리하고, Article.comments 는 CommentStore 의 view 이다.
+ * 마찬가지로 Article.attachments 는 AttachmentRepository 의 view 라서 썸네일이 만들어지면 글을 다시 저장하지 않아도 JSON 에 나온다.
+ *
+ * 모든 쓰기는 스냅샷 버전을 올리므로 스냅샷 버전은 목록 전체의 ETag 로 쓸 수 있다.
+ * 스냅샷 버전은 재시작하면 다시 시작하기 때문에 목록 ETag 에는 시작할 때 정한 instanceId 를 같이 넣는다.
+ */
+@Repository
+public class ArticleRepository {
+  private static final Logger logger = LoggerFactory.getLogger(ArticleRepository.class);
+
+  @Autowired
+  FixturesProperty fixturesProperty;
+
+  @Autowired(required = false)
+  ArticleStoreProperties storeProperties;
+
+  @Autowired(required = false)
+  AttachmentRepository attachmentRepository;
+
+  @Autowired(required = false)
+  ArticleSearchIndex searchIndex;
+
+  @Autowired(required = false)
+  IdProperties idProperties;
+
+  @Autowired(required = false)
+  ArticleResponseCache responseCache;
+
+  private final ConcurrentLongHashMap<Article> articles = new ConcurrentLongHashMap<>();
+  private final CommentStore commentStore = new CommentStore();
+  private final Object writeLock = new Object();
+  private volatile ArticleSnapshot snapshot = ArticleSnapshot.EMPTY;
+  private final String instanceId = Long.toString(System.currentTimeMillis(), 36);
+  // 마지막 쓰기 시각. 목록의 Last-Modified 로 사용한다. 시작한 시각부터 시작하고 줄어들지 않는다.
+  private volatile long lastModified = System.currentTimeMillis();
+
+  // 글 id 할당기. load() 에서 설정에 맞게 다시 만든다.
+  private IdAllocator articleIds = IdAllocator.inMemory("article", 64);
+  private ArticleStore store;
+  private MappedArticleFixtures mappedFixtures;
+  private ScheduledExecutorService compactor;
+
+  @PostConstruct
+  public void load() throws IOException {
+    openIdAllocators();
+    if (storeProperties != null && storeProperties.isEnabled()) {
+      store = new ArticleStore(Paths.get(storeProperties.getDirectory()), storeProperties.getGroupCommitSize());
+      if (store.open(articles)) {
+        publishFromIndex();
+      } else {
+        loadFixtures();
+        compact();
+      }
+      startCompactor();
+    } else {
+      loadFixtures();
+    }
+    // 댓글은 CommentStore 에 올릴 때 할당기를 올려 두지만 바이너리 fixture 의 글은 디코딩하지 않으므로 여기서 올린다.
+    // 바이너리 fixture 의 댓글 id 는 loadBinaryFixtures 에서 헤더의 최댓값으로 올린다.
+    articleIds.advance(snapshot.maxId());
+  }
+
+  // 저장소를 쓰면 다시 시작해도 이전에 나눠준 id 가 나오지 않도록 저장소 디렉토리에 high-water mark 를 남긴다.
+  private void openIdAllocators() throws IOException {
+    int blockSize = idProperties != null ? idProperties.getBlockSize() : 64;
+    if (storeProperties != null && storeProperties.isEnabled()) {
+      long leaseSize = idProperties != null ? idProperties.getLeaseSize() : 100000;
+      Path directory = Paths.get(storeProperties.getDirectory());
+      Files.createDirectories(directory);
+      articleIds = new IdAllocator("article", directory.resolve("article-ids"), blockSize, leaseSize);
+      commentStore.idAllocator = new IdAllocator("comment", directory.resolve("comment-ids"), blockSize, leaseSize);
+    } else {
+      articleIds = IdAllocator.inMemory("article", blockSize);
+      commentStore.idAllocator = IdAllocator.inMemory("comment", blockSize);
+    }
+  }
+
+  private void loadFixtures() throws IOException {
+    if (fixturesProperty.getBinary() != null) {
+      loadBinaryFixtures(Paths.get(fixturesProperty.getBinary()));
+      return;
+    }
+    synchronized (writeLock) {
+      for (Article article : fixturesProperty.getArticles()) {
+        articles.put(article.getId(), article);
+      }
+      publishFromIndex();
+    }
+  }
+
+  // 바이너리 fixture 는 id 인덱스만 읽어서 스냅샷을 만들고, Article 은 요청받을 때 매핑된 파일에서 디코딩한다.
+  private void loadBinaryFixtures(Path file) throws IOException {
+    mappedFixtures = MappedArticleFixtures.open(file);
+    commentStore.idAllocator.advance(mappedFixtures.maxCommentId());
+    synchronized (writeLock) {
+      snapshot = ArticleSnapshot.lazy(snapshot.getVersion() + 1, mappedFixtures.ids(), this::peek);
+    }
+    logger.info("mapped {} fixture articles from {}", mappedFixtures.size(), file);
+    if (searchIndex != null && searchIndex.isEnabled()) {
+      buildSearchIndexAsync();
+    }
+  }
+
+  // 검색 색인을 만들려면 매핑된 fixture 를 모두 디코딩해야 한다. 시작 시간이 글 수와 무관하도록 별도 스레드에서 만들고,
+  // 다 만들 때까지 검색은 503 이다. 디코딩한 Article 은 색인에 넣은 뒤 버리므로 힙에는 색인만 남는다.
+  // 그 사이의 쓰기는 색인이 id 만 기록해 두고, 만든 색인을 넣을 때 쓰기 락 안에서 그 글들만 다시 색인한다.
+  private void buildSearchIndexAsync() {
+    ArticleSnapshot base;
+    synchronized (writeLock) {
+      searchIndex.startBuild();
+      base = snapshot;
+    }
+    Thread indexer = new Thread(() -> {
+      try {
+        ArticleSearchIndex.Built built = searchIndex.build(base.asList());
+        synchronized (writeLock) {
+          for (long id : searchIndex.install(built)) {
+            Article article = snapshot.contains(id) ? peek(id) : null;
+            if (article != null) {
+              searchIndex.index(article);
+            } else {
+              searchIndex.remove(id);
+            }
+          }
+          searchIndex.markReady();
+        }
+        logger.info("built the article search index for {} articles", base.size());
+      } catch (RuntimeException e) {
+        logger.error("building the article search index failed, search stays unavailable", e);
+      }
+    }, "article-search-indexer");
+    indexer.setDaemon(true);
+    indexer.start();
+  }
+
+  // 목록을 읽을 때는 디코딩한 Article 을 인덱스에 캐시하지 않는다. 전체 목록을 훑어도 힙이 늘어나지 않게 하기 위해서다.
+  private Article peek(long id) {
+    Article article = articles.get(id);
+    if (article != null) {
+      return article;
+    }
+    Article decoded = mappedFixtures.find(id);
+    if (decoded != null) {
+      attachAttachments(decoded);
+    }
+    return decoded;
+  }
+
+  // 같은 id 가 중복되어 있으면 나중 것이 남도록 인덱스에서 스냅샷을 만든다.
+  private void publishFromIndex() {
+    synchronized (writeLock) {
+      List<Article> loaded = new ArrayList<>(articles.size());
+      articles.forEach((id, article) -> loaded.add(article));
+      for (Article article : loaded) {
+        indexComments(article);
+        attachAttachments(article);
+      }
+      snapshot = ArticleSnapshot.of(snapshot.getVersion() + 1, loaded.toArray(new Article[loaded.size()]));
+      if (searchIndex != null) {
+        searchIndex.rebuild(snapshot.asList());
+      }
+    }
+  }
+
+  // Article 의 댓글을 CommentStore 에 올리고 comments 필드를 CommentStore 의 view 로 바꾼다. 쓰기 락 안에서 호출한다.
+  // 락 밖에서 붙인 댓글 id 를 그 사이에 다른 글이 가져갔으면 새 id 로 바꾸고 true 를 돌려준다. 그러면 로그에 쓸 바이트를 다시 인코딩해야 한다.
+  private boolean indexComments(Article article) {
+    List<Comment> comments = article.getComments();
+    if (comments == null) {
+      commentStore.removeArticle(article.getId());
+      return false;
+    }
+    List<Comment> incoming = new ArrayList<>(comments);
+    boolean reassigned = commentStore.assignIds(article.getId(), incoming);
+    commentStore.replace(article.getId(), incoming);
+    article.setComments(commentStore.view(article.getId()));
+    return reassigned;
+  }
+
+  // attachments 필드를 AttachmentRepository 의 view 로 바꾼다. 첨부 파일은 글과 따로 저장되므로 요청 본문의 attachments 는 무시한다.
+  private void attachAttachments(Article article) {
+    if (attachmentRepository != null) {
+      article.setAttachments(attachmentRepository.view(article.getId()));
+    }
+  }
+
+  public Article findOne(long id) {
+    Article article = articles.get(id);
+    if (article != null || mappedFixtures == null || !snapshot.contains(id)) {
+      return article;
+    }
+
+    // 아직 읽지 않은 fixture 를 디코딩해서 인덱스와 CommentStore 에 올린다. 글마다 한번만 일어나는 일이라 쓰기 락 안에서 처리한다.
+    synchronized (writeLock) {
+      article = articles.get(id);
+      if (article != null || !snapshot.contains(id)) {
+        return article;
+      }
+      Article decoded = mappedFixtures.find(id);
+      if (decoded != null) {
+        indexComments(decoded);
+        attachAttachments(decoded);
+        articles.put(id, decoded);
+      }
+      return decoded;
+    }
+  }
+
+  public boolean exists(long id) {
+    return articles.containsKey(id) || (mappedFixtures != null && snapshot.contains(id));
+  }
+
+  public ArticleSnapshot snapshot() {
+    return snapshot;
+  }
+
+  public List<Article> findAll() {
+    return snapshot.asList();
+  }
+
+  public String instanceId() {
+    return instanceId;
+  }
+
+  // 첨부 파일이나 썸네일이 바뀐 시각도 목록의 표현이 바뀐 시각이다.
+  public long lastModified() {
+    return Math.max(lastModified, attachmentsRevision());
+  }
+
+  /**
+   * 첨부 파일 목록이 마지막으로 바뀐 revision. 첨부 파일의 변경은 스냅샷 버전을 올리지 않으므로 목록 ETag 에 따로 넣는다.
+   */
+  public long attachmentsRevision() {
+    return attachmentRepository == null ? 0 : attachmentRepository.lastRevision();
+  }
+
+  // 쓰기 락 안에서 호출한다. 시계가 뒤로 가도 Last-Modified 가 줄어들지 않게 한다.
+  private long touch() {
+    lastModified = Math.max(System.currentTimeMillis(), lastModified);
+    return lastModified;
+  }
+
+  // 로그에 쓰는 내용과 저장되는 내용이 같도록 인코딩하기 전에 댓글 id 를 먼저 붙인다.
+  // comments 가 이전에 저장된 view 일 수도 있으므로 복사본을 사용한다.
+  private void prepareComments(Article article) {
+    if (article.getComments() != null) {
+      List<Comment> incoming = new ArrayList<>(article.getComments());
+      commentStore.assignIds(article.getId(), incoming);
+      article.setComments(incoming);
+    }
+  }
+
+  /**
+   * id 가 없는(0 이하) 글에 새 id 를 붙인다. 락 없이 스레드마다 예약해 둔 블록에서 꺼낸다.
+   */
+  public void assignId(Article article) {
+    if (article.getId() > 0) {
+      return;
+    }
+    long id;
+    // 다른 스레드가 먼저 예약한 블록 안의 id 를 직접 지정한 글이 쓰고 있을 수 있다.
+    do {
+      id = articleIds.next();
+    } while (snapshot.contains(id));
+    article.setId(id);
+  }
+
+  public Map<String, Object> idMetrics() {
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("articles", articleIds.metrics());
+    metrics.put("comments", commentStore.idAllocator.metrics());
+    return metrics;
+  }
+
+  /**
+   * Article 전체를 저장한다. 버전은 저장된 버전 + 1 이 된다.
+   */
+  public Article save(Article article) {
+    return save(article, false);
+  }
+
+  /**
+   * 같은 id 의 글이 있을 때만 Article 전체를 교체한다. 있는지는 쓰기 락 안에서 확인하므로 그 사이에 지워진 글을 다시 만들지 않는다.
+   *
+   * @return 글이 없으면 null
+   */
+  public Article replaceIfPresent(Article article) {
+    // 아직 디코딩하지 않은 fixture 이면 이전 버전을 알 수 있도록 먼저 인덱스에 올린다.
+    if (findOne(article.getId()) == null) {
+      return null;
+    }
+    return save(article, true);
+  }
+
+  private Article save(Article article, boolean requirePresent) {
+    articleIds.advance(article.getId());
+    prepareComments(article);
+    byte[] encoded = store != null ? ArticleCodec.encode(article) : null;
+    CompletableFuture<Void> durable = null;
+    synchronized (writeLock) {
+      if (requirePresent && !snapshot.contains(article.getId())) {
+        return null;
+      }
+      // 버전은 락 안에서만 정할 수 있으므로 락 밖에서 인코딩한 바이트에는 버전만 채워 넣는다.
+      Article previous = articles.get(article.getId());
+      article.setVersion(previous == null ? 1 : previous.getVersion() + 1);
+      article.setLastModified(touch());
+      if (indexComments(article) && encoded != null) {
+        encoded = ArticleCodec.encode(article);
+      }
+      if (encoded != null) {
+        ArticleCodec.writeVersion(encoded, article.getVersion(), article.getLastModified());
+      }
+      attachAttachments(article);
+      articles.put(article.getId(), article);
+      snapshot = snapshot.withArticle(article);
+      if (searchIndex != null) {
+        searchIndex.index(article);
+      }
+      invalidateResponse(article.getId());
+      if (store != null) {
+        durable = store.appendPut(encoded);
+      }
+    }
+    awaitDurable(durable);
+    return article;
+  }
+
+  /**
+   * 여러 Article 을 한 번에 저장한다. 결과는 save() 를 차례로 부른 것과 같지만 쓰기 락은 한 번만 잡고
+   * 스냅샷도 한 번만 병합한다. 로그 레코드는 group commit 으로 같이 fsync 되므로 마지막 레코드만 기다린다.
+   * batch 에 같은 id 가 여러 번 있으면 나중 것이 남는다.
+   */
+  public List<Article> saveAll(List<Article> batch) {
+    if (batch.isEmpty()) {
+      return batch;
+    }
+    List<byte[]> encoded = new ArrayList<>(batch.size());
+    for (Article article : batch) {
+      articleIds.advance(article.getId());
+      prepareComments(article);
+      if (store != null) {
+        encoded.add(ArticleCodec.encode(article));
+      }
+    }
+    CompletableFuture<Void> durable = null;
+    synchronized (writeLock) {
+      long now = touch();
+      for (int i = 0; i < batch.size(); i++) {
+        Article article = batch.get(i);
+        Article previous = articles.get(article.getId());
+        article.setVersion(previous == null ? 1 : previous.getVersion() + 1);
+        article.setLastModified(now);
+        if (indexComments(article) && store != null) {
+          encoded.set(i, ArticleCodec.encode(article));
+        }
+        attachAttachments(article);
+        articles.put(article.getId(), article);
+        if (searchIndex != null) {
+          searchIndex.index(article);
+        }
+        invalidateResponse(article.getId());
+        if (store != null) {
+          ArticleCodec.writeVersion(encoded.get(i), article.getVersion(), now);
+          durable = store.appendPut(encoded.get(i));
+        }
+      }
+      snapshot = snapshot.withArticles(batch);
+    }
+    awaitDurable(durable);
+    return batch;
+  }
+
+  /**
+   * @return 삭제된 글이 있었으면 true
+   */
+  public boolean delete(long id) {
+    CompletableFuture<Void> durable = null;
+    synchronized (writeLock) {
+      ArticleSnapshot next = snapshot.withoutArticle(id);
+      if (next == snapshot) {
+        return false;
+      }
+      snapshot = next;
+      touch();
+      articles.remove(id);
+      commentStore.removeArticle(id);
+      if (searchIndex != null) {
+        searchIndex.remove(id);
+      }
+      invalidateResponse(id);
+      if (store != null) {
+        durable = store.appendDelete(id);
+      }
+    }
+    if (attachmentRepository != null) {
+      attachmentRepository.deleteArticle(id);
+    }
+    awaitDurable(durable);
+    return true;
+  }
+
+  /**
+   * 저장된 Article 에 패치를 적용한다.
+   *
+   * 패치 계산과 인코딩은 락 밖에서 하고, 쓰기 락 안에서는 그 사이 글의 버전이 바뀌지 않았는지만 확인하고 교체한다(compare-and-set).
+   * 다른 쓰기가 먼저 끝났으면 expectedVersion 이 없을 때는 새 버전에 대해 다시 계산하고, 있으면 PreconditionFailedException 을 던진다.
+   * 댓글 목록을 통째로 바꾸지 않으면 로그에는 바뀐 필드(PATCH)와 바뀐 댓글만 쓴다.
+   *
+   * @param expectedVersion If-Match 로 받은 버전. 음수면 확인하지 않는다.
+   * @return 글이 없으면 null
+   */
+  public Article patch(long id, long expectedVersion, ArticlePatch patch) {
+    while (true) {
+      Article current = findOne(id);
+      if (current == null) {
+        return null;
+      }
+      long version = current.getVersion();
+      if (expectedVersion >= 0 && version != expectedVersion) {
+        throw new PreconditionFailedException("article " + id + " is at version " + version + ", not " + expectedVersion);
+      }
+
+      ArticlePatch.Result result = patch.apply(current);
+      Article next = result.getArticle();
+      List<Comment> changed = result.getChangedComments();
+      if (result.isCommentsReplaced()) {
+        prepareComments(next);
+      } else {
+        commentStore.assignIds(id, changed);
+      }
+      byte[] encoded = null;
+      List<byte[]> encodedComments = new ArrayList<>(changed.size());
+      if (store != null) {
+        if (result.isCommentsReplaced()) {
+          encoded = ArticleCodec.encode(next);
+        } else {
+          encoded = ArticleCodec.encodeWithoutComments(next);
+          for (Comment comment : changed) {
+            encodedComments.add(ArticleCodec.encodeComment(comment));
+          }
+        }
+      }
+
+      CompletableFuture<Void> durable = null;
+      synchronized (writeLock) {
+        Article live = articles.get(id);
+        if (live != current || live.getVersion() != version) {
+          continue;
+        }
+        long now = touch();
+        next.setLastModified(now);
+        if (result.isCommentsReplaced()) {
+          if (indexComments(next) && encoded != null) {
+            encoded = ArticleCodec.encode(next);
+          }
+        } else {
+          // 락 밖에서 붙인 id 를 그 사이에 다른 글이 가져갔을 수 있으므로 락 안에서 다시 확인한다.
+          if (commentStore.assignIds(id, changed) && store != null) {
+            encodedComments.clear();
+            for (Comment comment : changed) {
+              encodedComments.add(ArticleCodec.encodeComment(comment));
+            }
+          }
+          for (long commentId : result.getRemovedCommentIds()) {
+            commentStore.remove(id, commentId);
+          }
+          for (Comment comment : changed) {
+            commentStore.add(comment);
+          }
+          if (current.getComments() != null || !changed.isEmpty()) {
+            next.setComments(commentStore.view(id));
+          }
+        }
+        if (encoded != null) {
+          ArticleCodec.writeVersion(encoded, next.getVersion(), now);
+        }
+        attachAttachments(next);
+        articles.put(id, next);
+        snapshot = snapshot.withArticle(next);
+        if (searchIndex != null) {
+          searchIndex.index(next);
+        }
+        invalidateResponse(id);
+        if (store != null) {
+          if (result.isCommentsReplaced()) {
+            durable = store.appendPut(encoded);
+          } else {
+            // 댓글 레코드가 먼저 적용되고, 마지막 PATCH 레코드가 글의 필드와 버전을 확정한다.
+            for (long commentId : result.getRemovedCommentIds()) {
+              store.appendCommentDelete(id, commentId, next.getVersion(), now);
+            }
+            for (byte[] comment : encodedComments) {
+              store.appendCommentPut(comment, next.getVersion(), now);
+            }
+            durable = store.appendPatch(encoded);
+          }
+        }
+      }
+      // 로그는 한 스레드가 순서대로 쓰기 때문에 마지막 레코드가 fsync 되면 앞의 레코드도 모두 fsync 된 것이다.
+      awaitDurable(durable);
+      return next;
+    }
+  }
+
+  public Comment findComment(long articleId, long commentId) {
+    Comment comment = commentStore.get(commentId);
+    return comment != null && comment.getArticleId() == articleId ? comment : null;
+  }
+
+  public List<Comment> findComments(long articleId, long afterCommentId, int limit) {
+    return commentStore.page(articleId, afterCommentId, limit);
+  }
+
+  public boolean hasCommentsAfter(long articleId, long commentId) {
+    return commentStore.hasAfter(articleId, commentId);
+  }
+
+  /**
+   * 댓글 하나를 추가한다. Article 은 다시 저장하지 않고 CommentStore 와 로그에 댓글만 기록한다.
+   *
+   * @return 글이 없으면 null
+   */
+  public Comment addComment(long articleId, Comment comment) {
+    if (findOne(articleId) == null) {
+      return null;
+    }
+    commentStore.assignIds(articleId, Collections.singletonList(comment));
+    byte[] encoded = store != null ? ArticleCodec.encodeComment(comment) : null;
+    CompletableFuture<Void> durable = null;
+    synchronized (writeLock) {
+      Article article = articles.get(articleId);
+      if (article == null) {
+        return null;
+      }
+      // 락 밖에서 붙인 id 를 그 사이에 다른 글이 가져갔을 수 있으므로 락 안에서 다시 확인한다.
+      if (commentStore.assignIds(articleId, Collections.singletonList(comment)) && encoded != null) {
+        encoded = ArticleCodec.encodeComment(comment);
+      }
+      commentStore.add(comment);
+      if (article.getComments() == null) {
+        article.setComments(commentStore.view(articleId));
+      }
+      // 댓글도 글과 목록의 표현에 포함되므로 ETag 가 바뀌도록 글의 버전과 스냅샷 버전을 올린다.
+      long now = touch();
+      article.setVersion(article.getVersion() + 1);
+      article.setLastModified(now);
+      snapshot = snapshot.withNextVersion();
+      if (searchIndex != null) {
+        searchIndex.addText(articleId, comment.getContent());
+      }
+      invalidateResponse(articleId);
+      if (store != null) {
+        durable = store.appendCommentPut(encoded, article.getVersion(), now);
+      }
+    }
+    awaitDurable(durable);
+    return comment;
+  }
+
+  /**
+   * @return 삭제된 댓글이 있었으면 true
+   */
+  public boolean deleteComment(long articleId, long commentId) {
+    CompletableFuture<Void> durable = null;
+    synchronized (writeLock) {
+      Comment removed = commentStore.get(commentId);
+      if (!commentStore.remove(articleId, commentId)) {
+        return false;
+      }
+      if (searchIndex != null && removed != null) {
+        searchIndex.removeText(articleId, removed.getContent());
+      }
+      invalidateResponse(articleId);
+      long now = touch();
+      Article article = articles.get(articleId);
+      if (article != null) {
+        article.setVersion(article.getVersion() + 1);
+        article.setLastModified(now);
+      }
+      snapshot = snapshot.withNextVersion();
+      if (store != null) {
+        durable = store.appendCommentDelete(articleId, commentId, article != null ? article.getVersion() : -1, now);
+      }
+    }
+    awaitDurable(durable);
+    return true;
+  }
+
+  // 캐시한 응답은 ETag 가 달라져서 어차피 쓰이지 않지만 메모리를 바로 돌려받도록 지운다.
+  private void invalidateResponse(long id) {
+    if (responseCache != null) {
+      responseCache.invalidate(id);
+    }
+  }
+
+  public boolean isSearchEnabled() {
+    return searchIndex != null && searchIndex.isEnabled();
+  }
+
+  /**
+   * 바이너리 fixture 로 시작해서 색인을 아직 만드는 중이면 false
+   */
+  public boolean isSearchReady() {
+    return searchIndex != null && searchIndex.isReady();
+  }
+
+  /**
+   * 제목, 본문, 댓글에서 query 를 검색한다. 검색은 쓰기 락을 잡지 않는다.
+   */
+  public ArticleSearchIndex.Hits search(String query, int limit) {
+    return searchIndex.search(query, limit);
+  }
+
+  public int count() {
+    return snapshot.size();
+  }
+
+  // syncWrites 면 group commit 의 fsync 가 끝날 때까지 기다린다. 락 밖에서 기다리므로 다른 쓰기는 계속 같은 배치에 합류할 수 있다.
+  private void awaitDurable(CompletableFuture<Void> durable) {
+    if (durable == null || !storeProperties.isSyncWrites()) {
+      return;
+    }
+    // writer 스레드가 멈춰도 요청 스레드가 영원히 기다리지 않도록 시간을 제한한다.
+    long timeout = storeProperties.getDurableTimeoutMillis();
+    try {
+      durable.get(timeout, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw new UncheckedIOException("failed to persist article change", (IOException) e.getCause());
+      }
+      throw new CompletionException(e.getCause());
+    } catch (TimeoutException e) {
+      throw new UncheckedIOException(new IOException("article change was not persisted within " + timeout + "ms", e));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new UncheckedIOException(new InterruptedIOException("interrupted while persisting article change"));
+    }
+  }
+
+  /**
+   * 현재 상태를 스냅샷 파일로 쓰고 스냅샷에 포함된 로그 세그먼트를 지운다.
+   * 스냅샷의 글 목록은 바뀌지 않지만 글 객체는 그렇지 않다. 댓글을 추가하거나 지우면 같은 Article 의 버전과 수정 시각이 바뀌고,
+   * comments 는 CommentStore 의 view 라서 락 밖에서 쓰는 동안 roll 이후의 댓글 변경이 스냅샷에 들어갈 수 있다.
+   * 복구할 때 그 변경의 로그 레코드가 다시 적용되지만, 댓글 레코드는 글의 버전을 절대값으로 담고 댓글을 id 로 덮어쓰거나 지우므로 결과가 같다.
+   * 글의 PUT/PATCH/DELETE 는 새 Article 을 넣거나 빼므로 스냅샷의 글 객체를 바꾸지 않는다.
+   */
+  public void compact() throws IOException {
+    if (store == null) {
+      return;
+    }
+    CompletableFuture<Long> rolled;
+    ArticleSnapshot current;
+    synchronized (writeLock) {
+      rolled = store.roll();
+      current = snapshot;
+    }
+    store.writeSnapshot(rolled.join() - 1, current.asList());
+  }
+
+  private void startCompactor() {
+    compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "article-store-compactor");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long interval = storeProperties.getCompactionIntervalMillis();
+    compactor.scheduleWithFixedDelay(() -> {
+      if (store.bytesSinceRoll() < storeProperties.getCompactionLogBytes()) {
+        return;
+      }
+      try {
+        compact();
+      } catch (IOException | RuntimeException e) {
+        logger.error("article store compaction failed", e);
+      }
+    }, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    if (compactor != null) {
+      compactor.shutdownNow();
+    }
+    if (store != null) {
+      store.close();
+    }
+    if (mappedFixtures != null) {
+      mappedFixtures.close();
+    }
+  }
+}
@@ -0,0 +1,318 @@
+package com.example;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * GET /api/articles/{id} 의 응답 본문을 직렬화한 바이트 그대로 글 버전(ETag)별로 들고 있는 캐시
+ *
+ * 읽기는 몇몇 글에 몰리는데 show() 는 요청마다 같은 Article 을 Jackson 으로 다시 직렬화했다.
+ * 이 캐시는 글 id 와 포맷(ArticleFormat)마다 마지막으로 만든 본문(과 미리 압축한 gzip) 하나를 ETag 와 함께 들고 있다가,
+ * ETag 가 같으면 그 바이트를 그대로 돌려준다. 컨트롤러는 이 바이트를 서블릿 출력 스트림에 바로 쓰므로 적중하면 복사는 한 번뿐이다.
+ * ETag 에는 글 버전과 첨부 파일 revision 이 들어 있으므로 글이 바뀌면 저절로 맞지 않게 되고,
+ * ArticleRepository 는 글을 바꾸거나 지울 때 invalidate() 를 불러서 옛 바이트가 메모리를 차지하지 않게 한다.
+ *
+ * 크기는 바이트 수(maxBytes)로 제한하고 segmented LRU 로 내보낸다.
+ * 새 항목은 probation 구간에 들어가고 다시 읽히면 protected 구간으로 올라간다. 내보낼 때는 probation 의 가장 오래된 것부터 내보내므로
+ * 한 번만 읽힌 글이 쏟아져 들어와도 자주 읽히는 글은 밀려나지 않는다.
+ *
+ * 조회는 ConcurrentLongHashMap 에서 락 없이 찾는다. 적중했다는 기록은 LossyRingBuffer 에 넣어 두고
+ * 나중에 락을 잡은 스레드가 한꺼번에 순서에 반영한다. 기록이 밀려서 버려져도 순서가 조금 덜 정확해질 뿐이다.
+ */
+@Component
+public class ArticleResponseCache {
+  // 적중 기록이 이만큼 쌓이면 순서에 반영한다.
+  private static final int DRAIN_THRESHOLD = 32;
+
+  @Autowired
+  ArticleResponseCacheProperties properties;
+
+  // ArticleFormat 의 ordinal 마다 id -> Entry
+  private final ConcurrentLongHashMap<Entry>[] entries = newEntries();
+  private final ReentrantLock lock = new ReentrantLock();
+  private LossyRingBuffer<Entry> reads;
+
+  // 아래 값은 lock 안에서만 바꾼다. 양쪽 리스트 모두 head 가 가장 오래된 항목이다.
+  private final Entry probation = new Entry();
+  private final Entry protectedSegment = new Entry();
+  private volatile long bytes;
+  private volatile long protectedBytes;
+  private long maxBytes;
+  private long maxProtectedBytes;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+  private final AtomicLong invalidations = new AtomicLong();
+
+  @PostConstruct
+  public void start() {
+    reads = new LossyRingBuffer<>(properties.getReadBufferSize());
+    maxBytes = properties.getMaxBytes();
+    maxProtectedBytes = maxBytes * Math.max(0, Math.min(100, properties.getProtectedPercent())) / 100;
+    probation.prev = probation.next = probation;
+    protectedSegment.prev = protectedSegment.next = protectedSegment;
+  }
+
+  public boolean isGzipEnabled() {
+    return properties.isEnabled() && properties.isGzip();
+  }
+
+  /**
+   * @return id 의 etag 버전을 format 으로 쓴 응답. 없거나 버전이 다르면 null
+   */
+  public Entry get(ArticleFormat format, long id, String etag) {
+    if (!properties.isEnabled()) {
+      return null;
+    }
+    Entry entry = entries[format.ordinal()].get(id);
+    if (entry == null || !entry.etag.equals(etag)) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    reads.offer(entry);
+    if ((reads.offered() & (DRAIN_THRESHOLD - 1)) == 0 && lock.tryLock()) {
+      try {
+        drainReads();
+      } finally {
+        lock.unlock();
+      }
+    }
+    return entry;
+  }
+
+  /**
+   * 직렬화한 본문으로 항목을 만든다. gzip 을 켰으면 여기서 미리 압축한다. 캐시에 넣으려면 put() 을 부른다.
+   */
+  public Entry encode(ArticleFormat format, long id, String etag, byte[] body) {
+    byte[] gzip = null;
+    if (isGzipEnabled() && body.length >= properties.getGzipMinBytes()) {
+      gzip = gzip(body);
+      // 압축해도 줄지 않으면 들고 있을 이유가 없다.
+      if (gzip.length >= body.length) {
+        gzip = null;
+      }
+    }
+    return new Entry(format, id, etag, body, gzip);
+  }
+
+  /**
+   * 항목을 캐시에 넣는다. 같은 id 와 포맷의 이전 항목은 버린다. 혼자서 maxBytes 를 넘는 항목은 넣지 않는다.
+   */
+  public void put(Entry entry) {
+    if (!properties.isEnabled() || entry.weight > maxBytes) {
+      return;
+    }
+    lock.lock();
+    try {
+      drainReads();
+      Entry previous = entries[entry.format.ordinal()].put(entry.id, entry);
+      if (previous != null) {
+        unlink(previous);
+      }
+      linkLast(probation, entry);
+      bytes += entry.weight;
+      while (bytes > maxBytes) {
+        // probation 에 방금 넣은 항목밖에 없으면 protected 의 가장 오래된 것을 내보낸다.
+        Entry victim = probation.next != entry ? probation.next : protectedSegment.next;
+        entries[victim.format.ordinal()].remove(victim.id, victim);
+        unlink(victim);
+        evictions.incrementAndGet();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * 글이 바뀌거나 지워졌을 때 부른다. ETag 가 달라지므로 지우지 않아도 틀린 응답은 나가지 않지만 메모리를 바로 돌려받는다.
+   */
+  public void invalidate(long id) {
+    if (!properties.isEnabled()) {
+      return;
+    }
+    for (ConcurrentLongHashMap<Entry> byId : entries) {
+      if (byId.get(id) == null) {
+        continue;
+      }
+      lock.lock();
+      try {
+        Entry entry = byId.remove(id);
+        if (entry != null) {
+          unlink(entry);
+          invalidations.incrementAndGet();
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  // lock 안에서 호출한다. 적중한 항목을 probation 에서 protected 로 올리거나 protected 의 맨 뒤로 옮긴다.
+  private void drainReads() {
+    reads.drain(this::onRead, reads.capacity());
+  }
+
+  private void onRead(Entry entry) {
+    if (!entry.linked) {
+      return;
+    }
+    unlink(entry);
+    linkLast(protectedSegment, entry);
+    // protected 구간이 넘치면 가장 오래된 것을 probation 으로 내린다. 바로 내보내지 않고 한 번 더 기회를 준다.
+    while (protectedBytes > maxProtectedBytes && protectedSegment.next != entry) {
+      Entry demoted = protectedSegment.next;
+      unlink(demoted);
+      linkLast(probation, demoted);
+    }
+  }
+
+  private void linkLast(Entry list, Entry entry) {
+    entry.prev = list.prev;
+    entry.next = list;
+    list.prev.next = entry;
+    list.prev = entry;
+    entry.linked = true;
+    entry.inProtected = list == protectedSegment;
+    if (entry.inProtected) {
+      protectedBytes += entry.weight;
+    }
+  }
+
+  // bytes 는 linkLast 가 아니라 put 에서 더하므로 구간 사이를 옮길 때는 그대로다.
+  private void unlink(Entry entry) {
+    if (!entry.linked) {
+      return;
+    }
+    entry.prev.next = entry.next;
+    entry.next.prev = entry.prev;
+    entry.prev = entry.next = null;
+    entry.linked = false;
+    if (entry.inProtected) {
+      protectedBytes -= entry.weight;
+    }
+    if (entries[entry.format.ordinal()].get(entry.id) != entry) {
+      bytes -= entry.weight;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ConcurrentLongHashMap<Entry>[] newEntries() {
+    ConcurrentLongHashMap<Entry>[] entries = new ConcurrentLongHashMap[ArticleFormat.values().length];
+    for (int i = 0; i < entries.length; i++) {
+      entries[i] = new ConcurrentLongHashMap<>();
+    }
+    return entries;
+  }
+
+  private static byte[] gzip(byte[] body) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(body);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Accept-Encoding 에 q=0 이 아닌 gzip 이 있는지 확인한다.
+   */
+  public static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parts = coding.split(";");
+      if (!parts[0].trim().equalsIgnoreCase("gzip")) {
+        continue;
+      }
+      for (int i = 1; i < parts.length; i++) {
+        String parameter = parts[i].trim();
+        if (parameter.startsWith("q=")) {
+          try {
+            return Double.parseDouble(parameter.substring(2)) > 0;
+          } catch (NumberFormatException e) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  public Map<String, Object> metrics() {
+    long hitCount = hits.get();
+    long missCount = misses.get();
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("enabled", properties.isEnabled());
+    int size = 0;
+    for (ConcurrentLongHashMap<Entry> byId : entries) {
+      size += byId.size();
+    }
+    metrics.put("entries", size);
+    metrics.put("bytes", bytes);
+    metrics.put("protectedBytes", protectedBytes);
+    metrics.put("maxBytes", maxBytes);
+    metrics.put("hits", hitCount);
+    metrics.put("misses", missCount);
+    metrics.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+    metrics.put("evictions", evictions.get());
+    metrics.put("invalidations", invalidations.get());
+    metrics.put("lostReads", reads.lost());
+    return metrics;
+  }
+
+  /**
+   * 캐시한 응답 하나. body 는 format 으로 쓴 본문이다. body 와 gzip 은 바꾸지 않는다.
+   */
+  public static final class Entry {
+    final ArticleFormat format;
+    final long id;
+    final String etag;
+    final byte[] body;
+    // 압축하지 않았으면 null
+    final byte[] gzip;
+    final long weight;
+
+    // lock 안에서만 읽고 쓴다.
+    Entry prev;
+    Entry next;
+    boolean linked;
+    boolean inProtected;
+
+    // 리스트의 머리로만 쓴다.
+    private Entry() {
+      this(ArticleFormat.JSON, 0, "", new byte[0], null);
+    }
+
+    Entry(ArticleFormat format, long id, String etag, byte[] body, byte[] gzip) {
+      this.format = format;
+      this.id = id;
+      this.etag = etag;
+      this.body = body;
+      this.gzip = gzip;
+      this.weight = body.length + (gzip != null ? gzip.length : 0);
+    }
+
+    public byte[] getBody() {
+      return body;
+    }
+
+    public byte[] getGzip() {
+      return gzip;
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package com.example;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * application.properties 의 articles.response-cache.* 설정
+ * GET /api/articles/{id} 의 직렬화한 JSON 을 글 버전별로 들고 있는 ArticleResponseCache 의 설정이다.
+ */
+@Component
+@ConfigurationProperties(prefix = "articles.response-cache")
+public class ArticleResponseCacheProperties {
+  // false 면 매번 직렬화한다.
+  private boolean enabled = true;
+
+  // 캐시한 JSON 과 gzip 바이트를 합한 최대 크기. 넘으면 segmented LRU 순서로 내보낸다.
+  private long maxBytes = 64L * 1024 * 1024;
+
+  // 두 번 이상 읽힌 글이 들어가는 protected 구간의 비율(%). 나머지는 한 번만 읽힌 글이 들어가는 probation 구간이다.
+  private int protectedPercent = 80;
+
+  // true 면 캐시에 넣을 때 gzip 으로 미리 압축해 두고 Accept-Encoding: gzip 인 요청에 그대로 보낸다.
+  private boolean gzip = true;
+
+  // 이보다 작은 JSON 은 압축하지 않는다. 작은 본문은 압축해도 줄지 않고 헤더만 늘어난다.
+  private int gzipMinBytes = 1024;
+
+  // 캐시 적중을 기록해 두는 링 버퍼의 크기. 가득 차면 오래된 기록은 버리므로 순서가 조금 덜 정확해질 뿐이다.
+  private int readBufferSize = 1024;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public void setMaxBytes(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  public int getProtectedPercent() {
+    return protectedPercent;
+  }
+
+  public void setProtectedPercent(int protectedPercent) {
+    this.protectedPercent = protectedPercent;
+  }
+
+  public boolean isGzip() {
+    return gzip;
+  }
+
+  public void setGzip(boolean gzip) {
+    this.gzip = gzip;
+  }
+
+  public int getGzipMinBytes() {
+    return gzipMinBytes;
+  }
+
+  public void setGzipMinBytes(int gzipMinBytes) {
+    this.gzipMinBytes = gzipMinBytes;
+  }
+
+  public int getReadBufferSize() {
+    return readBufferSize;
+  }
+
+  public void setReadBufferSize(int readBufferSize) {
+    this.readBufferSize = readBufferSize;
+  }
+}
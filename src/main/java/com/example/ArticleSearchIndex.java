@@ -0,0 +1,698 @@
+package com.example;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 글의 제목, 본문, 댓글을 검색하는 메모리 역색인(inverted index)
+ *
+ * term(ArticleTokenizer 의 토큰)마다 그 term 이 들어 있는 글의 (id, 나온 횟수 tf) 목록(posting list)을 id 순서로 가지고 있다.
+ * posting list 는 BLOCK_SIZE 개 정도씩 블록으로 나누고, 블록 안에서는 id 의 차이와 tf 를 varint 로 적은 byte[] 이다.
+ * 글 번호가 촘촘하면 한 건에 2~3 바이트면 된다.
+ *
+ * 블록과 posting list 는 바꾸지 않는다(immutable). 글이 바뀌면 tf 가 달라진 term 의 블록 하나만 다시 인코딩해서
+ * 블록 배열을 복사한 새 posting list 로 교체한다. 그래서 검색하는 쪽은 락 없이 그 순간의 posting list 를 끝까지 읽을 수 있다.
+ * 쓰기는 ArticleRepository 의 쓰기 락 안에서 부르고, 여기서도 synchronized 로 한 번에 하나씩만 고친다.
+ *
+ * 순위는 BM25 로 매기고, 점수를 모은 다음 크기 limit 의 힙으로 상위 limit 개만 고른다.
+ * 제목의 토큰은 titleBoost 번 나온 것으로 센다.
+ */
+@Component
+public class ArticleSearchIndex {
+  // 블록 하나에 넣는 (id, tf) 수. 고치다가 두 배를 넘으면 반으로 나눈다.
+  static final int BLOCK_SIZE = 128;
+  private static final int MAX_BLOCK_SIZE = 2 * BLOCK_SIZE;
+
+  @Autowired
+  ArticleSearchProperties properties;
+
+  private final ConcurrentHashMap<String, Postings> postings = new ConcurrentHashMap<>();
+  private final ConcurrentLongHashMap<Document> documents = new ConcurrentLongHashMap<>();
+  private volatile long documentCount;
+  // 모든 글의 길이(토큰 수)의 합. BM25 의 평균 길이에 쓴다.
+  private volatile long totalLength;
+
+  // 아래는 쓰기(synchronized) 안에서만 쓴다. 고칠 블록 하나를 풀어 두는 곳이다.
+  private final long[] blockIds = new long[MAX_BLOCK_SIZE + 1];
+  private final int[] blockTfs = new int[MAX_BLOCK_SIZE + 1];
+  private final byte[] encodeBuffer = new byte[(MAX_BLOCK_SIZE + 1) * 15];
+  // startBuild() 부터 install() 까지 true. 그 사이에 바뀐 글의 id 를 dirty 에 모은다.
+  private boolean building;
+  private final Set<Long> dirty = new HashSet<>();
+  private volatile boolean ready = true;
+
+  public boolean isEnabled() {
+    return properties.isEnabled();
+  }
+
+  /**
+   * 색인을 비우고 articles 로 다시 만든다. 시작할 때 한번 부른다.
+   * 매핑된 fixture 처럼 읽을 때마다 디코딩하는 목록도 한 번 훑기만 하고 Article 을 붙잡아 두지 않는다.
+   */
+  synchronized void rebuild(Iterable<Article> articles) {
+    install(build(articles));
+  }
+
+  /**
+   * 색인을 비우고 비동기로 다시 만들기 시작한다. install() 까지는 검색할 수 없고(isReady() 가 false),
+   * 그 사이의 쓰기는 색인에 반영하지 않고 id 만 모아 둔다.
+   */
+  synchronized void startBuild() {
+    clear();
+    dirty.clear();
+    building = true;
+    ready = false;
+  }
+
+  /**
+   * articles 를 훑어서 새 색인을 만든다. 이 객체의 상태는 바꾸지 않으므로 락 없이 다른 스레드에서 불러도 된다.
+   */
+  Built build(Iterable<Article> articles) {
+    Built built = new Built();
+    if (!isEnabled()) {
+      return built;
+    }
+    Map<String, TermBuilder> builders = new HashMap<>();
+    for (Article article : articles) {
+      Document document = Document.of(counts(article));
+      if (document.length == 0) {
+        continue;
+      }
+      built.documents.put(article.getId(), document);
+      built.count++;
+      built.length += document.length;
+      for (int i = 0; i < document.terms.length; i++) {
+        builders.computeIfAbsent(document.terms[i], term -> new TermBuilder()).add(article.getId(), document.tfs[i]);
+      }
+    }
+    for (Map.Entry<String, TermBuilder> entry : builders.entrySet()) {
+      built.postings.put(entry.getKey(), entry.getValue().build());
+    }
+    return built;
+  }
+
+  /**
+   * build() 로 만든 색인으로 바꾼다. startBuild() 로 시작했으면 그 뒤에 바뀐 글의 id 를 돌려준다.
+   * 부르는 쪽은 그 글들을 index()/remove() 로 다시 반영한 다음 markReady() 를 불러야 한다.
+   */
+  synchronized long[] install(Built built) {
+    clear();
+    postings.putAll(built.postings);
+    built.documents.forEach(documents::put);
+    documentCount = built.count;
+    totalLength = built.length;
+    building = false;
+    long[] changed = new long[dirty.size()];
+    int i = 0;
+    for (long id : dirty) {
+      changed[i++] = id;
+    }
+    dirty.clear();
+    return changed;
+  }
+
+  void markReady() {
+    ready = true;
+  }
+
+  /**
+   * 비동기로 만드는 중이 아니면 true
+   */
+  public boolean isReady() {
+    return ready;
+  }
+
+  private void clear() {
+    postings.clear();
+    documents.clear();
+    documentCount = 0;
+    totalLength = 0;
+  }
+
+  // 비동기로 만드는 중이면 쓰기를 반영하지 않고 id 만 기록한다. 만든 색인을 넣은 뒤에 그 글만 다시 색인한다.
+  private boolean deferred(long id) {
+    if (building) {
+      dirty.add(id);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * 글 하나를 다시 색인한다. 제목, 본문, 댓글을 모두 읽는다.
+   */
+  synchronized void index(Article article) {
+    if (isEnabled() && !deferred(article.getId())) {
+      apply(article.getId(), counts(article));
+    }
+  }
+
+  /**
+   * 글에 text(새 댓글)를 더한다. 글 전체를 다시 읽지 않는다.
+   */
+  synchronized void addText(long id, String text) {
+    if (isEnabled() && !deferred(id)) {
+      Map<String, Integer> counts = document(id).counts();
+      count(counts, text, 1);
+      apply(id, counts);
+    }
+  }
+
+  /**
+   * addText() 로 더한 text(지운 댓글)를 뺀다.
+   */
+  synchronized void removeText(long id, String text) {
+    if (isEnabled() && !deferred(id)) {
+      Map<String, Integer> counts = document(id).counts();
+      count(counts, text, -1);
+      apply(id, counts);
+    }
+  }
+
+  synchronized void remove(long id) {
+    if (isEnabled() && !deferred(id)) {
+      apply(id, new HashMap<>());
+    }
+  }
+
+  private Document document(long id) {
+    Document document = documents.get(id);
+    return document == null ? Document.EMPTY : document;
+  }
+
+  private Map<String, Integer> counts(Article article) {
+    Map<String, Integer> counts = new HashMap<>();
+    count(counts, article.getTitle(), properties.getTitleBoost());
+    count(counts, article.getContent(), 1);
+    List<Comment> comments = article.getComments();
+    if (comments != null) {
+      for (Comment comment : comments) {
+        count(counts, comment.getContent(), 1);
+      }
+    }
+    return counts;
+  }
+
+  private static void count(Map<String, Integer> counts, String text, int weight) {
+    ArticleTokenizer.tokenize(text, token -> counts.merge(token, weight, Integer::sum));
+  }
+
+  // 글의 term 별 tf 를 counts 로 바꾼다. tf 가 달라진 term 의 posting list 만 고친다.
+  private void apply(long id, Map<String, Integer> counts) {
+    Document previous = document(id);
+    Document next = Document.of(counts);
+    for (int i = 0; i < previous.terms.length; i++) {
+      int tf = next.tf(previous.terms[i]);
+      if (tf != previous.tfs[i]) {
+        update(previous.terms[i], id, tf);
+      }
+    }
+    for (int i = 0; i < next.terms.length; i++) {
+      if (previous.tf(next.terms[i]) == 0) {
+        update(next.terms[i], id, next.tfs[i]);
+      }
+    }
+    if (next.length == 0) {
+      if (documents.remove(id) != null) {
+        documentCount--;
+      }
+    } else if (documents.put(id, next) == null) {
+      documentCount++;
+    }
+    totalLength += next.length - previous.length;
+  }
+
+  // term 의 posting list 에서 id 의 tf 를 바꾼다. 0 이면 뺀다.
+  private void update(String term, long id, int tf) {
+    Postings current = postings.get(term);
+    if (current == null) {
+      if (tf > 0) {
+        blockIds[0] = id;
+        blockTfs[0] = tf;
+        postings.put(term, new Postings(new Block[]{encode(0, 1)}, 1));
+      }
+      return;
+    }
+    Block[] blocks = current.blocks;
+    int index = current.blockFor(id);
+    int size = blocks[index].decode(blockIds, blockTfs);
+    int position = Arrays.binarySearch(blockIds, 0, size, id);
+    int delta;
+    if (position >= 0) {
+      if (tf == blockTfs[position]) {
+        return;
+      }
+      if (tf > 0) {
+        blockTfs[position] = tf;
+        delta = 0;
+      } else {
+        System.arraycopy(blockIds, position + 1, blockIds, position, size - position - 1);
+        System.arraycopy(blockTfs, position + 1, blockTfs, position, size - position - 1);
+        size--;
+        delta = -1;
+      }
+    } else {
+      if (tf <= 0) {
+        return;
+      }
+      position = -position - 1;
+      System.arraycopy(blockIds, position, blockIds, position + 1, size - position);
+      System.arraycopy(blockTfs, position, blockTfs, position + 1, size - position);
+      blockIds[position] = id;
+      blockTfs[position] = tf;
+      size++;
+      delta = 1;
+    }
+
+    Block[] next;
+    if (size == 0) {
+      next = new Block[blocks.length - 1];
+      System.arraycopy(blocks, 0, next, 0, index);
+      System.arraycopy(blocks, index + 1, next, index, blocks.length - index - 1);
+    } else if (size > MAX_BLOCK_SIZE) {
+      next = new Block[blocks.length + 1];
+      System.arraycopy(blocks, 0, next, 0, index);
+      next[index] = encode(0, size / 2);
+      next[index + 1] = encode(size / 2, size);
+      System.arraycopy(blocks, index + 1, next, index + 2, blocks.length - index - 1);
+    } else {
+      next = blocks.clone();
+      next[index] = encode(0, size);
+    }
+    int count = current.count + delta;
+    if (count == 0) {
+      postings.remove(term);
+    } else {
+      postings.put(term, new Postings(next, count));
+    }
+  }
+
+  // blockIds/blockTfs 의 [from, to) 를 블록 하나로 인코딩한다.
+  private Block encode(int from, int to) {
+    int position = 0;
+    long previous = blockIds[from];
+    for (int i = from; i < to; i++) {
+      position = writeVarLong(encodeBuffer, position, blockIds[i] - previous);
+      position = writeVarLong(encodeBuffer, position, blockTfs[i]);
+      previous = blockIds[i];
+    }
+    return new Block(blockIds[from], to - from, Arrays.copyOf(encodeBuffer, position));
+  }
+
+  private static int writeVarLong(byte[] buffer, int position, long value) {
+    while ((value & ~0x7FL) != 0) {
+      buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    buffer[position++] = (byte) value;
+    return position;
+  }
+
+  /**
+   * query 를 토큰으로 나눠서 하나라도 들어 있는 글을 BM25 점수 순서로 limit 개까지 찾는다.
+   */
+  Hits search(String query, int limit) {
+    Set<String> terms = new LinkedHashSet<>(ArticleTokenizer.tokenize(query));
+    long count = documentCount;
+    if (count <= 0 || terms.isEmpty() || !isEnabled()) {
+      return Hits.EMPTY;
+    }
+    double k1 = properties.getK1();
+    double b = properties.getB();
+    double averageLength = Math.max(1.0, totalLength / (double) count);
+    ScoreTable scores = new ScoreTable();
+    for (String term : terms) {
+      Postings list = postings.get(term);
+      if (list == null) {
+        continue;
+      }
+      double idf = Math.log(1 + (count - list.count + 0.5) / (list.count + 0.5));
+      for (Block block : list.blocks) {
+        Cursor cursor = new Cursor(block);
+        while (cursor.next()) {
+          Document document = documents.get(cursor.id);
+          if (document == null) {
+            continue;
+          }
+          double norm = k1 * (1 - b + b * document.length / averageLength);
+          scores.add(cursor.id, idf * cursor.tf * (k1 + 1) / (cursor.tf + norm));
+        }
+      }
+    }
+    return scores.top(limit);
+  }
+
+  public synchronized Map<String, Object> metrics() {
+    long entries = 0;
+    long bytes = 0;
+    for (Postings list : postings.values()) {
+      entries += list.count;
+      for (Block block : list.blocks) {
+        bytes += block.data.length;
+      }
+    }
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("enabled", isEnabled());
+    metrics.put("ready", isReady());
+    metrics.put("documents", documentCount);
+    metrics.put("terms", postings.size());
+    metrics.put("postings", entries);
+    metrics.put("postingBytes", bytes);
+    metrics.put("averageLength", documentCount == 0 ? 0 : totalLength / (double) documentCount);
+    return metrics;
+  }
+
+  /**
+   * 검색 결과. ids 와 scores 는 점수가 높은 순서이고 total 은 하나라도 맞은 글의 수다.
+   */
+  static final class Hits {
+    static final Hits EMPTY = new Hits(0, new long[0], new double[0]);
+
+    final int total;
+    final long[] ids;
+    final double[] scores;
+
+    Hits(int total, long[] ids, double[] scores) {
+      this.total = total;
+      this.ids = ids;
+      this.scores = scores;
+    }
+  }
+
+  /**
+   * build() 가 만든, 아직 넣지 않은 색인
+   */
+  static final class Built {
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final ConcurrentLongHashMap<Document> documents = new ConcurrentLongHashMap<>();
+    private long count;
+    private long length;
+  }
+
+  // 글 하나의 term 별 tf. terms 는 정렬되어 있다.
+  private static final class Document {
+    static final Document EMPTY = new Document(new String[0], new int[0], 0);
+
+    final String[] terms;
+    final int[] tfs;
+    final int length;
+
+    Document(String[] terms, int[] tfs, int length) {
+      this.terms = terms;
+      this.tfs = tfs;
+      this.length = length;
+    }
+
+    static Document of(Map<String, Integer> counts) {
+      List<String> terms = new ArrayList<>(counts.size());
+      for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+        if (entry.getValue() > 0) {
+          terms.add(entry.getKey());
+        }
+      }
+      terms.sort(null);
+      int[] tfs = new int[terms.size()];
+      int length = 0;
+      for (int i = 0; i < tfs.length; i++) {
+        tfs[i] = counts.get(terms.get(i));
+        length += tfs[i];
+      }
+      return new Document(terms.toArray(new String[terms.size()]), tfs, length);
+    }
+
+    int tf(String term) {
+      int index = Arrays.binarySearch(terms, term);
+      return index >= 0 ? tfs[index] : 0;
+    }
+
+    Map<String, Integer> counts() {
+      Map<String, Integer> counts = new HashMap<>();
+      for (int i = 0; i < terms.length; i++) {
+        counts.put(terms[i], tfs[i]);
+      }
+      return counts;
+    }
+  }
+
+  private static final class Postings {
+    final Block[] blocks;
+    final int count;
+
+    Postings(Block[] blocks, int count) {
+      this.blocks = blocks;
+      this.count = count;
+    }
+
+    // id 가 들어 있거나 들어갈 블록. 첫 id 가 id 이하인 마지막 블록이고, 없으면 첫 블록이다.
+    int blockFor(long id) {
+      int low = 0;
+      int high = blocks.length - 1;
+      while (low < high) {
+        int middle = (low + high + 1) >>> 1;
+        if (blocks[middle].first <= id) {
+          low = middle;
+        } else {
+          high = middle - 1;
+        }
+      }
+      return low;
+    }
+  }
+
+  private static final class Block {
+    final long first;
+    final int count;
+    final byte[] data;
+
+    Block(long first, int count, byte[] data) {
+      this.first = first;
+      this.count = count;
+      this.data = data;
+    }
+
+    int decode(long[] ids, int[] tfs) {
+      Cursor cursor = new Cursor(this);
+      int size = 0;
+      while (cursor.next()) {
+        ids[size] = cursor.id;
+        tfs[size++] = cursor.tf;
+      }
+      return size;
+    }
+  }
+
+  private static final class Cursor {
+    private final Block block;
+    private int position;
+    private int read;
+    long id;
+    int tf;
+
+    Cursor(Block block) {
+      this.block = block;
+      this.id = block.first;
+    }
+
+    boolean next() {
+      if (read == block.count) {
+        return false;
+      }
+      id += readVarLong();
+      tf = (int) readVarLong();
+      read++;
+      return true;
+    }
+
+    private long readVarLong() {
+      byte[] data = block.data;
+      long value = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = data[position++];
+        value |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      return value;
+    }
+  }
+
+  // 시작할 때 쌓은 다음 id 순서로 BLOCK_SIZE 개씩 블록으로 만든다.
+  private final class TermBuilder {
+    private long[] ids = new long[4];
+    private int[] tfs = new int[4];
+    private int size;
+    private boolean sorted = true;
+
+    void add(long id, int tf) {
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, size * 2);
+        tfs = Arrays.copyOf(tfs, size * 2);
+      }
+      if (size > 0 && ids[size - 1] > id) {
+        sorted = false;
+      }
+      ids[size] = id;
+      tfs[size++] = tf;
+    }
+
+    // 인덱스(해시 맵)에서 읽은 글은 id 순서가 아니다. tf 를 id 와 함께 옮기기 위해 (id, 위치) 를 정렬한다.
+    private void sort() {
+      Integer[] order = new Integer[size];
+      for (int i = 0; i < size; i++) {
+        order[i] = i;
+      }
+      Arrays.sort(order, Comparator.comparingLong(i -> ids[i]));
+      long[] sortedIds = new long[size];
+      int[] sortedTfs = new int[size];
+      for (int i = 0; i < size; i++) {
+        sortedIds[i] = ids[order[i]];
+        sortedTfs[i] = tfs[order[i]];
+      }
+      ids = sortedIds;
+      tfs = sortedTfs;
+    }
+
+    Postings build() {
+      if (!sorted) {
+        sort();
+      }
+      Block[] blocks = new Block[(size + BLOCK_SIZE - 1) / BLOCK_SIZE];
+      for (int i = 0; i < blocks.length; i++) {
+        int from = i * BLOCK_SIZE;
+        int to = Math.min(size, from + BLOCK_SIZE);
+        System.arraycopy(ids, from, blockIds, 0, to - from);
+        System.arraycopy(tfs, from, blockTfs, 0, to - from);
+        blocks[i] = encode(0, to - from);
+      }
+      return new Postings(blocks, size);
+    }
+  }
+
+  // 글 id 별 점수를 더하는 open addressing 해시 테이블. Long/Double 로 박싱하지 않는다.
+  private static final class ScoreTable {
+    private long[] keys = new long[64];
+    private double[] values = new double[64];
+    private boolean[] used = new boolean[64];
+    private int size;
+
+    void add(long key, double value) {
+      if (size * 2 >= keys.length) {
+        grow();
+      }
+      int mask = keys.length - 1;
+      int slot = (int) ConcurrentLongHashMap.hash(key) & mask;
+      while (used[slot] && keys[slot] != key) {
+        slot = (slot + 1) & mask;
+      }
+      if (!used[slot]) {
+        used[slot] = true;
+        keys[slot] = key;
+        size++;
+      }
+      values[slot] += value;
+    }
+
+    private void grow() {
+      long[] oldKeys = keys;
+      double[] oldValues = values;
+      boolean[] oldUsed = used;
+      keys = new long[oldKeys.length * 2];
+      values = new double[oldKeys.length * 2];
+      used = new boolean[oldKeys.length * 2];
+      size = 0;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldUsed[i]) {
+          add(oldKeys[i], oldValues[i]);
+        }
+      }
+    }
+
+    // 점수가 가장 낮은 것이 위에 있는 크기 limit 의 힙으로 상위 limit 개를 고른다. 점수가 같으면 id 가 작은 쪽이 앞선다.
+    Hits top(int limit) {
+      int capacity = Math.min(limit, size);
+      long[] heapIds = new long[capacity];
+      double[] heapScores = new double[capacity];
+      int heapSize = 0;
+      for (int i = 0; i < keys.length; i++) {
+        if (!used[i]) {
+          continue;
+        }
+        if (heapSize < capacity) {
+          heapIds[heapSize] = keys[i];
+          heapScores[heapSize] = values[i];
+          siftUp(heapIds, heapScores, heapSize++);
+        } else if (capacity > 0 && worse(heapScores[0], heapIds[0], values[i], keys[i])) {
+          heapIds[0] = keys[i];
+          heapScores[0] = values[i];
+          siftDown(heapIds, heapScores, heapSize);
+        }
+      }
+      long[] ids = new long[heapSize];
+      double[] scores = new double[heapSize];
+      for (int i = heapSize - 1; i >= 0; i--) {
+        ids[i] = heapIds[0];
+        scores[i] = heapScores[0];
+        heapIds[0] = heapIds[i];
+        heapScores[0] = heapScores[i];
+        siftDown(heapIds, heapScores, i);
+      }
+      return new Hits(size, ids, scores);
+    }
+
+    // (score1, id1) 이 (score2, id2) 보다 순위가 낮으면 true
+    private static boolean worse(double score1, long id1, double score2, long id2) {
+      return score1 < score2 || (score1 == score2 && id1 > id2);
+    }
+
+    private static void siftUp(long[] ids, double[] scores, int index) {
+      while (index > 0) {
+        int parent = (index - 1) >>> 1;
+        if (!worse(scores[index], ids[index], scores[parent], ids[parent])) {
+          break;
+        }
+        swap(ids, scores, index, parent);
+        index = parent;
+      }
+    }
+
+    private static void siftDown(long[] ids, double[] scores, int size) {
+      int index = 0;
+      while (true) {
+        int child = 2 * index + 1;
+        if (child >= size) {
+          return;
+        }
+        if (child + 1 < size && worse(scores[child + 1], ids[child + 1], scores[child], ids[child])) {
+          child++;
+        }
+        if (!worse(scores[child], ids[child], scores[index], ids[index])) {
+          return;
+        }
+        swap(ids, scores, index, child);
+        index = child;
+      }
+    }
+
+    private static void swap(long[] ids, double[] scores, int i, int j) {
+      long id = ids[i];
+      ids[i] = ids[j];
+      ids[j] = id;
+      double score = scores[i];
+      scores[i] = scores[j];
+      scores[j] = score;
+    }
+  }
+}
@@ -0,0 +1,54 @@
+package com.example;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * application.properties 의 articles.search.* 설정
+ * 글 검색(/api/articles/search)에 쓰는 ArticleSearchIndex 의 설정이다.
+ */
+@Component
+@ConfigurationProperties(prefix = "articles.search")
+public class ArticleSearchProperties {
+  // false 면 색인을 만들지 않고 검색 요청은 503 으로 응답한다. 색인이 쓰는 메모리와 쓰기 비용이 없어진다.
+  private boolean enabled = true;
+
+  // 제목의 토큰은 이 횟수만큼 나온 것으로 센다.
+  private int titleBoost = 2;
+
+  // BM25 의 k1(tf 가 늘어날 때 점수가 포화되는 정도)과 b(글 길이로 정규화하는 정도)
+  private double k1 = 1.2;
+  private double b = 0.75;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public int getTitleBoost() {
+    return titleBoost;
+  }
+
+  public void setTitleBoost(int titleBoost) {
+    this.titleBoost = titleBoost;
+  }
+
+  public double getK1() {
+    return k1;
+  }
+
+  public void setK1(double k1) {
+    this.k1 = k1;
+  }
+
+  public double getB() {
+    return b;
+  }
+
+  public void setB(double b) {
+    this.b = b;
+  }
+}
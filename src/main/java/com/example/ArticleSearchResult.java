@@ -0,0 +1,55 @@
+package com.example;
+
+import java.util.List;
+
+/**
+ * /api/articles/search 응답
+ * total 은 하나라도 맞은 글의 수이고 hits 는 점수가 높은 순서로 size 개까지다.
+ */
+public class ArticleSearchResult {
+  private final String query;
+  private final int total;
+  private final List<Hit> hits;
+
+  public ArticleSearchResult(String query, int total, List<Hit> hits) {
+    this.query = query;
+    this.total = total;
+    this.hits = hits;
+  }
+
+  public String getQuery() {
+    return query;
+  }
+
+  public int getTotal() {
+    return total;
+  }
+
+  public List<Hit> getHits() {
+    return hits;
+  }
+
+  public static class Hit {
+    private final long id;
+    private final String title;
+    private final double score;
+
+    public Hit(long id, String title, double score) {
+      this.id = id;
+      this.title = title;
+      this.score = score;
+    }
+
+    public long getId() {
+      return id;
+    }
+
+    public String getTitle() {
+      return title;
+    }
+
+    public double getScore() {
+      return score;
+    }
+  }
+}
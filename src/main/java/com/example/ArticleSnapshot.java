@@ -0,0 +1,230 @@
+package com.example;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * 특정 시점의 Article 목록을 담는 불변 스냅샷
+ *
+ * Article 들은 id 오름차순으로 정렬된 배열에 들어있고, 한번 만들어진 배열은 절대 수정하지 않는다.
+ * 쓰기가 일어나면 ArticleRepository 가 배열을 복사해서 새로운 버전의 스냅샷을 만들고 통째로 교체한다(copy-on-write).
+ * 그래서 읽는 쪽은 복사나 락 없이 같은 스냅샷을 공유할 수 있다.
+ *
+ * 바이너리 fixture 에서 시작한 경우 아직 읽지 않은 Article 의 자리는 null 이고 id 만 가지고 있다.
+ * 이런 자리는 List 로 읽을 때 Resolver 를 통해 그때그때 디코딩한다.
+ */
+public final class ArticleSnapshot {
+  static final ArticleSnapshot EMPTY = new ArticleSnapshot(0L, new long[0], new Article[0], null);
+
+  /**
+   * 스냅샷에 id 만 있는 Article 을 찾아주는 함수
+   */
+  @FunctionalInterface
+  public interface Resolver {
+    Article resolve(long id);
+  }
+
+  private final long version;
+  private final long[] ids;
+  private final Article[] articles;
+  private final Resolver resolver;
+  private final List<Article> view;
+
+  private ArticleSnapshot(long version, long[] ids, Article[] articles, Resolver resolver) {
+    this.version = version;
+    this.ids = ids;
+    this.articles = articles;
+    this.resolver = resolver;
+    this.view = new ArticleListView(this);
+  }
+
+  /**
+   * 스냅샷마다 1씩 증가하는 버전
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  public int size() {
+    return ids.length;
+  }
+
+  /**
+   * 스냅샷을 복사 없이 읽기 전용 List 로 반환한다.
+   */
+  public List<Article> asList() {
+    return view;
+  }
+
+  static ArticleSnapshot of(long version, Article[] articles) {
+    Article[] sorted = articles.clone();
+    Arrays.sort(sorted, (a, b) -> Long.compare(a.getId(), b.getId()));
+    long[] ids = new long[sorted.length];
+    for (int i = 0; i < sorted.length; i++) {
+      ids[i] = sorted[i].getId();
+    }
+    return new ArticleSnapshot(version, ids, sorted, null);
+  }
+
+  /**
+   * 정렬된 id 만으로 스냅샷을 만든다. Article 은 읽을 때 resolver 로 가져온다.
+   */
+  static ArticleSnapshot lazy(long version, long[] sortedIds, Resolver resolver) {
+    return new ArticleSnapshot(version, sortedIds, new Article[sortedIds.length], resolver);
+  }
+
+  private Article get(int index) {
+    Article article = articles[index];
+    return article != null ? article : resolver.resolve(ids[index]);
+  }
+
+  public boolean contains(long id) {
+    return indexOf(id) >= 0;
+  }
+
+  /**
+   * afterId 보다 큰 id 를 가진 Article 을 최대 limit 개까지 복사 없이 반환한다.
+   */
+  public List<Article> after(long afterId, int limit) {
+    int index = indexOf(afterId);
+    int from = index >= 0 ? index + 1 : -(index + 1);
+    return view.subList(from, Math.min(ids.length, from + limit));
+  }
+
+  public List<Article> first(int limit) {
+    return view.subList(0, Math.min(ids.length, limit));
+  }
+
+  /**
+   * 가장 큰 id. 비어 있으면 0
+   */
+  public long maxId() {
+    return ids.length == 0 ? 0 : ids[ids.length - 1];
+  }
+
+  /**
+   * afterId 보다 큰 id 를 가진 Article 이 남아 있는지 확인한다.
+   */
+  public boolean hasAfter(long afterId) {
+    return ids.length > 0 && ids[ids.length - 1] > afterId;
+  }
+
+  /**
+   * id 의 위치를 이진 탐색으로 찾는다. 없으면 Arrays.binarySearch 와 같이 (-(삽입 위치) - 1) 을 반환한다.
+   */
+  int indexOf(long id) {
+    return Arrays.binarySearch(ids, id);
+  }
+
+  /**
+   * article 을 추가하거나 같은 id 의 article 을 교체한 새 스냅샷을 만든다.
+   */
+  ArticleSnapshot withArticle(Article article) {
+    int index = indexOf(article.getId());
+    long[] nextIds;
+    Article[] next;
+    if (index >= 0) {
+      nextIds = ids;
+      next = articles.clone();
+      next[index] = article;
+    } else {
+      int insertAt = -(index + 1);
+      nextIds = new long[ids.length + 1];
+      System.arraycopy(ids, 0, nextIds, 0, insertAt);
+      nextIds[insertAt] = article.getId();
+      System.arraycopy(ids, insertAt, nextIds, insertAt + 1, ids.length - insertAt);
+      next = new Article[articles.length + 1];
+      System.arraycopy(articles, 0, next, 0, insertAt);
+      next[insertAt] = article;
+      System.arraycopy(articles, insertAt, next, insertAt + 1, articles.length - insertAt);
+    }
+    return new ArticleSnapshot(version + 1, nextIds, next, resolver);
+  }
+
+  /**
+   * batch 를 모두 추가하거나 교체한 새 스냅샷을 만든다. withArticle() 을 batch 수만큼 부르면 매번 배열 전체를 복사하지만
+   * 여기서는 batch 를 id 순서로 정렬한 뒤 기존 배열과 한 번에 병합한다. batch 에 같은 id 가 여러 번 있으면 나중 것이 남는다.
+   */
+  ArticleSnapshot withArticles(List<Article> batch) {
+    Article[] sorted = batch.toArray(new Article[batch.size()]);
+    // 안정 정렬이므로 같은 id 끼리는 batch 의 순서가 유지된다.
+    Arrays.sort(sorted, (a, b) -> Long.compare(a.getId(), b.getId()));
+    int distinct = 0;
+    for (int i = 0; i < sorted.length; i++) {
+      if (i + 1 < sorted.length && sorted[i + 1].getId() == sorted[i].getId()) {
+        continue;
+      }
+      sorted[distinct++] = sorted[i];
+    }
+    int added = 0;
+    for (int i = 0; i < distinct; i++) {
+      if (indexOf(sorted[i].getId()) < 0) {
+        added++;
+      }
+    }
+    long[] nextIds = new long[ids.length + added];
+    Article[] next = new Article[ids.length + added];
+    int from = 0;
+    int to = 0;
+    for (int i = 0; i < distinct; i++) {
+      long id = sorted[i].getId();
+      while (from < ids.length && ids[from] < id) {
+        nextIds[to] = ids[from];
+        next[to++] = articles[from++];
+      }
+      if (from < ids.length && ids[from] == id) {
+        from++;
+      }
+      nextIds[to] = id;
+      next[to++] = sorted[i];
+    }
+    System.arraycopy(ids, from, nextIds, to, ids.length - from);
+    System.arraycopy(articles, from, next, to, ids.length - from);
+    return new ArticleSnapshot(version + 1, nextIds, next, resolver);
+  }
+
+  /**
+   * 같은 Article 들을 가진 다음 버전의 스냅샷을 만든다. 배열은 복사하지 않고 공유한다.
+   * 댓글처럼 Article 객체는 그대로 두고 내용만 바뀌었을 때 목록의 버전(ETag)을 올리기 위해 사용한다.
+   */
+  ArticleSnapshot withNextVersion() {
+    return new ArticleSnapshot(version + 1, ids, articles, resolver);
+  }
+
+  /**
+   * id 에 해당하는 article 을 제외한 새 스냅샷을 만든다. 없는 id 면 자기 자신을 반환한다.
+   */
+  ArticleSnapshot withoutArticle(long id) {
+    int index = indexOf(id);
+    if (index < 0) {
+      return this;
+    }
+    long[] nextIds = new long[ids.length - 1];
+    System.arraycopy(ids, 0, nextIds, 0, index);
+    System.arraycopy(ids, index + 1, nextIds, index, ids.length - index - 1);
+    Article[] next = new Article[articles.length - 1];
+    System.arraycopy(articles, 0, next, 0, index);
+    System.arraycopy(articles, index + 1, next, index, articles.length - index - 1);
+    return new ArticleSnapshot(version + 1, nextIds, next, resolver);
+  }
+
+  private static final class ArticleListView extends AbstractList<Article> implements RandomAccess {
+    private final ArticleSnapshot snapshot;
+
+    ArticleListView(ArticleSnapshot snapshot) {
+      this.snapshot = snapshot;
+    }
+
+    @Override
+    public Article get(int index) {
+      return snapshot.get(index);
+    }
+
+    @Override
+    public int size() {
+      return snapshot.ids.length;
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package com.example;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * application.properties 의 articles.store.* 설정
+ */
+@Component
+@ConfigurationProperties(prefix = "articles.store")
+public class ArticleStoreProperties {
+  // false 면 예전처럼 매번 fixtures.yml 에서 시작하고 아무것도 디스크에 남기지 않는다.
+  private boolean enabled = false;
+
+  // 로그 세그먼트와 스냅샷 파일을 저장할 디렉토리
+  private String directory = "data/articles";
+
+  // true 면 쓰기 요청이 group commit 의 fsync 가 끝날 때까지 기다린다. false 면 메모리에 반영한 뒤 바로 응답한다(write-behind).
+  private boolean syncWrites = true;
+
+  // sync-writes 일 때 fsync 를 기다리는 최대 시간(ms). 넘으면 요청은 실패하지만 메모리에 반영한 변경은 그대로 남는다.
+  private long durableTimeoutMillis = 10000;
+
+  // 한번의 fsync 로 묶을 최대 레코드 수
+  private int groupCommitSize = 1024;
+
+  // 스냅샷 컴팩션을 검사하는 주기(ms)
+  private long compactionIntervalMillis = 60000;
+
+  // 로그가 이 크기(byte)를 넘으면 다음 검사 때 스냅샷을 만들고 이전 로그를 지운다.
+  private long compactionLogBytes = 64L * 1024 * 1024;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public String getDirectory() {
+    return directory;
+  }
+
+  public void setDirectory(String directory) {
+    this.directory = directory;
+  }
+
+  public boolean isSyncWrites() {
+    return syncWrites;
+  }
+
+  public void setSyncWrites(boolean syncWrites) {
+    this.syncWrites = syncWrites;
+  }
+
+  public long getDurableTimeoutMillis() {
+    return durableTimeoutMillis;
+  }
+
+  public void setDurableTimeoutMillis(long durableTimeoutMillis) {
+    this.durableTimeoutMillis = durableTimeoutMillis;
+  }
+
+  public int getGroupCommitSize() {
+    return groupCommitSize;
+  }
+
+  public void setGroupCommitSize(int groupCommitSize) {
+    this.groupCommitSize = groupCommitSize;
+  }
+
+  public long getCompactionIntervalMillis() {
+    return compactionIntervalMillis;
+  }
+
+  public void setCompactionIntervalMillis(long compactionIntervalMillis) {
+    this.compactionIntervalMillis = compactionIntervalMillis;
+  }
+
+  public long getCompactionLogBytes() {
+    return compactionLogBytes;
+  }
+
+  public void setCompactionLogBytes(long compactionLogBytes) {
+    this.compactionLogBytes = compactionLogBytes;
+  }
+}
@@ -0,0 +1,83 @@
+package com.example;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * 검색 색인과 검색어에 같이 쓰는 토크나이저
+ *
+ * NFKC 로 정규화하고 소문자로 바꾼 다음 글자/숫자가 이어지는 구간을 자른다.
+ * 한글(과 한자, 가나)은 띄어쓰기만으로는 조사가 붙어서("빠르게", "빠르게는") 같은 말을 찾을 수 없으므로 두 글자씩 겹쳐서 자른다(bigram).
+ * "누구보다 빠르게" -> 누구, 구보, 보다, 빠르, 르게. 한 글자뿐인 구간은 그대로 쓴다.
+ * 그 밖의 문자는 단어 하나를 그대로 토큰으로 쓰고, MAX_WORD_LENGTH 보다 긴 단어(base64, 해시 등)는 버린다.
+ */
+final class ArticleTokenizer {
+  static final int MAX_WORD_LENGTH = 64;
+
+  private ArticleTokenizer() {
+  }
+
+  static List<String> tokenize(String text) {
+    List<String> tokens = new ArrayList<>();
+    tokenize(text, tokens::add);
+    return tokens;
+  }
+
+  static void tokenize(String text, Consumer<String> tokens) {
+    if (text == null || text.isEmpty()) {
+      return;
+    }
+    String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    int length = normalized.length();
+    int start = 0;
+    while (start < length) {
+      int codePoint = normalized.codePointAt(start);
+      if (!Character.isLetterOrDigit(codePoint)) {
+        start += Character.charCount(codePoint);
+        continue;
+      }
+      boolean cjk = isCjk(codePoint);
+      int end = start;
+      while (end < length) {
+        int next = normalized.codePointAt(end);
+        if (!Character.isLetterOrDigit(next) || isCjk(next) != cjk) {
+          break;
+        }
+        end += Character.charCount(next);
+      }
+      if (cjk) {
+        bigrams(normalized, start, end, tokens);
+      } else if (end - start <= MAX_WORD_LENGTH) {
+        tokens.accept(normalized.substring(start, end));
+      }
+      start = end;
+    }
+  }
+
+  private static void bigrams(String text, int start, int end, Consumer<String> tokens) {
+    int second = start + Character.charCount(text.codePointAt(start));
+    if (second >= end) {
+      tokens.accept(text.substring(start, end));
+      return;
+    }
+    while (second < end) {
+      int third = second + Character.charCount(text.codePointAt(second));
+      tokens.accept(text.substring(start, third));
+      start = second;
+      second = third;
+    }
+  }
+
+  // 장음 부호(ー)나 반복 부호(々)는 script 가 COMMON 이지만 가나/한자 단어 안에 쓰인다.
+  private static boolean isCjk(int codePoint) {
+    if (codePoint == 0x30FC || codePoint == 0x3005) {
+      return true;
+    }
+    Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+    return script == Character.UnicodeScript.HANGUL || script == Character.UnicodeScript.HAN
+      || script == Character.UnicodeScript.HIRAGANA || script == Character.UnicodeScript.KATAKANA;
+  }
+}
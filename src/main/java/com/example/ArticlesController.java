@@ -1,15 +1,27 @@
 package com.example;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.stereotype.Service;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 // Spring 에서 컨트롤러 컴포넌트를 만들때 우리는 기본적으로 @Controller 를 사용하여 만든다.
 // 하지만, @RestController 는 간단한 객체를 JSON/XML 타입으로 반환하는 REST 서비스에 최적화된 간단한 컨트롤러라고 한다.
@@ -20,6 +32,24 @@ public class ArticlesController {
   @Autowired
   ArticlesService articlesService;
 
+  @Autowired
+  ArticleNdjsonWriter articleNdjsonWriter;
+
+  @Autowired
+  AttachmentsService attachmentsService;
+
+  @Autowired
+  FragmentCache fragmentCache;
+
+  @Autowired
+  RequestLog requestLog;
+
+  @Autowired
+  ArticleBulkImporter articleBulkImporter;
+
+  @Autowired
+  ArticleResponseCache responseCache;
+
   // 뷰 템플릿을 렌더링하여 반환하라는 내용이다.
   @RequestMapping(value = "/articles/new", method = RequestMethod.GET)
   public String newArticle(Model model) {
@@ -28,14 +58,29 @@ public class ArticlesController {
     return "articles/new";
   }
 
+  // 글 목록 HTML 페이지. 목록 부분은 글 목록의 ETag 를 버전으로 FragmentCache 에 캐시하므로 글이 바뀌기 전까지는 다시 렌더링하지 않는다.
+  // ETag 를 목록보다 먼저 읽어야 그 사이에 쓰기가 끼어들어도 새 버전으로 옛 목록을 캐시하지 않는다.
+  @RequestMapping(value = "/articles", method = RequestMethod.GET)
+  public String list(Model model) {
+    String version = articlesService.getArticlesETag("html");
+    List<Article> articles = articlesService.getArticles();
+    model.addAttribute("articleList", fragmentCache.render("articles/list", "list", version, Collections.singletonMap("articles", articles)));
+    return "article";
+  }
+
   // HTML 페이지에서 FORM 으로 데이터를 Submit 하면 결과로 넘겨 받은
   // Content-Type 은 application/x-www-form-urlencoded 나 multipart/form-data 의 형태이므로 이를 JSON 으로 반환해야 함
   // @RestController 라고 지정을하게 되면 컨트롤러를 통해 반환되는 HttpResponse 가 자동으로 JSON 으로 변환이 된다.
   // @Controller 로 지정을 하게 되면 @ResponseBody 를 사용하여 Content-Type 을 application/json 으로 변환하여 객체를 JSON 으로 반환하면 된다.
   @RequestMapping(value = "/articles", method = RequestMethod.POST)
   @ResponseBody
-  public Article submit(@ModelAttribute Article article, MultipartFile file) {
-    System.out.println(file.getOriginalFilename());
+  // 폼으로 올린 파일은 BlobStore 에 저장하고 attachments 로 돌려준다.
+  // 큰 파일은 multipart 대신 /api/articles/{id}/attachments 에 본문으로 보내거나 /api/uploads 로 나눠 보내는 것이 좋다.
+  public Article submit(@ModelAttribute Article article, MultipartFile file) throws IOException {
+    if (file != null && !file.isEmpty()) {
+      requestLog.event("article.submit", "filename", file.getOriginalFilename());
+      article.setAttachments(Collections.singletonList(attachmentsService.store(file)));
+    }
     return article;
   }
 
@@ -44,16 +89,88 @@ public class ArticlesController {
   @ResponseBody
   // @RequestMapping 으로 메소드 이름과 달리 URL 이 들어오는 패턴을 메소드와 매핑 시킨다.
   // @ResponseBody 는 컨트롤러에서 데이터를 응답을 줄 때 객체를 HttpMessageConverter 를 사용하여 ResponseBody 에 자동으로 JSON 형태의 컨텐츠로 변환하여 반환한다
-  public List<Article> index() {
+  public Object index(@RequestParam(value = "size", required = false) Integer size,
+                      @RequestParam(value = "cursor", required = false) String cursor,
+                      @RequestParam(value = "fields", required = false) String fields,
+                      @RequestHeader(value = "Accept", required = false) String accept,
+                      WebRequest request) throws HttpMediaTypeNotAcceptableException {
+    // 목록이 바뀌지 않았으면 If-None-Match / If-Modified-Since 를 보고 본문을 만들지 않고 304 Not Modified 로 응답한다.
+    // checkNotModified 가 true 를 반환하면 null 을 반환해도 Spring MVC 가 응답을 끝낸다.
+    // Smile, CBOR 목록은 JSON 목록과 바이트가 다르므로 메시지 컨버터가 고를 포맷을 ETag 에 넣는다.
+    ArticleFormat format = ArticleFormat.negotiate(accept);
+    if (request.checkNotModified(articlesService.getArticlesETag(cursor, size, fields, format), articlesService.getArticlesLastModified())) {
+      return null;
+    }
+
     // 우리는 단지 객체를 리턴하기만하면 클라이언트에서 JSON 으로 받을 수 있다.
-    return articlesService.getArticles();
+    // size, cursor, fields 중 하나라도 있으면 전체 목록 대신 커서 기반 페이지({"articles": [...], "nextCursor": "..."})를 반환한다.
+    // 예) /api/articles?size=50&fields=id,title
+    if (size == null && cursor == null && fields == null) {
+      return articlesService.getArticles();
+    }
+    return articlesService.getArticlePage(cursor, size, fields);
   }
 
-  @RequestMapping(value = "/api/articles/{id}", method = RequestMethod.GET)
+  // 대량의 글을 내려받을 때는 전체 List 를 만들어 변환하지 않고 NDJSON 으로 한 건씩 스트리밍한다.
+  // /api/articles/stream 으로 요청하거나 /api/articles 에 Accept: application/x-ndjson 헤더를 보내면 된다.
+  // StreamingResponseBody 는 비동기로 실행되므로 직렬화 동안 서블릿 스레드를 붙잡지 않는다.
+  @RequestMapping(value = "/api/articles/stream", method = RequestMethod.GET)
+  public ResponseEntity<StreamingResponseBody> stream(WebRequest request) {
+    if (request.checkNotModified(articlesService.getArticlesETag("ndjson"), articlesService.getArticlesLastModified())) {
+      return null;
+    }
+    List<Article> articles = articlesService.getArticles();
+    return ResponseEntity.ok()
+      .contentType(ArticleNdjsonWriter.APPLICATION_NDJSON)
+      .body(out -> articleNdjsonWriter.write(articles, out));
+  }
+
+  @RequestMapping(value = "/api/articles", method = RequestMethod.GET, produces = ArticleNdjsonWriter.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> indexNdjson(WebRequest request) {
+    return stream(request);
+  }
+
+  // 제목, 본문, 댓글을 검색한다. 점수가 높은 순서로 size(기본 10, 최대 100)개까지 반환한다.
+  // 예) /api/articles/search?q=스프링 부트&size=20
+  @RequestMapping(value = "/api/articles/search", method = RequestMethod.GET)
   @ResponseBody
-  public Article show(@PathVariable(value = "id") long id) {
+  public ArticleSearchResult search(@RequestParam(value = "q") String query,
+                                    @RequestParam(value = "size", required = false) Integer size) {
+    return articlesService.search(query, size);
+  }
+
+  // Accept 로 JSON, Smile(application/x-jackson-smile), CBOR(application/cbor) 중 하나를 고른다. 셋 다 받지 않으면 406 이다.
+  // 다른 /api/articles 엔드포인트는 WebMvcConfiguration 이 더한 메시지 컨버터가 같은 방식으로 고르고, 요청 본문도 Content-Type 으로 읽는다.
+  @RequestMapping(value = "/api/articles/{id}", method = RequestMethod.GET)
+  public void show(@PathVariable(value = "id") long id, WebRequest webRequest,
+                   HttpServletRequest request, HttpServletResponse response) throws IOException, HttpMediaTypeNotAcceptableException {
     // 하나의 리소스의 아이템을 지정하기 위해서 @PathVariable 을 인자값으로 받아 들이고 있다는 것이다.
-    return articlesService.getArticle(id);
+    // ETag 로 글의 버전을 내려주면 클라이언트는 PATCH 할 때 If-Match 로 되돌려 보내서 다른 사람의 수정을 덮어쓰지 않게 할 수 있다.
+    // If-None-Match 가 같은 ETag 이면 checkNotModified 가 ETag 와 Last-Modified 를 쓰고 본문 없이 304 로 응답한다.
+    Article article = articlesService.getArticle(id);
+    ArticleFormat format = ArticleFormat.negotiate(request.getHeader(HttpHeaders.ACCEPT));
+    String etag = articlesService.getArticleETag(article, format);
+    // gzip 본문과 원래 본문은 바이트가 다르므로 같은 strong ETag 를 쓰면 안 된다. gzip 을 받는 요청에는 "-gzip" 을 붙인 ETag 를 준다.
+    // 작은 본문은 압축하지 않고 보내지만, 본문을 만들기 전에 304 여부를 정해야 하므로 ETag 는 요청만 보고 정한다.
+    boolean gzip = responseCache.isGzipEnabled() && ArticleResponseCache.acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+    String responseEtag = gzip ? etag.substring(0, etag.length() - 1) + "-gzip\"" : etag;
+    response.setHeader(HttpHeaders.VARY, responseCache.isGzipEnabled()
+      ? HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING
+      : HttpHeaders.ACCEPT);
+    if (webRequest.checkNotModified(responseEtag, ArticleETag.lastModified(article))) {
+      return;
+    }
+
+    // 자주 읽히는 글은 ArticleResponseCache 에 직렬화한 바이트가 있으므로 메시지 컨버터를 거치지 않고 출력 스트림에 그대로 쓴다.
+    ArticleResponseCache.Entry entry = articlesService.getArticleResponse(article, format, etag);
+    byte[] body = entry.getBody();
+    if (gzip && entry.getGzip() != null) {
+      response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+      body = entry.getGzip();
+    }
+    response.setContentType(format.getMediaType().toString());
+    response.setContentLength(body.length);
+    response.getOutputStream().write(body);
   }
 
   // REST 에서 POST 메소드를 지원하는 것은 대부분 write 기능을 서비스하는 것이다.
@@ -84,9 +201,9 @@ public class ArticlesController {
      *   ]
      * }
      */
-    System.out.println(article.getContent());
+    requestLog.event("article.create", "content", article.getContent());
 
-    return article;
+    return articlesService.createArticle(article);
 
     /** Return JSON */
     /*
@@ -110,19 +227,55 @@ public class ArticlesController {
      */
   }
 
+  // 대량 이관용. 본문에 글을 NDJSON 으로 한 줄에 하나씩 보내면 묶음으로 저장하면서 줄마다 결과를 NDJSON 으로 흘려보낸다.
+  // 결과를 쓰기 시작하면 상태 코드는 200 으로 정해지므로 줄의 실패는 결과 줄의 status 로 알려준다.
+  // 본문을 다 읽을 때까지 요청 스레드에서 처리한다. 비동기 요청의 타임아웃에 걸리지 않고 본문의 backpressure 가 그대로 클라이언트에 전달된다.
+  // 예) curl -H 'Content-Type: application/x-ndjson' --data-binary @articles.ndjson http://localhost:8080/api/articles/_bulk
+  @RequestMapping(value = "/api/articles/_bulk", method = RequestMethod.POST)
+  public void bulk(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    response.setContentType(ArticleNdjsonWriter.APPLICATION_NDJSON_VALUE + ";charset=UTF-8");
+    Map<String, Object> summary = articleBulkImporter.importArticles(request.getInputStream(), response.getOutputStream());
+    requestLog.event("article.bulk", "lines", String.valueOf(summary.get("lines")), "failed", String.valueOf(summary.get("failed")));
+  }
+
   // 이전에는 REST 서비스에서 리소스 업데이트 요청을 하기 위해서 PUT 메소드를 사용하였는데, 부분 업데이트 개념으로 PATCH 를 사용한다.
   // PUT 은 전체 리소스를 변경할 때 사용하는 것이고 PATCH 는 부분 변경을 사용할 때 사용
 
-  @RequestMapping(value = "/api/articles/{id}", method = RequestMethod.PATCH)
+  // 예전에는 본문 전체를 새 Article 에 바인딩해서 그대로 돌려주기만 했다.
+  // 이제는 본문을 JSON Merge Patch(application/json 도 같이 처리) 또는 JSON Patch 로 해석해서 바뀐 필드만 저장된 글에 적용한다.
+  // If-Match 헤더가 있으면 그 ETag 의 버전일 때만 적용하고, 아니면 412 Precondition Failed 로 응답한다.
+  // Spring 4.3.3 은 GET/HEAD 가 아닌 요청에서 ResponseEntity 의 ETag 헤더를 지우기 때문에 새 ETag 는 HttpServletResponse 에 직접 쓴다.
+  // Smile, CBOR 로 보낸 본문은 JSON Merge Patch 로 해석한다.
+  @RequestMapping(value = "/api/articles/{id}", method = RequestMethod.PATCH,
+    consumes = {MediaType.APPLICATION_JSON_VALUE, ArticlePatch.MERGE_PATCH_VALUE, ArticleFormat.SMILE_VALUE, ArticleFormat.CBOR_VALUE})
+  @ResponseBody
+  public Article patch(@PathVariable(value = "id") long id,
+                       @RequestHeader(value = "If-Match", required = false) String ifMatch,
+                       @RequestHeader(value = "Accept", required = false) String accept,
+                       @RequestBody JsonNode patch, HttpServletResponse response) throws HttpMediaTypeNotAcceptableException {
+    // 응답 본문의 포맷은 패치를 적용하기 전에 정한다. 적용한 뒤에 406 으로 끝나면 클라이언트는 새 ETag 를 받지 못한다.
+    ArticleFormat format = ArticleFormat.negotiate(accept);
+    Article article = articlesService.mergePatchArticle(id, ifMatch, patch);
+    response.setHeader(HttpHeaders.ETAG, articlesService.getArticleETag(article, format));
+    return article;
+  }
+
+  @RequestMapping(value = "/api/articles/{id}", method = RequestMethod.PATCH, consumes = ArticlePatch.JSON_PATCH_VALUE)
   @ResponseBody
-  public Article patch(@PathVariable(value = "id") long id,  @RequestBody Article article) {
+  public Article jsonPatch(@PathVariable(value = "id") long id,
+                           @RequestHeader(value = "If-Match", required = false) String ifMatch,
+                           @RequestHeader(value = "Accept", required = false) String accept,
+                           @RequestBody JsonNode patch, HttpServletResponse response) throws HttpMediaTypeNotAcceptableException {
+    ArticleFormat format = ArticleFormat.negotiate(accept);
+    Article article = articlesService.jsonPatchArticle(id, ifMatch, patch);
+    response.setHeader(HttpHeaders.ETAG, articlesService.getArticleETag(article, format));
     return article;
   }
 
   @RequestMapping(value = "/api/articles/{id}", method = RequestMethod.PUT)
   @ResponseBody
   public Article update(@PathVariable(value = "id") long id,  @RequestBody Article article) {
-    return article;
+    return articlesService.updateArticle(id, article);
   }
 
   @RequestMapping(value = "/api/articles/{id}", method = RequestMethod.DELETE)
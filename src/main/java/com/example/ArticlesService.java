@@ -1,11 +1,14 @@
 package com.example;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Objects;
 
 /**
  * REST 컨트롤러가 데이터를 처리하는 ArticlesService 객체
@@ -13,26 +16,202 @@ import java.util.stream.Collectors;
 
 @Service
 public class ArticlesService {
+  static final int DEFAULT_PAGE_SIZE = 20;
+  static final int MAX_PAGE_SIZE = 1000;
+  static final int DEFAULT_SEARCH_SIZE = 10;
+  static final int MAX_SEARCH_SIZE = 100;
+
+  @Autowired
+  ArticleRepository articleRepository;
+
+  @Autowired
+  ObjectMapper objectMapper;
+
   @Autowired
-  FixturesProperty fixturesProperty;
+  ArticleResponseCache responseCache;
 
+  @Autowired
+  ArticleFormats articleFormats;
+
+  // 매 요청마다 리스트를 새로 복사하지 않고 현재 스냅샷을 읽기 전용 List 로 그대로 공유한다.
   public List<Article> getArticles() {
-    List<Article> articles = new ArrayList<>(fixturesProperty.getArticles());
-    return articles;
+    return articleRepository.findAll();
+  }
+
+  /**
+   * 커서 기반으로 한 페이지만 가져온다. 같은 스냅샷 안에서 잘라내기 때문에 페이지를 만들 때 복사가 일어나지 않는다.
+   *
+   * @param cursor 이전 페이지의 nextCursor. null 이면 첫 페이지
+   * @param size   페이지 크기. null 이면 DEFAULT_PAGE_SIZE
+   * @param fields 콤마로 구분된 projection 필드. null 이면 Article 전체
+   */
+  public ArticlePage getArticlePage(String cursor, Integer size, String fields) {
+    int limit = size == null ? DEFAULT_PAGE_SIZE : size;
+    if (limit < 1 || limit > MAX_PAGE_SIZE) {
+      throw new BadRequestException("size must be between 1 and " + MAX_PAGE_SIZE);
+    }
+    ArticleProjection projection = ArticleProjection.parse(fields);
+
+    ArticleSnapshot snapshot = articleRepository.snapshot();
+    List<Article> articles = cursor == null
+      ? snapshot.first(limit)
+      : snapshot.after(ArticleCursor.decode(cursor), limit);
+
+    String nextCursor = null;
+    if (!articles.isEmpty()) {
+      long lastId = articles.get(articles.size() - 1).getId();
+      if (snapshot.hasAfter(lastId)) {
+        nextCursor = ArticleCursor.encode(lastId);
+      }
+    }
+    return new ArticlePage(projection == null ? articles : projection.apply(articles), nextCursor);
+  }
+
+  /**
+   * 목록 응답의 ETag. 본문을 만들기 전에 계산해야 한다.
+   * 그래야 그 사이에 쓰기가 끼어들어도 ETag 가 본문보다 오래된 버전을 가리킬 뿐, 새 버전의 ETag 로 옛 본문을 캐시하게 되지는 않는다.
+   *
+   * @param variant 같은 버전의 다른 표현(페이지, projection 등)을 구분하는 값. 전체 목록이면 null
+   */
+  public String getArticlesETag(String variant) {
+    return ArticleETag.ofCollection(articleRepository.instanceId(), articleRepository.snapshot().getVersion(),
+      articleRepository.attachmentsRevision(), variant);
+  }
+
+  /**
+   * @param format 메시지 컨버터가 쓸 포맷. JSON 이 아니면 variant 에 포맷 이름을 붙여서 JSON 목록의 ETag 와 겹치지 않게 한다.
+   */
+  public String getArticlesETag(String cursor, Integer size, String fields, ArticleFormat format) {
+    String variant = cursor == null && size == null && fields == null ? null : Integer.toHexString(Objects.hash(cursor, size, fields));
+    if (format != ArticleFormat.JSON) {
+      variant = variant == null ? format.getVariant() : variant + "-" + format.getVariant();
+    }
+    return getArticlesETag(variant);
+  }
+
+  public long getArticlesLastModified() {
+    return articleRepository.lastModified();
   }
 
-  // getArticle()과 deleteArticle() 메소드 안에 리스트를 탐색하여 처리하는 작업은 Java 8의 lamda 표현식을 사용하여 구현
+  // 예전에는 getArticle()과 deleteArticle() 에서 전체 리스트를 복사한 다음 stream 으로 탐색했지만
+  // 이제는 ArticleRepository 의 id 인덱스로 바로 찾는다. 없는 id 는 ArticleNotFoundException(404) 이 된다.
   public Article getArticle(long id) {
-    List<Article> articles = this.getArticles();
-    Article article = articles.stream()
-      .filter(a -> a.getId() == id)
-      .collect(Collectors.toList()).get(0);
+    Article article = articleRepository.findOne(id);
+    if (article == null) {
+      throw new ArticleNotFoundException(id);
+    }
     return article;
   }
 
+  /**
+   * 글 하나의 ETag. 재시작하면 버전이 다시 시작할 수 있으므로 저장소 instanceId 를 같이 넣는다.
+   */
+  public String getArticleETag(Article article, ArticleFormat format) {
+    return ArticleETag.of(articleRepository.instanceId(), article, format);
+  }
+
+  /**
+   * 글을 format 으로 쓴 응답 본문. 같은 ETag 로 캐시한 바이트가 있으면 다시 직렬화하지 않는다.
+   *
+   * @param etag 글의 getArticleETag(article, format). 직렬화하기 전에 구해야 한다.
+   */
+  public ArticleResponseCache.Entry getArticleResponse(Article article, ArticleFormat format, String etag) throws IOException {
+    ArticleResponseCache.Entry entry = responseCache.get(format, article.getId(), etag);
+    if (entry == null) {
+      entry = responseCache.encode(format, article.getId(), etag, articleFormats.mapper(format).writeValueAsBytes(article));
+      // 직렬화하는 동안 댓글이 추가되면 본문이 etag 보다 새 버전일 수 있으므로 그때는 캐시하지 않는다.
+      if (etag.equals(getArticleETag(article, format))) {
+        responseCache.put(entry);
+      }
+    }
+    return entry;
+  }
+
+  // id 가 없으면 저장소가 새 id 를 붙인다. 댓글의 id 도 마찬가지다.
+  public Article createArticle(Article article) {
+    articleRepository.assignId(article);
+    return articleRepository.save(article);
+  }
+
+  // 있는지 확인하고 저장하는 사이에 글이 지워질 수 있으므로 확인은 저장소가 쓰기 락 안에서 한다.
+  public Article updateArticle(long id, Article article) {
+    article.setId(id);
+    Article updated = articleRepository.replaceIfPresent(article);
+    if (updated == null) {
+      throw new ArticleNotFoundException(id);
+    }
+    return updated;
+  }
+
+  /**
+   * RFC 7396 JSON Merge Patch 를 적용한다.
+   *
+   * @param ifMatch If-Match 헤더. null 이면 버전을 확인하지 않는다.
+   */
+  public Article mergePatchArticle(long id, String ifMatch, JsonNode patch) {
+    return patchArticle(id, ifMatch, ArticlePatch.mergePatch(patch, objectMapper));
+  }
+
+  /**
+   * RFC 6902 JSON Patch 를 적용한다.
+   */
+  public Article jsonPatchArticle(long id, String ifMatch, JsonNode patch) {
+    return patchArticle(id, ifMatch, ArticlePatch.jsonPatch(patch, objectMapper));
+  }
+
+  // If-Match 에 여러 ETag 가 있으면 현재 버전과 같은 것을 골라서 저장소에 넘긴다.
+  // 저장소는 교체하는 순간에도 그 버전인지 다시 확인하므로 그 사이에 다른 쓰기가 끼어들면 412 가 된다.
+  private Article patchArticle(long id, String ifMatch, ArticlePatch patch) {
+    long expectedVersion = -1;
+    List<Long> versions = ArticleETag.parseIfMatch(ifMatch, articleRepository.instanceId());
+    if (versions != null) {
+      long current = getArticle(id).getVersion();
+      if (!versions.contains(current)) {
+        throw new PreconditionFailedException("If-Match does not match the current version of article " + id);
+      }
+      expectedVersion = current;
+    }
+    Article article = articleRepository.patch(id, expectedVersion, patch);
+    if (article == null) {
+      throw new ArticleNotFoundException(id);
+    }
+    return article;
+  }
+
+  /**
+   * 제목, 본문, 댓글에서 q 의 토큰이 들어 있는 글을 BM25 점수 순서로 size 개까지 찾는다.
+   *
+   * @param size 결과 수. null 이면 DEFAULT_SEARCH_SIZE
+   */
+  public ArticleSearchResult search(String q, Integer size) {
+    int limit = size == null ? DEFAULT_SEARCH_SIZE : size;
+    if (limit < 1 || limit > MAX_SEARCH_SIZE) {
+      throw new BadRequestException("size must be between 1 and " + MAX_SEARCH_SIZE);
+    }
+    if (q == null || q.trim().isEmpty()) {
+      throw new BadRequestException("q must not be blank");
+    }
+    if (!articleRepository.isSearchEnabled()) {
+      throw new ServiceUnavailableException("article search is disabled");
+    }
+    if (!articleRepository.isSearchReady()) {
+      throw new ServiceUnavailableException("article search index is still being built");
+    }
+    ArticleSearchIndex.Hits hits = articleRepository.search(q, limit);
+    List<ArticleSearchResult.Hit> results = new ArrayList<>(hits.ids.length);
+    for (int i = 0; i < hits.ids.length; i++) {
+      // 색인을 읽은 뒤에 지워진 글은 건너뛴다.
+      Article article = articleRepository.findOne(hits.ids[i]);
+      if (article != null) {
+        results.add(new ArticleSearchResult.Hit(article.getId(), article.getTitle(), hits.scores[i]));
+      }
+    }
+    return new ArticleSearchResult(q, hits.total, results);
+  }
+
+  // DELETE 는 멱등이기 때문에 이미 없는 id 를 삭제해도 예외 없이 남은 목록을 반환한다.
   public List<Article> deleteArticle(long id) {
-    List<Article> articles = this.getArticles();
-    articles.removeIf(p -> p.getId() == id);
-    return articles;
+    articleRepository.delete(id);
+    return this.getArticles();
   }
 }
@@ -0,0 +1,69 @@
+package com.example;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.io.Serializable;
+
+/**
+ * 글에 붙은 첨부 파일. 내용은 BlobStore 에 hash 이름으로 저장되어 있고, 여기에는 파일 이름과 타입만 있다.
+ */
+public class Attachment implements Serializable {
+  private String hash;
+  private String filename;
+  private String contentType;
+  private long size;
+
+  // 이미지 파일이면 썸네일과 크기 정보. ImageDerivatives 가 백그라운드에서 채운다. 이미지가 아니면 JSON 에 넣지 않는다.
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private ImageInfo image;
+
+  public Attachment copy() {
+    Attachment copy = new Attachment();
+    copy.hash = hash;
+    copy.filename = filename;
+    copy.contentType = contentType;
+    copy.size = size;
+    copy.image = image;
+    return copy;
+  }
+
+  public String getHash() {
+    return hash;
+  }
+
+  public void setHash(String hash) {
+    this.hash = hash;
+  }
+
+  public String getFilename() {
+    return filename;
+  }
+
+  public void setFilename(String filename) {
+    this.filename = filename;
+  }
+
+  public String getContentType() {
+    return contentType;
+  }
+
+  public void setContentType(String contentType) {
+    this.contentType = contentType;
+  }
+
+  public long getSize() {
+    return size;
+  }
+
+  public void setSize(long size) {
+    this.size = size;
+  }
+
+  public ImageInfo getImage() {
+    return image;
+  }
+
+  public void setImage(ImageInfo image) {
+    this.image = image;
+  }
+}
@@ -0,0 +1,14 @@
+package com.example;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 글에 존재하지 않는 첨부 파일을 요청했을 때 던지는 예외 (404 Not Found)
+ */
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class AttachmentNotFoundException extends RuntimeException {
+  public AttachmentNotFoundException(long articleId, String hash) {
+    super("attachment not found: " + articleId + "/" + hash);
+  }
+}
@@ -0,0 +1,244 @@
+package com.example;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 글마다 붙은 첨부 파일 목록을 보관하는 저장소
+ *
+ * 목록은 BlobStore 디렉토리의 attachments/{articleId}.json 에 통째로 쓴다. 글 하나의 첨부 파일은 많지 않으므로
+ * 바꿀 때마다 임시 파일에 쓰고 ATOMIC_MOVE 로 교체한다. 시작할 때 모두 메모리에 올리고, 바꿀 때는 새 목록으로 교체한다(copy-on-write).
+ *
+ * 목록마다 revision(바뀐 시각 ms, 줄어들지 않음) 을 같이 저장한다. 글의 ETag 에 들어가서 첨부 파일이나 썸네일이 바뀌면 글의 ETag 도 바뀐다.
+ */
+@Repository
+public class AttachmentRepository {
+  private static final Entry EMPTY = new Entry(0, Collections.<Attachment>emptyList());
+
+  @Autowired
+  BlobStore blobStore;
+
+  @Autowired
+  ObjectMapper objectMapper;
+
+  private final ConcurrentLongHashMap<Entry> entries = new ConcurrentLongHashMap<>();
+  private final Object writeLock = new Object();
+  // 모든 글 중 가장 최근의 revision. 글 목록의 ETag 와 Last-Modified 에 사용한다.
+  private volatile long lastRevision;
+
+  @PostConstruct
+  public void load() throws IOException {
+    Path directory = directory();
+    if (!Files.isDirectory(directory)) {
+      return;
+    }
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.json")) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        Entry entry = read(file);
+        entries.put(Long.parseLong(name.substring(0, name.length() - ".json".length())), entry);
+        lastRevision = Math.max(lastRevision, entry.revision);
+      }
+    }
+  }
+
+  public List<Attachment> findAll(long articleId) {
+    return entry(articleId).attachments;
+  }
+
+  public Attachment findOne(long articleId, String hash) {
+    for (Attachment attachment : findAll(articleId)) {
+      if (attachment.getHash().equals(hash)) {
+        return attachment;
+      }
+    }
+    return null;
+  }
+
+  public long revision(long articleId) {
+    return entry(articleId).revision;
+  }
+
+  public long lastRevision() {
+    return lastRevision;
+  }
+
+  /**
+   * articleId 의 첨부 파일을 항상 최신 상태로 보여주는 읽기 전용 List. Article.attachments 에 넣는다.
+   */
+  public AttachmentList view(long articleId) {
+    return new AttachmentList(articleId);
+  }
+
+  /**
+   * 같은 내용(hash)의 첨부 파일이 이미 있으면 이름과 타입만 바꾼다.
+   */
+  public Attachment save(long articleId, Attachment attachment) {
+    synchronized (writeLock) {
+      List<Attachment> next = new ArrayList<>(findAll(articleId));
+      next.removeIf(existing -> existing.getHash().equals(attachment.getHash()));
+      next.add(attachment);
+      write(articleId, next);
+      return attachment;
+    }
+  }
+
+  public boolean delete(long articleId, String hash) {
+    synchronized (writeLock) {
+      List<Attachment> next = new ArrayList<>(findAll(articleId));
+      if (!next.removeIf(existing -> existing.getHash().equals(hash))) {
+        return false;
+      }
+      write(articleId, next);
+      return true;
+    }
+  }
+
+  /**
+   * 글이 지워지면 첨부 파일 목록도 지운다. 파일 내용은 다른 글이 가리킬 수 있으므로 BlobStore 에 남긴다.
+   */
+  public void deleteArticle(long articleId) {
+    synchronized (writeLock) {
+      if (entries.remove(articleId) == null) {
+        return;
+      }
+      lastRevision = Math.max(System.currentTimeMillis(), lastRevision + 1);
+      try {
+        Files.deleteIfExists(file(articleId));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /**
+   * 같은 내용(hash)을 가진 모든 첨부 파일의 이미지 정보를 바꾼다. 썸네일 작업이 끝났을 때 호출한다.
+   */
+  public void updateImage(String hash, ImageInfo image) {
+    synchronized (writeLock) {
+      List<Long> articleIds = new ArrayList<>();
+      entries.forEach((articleId, entry) -> {
+        for (Attachment attachment : entry.attachments) {
+          if (attachment.getHash().equals(hash)) {
+            articleIds.add(articleId);
+            return;
+          }
+        }
+      });
+      for (long articleId : articleIds) {
+        List<Attachment> next = new ArrayList<>();
+        for (Attachment attachment : findAll(articleId)) {
+          if (attachment.getHash().equals(hash)) {
+            Attachment copy = attachment.copy();
+            copy.setImage(image);
+            attachment = copy;
+          }
+          next.add(attachment);
+        }
+        write(articleId, next);
+      }
+    }
+  }
+
+  private Entry entry(long articleId) {
+    Entry entry = entries.get(articleId);
+    return entry == null ? EMPTY : entry;
+  }
+
+  private Path directory() {
+    return blobStore.directory().resolve("attachments");
+  }
+
+  private Path file(long articleId) {
+    return directory().resolve(articleId + ".json");
+  }
+
+  private Entry read(Path file) throws IOException {
+    JsonNode root = objectMapper.readTree(file.toFile());
+    // 예전 형식은 revision 없이 배열만 있다. 파일을 고친 시각을 revision 으로 쓴다.
+    JsonNode list = root.isArray() ? root : root.get("attachments");
+    long revision = root.isArray() ? Files.getLastModifiedTime(file).toMillis() : root.get("revision").asLong();
+    Attachment[] attachments = objectMapper.treeToValue(list, Attachment[].class);
+    return new Entry(revision, Collections.unmodifiableList(Arrays.asList(attachments)));
+  }
+
+  // 쓰기 락 안에서 호출한다.
+  private void write(long articleId, List<Attachment> list) {
+    Entry entry = new Entry(Math.max(System.currentTimeMillis(), Math.max(revision(articleId), lastRevision) + 1), Collections.unmodifiableList(list));
+    Path file = file(articleId);
+    try {
+      Files.createDirectories(file.getParent());
+      Path temp = Files.createTempFile(file.getParent(), articleId + "-", ".tmp");
+      try {
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("revision", entry.revision);
+        root.put("attachments", entry.attachments);
+        objectMapper.writeValue(temp.toFile(), root);
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    entries.put(articleId, entry);
+    lastRevision = entry.revision;
+  }
+
+  private static final class Entry {
+    final long revision;
+    final List<Attachment> attachments;
+
+    Entry(long revision, List<Attachment> attachments) {
+      this.revision = revision;
+      this.attachments = attachments;
+    }
+  }
+
+  /**
+   * 글의 첨부 파일 목록 view. 읽을 때마다 저장소의 최신 목록을 본다.
+   */
+  public final class AttachmentList extends AbstractList<Attachment> {
+    private final long articleId;
+
+    AttachmentList(long articleId) {
+      this.articleId = articleId;
+    }
+
+    public long revision() {
+      return AttachmentRepository.this.revision(articleId);
+    }
+
+    @Override
+    public Attachment get(int index) {
+      return findAll(articleId).get(index);
+    }
+
+    @Override
+    public int size() {
+      return findAll(articleId).size();
+    }
+
+    @Override
+    public java.util.Iterator<Attachment> iterator() {
+      return findAll(articleId).iterator();
+    }
+  }
+}
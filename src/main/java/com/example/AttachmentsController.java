@@ -0,0 +1,160 @@
+package com.example;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * 글의 첨부 파일을 하위 리소스로 다루는 컨트롤러
+ *
+ * 업로드는 multipart 로 파싱하지 않고 요청 본문을 바로 BlobStore 로 흘려 보낸다. 예)
+ *   curl -X POST --data-binary @big.jpg -H "Content-Type: image/jpeg" "/api/articles/1/attachments?filename=big.jpg"
+ * 큰 파일은 /api/uploads 로 나눠 올린 뒤 ?upload={id} 로 붙인다. 폼에서 보내는 multipart/form-data 의 file 파트도 받는다.
+ *
+ * 다운로드는 Range 요청을 지원하고, 톰캣 NIO 커넥터에서는 sendfile 로 커널이 파일을 소켓으로 바로 보낸다.
+ */
+@Controller
+public class AttachmentsController {
+  // 톰캣이 sendfile 을 지원하면 요청에 넣어주는 속성과, 서블릿이 보낼 파일을 알려줄 때 쓰는 속성
+  static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+  static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+  static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+  static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+  @Autowired
+  AttachmentsService attachmentsService;
+
+  @RequestMapping(value = "/api/articles/{articleId}/attachments", method = RequestMethod.GET)
+  @ResponseBody
+  public List<Attachment> index(@PathVariable(value = "articleId") long articleId) {
+    return attachmentsService.getAttachments(articleId);
+  }
+
+  @RequestMapping(value = "/api/articles/{articleId}/attachments", method = RequestMethod.POST)
+  @ResponseStatus(HttpStatus.CREATED)
+  @ResponseBody
+  public Attachment create(@PathVariable(value = "articleId") long articleId,
+                           @RequestParam(value = "filename", required = false) String filename,
+                           @RequestParam(value = "upload", required = false) String uploadId,
+                           @RequestParam(value = "type", required = false) String type,
+                           HttpServletRequest request) throws IOException {
+    if (uploadId != null) {
+      return attachmentsService.attachUpload(articleId, uploadId, filename, type);
+    }
+    if (request instanceof MultipartHttpServletRequest) {
+      MultipartFile file = ((MultipartHttpServletRequest) request).getFile("file");
+      if (file == null) {
+        throw new BadRequestException("multipart request has no file part");
+      }
+      try (InputStream in = file.getInputStream()) {
+        return attachmentsService.upload(articleId, Channels.newChannel(in),
+          filename != null ? filename : file.getOriginalFilename(), type != null ? type : file.getContentType());
+      }
+    }
+    // 톰캣은 application/x-www-form-urlencoded 본문을 요청 파라미터로 읽어버리므로 파일 본문으로 쓸 수 없다.
+    if (request.getContentType() != null && MediaType.APPLICATION_FORM_URLENCODED.includes(MediaType.parseMediaType(request.getContentType()))) {
+      throw new BadRequestException("send the file as the request body with its own Content-Type, or as multipart/form-data");
+    }
+    try (InputStream in = request.getInputStream()) {
+      return attachmentsService.upload(articleId, Channels.newChannel(in), filename, type != null ? type : request.getContentType());
+    }
+  }
+
+  // 파일 내용은 hash 로 정해지므로 한번 받은 응답은 바뀌지 않는다. ETag 는 hash 이고 오래 캐시해도 된다.
+  @RequestMapping(value = "/api/articles/{articleId}/attachments/{hash}", method = RequestMethod.GET)
+  public void download(@PathVariable(value = "articleId") long articleId,
+                       @PathVariable(value = "hash") String hash,
+                       @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+                       @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+                       WebRequest webRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+    Attachment attachment = attachmentsService.getAttachment(articleId, hash);
+    String etag = "\"" + attachment.getHash() + "\"";
+    if (webRequest.checkNotModified(etag)) {
+      return;
+    }
+
+    long length = attachment.getSize();
+    // If-Range 가 다른 ETag 이면 클라이언트가 가진 조각과 내용이 다르므로 Range 를 무시하고 전체를 보낸다.
+    ByteRange byteRange = ifRange == null || ifRange.equals(etag) ? parseRange(range, length, response) : null;
+
+    response.setHeader(HttpHeaders.ETAG, etag);
+    response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+    response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000");
+    response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "inline; filename*=UTF-8''" + encodeFilename(attachment.getFilename()));
+    response.setContentType(attachment.getContentType());
+
+    long start = 0;
+    long count = length;
+    if (byteRange != null) {
+      response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+      response.setHeader(HttpHeaders.CONTENT_RANGE, byteRange.contentRange(length));
+      start = byteRange.getStart();
+      count = byteRange.length();
+    }
+    response.setHeader(HttpHeaders.CONTENT_LENGTH, Long.toString(count));
+    send(attachmentsService.getBlobPath(attachment), start, count, request, response);
+  }
+
+  @RequestMapping(value = "/api/articles/{articleId}/attachments/{hash}", method = RequestMethod.DELETE)
+  @ResponseStatus(HttpStatus.NO_CONTENT)
+  public void destroy(@PathVariable(value = "articleId") long articleId,
+                      @PathVariable(value = "hash") String hash) {
+    attachmentsService.deleteAttachment(articleId, hash);
+  }
+
+  private static ByteRange parseRange(String range, long length, HttpServletResponse response) {
+    try {
+      return ByteRange.parse(range, length);
+    } catch (RangeNotSatisfiableException e) {
+      response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+      throw e;
+    }
+  }
+
+  // 톰캣이 sendfile 을 지원하면 파일 이름과 범위만 알려주고 본문은 쓰지 않는다. 응답이 끝난 뒤 톰캣이 커널의 sendfile 로 보낸다.
+  // 지원하지 않으면(MockMvc, 다른 컨테이너) FileChannel.transferTo 로 유저 공간 버퍼 없이 출력 스트림에 옮긴다.
+  private static void send(Path path, long start, long count, HttpServletRequest request, HttpServletResponse response) throws IOException {
+    if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+      request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+      request.setAttribute(SENDFILE_START, start);
+      request.setAttribute(SENDFILE_END, start + count);
+      return;
+    }
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+      long position = start;
+      long remaining = count;
+      while (remaining > 0) {
+        long sent = channel.transferTo(position, remaining, out);
+        if (sent <= 0) {
+          break;
+        }
+        position += sent;
+        remaining -= sent;
+      }
+    }
+  }
+
+  private static String encodeFilename(String filename) throws IOException {
+    return URLEncoder.encode(filename, StandardCharsets.UTF_8.name()).replace("+", "%20");
+  }
+}
@@ -0,0 +1,135 @@
+package com.example;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 글의 첨부 파일 하위 리소스(/api/articles/{articleId}/attachments)를 처리하는 서비스
+ *
+ * 파일 내용은 BlobStore 에, 글과 파일 이름의 연결은 AttachmentRepository 에 저장한다.
+ */
+@Service
+public class AttachmentsService {
+  static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+  @Autowired
+  ArticleRepository articleRepository;
+
+  @Autowired
+  AttachmentRepository attachmentRepository;
+
+  @Autowired
+  BlobStore blobStore;
+
+  @Autowired
+  ImageDerivatives imageDerivatives;
+
+  public List<Attachment> getAttachments(long articleId) {
+    checkArticle(articleId);
+    return attachmentRepository.findAll(articleId);
+  }
+
+  public Attachment getAttachment(long articleId, String hash) {
+    checkArticle(articleId);
+    Attachment attachment = attachmentRepository.findOne(articleId, hash);
+    if (attachment == null || !blobStore.exists(hash)) {
+      throw new AttachmentNotFoundException(articleId, hash);
+    }
+    return attachment;
+  }
+
+  public Path getBlobPath(Attachment attachment) {
+    return blobStore.path(attachment.getHash());
+  }
+
+  /**
+   * 요청 본문(in) 을 그대로 저장해서 글에 붙인다.
+   */
+  public Attachment upload(long articleId, ReadableByteChannel in, String filename, String contentType) throws IOException {
+    checkArticle(articleId);
+    return attach(articleId, blobStore.put(in), filename, contentType);
+  }
+
+  /**
+   * 이어 올리기(/api/uploads/{uploadId}) 로 다 받은 파일을 글에 붙인다.
+   */
+  public Attachment attachUpload(long articleId, String uploadId, String filename, String contentType) throws IOException {
+    checkArticle(articleId);
+    return attach(articleId, blobStore.completeUpload(uploadId), filename, contentType);
+  }
+
+  /**
+   * multipart 로 받은 파일을 저장만 하고 글에는 붙이지 않는다. (/articles 폼 제출처럼 아직 저장된 글이 없을 때)
+   */
+  public Attachment store(MultipartFile file) throws IOException {
+    try (InputStream in = file.getInputStream()) {
+      Attachment attachment = toAttachment(blobStore.put(Channels.newChannel(in)), file.getOriginalFilename(), file.getContentType());
+      attachment.setImage(submitImage(attachment));
+      return attachment;
+    }
+  }
+
+  // DELETE 는 멱등이기 때문에 이미 없는 첨부 파일을 지워도 예외를 던지지 않는다.
+  // 파일 내용은 다른 글이 같은 내용을 가리킬 수 있으므로 BlobStore 에 남겨둔다.
+  public void deleteAttachment(long articleId, String hash) {
+    checkArticle(articleId);
+    attachmentRepository.delete(articleId, hash);
+  }
+
+  private Attachment attach(long articleId, Blob blob, String filename, String contentType) throws IOException {
+    Attachment attachment = toAttachment(blob, filename, contentType);
+    ImageInfo image = submitImage(attachment);
+    attachment.setImage(image);
+    attachmentRepository.save(articleId, attachment);
+    // 저장하기 직전에 썸네일 작업이 끝났으면 updateImage 가 이 첨부 파일을 보지 못했으므로 결과를 직접 넣는다.
+    if (image != null && image.getStatus() == ImageInfo.Status.PENDING) {
+      ImageInfo done = imageDerivatives.result(blob.getHash());
+      if (done != null) {
+        attachmentRepository.updateImage(blob.getHash(), done);
+        attachment.setImage(done);
+      }
+    }
+    return attachment;
+  }
+
+  // 이미지면 썸네일 작업을 예약만 하고 기다리지 않는다.
+  private ImageInfo submitImage(Attachment attachment) throws IOException {
+    if (!attachment.getContentType().startsWith("image/")) {
+      return null;
+    }
+    return imageDerivatives.submit(attachment.getHash());
+  }
+
+  private Attachment toAttachment(Blob blob, String filename, String contentType) {
+    Attachment attachment = new Attachment();
+    attachment.setHash(blob.getHash());
+    attachment.setSize(blob.getSize());
+    attachment.setFilename(filename == null || filename.isEmpty() ? blob.getHash() : filename);
+    attachment.setContentType(contentType(filename, contentType));
+    return attachment;
+  }
+
+  // 타입이 없으면 파일 이름의 확장자로 짐작하고, 그래도 모르면 application/octet-stream 이다.
+  private static String contentType(String filename, String contentType) {
+    if (contentType != null && !contentType.isEmpty()) {
+      return contentType;
+    }
+    String guessed = filename == null ? null : URLConnection.guessContentTypeFromName(filename);
+    return guessed == null ? DEFAULT_CONTENT_TYPE : guessed;
+  }
+
+  private void checkArticle(long articleId) {
+    if (articleRepository.findOne(articleId) == null) {
+      throw new ArticleNotFoundException(articleId);
+    }
+  }
+}
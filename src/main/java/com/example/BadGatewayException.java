@@ -0,0 +1,14 @@
+package com.example;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 원격 API 호출이 실패하거나 시간 안에 끝나지 않았을 때 던지는 예외. 502 Bad Gateway 로 응답한다.
+ */
+@ResponseStatus(HttpStatus.BAD_GATEWAY)
+public class BadGatewayException extends RuntimeException {
+  public BadGatewayException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
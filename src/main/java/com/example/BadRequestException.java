@@ -0,0 +1,14 @@
+package com.example;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 잘못된 요청 파라미터(cursor, fields 등)를 받았을 때 던지는 예외. 400 Bad Request 로 응답한다.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class BadRequestException extends RuntimeException {
+  public BadRequestException(String message) {
+    super(message);
+  }
+}
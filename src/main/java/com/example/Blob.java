@@ -0,0 +1,22 @@
+package com.example;
+
+/**
+ * BlobStore 에 저장된 파일 내용. 내용의 SHA-256(hex) 가 곧 이름이므로 같은 내용은 한 번만 저장된다.
+ */
+public final class Blob {
+  private final String hash;
+  private final long size;
+
+  public Blob(String hash, long size) {
+    this.hash = hash;
+    this.size = size;
+  }
+
+  public String getHash() {
+    return hash;
+  }
+
+  public long getSize() {
+    return size;
+  }
+}
@@ -0,0 +1,281 @@
+package com.example;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * 첨부 파일 내용을 SHA-256 이름으로 저장하는 content-addressed 저장소
+ *
+ * 요청 본문을 버퍼 하나로 읽으면서 바로 해시를 계산하고 임시 파일에 쓴다. 메모리에 파일 전체를 올리지 않고,
+ * 다 쓴 뒤에 objects/ab/abcdef... 로 옮기기만 하므로 다시 복사하지 않는다. 같은 내용이 이미 있으면 임시 파일을 지운다(중복 제거).
+ *
+ * 큰 파일은 이어 올리기(upload) 로 나눠 보낼 수 있다. uploads/{id}.part 에 조각을 이어 붙이고,
+ * 해시는 조각을 받을 때마다 이어서 계산한다. 재시작해서 메모리의 해시 상태가 없으면 받은 부분을 한번 다시 읽는다.
+ */
+@Component
+public class BlobStore {
+  private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+  private static final Pattern UPLOAD_ID = Pattern.compile("[0-9a-f]{32}");
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  @Autowired
+  BlobStoreProperties properties;
+
+  private Path objects;
+  private Path uploads;
+  private Path tmp;
+  // 이어 올리기 중인 upload 의 해시 상태. 파일은 uploads 디렉토리에 있고 이 맵은 재시작하면 비어서 시작한다.
+  private final ConcurrentHashMap<String, UploadState> uploadStates = new ConcurrentHashMap<>();
+
+  @PostConstruct
+  public void init() {
+    Path directory = Paths.get(properties.getDirectory());
+    objects = directory.resolve("objects");
+    uploads = directory.resolve("uploads");
+    tmp = directory.resolve("tmp");
+  }
+
+  public Path directory() {
+    return Paths.get(properties.getDirectory());
+  }
+
+  /**
+   * in 을 끝까지 읽어서 저장한다.
+   */
+  public Blob put(ReadableByteChannel in) throws IOException {
+    Files.createDirectories(tmp);
+    Path temp = Files.createTempFile(tmp, "blob", ".tmp");
+    try {
+      MessageDigest digest = sha256();
+      long size;
+      try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        size = copy(in, out, digest, 0);
+        out.force(true);
+      }
+      return commit(temp, toHex(digest.digest()), size);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  public boolean exists(String hash) {
+    return isHash(hash) && Files.isRegularFile(path(hash));
+  }
+
+  public Path path(String hash) {
+    if (!isHash(hash)) {
+      throw new BadRequestException("invalid blob hash: " + hash);
+    }
+    return objects.resolve(hash.substring(0, 2)).resolve(hash);
+  }
+
+  public static boolean isHash(String hash) {
+    return hash != null && HASH.matcher(hash).matches();
+  }
+
+  /**
+   * 새 이어 올리기를 시작하고 id 를 돌려준다.
+   */
+  public String createUpload() throws IOException {
+    Files.createDirectories(uploads);
+    String id = UUID.randomUUID().toString().replace("-", "");
+    Files.createFile(uploadPath(id));
+    uploadStates.put(id, new UploadState());
+    return id;
+  }
+
+  /**
+   * 지금까지 받은 byte 수. 클라이언트는 이 위치부터 이어서 보내면 된다.
+   */
+  public long uploadOffset(String id) throws IOException {
+    Path path = uploadPath(id);
+    if (!Files.isRegularFile(path)) {
+      throw new UploadNotFoundException(id);
+    }
+    return Files.size(path);
+  }
+
+  /**
+   * offset 위치부터 in 을 이어 붙이고 새 offset 을 돌려준다. offset 이 지금까지 받은 크기와 다르면 ConflictException 이다.
+   */
+  public long appendUpload(String id, long offset, ReadableByteChannel in) throws IOException {
+    Path path = uploadPath(id);
+    if (!Files.isRegularFile(path)) {
+      throw new UploadNotFoundException(id);
+    }
+    UploadState state = uploadStates.computeIfAbsent(id, key -> new UploadState());
+    synchronized (state) {
+      if (!Files.isRegularFile(path)) {
+        throw new UploadNotFoundException(id);
+      }
+      try (FileChannel out = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        long size = out.size();
+        if (offset != size) {
+          throw new ConflictException("upload " + id + " is at offset " + size + ", not " + offset);
+        }
+        catchUp(state, out, size);
+        out.position(size);
+        long written;
+        try {
+          written = copy(in, out, state.digest, size);
+        } catch (IOException | RuntimeException e) {
+          // 연결이 끊기면 받은 만큼은 파일에 남아서 이어 보낼 수 있다. 해시 상태는 파일과 어긋났을 수 있으므로 다음에 다시 읽는다.
+          state.digest.reset();
+          state.hashedBytes = 0;
+          throw e;
+        }
+        state.hashedBytes += written;
+        return size + written;
+      }
+    }
+  }
+
+  /**
+   * 이어 올리기를 끝내고 받은 내용을 저장한다.
+   */
+  public Blob completeUpload(String id) throws IOException {
+    Path path = uploadPath(id);
+    if (!Files.isRegularFile(path)) {
+      throw new UploadNotFoundException(id);
+    }
+    UploadState state = uploadStates.computeIfAbsent(id, key -> new UploadState());
+    synchronized (state) {
+      if (!Files.isRegularFile(path)) {
+        throw new UploadNotFoundException(id);
+      }
+      try {
+        long size;
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+          size = out.size();
+          catchUp(state, out, size);
+          out.force(true);
+        }
+        return commit(path, toHex(state.digest.digest()), size);
+      } finally {
+        Files.deleteIfExists(path);
+        uploadStates.remove(id);
+      }
+    }
+  }
+
+  public void deleteUpload(String id) throws IOException {
+    Path path = uploadPath(id);
+    UploadState state = uploadStates.remove(id);
+    if (state != null) {
+      synchronized (state) {
+        Files.deleteIfExists(path);
+      }
+    } else {
+      Files.deleteIfExists(path);
+    }
+  }
+
+  private Path uploadPath(String id) {
+    if (id == null || !UPLOAD_ID.matcher(id).matches()) {
+      throw new UploadNotFoundException(id);
+    }
+    return uploads.resolve(id + ".part");
+  }
+
+  // 재시작 뒤처럼 해시 상태가 파일보다 뒤처져 있으면 이미 받은 부분을 읽어서 따라잡는다.
+  private void catchUp(UploadState state, FileChannel file, long size) throws IOException {
+    if (state.hashedBytes == size) {
+      return;
+    }
+    if (state.hashedBytes > size) {
+      state.digest.reset();
+      state.hashedBytes = 0;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(properties.getBufferBytes());
+    long position = state.hashedBytes;
+    while (position < size) {
+      buffer.clear();
+      if (size - position < buffer.capacity()) {
+        buffer.limit((int) (size - position));
+      }
+      int read = file.read(buffer, position);
+      if (read < 0) {
+        break;
+      }
+      buffer.flip();
+      state.digest.update(buffer);
+      position += read;
+    }
+    state.hashedBytes = position;
+  }
+
+  // in 을 끝까지 읽어서 해시를 갱신하면서 out 에 쓴다. alreadyWritten 은 최대 크기 검사에만 쓴다.
+  private long copy(ReadableByteChannel in, FileChannel out, MessageDigest digest, long alreadyWritten) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(properties.getBufferBytes());
+    long written = 0;
+    while (in.read(buffer) >= 0) {
+      if (buffer.position() == 0) {
+        continue;
+      }
+      buffer.flip();
+      written += buffer.remaining();
+      if (alreadyWritten + written > properties.getMaxBlobBytes()) {
+        throw new PayloadTooLargeException("blob is larger than " + properties.getMaxBlobBytes() + " bytes");
+      }
+      digest.update(buffer.array(), 0, buffer.limit());
+      while (buffer.hasRemaining()) {
+        out.write(buffer);
+      }
+      buffer.clear();
+    }
+    return written;
+  }
+
+  // 다 받은 파일을 objects 아래 hash 이름으로 옮긴다. 같은 내용이 이미 있으면 옮기지 않는다.
+  private Blob commit(Path file, String hash, long size) throws IOException {
+    Path target = path(hash);
+    if (!Files.exists(target)) {
+      Files.createDirectories(target.getParent());
+      try {
+        Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+      } catch (FileAlreadyExistsException e) {
+        // 다른 요청이 같은 내용을 먼저 저장했다.
+      }
+    }
+    return new Blob(hash, size);
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static String toHex(byte[] bytes) {
+    char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+      chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+    }
+    return new String(chars);
+  }
+
+  private static final class UploadState {
+    final MessageDigest digest = sha256();
+    long hashedBytes;
+  }
+}
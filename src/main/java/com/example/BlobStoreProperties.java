@@ -0,0 +1,44 @@
+package com.example;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * application.properties 의 blobs.* 설정
+ */
+@Component
+@ConfigurationProperties(prefix = "blobs")
+public class BlobStoreProperties {
+  // 첨부 파일 내용(objects), 이어 올리기 중인 파일(uploads), 글별 첨부 목록(attachments)을 저장할 디렉토리
+  private String directory = "data/blobs";
+
+  // 파일 하나의 최대 크기(byte). 넘으면 413 Payload Too Large 로 거절한다.
+  private long maxBlobBytes = 4L * 1024 * 1024 * 1024;
+
+  // 요청 본문을 읽어서 해시를 계산하고 파일에 쓸 때 사용하는 버퍼 크기(byte)
+  private int bufferBytes = 64 * 1024;
+
+  public String getDirectory() {
+    return directory;
+  }
+
+  public void setDirectory(String directory) {
+    this.directory = directory;
+  }
+
+  public long getMaxBlobBytes() {
+    return maxBlobBytes;
+  }
+
+  public void setMaxBlobBytes(long maxBlobBytes) {
+    this.maxBlobBytes = maxBlobBytes;
+  }
+
+  public int getBufferBytes() {
+    return bufferBytes;
+  }
+
+  public void setBufferBytes(int bufferBytes) {
+    this.bufferBytes = bufferBytes;
+  }
+}
@@ -0,0 +1,73 @@
+package com.example;
+
+/**
+ * HTTP Range 헤더의 byte 범위 하나 (start, end 모두 포함)
+ *
+ * "bytes=0-99", "bytes=100-", "bytes=-100" 형식을 지원한다. 여러 범위를 요청하거나 형식이 틀리면
+ * RFC 7233 이 허용하는 대로 Range 헤더를 무시하고 전체를 보낸다(parse 가 null 을 반환).
+ */
+public final class ByteRange {
+  private static final String PREFIX = "bytes=";
+
+  private final long start;
+  private final long end;
+
+  public ByteRange(long start, long end) {
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * @return 범위. Range 헤더가 없거나 무시해야 하면 null
+   * @throws RangeNotSatisfiableException 범위가 파일 밖일 때
+   */
+  public static ByteRange parse(String header, long length) {
+    if (header == null || !header.startsWith(PREFIX) || header.indexOf(',') >= 0) {
+      return null;
+    }
+    String spec = header.substring(PREFIX.length()).trim();
+    int dash = spec.indexOf('-');
+    if (dash < 0) {
+      return null;
+    }
+    try {
+      String first = spec.substring(0, dash).trim();
+      String last = spec.substring(dash + 1).trim();
+      if (first.isEmpty()) {
+        // 마지막 n byte
+        long suffix = Long.parseLong(last);
+        if (suffix <= 0 || length == 0) {
+          throw new RangeNotSatisfiableException(header, length);
+        }
+        return new ByteRange(Math.max(0, length - suffix), length - 1);
+      }
+      long start = Long.parseLong(first);
+      long end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+      if (start < 0 || (!last.isEmpty() && Long.parseLong(last) < start)) {
+        return null;
+      }
+      if (start >= length) {
+        throw new RangeNotSatisfiableException(header, length);
+      }
+      return new ByteRange(start, end);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  public long getStart() {
+    return start;
+  }
+
+  public long getEnd() {
+    return end;
+  }
+
+  public long length() {
+    return end - start + 1;
+  }
+
+  public String contentRange(long total) {
+    return "bytes " + start + "-" + end + "/" + total;
+  }
+}
@@ -0,0 +1,164 @@
+package com.example;
+
+import java.util.function.LongSupplier;
+
+/**
+ * 최근 호출 결과를 슬라이딩 윈도로 모아서 실패율/지연율이 높으면 호출을 막는 서킷 브레이커
+ *
+ * CLOSED  : 호출을 모두 허용하고, 최근 windowSize 개 호출의 결과를 링 버퍼에 기록한다.
+ *           minimumCalls 개 이상 모였을 때 실패율이나 느린 호출 비율이 기준을 넘으면 OPEN 이 된다.
+ * OPEN    : openMillis 동안 호출을 바로 거절한다. 원격 서버를 기다리지 않으므로 실패가 빠르다.
+ * HALF_OPEN : openMillis 가 지나면 halfOpenCalls 개의 시험 호출만 허용한다.
+ *             시험 호출이 모두 성공하면 CLOSED, 하나라도 실패하거나 느리면 다시 OPEN 이 된다.
+ *
+ * 호출 하나에 synchronized 블록 두 번(tryAcquire, onResult)만 들어가고, 할당은 없다.
+ */
+public class CircuitBreaker {
+  public enum State { CLOSED, OPEN, HALF_OPEN }
+
+  private final int minimumCalls;
+  private final double failureRateThreshold;
+  private final double slowCallRateThreshold;
+  private final long slowCallMillis;
+  private final long openMillis;
+  private final int halfOpenCalls;
+  private final LongSupplier clock;
+
+  // 최근 호출 결과 링 버퍼. 0 = 성공, 1 = 실패, 2 = 느린 성공
+  private final byte[] outcomes;
+  private int next;
+  private int recorded;
+  private int failures;
+  private int slowCalls;
+
+  private State state = State.CLOSED;
+  private long openedAt;
+  private int halfOpenPermits;
+  private int halfOpenSuccesses;
+
+  private long notPermitted;
+  private long openedCount;
+
+  public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+                        double slowCallRateThreshold, long slowCallMillis, long openMillis, int halfOpenCalls,
+                        LongSupplier clock) {
+    if (windowSize <= 0 || minimumCalls <= 0 || halfOpenCalls <= 0) {
+      throw new IllegalArgumentException("windowSize, minimumCalls and halfOpenCalls must be positive");
+    }
+    this.outcomes = new byte[windowSize];
+    this.minimumCalls = Math.min(minimumCalls, windowSize);
+    this.failureRateThreshold = failureRateThreshold;
+    this.slowCallRateThreshold = slowCallRateThreshold;
+    this.slowCallMillis = slowCallMillis;
+    this.openMillis = openMillis;
+    this.halfOpenCalls = halfOpenCalls;
+    this.clock = clock;
+  }
+
+  /**
+   * 호출해도 되면 true. true 를 받은 호출자는 끝났을 때 반드시 onResult() 나 release() 를 불러야 한다.
+   */
+  public synchronized boolean tryAcquire() {
+    if (state == State.OPEN) {
+      if (clock.getAsLong() - openedAt < openMillis) {
+        notPermitted++;
+        return false;
+      }
+      state = State.HALF_OPEN;
+      halfOpenPermits = halfOpenCalls;
+      halfOpenSuccesses = 0;
+    }
+    if (state == State.HALF_OPEN) {
+      if (halfOpenPermits == 0) {
+        notPermitted++;
+        return false;
+      }
+      halfOpenPermits--;
+    }
+    return true;
+  }
+
+  /**
+   * tryAcquire() 로 받은 허가를 호출하지 않고 돌려준다(예: bulkhead 가 가득 찼을 때).
+   */
+  public synchronized void release() {
+    if (state == State.HALF_OPEN && halfOpenPermits < halfOpenCalls) {
+      halfOpenPermits++;
+    }
+  }
+
+  public synchronized void onResult(long durationMillis, boolean failed) {
+    boolean slow = !failed && durationMillis >= slowCallMillis;
+    if (state == State.HALF_OPEN) {
+      if (failed || slow) {
+        open();
+      } else if (++halfOpenSuccesses >= halfOpenCalls) {
+        close();
+      }
+      return;
+    }
+    if (state == State.OPEN) {
+      // OPEN 되기 전에 시작한 호출이 늦게 끝난 경우. 윈도는 이미 판단에 쓰였으므로 무시한다.
+      return;
+    }
+
+    if (recorded == outcomes.length) {
+      byte evicted = outcomes[next];
+      if (evicted == 1) {
+        failures--;
+      } else if (evicted == 2) {
+        slowCalls--;
+      }
+    } else {
+      recorded++;
+    }
+    outcomes[next] = (byte) (failed ? 1 : slow ? 2 : 0);
+    next = (next + 1) % outcomes.length;
+    if (failed) {
+      failures++;
+    } else if (slow) {
+      slowCalls++;
+    }
+
+    if (recorded >= minimumCalls
+      && (failureRate() >= failureRateThreshold || slowCallRate() >= slowCallRateThreshold)) {
+      open();
+    }
+  }
+
+  private void open() {
+    state = State.OPEN;
+    openedAt = clock.getAsLong();
+    openedCount++;
+  }
+
+  private void close() {
+    state = State.CLOSED;
+    next = 0;
+    recorded = 0;
+    failures = 0;
+    slowCalls = 0;
+  }
+
+  public synchronized State getState() {
+    // 시간이 지나 HALF_OPEN 으로 넘어갈 수 있는 상태도 그대로 OPEN 으로 보여준다. 전환은 다음 호출이 한다.
+    return state;
+  }
+
+  // 퍼센트(0~100)
+  public synchronized double failureRate() {
+    return recorded == 0 ? 0 : failures * 100.0 / recorded;
+  }
+
+  public synchronized double slowCallRate() {
+    return recorded == 0 ? 0 : slowCalls * 100.0 / recorded;
+  }
+
+  public synchronized long getNotPermitted() {
+    return notPermitted;
+  }
+
+  public synchronized long getOpenedCount() {
+    return openedCount;
+  }
+}
@@ -0,0 +1,27 @@
+package com.example;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 글에 존재하지 않는 Comment 를 요청했을 때 던지는 예외 (404 Not Found)
+ */
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class CommentNotFoundException extends RuntimeException {
+  private final long articleId;
+  private final long id;
+
+  public CommentNotFoundException(long articleId, long id) {
+    super("comment not found: " + articleId + "/" + id);
+    this.articleId = articleId;
+    this.id = id;
+  }
+
+  public long getArticleId() {
+    return articleId;
+  }
+
+  public long getId() {
+    return id;
+  }
+}
@@ -0,0 +1,24 @@
+package com.example;
+
+import java.util.List;
+
+/**
+ * 댓글 목록의 커서 기반 페이지네이션 응답. 마지막 페이지면 nextCursor 는 null 이다.
+ */
+public class CommentPage {
+  private final List<Comment> comments;
+  private final String nextCursor;
+
+  public CommentPage(List<Comment> comments, String nextCursor) {
+    this.comments = comments;
+    this.nextCursor = nextCursor;
+  }
+
+  public List<Comment> getComments() {
+    return comments;
+  }
+
+  public String getNextCursor() {
+    return nextCursor;
+  }
+}
@@ -0,0 +1,246 @@
+package com.example;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Comment 를 id 로 보관하고, articleId 별로 comment id 목록을 보조 인덱스로 가지고 있는 저장소
+ *
+ * Article 의 comments 필드에는 이 저장소의 view 가 들어간다. 그래서 댓글 하나를 추가하거나 지울 때
+ * Article 전체를 다시 만들거나 직렬화할 필요 없이 보조 인덱스의 id 배열 하나만 바꾸면 된다.
+ *
+ * 조회는 락 없이 ConcurrentLongHashMap 에서 읽는다. 쓰기는 ArticleRepository 의 쓰기 락 안에서만 호출한다.
+ */
+public class CommentStore {
+  private static final long[] NO_COMMENTS = new long[0];
+
+  private final ConcurrentLongHashMap<Comment> comments = new ConcurrentLongHashMap<>();
+  // articleId -> 정렬된 comment id 배열. 배열은 바꾸지 않고 통째로 교체한다(copy-on-write).
+  private final ConcurrentLongHashMap<long[]> byArticle = new ConcurrentLongHashMap<>();
+  // 댓글 id 할당기. 저장소를 쓰면 ArticleRepository 가 디스크에 high-water mark 를 남기는 할당기로 바꾼다.
+  IdAllocator idAllocator = IdAllocator.inMemory("comment", 64);
+
+  public Comment get(long commentId) {
+    return comments.get(commentId);
+  }
+
+  public int count(long articleId) {
+    return idsOf(articleId).length;
+  }
+
+  /**
+   * articleId 의 댓글을 항상 최신 상태로 보여주는 읽기 전용 List
+   */
+  public List<Comment> view(long articleId) {
+    return new CommentListView(articleId);
+  }
+
+  /**
+   * afterId 보다 큰 id 의 댓글을 최대 limit 개 반환한다.
+   */
+  public List<Comment> page(long articleId, long afterId, int limit) {
+    long[] ids = idsOf(articleId);
+    int index = Arrays.binarySearch(ids, afterId);
+    int from = index >= 0 ? index + 1 : -(index + 1);
+    List<Comment> page = new ArrayList<>(Math.min(limit, ids.length - from));
+    for (int i = from; i < ids.length && page.size() < limit; i++) {
+      Comment comment = comments.get(ids[i]);
+      if (comment != null) {
+        page.add(comment);
+      }
+    }
+    return page;
+  }
+
+  public boolean hasAfter(long articleId, long afterId) {
+    long[] ids = idsOf(articleId);
+    return ids.length > 0 && ids[ids.length - 1] > afterId;
+  }
+
+  /**
+   * id 가 없는(0 이하) 댓글과 다른 글의 댓글 id 를 쓴 댓글에 새 id 를 붙이고 articleId 를 맞춘다.
+   * 댓글은 id 로 보관하므로 다른 글의 댓글 id 를 그대로 두면 그 댓글을 덮어쓰게 된다.
+   *
+   * @return 이미 붙어 있던(0 보다 큰) id 를 바꾼 댓글이 있으면 true. 락 밖에서 인코딩한 바이트는 다시 만들어야 한다.
+   */
+  public boolean assignIds(long articleId, List<Comment> incoming) {
+    boolean reassigned = false;
+    for (Comment comment : incoming) {
+      if (comment.getId() <= 0) {
+        comment.setId(nextId());
+      } else if (ownedByOther(articleId, comment.getId())) {
+        comment.setId(nextId());
+        reassigned = true;
+      } else {
+        advanceSequence(comment.getId());
+      }
+      comment.setArticleId(articleId);
+    }
+    return reassigned;
+  }
+
+  /**
+   * articleId 의 댓글을 incoming 으로 모두 교체한다.
+   */
+  public void replace(long articleId, List<Comment> incoming) {
+    removeArticle(articleId);
+    if (incoming == null || incoming.isEmpty()) {
+      return;
+    }
+    long[] ids = new long[incoming.size()];
+    int count = 0;
+    for (Comment comment : incoming) {
+      advanceSequence(comment.getId());
+      comments.put(comment.getId(), comment);
+      ids[count++] = comment.getId();
+    }
+    Arrays.sort(ids);
+    byArticle.put(articleId, ids);
+  }
+
+  /**
+   * 댓글 하나를 추가한다. 같은 id 의 댓글이 다른 글에 있으면 덮어쓰지 않고 IllegalArgumentException 을 던진다.
+   * 호출하는 쪽은 같은 쓰기 락 안에서 assignIds 를 먼저 불러야 한다.
+   */
+  public void add(Comment comment) {
+    if (ownedByOther(comment.getArticleId(), comment.getId())) {
+      throw new IllegalArgumentException("comment " + comment.getId() + " belongs to another article");
+    }
+    advanceSequence(comment.getId());
+    comments.put(comment.getId(), comment);
+    long[] ids = idsOf(comment.getArticleId());
+    int index = Arrays.binarySearch(ids, comment.getId());
+    if (index >= 0) {
+      return;
+    }
+    int insertAt = -(index + 1);
+    long[] next = new long[ids.length + 1];
+    System.arraycopy(ids, 0, next, 0, insertAt);
+    next[insertAt] = comment.getId();
+    System.arraycopy(ids, insertAt, next, insertAt + 1, ids.length - insertAt);
+    byArticle.put(comment.getArticleId(), next);
+  }
+
+  public boolean remove(long articleId, long commentId) {
+    long[] ids = idsOf(articleId);
+    int index = Arrays.binarySearch(ids, commentId);
+    if (index < 0) {
+      return false;
+    }
+    long[] next = new long[ids.length - 1];
+    System.arraycopy(ids, 0, next, 0, index);
+    System.arraycopy(ids, index + 1, next, index, ids.length - index - 1);
+    if (next.length == 0) {
+      byArticle.remove(articleId);
+    } else {
+      byArticle.put(articleId, next);
+    }
+    comments.remove(commentId);
+    return true;
+  }
+
+  public void removeArticle(long articleId) {
+    long[] ids = byArticle.remove(articleId);
+    if (ids == null) {
+      return;
+    }
+    for (long id : ids) {
+      comments.remove(id);
+    }
+  }
+
+  private long[] idsOf(long articleId) {
+    long[] ids = byArticle.get(articleId);
+    return ids == null ? NO_COMMENTS : ids;
+  }
+
+  private boolean ownedByOther(long articleId, long commentId) {
+    Comment existing = comments.get(commentId);
+    return existing != null && existing.getArticleId() != articleId;
+  }
+
+  private void advanceSequence(long id) {
+    idAllocator.advance(id);
+  }
+
+  // 다른 스레드가 먼저 예약한 블록 안의 id 를 직접 지정한 댓글이 쓰고 있을 수 있다.
+  private long nextId() {
+    long id;
+    do {
+      id = idAllocator.next();
+    } while (comments.get(id) != null);
+    return id;
+  }
+
+  /**
+   * 순회를 시작할 때의 id 배열을 기준으로 댓글을 읽는다.
+   * RandomAccess 를 구현하지 않아서 Jackson 도 get(i) 대신 iterator 로 직렬화한다.
+   */
+  private final class CommentListView extends AbstractList<Comment> {
+    private final long articleId;
+
+    CommentListView(long articleId) {
+      this.articleId = articleId;
+    }
+
+    @Override
+    public Comment get(int index) {
+      Comment comment = comments.get(idsOf(articleId)[index]);
+      if (comment == null) {
+        throw new IndexOutOfBoundsException("comment removed: " + index);
+      }
+      return comment;
+    }
+
+    @Override
+    public int size() {
+      return idsOf(articleId).length;
+    }
+
+    @Override
+    public Iterator<Comment> iterator() {
+      long[] ids = idsOf(articleId);
+      if (ids.length == 0) {
+        return Collections.emptyIterator();
+      }
+      return new Iterator<Comment>() {
+        private int index = 0;
+        // hasNext() 에서 그때그때 찾기 때문에 순회 도중 지워진 댓글은 건너뛴다.
+        private Comment next;
+
+        private Comment advance() {
+          while (index < ids.length) {
+            Comment comment = comments.get(ids[index++]);
+            if (comment != null) {
+              return comment;
+            }
+          }
+          return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+          if (next == null) {
+            next = advance();
+          }
+          return next != null;
+        }
+
+        @Override
+        public Comment next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          Comment current = next;
+          next = null;
+          return current;
+        }
+      };
+    }
+  }
+}
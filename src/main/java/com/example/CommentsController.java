@@ -0,0 +1,47 @@
+package com.example;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * 글에 달린 댓글을 하위 리소스로 다루는 컨트롤러
+ *
+ * 예전에는 댓글 하나를 바꾸려면 Article 전체를 PUT 해야 했지만, 이제는 댓글만 따로 조회/추가/삭제할 수 있다.
+ */
+@Controller
+public class CommentsController {
+  @Autowired
+  CommentsService commentsService;
+
+  // 예) /api/articles/1/comments?size=50&cursor=...
+  @RequestMapping(value = "/api/articles/{articleId}/comments", method = RequestMethod.GET)
+  @ResponseBody
+  public CommentPage index(@PathVariable(value = "articleId") long articleId,
+                           @RequestParam(value = "size", required = false) Integer size,
+                           @RequestParam(value = "cursor", required = false) String cursor) {
+    return commentsService.getComments(articleId, cursor, size);
+  }
+
+  @RequestMapping(value = "/api/articles/{articleId}/comments/{commentId}", method = RequestMethod.GET)
+  @ResponseBody
+  public Comment show(@PathVariable(value = "articleId") long articleId,
+                      @PathVariable(value = "commentId") long commentId) {
+    return commentsService.getComment(articleId, commentId);
+  }
+
+  @RequestMapping(value = "/api/articles/{articleId}/comments", method = RequestMethod.POST)
+  @ResponseStatus(HttpStatus.CREATED)
+  @ResponseBody
+  public Comment create(@PathVariable(value = "articleId") long articleId, @RequestBody Comment comment) {
+    return commentsService.createComment(articleId, comment);
+  }
+
+  @RequestMapping(value = "/api/articles/{articleId}/comments/{commentId}", method = RequestMethod.DELETE)
+  @ResponseStatus(HttpStatus.NO_CONTENT)
+  public void destroy(@PathVariable(value = "articleId") long articleId,
+                      @PathVariable(value = "commentId") long commentId) {
+    commentsService.deleteComment(articleId, commentId);
+  }
+}
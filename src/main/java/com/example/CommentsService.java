@@ -0,0 +1,72 @@
+package com.example;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * 댓글 하위 리소스(/api/articles/{articleId}/comments)를 처리하는 서비스
+ *
+ * 댓글 하나를 추가하거나 지울 때 Article 을 다시 저장하지 않고 ArticleRepository 의 댓글 인덱스만 바꾼다.
+ */
+@Service
+public class CommentsService {
+  @Autowired
+  ArticleRepository articleRepository;
+
+  /**
+   * @param cursor 이전 페이지의 nextCursor. null 이면 첫 페이지
+   * @param size   페이지 크기. null 이면 ArticlesService.DEFAULT_PAGE_SIZE
+   */
+  public CommentPage getComments(long articleId, String cursor, Integer size) {
+    int limit = size == null ? ArticlesService.DEFAULT_PAGE_SIZE : size;
+    if (limit < 1 || limit > ArticlesService.MAX_PAGE_SIZE) {
+      throw new BadRequestException("size must be between 1 and " + ArticlesService.MAX_PAGE_SIZE);
+    }
+    checkArticle(articleId);
+
+    long afterId = cursor == null ? 0L : ArticleCursor.decode(cursor);
+    List<Comment> comments = articleRepository.findComments(articleId, afterId, limit);
+
+    String nextCursor = null;
+    if (!comments.isEmpty()) {
+      long lastId = comments.get(comments.size() - 1).getId();
+      if (articleRepository.hasCommentsAfter(articleId, lastId)) {
+        nextCursor = ArticleCursor.encode(lastId);
+      }
+    }
+    return new CommentPage(comments, nextCursor);
+  }
+
+  public Comment getComment(long articleId, long commentId) {
+    checkArticle(articleId);
+    Comment comment = articleRepository.findComment(articleId, commentId);
+    if (comment == null) {
+      throw new CommentNotFoundException(articleId, commentId);
+    }
+    return comment;
+  }
+
+  // 댓글의 id 는 저장소가 붙이므로 요청에 들어온 id 는 무시한다.
+  public Comment createComment(long articleId, Comment comment) {
+    comment.setId(0L);
+    Comment saved = articleRepository.addComment(articleId, comment);
+    if (saved == null) {
+      throw new ArticleNotFoundException(articleId);
+    }
+    return saved;
+  }
+
+  // DELETE 는 멱등이기 때문에 이미 없는 댓글을 삭제해도 예외를 던지지 않는다. 글이 없을 때만 404 이다.
+  public void deleteComment(long articleId, long commentId) {
+    checkArticle(articleId);
+    articleRepository.deleteComment(articleId, commentId);
+  }
+
+  private void checkArticle(long articleId) {
+    if (articleRepository.findOne(articleId) == null) {
+      throw new ArticleNotFoundException(articleId);
+    }
+  }
+}
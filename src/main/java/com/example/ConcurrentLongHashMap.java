@@ -0,0 +1,350 @@
+package com.example;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * long 을 키로 사용하는 동시성 해시 맵
+ *
+ * java.util.concurrent.ConcurrentHashMap<Long, V> 는 키를 Long 으로 박싱해야하고 엔트리마다 Node 객체를 만든다.
+ * 이 맵은 키를 long[] 에 그대로 저장하는 open addressing(linear probing) 테이블을 여러개의 세그먼트로 나누고
+ * 세그먼트마다 StampedLock 을 사용한다. 조회는 대부분 락 없이 optimistic read 로 끝나고, 쓰기는 해당 세그먼트만 잠근다.
+ *
+ * null 값은 빈 슬롯을 의미하기 때문에 저장할 수 없다.
+ */
+public class ConcurrentLongHashMap<V> {
+  private static final int DEFAULT_CAPACITY = 256;
+  private static final int DEFAULT_CONCURRENCY = 16;
+  private static final float LOAD_FACTOR = 0.66f;
+
+  private final Segment<V>[] segments;
+  private final int segmentShift;
+
+  public ConcurrentLongHashMap() {
+    this(DEFAULT_CAPACITY, DEFAULT_CONCURRENCY);
+  }
+
+  @SuppressWarnings("unchecked")
+  public ConcurrentLongHashMap(int expectedItems, int concurrencyLevel) {
+    int segmentCount = tableSizeFor(Math.max(1, concurrencyLevel));
+    int perSegment = Math.max(4, (int) Math.ceil(expectedItems / (double) segmentCount / LOAD_FACTOR));
+
+    this.segments = new Segment[segmentCount];
+    this.segmentShift = Integer.numberOfTrailingZeros(segmentCount);
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment<>(tableSizeFor(perSegment), segmentShift);
+    }
+  }
+
+  public V get(long key) {
+    long h = hash(key);
+    return segmentFor(h).get(key, h >>> segmentShift);
+  }
+
+  public boolean containsKey(long key) {
+    return get(key) != null;
+  }
+
+  public V put(long key, V value) {
+    checkValue(value);
+    long h = hash(key);
+    return segmentFor(h).put(key, value, h >>> segmentShift, false);
+  }
+
+  public V putIfAbsent(long key, V value) {
+    checkValue(value);
+    long h = hash(key);
+    return segmentFor(h).put(key, value, h >>> segmentShift, true);
+  }
+
+  public V remove(long key) {
+    long h = hash(key);
+    return segmentFor(h).remove(key, null, h >>> segmentShift);
+  }
+
+  /**
+   * 현재 값이 expected 와 같은(==) 경우에만 삭제한다.
+   */
+  public boolean remove(long key, V expected) {
+    checkValue(expected);
+    long h = hash(key);
+    return segmentFor(h).remove(key, expected, h >>> segmentShift) != null;
+  }
+
+  /**
+   * 현재 값이 expected 와 같은(==) 경우에만 newValue 로 교체한다.
+   */
+  public boolean replace(long key, V expected, V newValue) {
+    checkValue(expected);
+    checkValue(newValue);
+    long h = hash(key);
+    return segmentFor(h).replace(key, expected, newValue, h >>> segmentShift);
+  }
+
+  public int size() {
+    int size = 0;
+    for (Segment<V> segment : segments) {
+      size += segment.size;
+    }
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  public void clear() {
+    for (Segment<V> segment : segments) {
+      segment.clear();
+    }
+  }
+
+  /**
+   * 세그먼트 단위로 읽기 락을 잡고 순회한다. 순서는 보장하지 않는다.
+   */
+  public void forEach(EntryConsumer<V> consumer) {
+    for (Segment<V> segment : segments) {
+      segment.forEach(consumer);
+    }
+  }
+
+  private Segment<V> segmentFor(long hash) {
+    return segments[(int) hash & (segments.length - 1)];
+  }
+
+  private static void checkValue(Object value) {
+    if (value == null) {
+      throw new NullPointerException("null value is not supported");
+    }
+  }
+
+  // MurmurHash3 의 finalizer 로 연속된 id 도 테이블에 고르게 퍼지도록 한다.
+  static long hash(long key) {
+    long h = key;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  private static int tableSizeFor(int n) {
+    int size = 1;
+    while (size < n) {
+      size <<= 1;
+    }
+    return size;
+  }
+
+  @FunctionalInterface
+  public interface EntryConsumer<V> {
+    void accept(long key, V value);
+  }
+
+  private static final class Segment<V> extends StampedLock {
+    // keys 와 values 는 쓰기 락 안에서 항상 함께 교체된다.
+    private volatile long[] keys;
+    private volatile Object[] values;
+    private volatile int size;
+    private int resizeThreshold;
+    private final int shift;
+
+    Segment(int capacity, int shift) {
+      this.shift = shift;
+      this.keys = new long[capacity];
+      this.values = new Object[capacity];
+      this.resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(long key, long hash) {
+      long stamp = tryOptimisticRead();
+      V value = find(keys, values, key, hash);
+      if (validate(stamp)) {
+        return value;
+      }
+
+      stamp = readLock();
+      try {
+        return find(keys, values, key, hash);
+      } finally {
+        unlockRead(stamp);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private V find(long[] keys, Object[] values, long key, long hash) {
+      // optimistic read 도중에 resize 가 일어나면 두 배열의 길이가 다를 수 있다. 이 경우 validate 가 실패하므로 null 로 넘긴다.
+      if (keys.length != values.length) {
+        return null;
+      }
+      int mask = keys.length - 1;
+      int index = (int) hash & mask;
+      for (int probe = 0; probe < keys.length; probe++) {
+        Object value = values[index];
+        if (value == null) {
+          return null;
+        }
+        if (keys[index] == key) {
+          return (V) value;
+        }
+        index = (index + 1) & mask;
+      }
+      return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    V put(long key, V value, long hash, boolean onlyIfAbsent) {
+      long stamp = writeLock();
+      try {
+        long[] keys = this.keys;
+        Object[] values = this.values;
+        int mask = keys.length - 1;
+        int index = (int) hash & mask;
+        while (values[index] != null) {
+          if (keys[index] == key) {
+            V previous = (V) values[index];
+            if (!onlyIfAbsent) {
+              values[index] = value;
+            }
+            return previous;
+          }
+          index = (index + 1) & mask;
+        }
+
+        keys[index] = key;
+        values[index] = value;
+        if (++size > resizeThreshold) {
+          rehash(keys.length << 1);
+        }
+        return null;
+      } finally {
+        unlockWrite(stamp);
+      }
+    }
+
+    boolean replace(long key, V expected, V newValue, long hash) {
+      long stamp = writeLock();
+      try {
+        int index = indexOf(key, hash);
+        if (index < 0 || values[index] != expected) {
+          return false;
+        }
+        values[index] = newValue;
+        return true;
+      } finally {
+        unlockWrite(stamp);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    V remove(long key, V expected, long hash) {
+      long stamp = writeLock();
+      try {
+        int index = indexOf(key, hash);
+        if (index < 0) {
+          return null;
+        }
+        V previous = (V) values[index];
+        if (expected != null && previous != expected) {
+          return null;
+        }
+        deleteAt(index);
+        size--;
+        return previous;
+      } finally {
+        unlockWrite(stamp);
+      }
+    }
+
+    void clear() {
+      long stamp = writeLock();
+      try {
+        int capacity = keys.length;
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.size = 0;
+      } finally {
+        unlockWrite(stamp);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(EntryConsumer<V> consumer) {
+      long stamp = readLock();
+      try {
+        long[] keys = this.keys;
+        Object[] values = this.values;
+        for (int i = 0; i < keys.length; i++) {
+          if (values[i] != null) {
+            consumer.accept(keys[i], (V) values[i]);
+          }
+        }
+      } finally {
+        unlockRead(stamp);
+      }
+    }
+
+    private int indexOf(long key, long hash) {
+      long[] keys = this.keys;
+      Object[] values = this.values;
+      int mask = keys.length - 1;
+      int index = (int) hash & mask;
+      while (values[index] != null) {
+        if (keys[index] == key) {
+          return index;
+        }
+        index = (index + 1) & mask;
+      }
+      return -1;
+    }
+
+    // linear probing 에서는 tombstone 을 남기지 않고 뒤따르는 엔트리를 앞으로 당겨서 probe 체인을 유지한다.
+    private void deleteAt(int index) {
+      long[] keys = this.keys;
+      Object[] values = this.values;
+      int mask = keys.length - 1;
+      int hole = index;
+      int next = (hole + 1) & mask;
+      while (values[next] != null) {
+        int home = homeIndex(keys[next], mask);
+        boolean movable = hole <= next
+          ? (home <= hole || home > next)
+          : (home <= hole && home > next);
+        if (movable) {
+          keys[hole] = keys[next];
+          values[hole] = values[next];
+          hole = next;
+        }
+        next = (next + 1) & mask;
+      }
+      keys[hole] = 0L;
+      values[hole] = null;
+    }
+
+    private int homeIndex(long key, int mask) {
+      return (int) (hash(key) >>> shift) & mask;
+    }
+
+    private void rehash(int newCapacity) {
+      long[] oldKeys = this.keys;
+      Object[] oldValues = this.values;
+      long[] newKeys = new long[newCapacity];
+      Object[] newValues = new Object[newCapacity];
+      int mask = newCapacity - 1;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldValues[i] != null) {
+          int index = homeIndex(oldKeys[i], mask);
+          while (newValues[index] != null) {
+            index = (index + 1) & mask;
+          }
+          newKeys[index] = oldKeys[i];
+          newValues[index] = oldValues[i];
+        }
+      }
+      this.keys = newKeys;
+      this.values = newValues;
+      this.resizeThreshold = (int) (newCapacity * LOAD_FACTOR);
+    }
+  }
+}
@@ -0,0 +1,14 @@
+package com.example;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 요청이 리소스의 현재 상태와 맞지 않을 때(JSON Patch 의 test 실패 등) 던지는 예외. 409 Conflict 로 응답한다.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class ConflictException extends RuntimeException {
+  public ConflictException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,194 @@
+package com.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 컨트롤러에서 던져진 예외를 모아서 fingerprint 별로 집계한다.
+ *
+ * 요청 스레드는 record() 에서 예외 객체와 요청 정보를 LossyRingBuffer 에 넣기만 한다. 스택 복사, 해시 계산, 맵 갱신은 모두
+ * 집계 스레드 하나가 drainIntervalMillis 마다 링 버퍼를 비우면서 한다. 그래서 초당 수천 개의 예외가 쏟아져도 요청 경로의 비용은
+ * 객체 하나를 만들고 순번 하나를 올리는 것뿐이고, 집계가 따라가지 못하면 기다리는 대신 오래된 예외를 버리고 dropped 로 센다.
+ *
+ * fingerprint 는 예외 타입과 스택 위쪽 topFrames 개 frame 의 클래스/메소드 이름으로 만든다. 줄 번호는 넣지 않아서 관계없는 코드를 고쳐도 바뀌지 않는다.
+ * 처음 보는 5xx fingerprint 는 스택 트레이스와 함께 한번만 로그로 남기고, 이후에는 횟수만 센다.
+ */
+@Component
+public class ErrorCapture {
+  private static final Logger logger = LoggerFactory.getLogger(ErrorCapture.class);
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  @Autowired
+  ErrorCaptureProperties properties;
+
+  private LossyRingBuffer<CapturedError> buffer;
+  // fingerprint 별 집계. 마지막으로 발생한 순서(access order)로 유지해서 넘치면 가장 오래 조용했던 것을 지운다. drain 락 안에서만 쓴다.
+  private Map<String, ErrorFingerprint> fingerprints;
+  private long aggregated;
+  private Thread drainer;
+  private volatile boolean running;
+
+  @PostConstruct
+  public void start() {
+    buffer = new LossyRingBuffer<>(properties.getBufferSize());
+    fingerprints = new LinkedHashMap<String, ErrorFingerprint>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, ErrorFingerprint> eldest) {
+        return size() > properties.getMaxFingerprints();
+      }
+    };
+    if (!properties.isEnabled()) {
+      return;
+    }
+    running = true;
+    drainer = new Thread(this::run, "error-capture");
+    drainer.setDaemon(true);
+    drainer.start();
+  }
+
+  /**
+   * 예외 하나를 기록한다. 락을 잡거나 기다리지 않는다.
+   *
+   * @param status  응답 상태 코드
+   * @param request "GET /api/articles/1" 같은 요청 설명
+   */
+  public void record(Throwable error, int status, String request) {
+    if (!properties.isEnabled()) {
+      return;
+    }
+    buffer.offer(new CapturedError(error, status, request, System.currentTimeMillis()));
+  }
+
+  private void run() {
+    long interval = TimeUnit.MILLISECONDS.toNanos(properties.getDrainIntervalMillis());
+    while (running) {
+      LockSupport.parkNanos(this, interval);
+      try {
+        drain();
+      } catch (RuntimeException e) {
+        logger.error("failed to aggregate captured errors", e);
+      }
+    }
+  }
+
+  /**
+   * 링 버퍼에 쌓인 예외를 집계한다. 집계 스레드와 조회가 같이 부르므로 락을 건다. 예외를 기록하는 쪽은 이 락과 관계없다.
+   */
+  synchronized int drain() {
+    return buffer.drain(this::aggregate, Integer.MAX_VALUE);
+  }
+
+  private void aggregate(CapturedError captured) {
+    Throwable error = captured.error;
+    StackTraceElement[] stack = error.getStackTrace();
+    String type = error.getClass().getName();
+
+    long hash = fnv(FNV_OFFSET, type);
+    List<String> topFrames = new ArrayList<>(properties.getTopFrames());
+    for (int i = 0; i < stack.length && topFrames.size() < properties.getTopFrames(); i++) {
+      StackTraceElement frame = stack[i];
+      if (isReflection(frame)) {
+        continue;
+      }
+      hash = fnv(fnv(hash, frame.getClassName()), frame.getMethodName());
+      topFrames.add(frame.getClassName() + "." + frame.getMethodName() + ":" + frame.getLineNumber());
+    }
+    String key = String.format("%016x", hash);
+
+    ErrorFingerprint fingerprint = fingerprints.get(key);
+    if (fingerprint == null) {
+      fingerprint = new ErrorFingerprint();
+      fingerprint.setFingerprint(key);
+      fingerprint.setType(type);
+      fingerprint.setFirstSeen(captured.time);
+      fingerprints.put(key, fingerprint);
+      if (captured.status >= 500) {
+        logger.error("new error {} ({} {})", key, captured.status, captured.request, error);
+      }
+    }
+    fingerprint.setCount(fingerprint.getCount() + 1);
+    fingerprint.setLastSeen(captured.time);
+    fingerprint.setMessage(error.getMessage());
+    fingerprint.setFrames(Collections.unmodifiableList(topFrames));
+    fingerprint.setLastStatus(captured.status);
+    fingerprint.setLastRequest(captured.request);
+    aggregated++;
+  }
+
+  // 리플렉션 호출 frame 은 같은 메소드를 여러 번 부르면 NativeMethodAccessorImpl 에서 GeneratedMethodAccessorN 으로 바뀌므로
+  // fingerprint 에 넣지 않는다. 그렇지 않으면 같은 예외가 호출 횟수에 따라 다른 fingerprint 로 나뉜다.
+  private static boolean isReflection(StackTraceElement frame) {
+    String className = frame.getClassName();
+    return className.startsWith("sun.reflect.") || className.startsWith("jdk.internal.reflect.") || className.startsWith("java.lang.reflect.");
+  }
+
+  // FNV-1a 64bit. 문자열 사이에 구분자(0)를 넣어서 "ab"+"c" 와 "a"+"bc" 가 같아지지 않게 한다.
+  private static long fnv(long hash, String value) {
+    for (int i = 0; i < value.length(); i++) {
+      hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+    }
+    return hash * FNV_PRIME;
+  }
+
+  /**
+   * 발생 횟수가 많은 순서로 limit 개. 같으면 최근에 발생한 것이 먼저다.
+   */
+  public synchronized List<ErrorFingerprint> top(int limit) {
+    drain();
+    List<ErrorFingerprint> sorted = new ArrayList<>(fingerprints.size());
+    for (ErrorFingerprint fingerprint : fingerprints.values()) {
+      sorted.add(fingerprint.copy());
+    }
+    sorted.sort(Comparator.comparingLong(ErrorFingerprint::getCount).reversed()
+      .thenComparing(Comparator.comparingLong(ErrorFingerprint::getLastSeen).reversed()));
+    return sorted.size() > limit ? new ArrayList<>(sorted.subList(0, limit)) : sorted;
+  }
+
+  public synchronized Map<String, Object> metrics() {
+    drain();
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("enabled", properties.isEnabled());
+    metrics.put("captured", buffer.offered());
+    metrics.put("aggregated", aggregated);
+    metrics.put("dropped", buffer.lost());
+    metrics.put("fingerprints", fingerprints.size());
+    return metrics;
+  }
+
+  @PreDestroy
+  public void close() throws InterruptedException {
+    running = false;
+    if (drainer != null) {
+      LockSupport.unpark(drainer);
+      drainer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+  }
+
+  private static final class CapturedError {
+    final Throwable error;
+    final int status;
+    final String request;
+    final long time;
+
+    CapturedError(Throwable error, int status, String request, long time) {
+      this.error = error;
+      this.status = status;
+      this.request = request;
+      this.time = time;
+    }
+  }
+}
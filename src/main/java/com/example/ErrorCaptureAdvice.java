@@ -0,0 +1,59 @@
+package com.example;
+
+import org.springframework.beans.TypeMismatchException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.validation.BindException;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.HttpMediaTypeNotSupportedException;
+import org.springframework.web.HttpRequestMethodNotSupportedException;
+import org.springframework.web.bind.MethodArgumentNotValidException;
+import org.springframework.web.bind.ServletRequestBindingException;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * 모든 컨트롤러의 예외를 ErrorCapture 에 기록하는 ControllerAdvice
+ *
+ * 예외를 기록한 뒤 같은 예외를 다시 던진다. Spring MVC 는 @ExceptionHandler 가 받은 예외를 그대로 다시 던지면
+ * 다음 HandlerExceptionResolver 로 넘기기 때문에, @ResponseStatus 예외의 상태 코드나 Spring Boot 의 오류 응답은 예전과 같다.
+ */
+@ControllerAdvice
+public class ErrorCaptureAdvice {
+  @Autowired
+  ErrorCapture errorCapture;
+
+  @ExceptionHandler(Exception.class)
+  public void capture(Exception e, HttpServletRequest request) throws Exception {
+    String uri = request.getQueryString() == null ? request.getRequestURI() : request.getRequestURI() + "?" + request.getQueryString();
+    errorCapture.record(e, status(e), request.getMethod() + " " + uri);
+    throw e;
+  }
+
+  // 다음 resolver 가 정할 응답 상태 코드. ResponseStatusExceptionResolver 와 DefaultHandlerExceptionResolver 가 처리하는 경우만 따로 본다.
+  static int status(Exception e) {
+    ResponseStatus responseStatus = AnnotatedElementUtils.findMergedAnnotation(e.getClass(), ResponseStatus.class);
+    if (responseStatus != null) {
+      return responseStatus.code().value();
+    }
+    if (e instanceof HttpRequestMethodNotSupportedException) {
+      return HttpStatus.METHOD_NOT_ALLOWED.value();
+    }
+    if (e instanceof HttpMediaTypeNotSupportedException) {
+      return HttpStatus.UNSUPPORTED_MEDIA_TYPE.value();
+    }
+    if (e instanceof HttpMediaTypeNotAcceptableException) {
+      return HttpStatus.NOT_ACCEPTABLE.value();
+    }
+    if (e instanceof ServletRequestBindingException || e instanceof TypeMismatchException || e instanceof HttpMessageNotReadableException
+      || e instanceof MethodArgumentNotValidException || e instanceof BindException) {
+      return HttpStatus.BAD_REQUEST.value();
+    }
+    return HttpStatus.INTERNAL_SERVER_ERROR.value();
+  }
+}
@@ -0,0 +1,66 @@
+package com.example;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * application.properties 의 errors.capture.* 설정
+ * 컨트롤러에서 던져진 예외를 모으는 ErrorCapture 의 설정이다.
+ */
+@Component
+@ConfigurationProperties(prefix = "errors.capture")
+public class ErrorCaptureProperties {
+  private boolean enabled = true;
+
+  // 집계를 기다리는 예외를 담는 링 버퍼 크기. 2의 거듭제곱으로 올림한다. 넘치면 가장 오래된 것부터 버린다(dropped).
+  private int bufferSize = 8192;
+
+  // fingerprint 에 넣을 스택의 위쪽 frame 수
+  private int topFrames = 5;
+
+  // 보관할 fingerprint 의 최대 수. 넘치면 가장 오래 전에 마지막으로 발생한 것을 지운다.
+  private int maxFingerprints = 1000;
+
+  // 집계 스레드가 링 버퍼를 비우는 주기(ms)
+  private long drainIntervalMillis = 100;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  public void setBufferSize(int bufferSize) {
+    this.bufferSize = bufferSize;
+  }
+
+  public int getTopFrames() {
+    return topFrames;
+  }
+
+  public void setTopFrames(int topFrames) {
+    this.topFrames = topFrames;
+  }
+
+  public int getMaxFingerprints() {
+    return maxFingerprints;
+  }
+
+  public void setMaxFingerprints(int maxFingerprints) {
+    this.maxFingerprints = maxFingerprints;
+  }
+
+  public long getDrainIntervalMillis() {
+    return drainIntervalMillis;
+  }
+
+  public void setDrainIntervalMillis(long drainIntervalMillis) {
+    this.drainIntervalMillis = drainIntervalMillis;
+  }
+}
@@ -0,0 +1,105 @@
+package com.example;
+
+import java.util.List;
+
+/**
+ * 같은 fingerprint(예외 타입 + 스택 위쪽 frame) 로 묶인 예외의 집계
+ */
+public class ErrorFingerprint {
+  private String fingerprint;
+  private String type;
+  private String message;
+  private List<String> frames;
+  private long count;
+  private long firstSeen;
+  private long lastSeen;
+  private int lastStatus;
+  private String lastRequest;
+
+  public ErrorFingerprint copy() {
+    ErrorFingerprint copy = new ErrorFingerprint();
+    copy.fingerprint = fingerprint;
+    copy.type = type;
+    copy.message = message;
+    copy.frames = frames;
+    copy.count = count;
+    copy.firstSeen = firstSeen;
+    copy.lastSeen = lastSeen;
+    copy.lastStatus = lastStatus;
+    copy.lastRequest = lastRequest;
+    return copy;
+  }
+
+  public String getFingerprint() {
+    return fingerprint;
+  }
+
+  public void setFingerprint(String fingerprint) {
+    this.fingerprint = fingerprint;
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  public void setType(String type) {
+    this.type = type;
+  }
+
+  // 마지막으로 발생한 예외의 메시지
+  public String getMessage() {
+    return message;
+  }
+
+  public void setMessage(String message) {
+    this.message = message;
+  }
+
+  public List<String> getFrames() {
+    return frames;
+  }
+
+  public void setFrames(List<String> frames) {
+    this.frames = frames;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public void setCount(long count) {
+    this.count = count;
+  }
+
+  public long getFirstSeen() {
+    return firstSeen;
+  }
+
+  public void setFirstSeen(long firstSeen) {
+    this.firstSeen = firstSeen;
+  }
+
+  public long getLastSeen() {
+    return lastSeen;
+  }
+
+  public void setLastSeen(long lastSeen) {
+    this.lastSeen = lastSeen;
+  }
+
+  public int getLastStatus() {
+    return lastStatus;
+  }
+
+  public void setLastStatus(int lastStatus) {
+    this.lastStatus = lastStatus;
+  }
+
+  public String getLastRequest() {
+    return lastRequest;
+  }
+
+  public void setLastRequest(String lastRequest) {
+    this.lastRequest = lastRequest;
+  }
+}
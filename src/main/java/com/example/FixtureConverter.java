@@ -0,0 +1,87 @@
+package com.example;
+
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * fixtures.yml 을 MappedArticleFixtures 의 바이너리 형식으로 변환하는 CLI
+ *
+ * mvn compile exec:java -Dexec.mainClass=com.example.FixtureConverter \
+ *   -Dexec.args="src/main/resources/fixtures.yml data/fixtures.bin"
+ *
+ * 만들어진 파일은 fixtures.binary 설정으로 지정하면 시작할 때 YAML 대신 사용된다.
+ */
+public class FixtureConverter {
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("usage: FixtureConverter <fixtures.yml> <fixtures.bin>");
+      System.exit(1);
+    }
+    Path input = Paths.get(args[0]);
+    Path output = Paths.get(args[1]);
+
+    List<Article> articles;
+    try (InputStream in = Files.newInputStream(input)) {
+      articles = readYaml(in);
+    }
+    if (output.getParent() != null) {
+      Files.createDirectories(output.getParent());
+    }
+    MappedArticleFixtures.write(output, articles);
+    System.out.println("converted " + articles.size() + " articles to " + output);
+  }
+
+  /**
+   * fixtures.yml 과 같은 구조(fixtures.articles[].comments[])의 YAML 을 Article 목록으로 읽는다.
+   */
+  @SuppressWarnings("unchecked")
+  static List<Article> readYaml(InputStream in) {
+    Map<String, Object> root = (Map<String, Object>) new Yaml().load(in);
+    Map<String, Object> fixtures = root == null ? null : (Map<String, Object>) root.get("fixtures");
+    List<Map<String, Object>> items = fixtures == null ? null : (List<Map<String, Object>>) fixtures.get("articles");
+    if (items == null) {
+      return Collections.emptyList();
+    }
+
+    List<Article> articles = new ArrayList<>(items.size());
+    for (Map<String, Object> item : items) {
+      Article article = new Article();
+      article.setId(toLong(item.get("id")));
+      article.setTitle(toString(item.get("title")));
+      article.setContent(toString(item.get("content")));
+
+      List<Map<String, Object>> commentItems = (List<Map<String, Object>>) item.get("comments");
+      if (commentItems != null) {
+        List<Comment> comments = new ArrayList<>(commentItems.size());
+        for (Map<String, Object> commentItem : commentItems) {
+          Comment comment = new Comment();
+          comment.setId(toLong(commentItem.get("id")));
+          comment.setArticleId(toLong(commentItem.get("articleId")));
+          comment.setContent(toString(commentItem.get("content")));
+          comments.add(comment);
+        }
+        article.setComments(comments);
+      }
+      articles.add(article);
+    }
+    return articles;
+  }
+
+  private static long toLong(Object value) {
+    return value == null ? 0L : ((Number) value).longValue();
+  }
+
+  private static String toString(Object value) {
+    return value == null ? null : value.toString();
+  }
+}
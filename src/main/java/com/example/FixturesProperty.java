@@ -16,7 +16,18 @@ public class FixturesProperty {
   @NestedConfigurationProperty
   private List<Article> articles = new ArrayList<>();
 
+  // FixtureConverter 로 만든 바이너리 fixture 파일 경로. 지정하면 articles 대신 이 파일을 메모리 맵으로 읽는다.
+  private String binary;
+
   public List<Article> getArticles() {
     return articles;
   }
+
+  public String getBinary() {
+    return binary;
+  }
+
+  public void setBinary(String binary) {
+    this.binary = binary;
+  }
 }
@@ -0,0 +1,82 @@
+package com.example;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.fragment.ElementAndAttributeNameFragmentSpec;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 템플릿 조각(th:fragment) 의 렌더링 결과를 모델 버전별로 캐시한다.
+ *
+ * spring.thymeleaf.cache 는 파싱한 템플릿만 캐시하기 때문에 글 목록처럼 반복이 많은 부분은 요청마다 다시 평가된다.
+ * 이 캐시는 조각마다 마지막으로 렌더링한 HTML 하나만 버전(예: 글 목록의 ETag)과 함께 들고 있다가,
+ * 같은 버전으로 다시 요청하면 그대로 돌려준다. 버전이 바뀌면 새로 렌더링해서 교체하므로 조각 수 이상으로 커지지 않는다.
+ *
+ * 렌더링한 HTML 은 페이지 템플릿에 th:utext 로 넣는다. 조각은 요청과 무관한 값만 써야 한다(th:field 같은 폼 바인딩은 안 된다).
+ */
+@Component
+public class FragmentCache {
+  @Autowired
+  TemplateEngine templateEngine;
+
+  @Autowired
+  FragmentCacheProperties properties;
+
+  private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * template 의 th:fragment="fragment" 조각을 렌더링한다.
+   *
+   * @param version   조각의 내용을 결정하는 모델의 버전. 같은 버전이면 variables 가 같은 HTML 을 만든다고 가정한다.
+   * @param variables 조각에서 쓰는 변수. 캐시에 있으면 쓰지 않는다.
+   */
+  public String render(String template, String fragment, String version, Map<String, ?> variables) {
+    if (!properties.isEnabled()) {
+      return process(template, fragment, variables);
+    }
+    String name = template + "::" + fragment;
+    Entry entry = entries.get(name);
+    if (entry != null && entry.version.equals(version)) {
+      hits.incrementAndGet();
+      return entry.html;
+    }
+    misses.incrementAndGet();
+    // 같은 버전을 여러 요청이 동시에 렌더링할 수 있지만 결과가 같으므로 락을 걸지 않는다.
+    String html = process(template, fragment, variables);
+    entries.put(name, new Entry(version, html));
+    return html;
+  }
+
+  private String process(String template, String fragment, Map<String, ?> variables) {
+    Context context = new Context(Locale.getDefault(), variables);
+    return templateEngine.process(template, context, new ElementAndAttributeNameFragmentSpec(null, "th:fragment", fragment, true));
+  }
+
+  public Map<String, Object> metrics() {
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("enabled", properties.isEnabled());
+    metrics.put("fragments", entries.size());
+    metrics.put("hits", hits.get());
+    metrics.put("misses", misses.get());
+    return metrics;
+  }
+
+  private static final class Entry {
+    final String version;
+    final String html;
+
+    Entry(String version, String html) {
+      this.version = version;
+      this.html = html;
+    }
+  }
+}
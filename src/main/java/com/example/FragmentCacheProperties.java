@@ -0,0 +1,23 @@
+package com.example;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * application.properties 의 views.fragment-cache.* 설정
+ * 템플릿의 비싼 부분을 렌더링한 HTML 을 모델 버전별로 재사용하는 FragmentCache 의 설정이다.
+ */
+@Component
+@ConfigurationProperties(prefix = "views.fragment-cache")
+public class FragmentCacheProperties {
+  // false 면 매번 렌더링한다. 템플릿을 고치면서 바로 확인해야 하는 dev 프로파일에서 끈다.
+  private boolean enabled = true;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+}
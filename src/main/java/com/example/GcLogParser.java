@@ -0,0 +1,243 @@
+package com.example;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * GC 로그를 한 줄씩 읽어서 stop-the-world pause 와 GC 전후 힙 크기를 Listener 로 넘기는 파서
+ *
+ * JDK 8 의 -XX:+PrintGCDetails 로그(Parallel, CMS, Serial, G1)와 JDK 9 이후의 통합 로그(-Xlog:gc)를 읽는다.
+ * 줄 하나만 보고 판단하기 때문에 파일을 통째로 읽지 않고 tail 하면서 넘겨주면 된다.
+ * G1 의 PrintGCDetails 로그는 pause 줄과 힙 크기 줄([Eden: ... Heap: ...])이 따로 나오므로 마지막 pause 의 시각만 기억한다.
+ * 다른 스레드의 출력이 끼어들어 GC 한 번이 두 줄로 나뉘면 앞줄을 기억했다가 다음 줄과 이어서 읽는다.
+ *
+ * - 시각은 JVM 시작 후 초(uptime)이고, uptime 이 없으면 날짜를 epoch 초로 쓴다.
+ * - CMS-concurrent-*, GC concurrent-*, Concurrent Cycle 같은 동시 단계는 pause 가 아니므로 건너뛴다.
+ * - 로케일에 따라 소수점이 ',' 로 찍히는 로그도 읽는다.
+ */
+class GcLogParser {
+  interface Listener {
+    /**
+     * @param time   uptime(초)
+     * @param micros pause 시간(us)
+     * @param full   Full GC 인지
+     */
+    void pause(double time, long micros, boolean full);
+
+    /**
+     * GC 전후의 크기(byte). young 영역 크기를 모르면 youngBefore, youngAfter 는 -1 이다.
+     */
+    void heap(double time, boolean full, long youngBefore, long youngAfter, long heapBefore, long heapAfter);
+  }
+
+  private static final Pattern UPTIME = Pattern.compile("(?:^|[\\s\\]])(\\d+[.,]\\d+): \\[");
+  private static final Pattern UNIFIED_UPTIME = Pattern.compile("\\[(\\d+(?:[.,]\\d+)?)(s|ms)\\]");
+  private static final Pattern DATE = Pattern.compile("(\\d{4}-\\d\\d-\\d\\dT\\d\\d:\\d\\d:\\d\\d\\.\\d{3}[+-]\\d{4})");
+  private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+  private static final String SIZE = "(\\d+(?:[.,]\\d+)?)([BKMG])";
+  // 65536K->10728K(251392K) 처럼 GC 전->후(용량)
+  private static final Pattern TRANSITION = Pattern.compile(SIZE + "->" + SIZE + "\\(" + SIZE + "\\)");
+  // G1: [Eden: 24.0M(24.0M)->0.0B(13.0M) Survivors: 0.0B->3072.0K Heap: 24.0M(256.0M)->4088.0K(256.0M)]
+  private static final Pattern G1_HEAP = Pattern.compile("\\[Eden: " + SIZE + "\\(" + SIZE + "\\)->" + SIZE + "\\(" + SIZE + "\\)"
+    + " Survivors: " + SIZE + "->" + SIZE + " Heap: " + SIZE + "\\(" + SIZE + "\\)->" + SIZE);
+  private static final Pattern UNIFIED_PAUSE = Pattern.compile(" Pause (.*?) (\\d+(?:[.,]\\d+)?)ms\\s*$");
+
+  private final Listener listener;
+  private double lastPauseTime = Double.NaN;
+  private String pending;
+  private boolean lastPauseFull;
+
+  GcLogParser(Listener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * 줄 하나를 읽는다. GC 이벤트를 찾으면 true
+   */
+  boolean parse(String line) {
+    if (line.startsWith("[") && line.contains("] GC(")) {
+      return parseUnified(line);
+    }
+    if (pending != null) {
+      // CMS 의 동시 단계 출력이 끼어들면 "[ParNew" 뒤에서 줄이 나뉘고 ": 14784K->1600K(14784K), ..." 가 다음 줄에 나온다.
+      String head = pending;
+      pending = null;
+      if (start(line) < 0 && !line.contains("[Eden: ")) {
+        line = head + line;
+      }
+    }
+    Matcher g1 = G1_HEAP.matcher(line);
+    if (g1.find()) {
+      return parseG1Heap(g1);
+    }
+    int start = start(line);
+    if (start < 0) {
+      return false;
+    }
+    // [Times: user=0.03 sys=0.01, real=0.01 secs] 는 pause 가 아니다.
+    int times = line.indexOf("[Times:", start);
+    String event = times < 0 ? line.substring(start) : line.substring(start, times);
+    int secs = event.lastIndexOf(" secs]");
+    if (secs < 0) {
+      pending = line.substring(0, start) + stripTrailing(event);
+      return false;
+    }
+    double time = time(line, start);
+    boolean full = line.startsWith("[Full GC", start);
+    listener.pause(time, Math.round(number(event, secs) * 1_000_000), full);
+    lastPauseTime = time;
+    lastPauseFull = full;
+
+    long youngBefore = -1;
+    long youngAfter = -1;
+    long heapBefore = -1;
+    long heapAfter = -1;
+    Matcher transition = TRANSITION.matcher(event);
+    while (transition.find()) {
+      String generation = generation(event, transition.start());
+      if (generation == null) {
+        if (heapBefore < 0) {
+          heapBefore = bytes(transition, 1);
+          heapAfter = bytes(transition, 3);
+        }
+      } else if (generation.equals("PSYoungGen") || generation.equals("ParNew") || generation.equals("DefNew")) {
+        youngBefore = bytes(transition, 1);
+        youngAfter = bytes(transition, 3);
+      }
+    }
+    if (heapBefore >= 0) {
+      listener.heap(time, full, youngBefore, youngAfter, heapBefore, heapAfter);
+      // G1 의 Full GC 는 이 줄과 [Eden: ...] 줄에 모두 힙 크기가 나온다.
+      lastPauseTime = Double.NaN;
+    }
+    return true;
+  }
+
+  // "[GC concurrent-*" 를 뺀 첫 "[GC" 나 "[Full GC" 의 위치
+  private static int start(String line) {
+    int from = 0;
+    while (true) {
+      int gc = line.indexOf("[GC", from);
+      int fullGc = line.indexOf("[Full GC", from);
+      int start = gc < 0 ? fullGc : fullGc < 0 ? gc : Math.min(gc, fullGc);
+      if (start < 0 || !line.startsWith("[GC concurrent", start)) {
+        return start;
+      }
+      from = start + 1;
+    }
+  }
+
+  private static String stripTrailing(String value) {
+    int end = value.length();
+    while (end > 0 && Character.isWhitespace(value.charAt(end - 1))) {
+      end--;
+    }
+    return value.substring(0, end);
+  }
+
+  private boolean parseG1Heap(Matcher g1) {
+    if (Double.isNaN(lastPauseTime)) {
+      return false;
+    }
+    long edenBefore = bytes(g1, 1);
+    long edenAfter = bytes(g1, 5);
+    long survivorsBefore = bytes(g1, 9);
+    long survivorsAfter = bytes(g1, 11);
+    listener.heap(lastPauseTime, lastPauseFull, edenBefore + survivorsBefore, edenAfter + survivorsAfter, bytes(g1, 13), bytes(g1, 17));
+    // 같은 pause 의 힙 크기를 두 번 넘기지 않는다.
+    lastPauseTime = Double.NaN;
+    return true;
+  }
+
+  // [1.234s][info][gc] GC(0) Pause Young (Normal) (G1 Evacuation Pause) 24M->4M(256M) 12.345ms
+  private boolean parseUnified(String line) {
+    Matcher pause = UNIFIED_PAUSE.matcher(line);
+    if (!pause.find()) {
+      return false;
+    }
+    Matcher uptime = UNIFIED_UPTIME.matcher(line);
+    double time;
+    if (uptime.find()) {
+      time = parseDouble(uptime.group(1));
+      if (uptime.group(2).equals("ms")) {
+        time /= 1000;
+      }
+    } else {
+      time = time(line, line.length());
+    }
+    boolean full = pause.group(1).startsWith("Full");
+    listener.pause(time, Math.round(parseDouble(pause.group(2)) * 1000), full);
+    Matcher transition = TRANSITION.matcher(pause.group(1));
+    if (transition.find()) {
+      listener.heap(time, full, -1, -1, bytes(transition, 1), bytes(transition, 3));
+    }
+    return true;
+  }
+
+  // start 에서 시작하는 이벤트 바로 앞의 uptime. uptime 이 없으면(-XX:+PrintGCDateStamps 만 켠 경우) 날짜를 epoch 초로 쓴다.
+  private static double time(String line, int start) {
+    Matcher uptime = UPTIME.matcher(line);
+    String found = null;
+    while (uptime.find() && uptime.end() <= start + 1) {
+      found = uptime.group(1);
+    }
+    if (found != null) {
+      return parseDouble(found);
+    }
+    Matcher date = DATE.matcher(line);
+    if (date.find()) {
+      try {
+        return OffsetDateTime.parse(date.group(1), DATE_FORMAT).toInstant().toEpochMilli() / 1000.0;
+      } catch (DateTimeParseException e) {
+        // 아래에서 0 으로 처리한다.
+      }
+    }
+    return 0;
+  }
+
+  // "[ParNew: 69952K->..." 처럼 바로 앞이 "이름: " 이면 세대 이름을, 아니면(전체 힙) null 을 돌려준다.
+  private static String generation(String event, int start) {
+    int end = start;
+    while (end > 0 && event.charAt(end - 1) == ' ') {
+      end--;
+    }
+    if (end == 0 || event.charAt(end - 1) != ':') {
+      return null;
+    }
+    int begin = end - 1;
+    while (begin > 0 && event.charAt(begin - 1) != '[' && event.charAt(begin - 1) != ' ') {
+      begin--;
+    }
+    return event.substring(begin, end - 1);
+  }
+
+  // ", 0.0123456 secs]" 에서 숫자 부분
+  private static double number(String event, int end) {
+    int begin = end;
+    while (begin > 0 && (Character.isDigit(event.charAt(begin - 1)) || event.charAt(begin - 1) == '.' || event.charAt(begin - 1) == ',')) {
+      begin--;
+    }
+    return parseDouble(event.substring(begin, end));
+  }
+
+  private static long bytes(Matcher matcher, int group) {
+    double value = parseDouble(matcher.group(group));
+    switch (matcher.group(group + 1).charAt(0)) {
+      case 'K':
+        return Math.round(value * 1024);
+      case 'M':
+        return Math.round(value * 1024 * 1024);
+      case 'G':
+        return Math.round(value * 1024 * 1024 * 1024);
+      default:
+        return Math.round(value);
+    }
+  }
+
+  private static double parseDouble(String value) {
+    return Double.parseDouble(value.replace(',', '.'));
+  }
+}
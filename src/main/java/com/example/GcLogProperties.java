@@ -0,0 +1,117 @@
+package com.example;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * application.properties 의 gc.log.* 설정
+ * JVM 의 GC 로그를 tail 하면서 pause 시간을 집계하는 GcLogTailer 의 설정이다.
+ */
+@Component
+@ConfigurationProperties(prefix = "gc.log")
+public class GcLogProperties {
+  private boolean enabled = true;
+
+  // 읽을 GC 로그 파일. 비워 두면 JVM 옵션의 -Xloggc:<file> 이나 -Xlog:gc...:file=<file> 에서 찾는다.
+  private String file;
+
+  // true 면 파일의 처음부터, false 면 시작할 때의 끝부터 읽는다.
+  private boolean fromBeginning = true;
+
+  // 새 내용이 있는지 확인하는 최대 주기(ms). WatchService 가 알려주면 그 전에 읽는다.
+  private long pollIntervalMillis = 1000;
+
+  // 파일을 읽는 버퍼 크기. 로그 크기와 관계없이 이 만큼만 메모리에 올린다.
+  private int readBufferBytes = 65536;
+
+  // 이 보다 긴 줄은 잘라서 읽는다.
+  private int maxLineBytes = 16384;
+
+  // pause 분포와 속도를 구하는 최근 구간(초)과 그 구간을 나누는 조각 수
+  private long windowSeconds = 300;
+  private int windowSlices = 30;
+
+  // 최근 구간의 p99 pause(ms)나 GC 부하(pause 시간 / 경과 시간, %)가 넘으면 경고한다. 0 이면 보지 않는다.
+  private double alertP99PauseMillis = 500;
+  private double alertOverheadPercent = 10;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public String getFile() {
+    return file;
+  }
+
+  public void setFile(String file) {
+    this.file = file;
+  }
+
+  public boolean isFromBeginning() {
+    return fromBeginning;
+  }
+
+  public void setFromBeginning(boolean fromBeginning) {
+    this.fromBeginning = fromBeginning;
+  }
+
+  public long getPollIntervalMillis() {
+    return pollIntervalMillis;
+  }
+
+  public void setPollIntervalMillis(long pollIntervalMillis) {
+    this.pollIntervalMillis = pollIntervalMillis;
+  }
+
+  public int getReadBufferBytes() {
+    return readBufferBytes;
+  }
+
+  public void setReadBufferBytes(int readBufferBytes) {
+    this.readBufferBytes = readBufferBytes;
+  }
+
+  public int getMaxLineBytes() {
+    return maxLineBytes;
+  }
+
+  public void setMaxLineBytes(int maxLineBytes) {
+    this.maxLineBytes = maxLineBytes;
+  }
+
+  public long getWindowSeconds() {
+    return windowSeconds;
+  }
+
+  public void setWindowSeconds(long windowSeconds) {
+    this.windowSeconds = windowSeconds;
+  }
+
+  public int getWindowSlices() {
+    return windowSlices;
+  }
+
+  public void setWindowSlices(int windowSlices) {
+    this.windowSlices = windowSlices;
+  }
+
+  public double getAlertP99PauseMillis() {
+    return alertP99PauseMillis;
+  }
+
+  public void setAlertP99PauseMillis(double alertP99PauseMillis) {
+    this.alertP99PauseMillis = alertP99PauseMillis;
+  }
+
+  public double getAlertOverheadPercent() {
+    return alertOverheadPercent;
+  }
+
+  public void setAlertOverheadPercent(double alertOverheadPercent) {
+    this.alertOverheadPercent = alertOverheadPercent;
+  }
+}
@@ -0,0 +1,390 @@
+package com.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JVM 의 GC 로그 파일을 tail 하면서 GcStats 로 pause 분포, GC 부하, 할당/승격 속도를 집계한다.
+ *
+ * 파일은 FileChannel 로 readBufferBytes 씩 이어서 읽고 줄 단위로 GcLogParser 에 넘긴다. 읽은 위치만 기억하므로 몇 GB 짜리 로그도
+ * 메모리에 올리지 않는다. 디렉토리를 WatchService 로 지켜보다가 바뀌면 바로 읽고, 알림이 없어도 pollIntervalMillis 마다 확인한다.
+ *
+ * 로그가 바뀌는 경우
+ * - 같은 이름의 새 파일(inode 가 다름): 지금 파일을 끝까지 읽고 새 파일의 처음부터 읽는다.
+ * - -XX:+UseGCLogFileRotation: JVM 이 gc.log.N.current 에 쓰므로 가장 최근에 바뀐 .current 파일을 따라간다.
+ * - 파일이 읽은 위치보다 작아짐(truncate, JVM 재시작): 처음부터 다시 읽는다.
+ *
+ * 읽을 때마다 최근 구간의 p99 pause 와 GC 부하를 기준과 비교해서, 넘으면 경고 로그를 한번 남기고 내려가면 해제 로그를 남긴다.
+ * 창은 로그에 찍힌 시각으로 움직이므로 GC 가 없으면 마지막 GC 의 시각에 머문다.
+ */
+@Component
+public class GcLogTailer {
+  private static final Logger logger = LoggerFactory.getLogger(GcLogTailer.class);
+  private static final int RECENT_ALERTS = 20;
+
+  @Autowired
+  GcLogProperties properties;
+
+  private Path path;
+  private GcStats stats;
+  private GcLogParser parser;
+  private WatchService watchService;
+  private Thread tailer;
+  private volatile boolean running;
+
+  // 아래는 poll() 안에서만 바꾼다.
+  private Path current;
+  private FileChannel channel;
+  private Object fileKey;
+  private volatile long position;
+  private ByteBuffer buffer;
+  private byte[] line;
+  private int lineLength;
+
+  private volatile long bytesRead;
+  private volatile long lines;
+  private volatile long events;
+  private volatile long rotations;
+  private volatile long truncations;
+
+  private volatile boolean p99Firing;
+  private volatile boolean overheadFiring;
+  private final Deque<Map<String, Object>> recentAlerts = new ArrayDeque<>();
+
+  @PostConstruct
+  public void start() throws IOException {
+    stats = new GcStats(properties.getWindowSeconds(), properties.getWindowSlices());
+    parser = new GcLogParser(stats);
+    buffer = ByteBuffer.allocate(properties.getReadBufferBytes());
+    line = new byte[Math.min(256, properties.getMaxLineBytes())];
+    if (!properties.isEnabled()) {
+      return;
+    }
+    String file = properties.getFile() != null && !properties.getFile().isEmpty()
+      ? properties.getFile() : logFile(ManagementFactory.getRuntimeMXBean().getInputArguments());
+    if (file == null) {
+      logger.info("GC log is not configured. Start the JVM with -Xloggc:<file> (JDK 8) or -Xlog:gc:file=<file>, or set gc.log.file");
+      return;
+    }
+    path = Paths.get(file).toAbsolutePath();
+    try {
+      watchService = path.getFileSystem().newWatchService();
+      path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    } catch (IOException e) {
+      // 디렉토리가 아직 없으면 주기적으로만 확인한다.
+      logger.info("cannot watch {}, polling every {}ms", path.getParent(), properties.getPollIntervalMillis());
+      closeWatchService();
+    }
+    if (!properties.isFromBeginning()) {
+      Path existing = currentFile();
+      if (existing != null) {
+        open(existing);
+        position = channel.size();
+      }
+    }
+    running = true;
+    tailer = new Thread(this::run, "gc-log-tailer");
+    tailer.setDaemon(true);
+    tailer.setPriority(Thread.MIN_PRIORITY);
+    tailer.start();
+  }
+
+  /**
+   * JVM 옵션에서 GC 로그 파일을 찾는다. 같은 옵션이 여러 번 있으면 JVM 처럼 마지막 것을 쓴다.
+   *
+   * @return 파일로 남기지 않거나 알 수 없으면(%t) null
+   */
+  static String logFile(List<String> arguments) {
+    String file = null;
+    for (String argument : arguments) {
+      if (argument.startsWith("-Xloggc:")) {
+        file = argument.substring("-Xloggc:".length());
+      } else if (argument.startsWith("-Xlog:")) {
+        // -Xlog:gc*:file=gc.log:time,uptime:filecount=5,filesize=10m
+        String[] parts = argument.substring("-Xlog:".length()).split(":");
+        if (parts.length < 2 || !parts[0].contains("gc")) {
+          continue;
+        }
+        String output = parts[1].startsWith("file=") ? parts[1].substring("file=".length()) : parts[1];
+        if (!output.isEmpty() && !output.equals("stdout") && !output.equals("stderr")) {
+          file = output;
+        }
+      }
+    }
+    if (file == null) {
+      return null;
+    }
+    String name = ManagementFactory.getRuntimeMXBean().getName();
+    file = file.replace("%p", name.contains("@") ? name.substring(0, name.indexOf('@')) : name);
+    if (file.contains("%t")) {
+      logger.info("GC log file name {} contains %t, set gc.log.file to the actual file", file);
+      return null;
+    }
+    return file;
+  }
+
+  private void run() {
+    while (running) {
+      try {
+        poll();
+      } catch (IOException e) {
+        if (!running) {
+          return;
+        }
+        logger.warn("failed to read GC log {}", current, e);
+        closeChannel();
+      }
+      try {
+        if (watchService == null) {
+          Thread.sleep(properties.getPollIntervalMillis());
+        } else {
+          WatchKey key = watchService.poll(properties.getPollIntervalMillis(), TimeUnit.MILLISECONDS);
+          if (key != null) {
+            // 어떤 파일이 바뀌었는지는 poll() 에서 다시 확인하므로 알림은 비우기만 한다.
+            key.pollEvents();
+            key.reset();
+          }
+        }
+      } catch (InterruptedException | ClosedWatchServiceException e) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * 지금 파일을 끝까지 읽고, 파일이 바뀌었으면 새 파일로 넘어간다. 경고 기준도 여기서 확인한다.
+   */
+  synchronized void poll() throws IOException {
+    if (path == null) {
+      return;
+    }
+    if (channel != null) {
+      read();
+    }
+    Path file = currentFile();
+    if (file != null) {
+      BasicFileAttributes attributes;
+      try {
+        attributes = Files.readAttributes(file, BasicFileAttributes.class);
+      } catch (NoSuchFileException e) {
+        return;
+      }
+      Object key = attributes.fileKey();
+      if (channel == null) {
+        open(file);
+        read();
+      } else if (!file.equals(current) || key != null && !key.equals(fileKey)) {
+        rotations++;
+        logger.info("GC log rotated to {}", file);
+        open(file);
+        read();
+      } else if (attributes.size() < position) {
+        truncations++;
+        logger.info("GC log {} was truncated, reading from the beginning", file);
+        position = 0;
+        lineLength = 0;
+        read();
+      }
+    }
+    evaluateAlerts();
+  }
+
+  private Path currentFile() throws IOException {
+    if (Files.exists(path)) {
+      return path;
+    }
+    // -XX:+UseGCLogFileRotation 이면 지정한 이름에 .0.current, .1.current ... 를 붙인 파일에 쓴다.
+    Path newest = null;
+    FileTime newestTime = null;
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(path.getParent(), path.getFileName() + ".*.current")) {
+      for (Path file : files) {
+        FileTime time = Files.getLastModifiedTime(file);
+        if (newestTime == null || time.compareTo(newestTime) > 0) {
+          newest = file;
+          newestTime = time;
+        }
+      }
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+    return newest;
+  }
+
+  private void open(Path file) throws IOException {
+    closeChannel();
+    channel = FileChannel.open(file, StandardOpenOption.READ);
+    current = file;
+    fileKey = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+    position = 0;
+    lineLength = 0;
+  }
+
+  private void read() throws IOException {
+    while (true) {
+      buffer.clear();
+      int read = channel.read(buffer, position);
+      if (read <= 0) {
+        return;
+      }
+      position += read;
+      bytesRead += read;
+      byte[] bytes = buffer.array();
+      int start = 0;
+      for (int i = 0; i < read; i++) {
+        if (bytes[i] == '\n') {
+          append(bytes, start, i - start);
+          endLine();
+          start = i + 1;
+        }
+      }
+      // 아직 줄이 끝나지 않았으면 다음 읽기까지 남겨둔다.
+      append(bytes, start, read - start);
+    }
+  }
+
+  private void append(byte[] bytes, int offset, int length) {
+    int copy = Math.min(length, properties.getMaxLineBytes() - lineLength);
+    if (copy <= 0) {
+      return;
+    }
+    if (lineLength + copy > line.length) {
+      line = Arrays.copyOf(line, Math.min(properties.getMaxLineBytes(), Math.max(line.length * 2, lineLength + copy)));
+    }
+    System.arraycopy(bytes, offset, line, lineLength, copy);
+    lineLength += copy;
+  }
+
+  private void endLine() {
+    int length = lineLength > 0 && line[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+    lineLength = 0;
+    lines++;
+    // GC 로그는 ASCII 이다.
+    if (parser.parse(new String(line, 0, length, StandardCharsets.ISO_8859_1))) {
+      events++;
+    }
+  }
+
+  private void evaluateAlerts() {
+    GcStats.Window window = stats.window();
+    p99Firing = alert("p99-pause-millis", p99Firing, window.percentileMicros(0.99) / 1000.0, properties.getAlertP99PauseMillis(), window);
+    overheadFiring = alert("gc-overhead-percent", overheadFiring, window.overheadPercent(), properties.getAlertOverheadPercent(), window);
+  }
+
+  private boolean alert(String name, boolean firing, double value, double threshold, GcStats.Window window) {
+    boolean over = threshold > 0 && value > threshold;
+    if (over == firing) {
+      return firing;
+    }
+    if (over) {
+      logger.warn("GC alert {}: {} is over {} in the last {}s of {}", name, value, threshold, properties.getWindowSeconds(), current);
+    } else {
+      logger.info("GC alert {} resolved: {} is within {}", name, value, threshold);
+    }
+    Map<String, Object> alert = new LinkedHashMap<>();
+    alert.put("alert", name);
+    alert.put("state", over ? "firing" : "resolved");
+    alert.put("value", value);
+    alert.put("threshold", threshold);
+    alert.put("logTime", window.latest);
+    alert.put("at", System.currentTimeMillis());
+    synchronized (recentAlerts) {
+      recentAlerts.addFirst(alert);
+      if (recentAlerts.size() > RECENT_ALERTS) {
+        recentAlerts.removeLast();
+      }
+    }
+    return over;
+  }
+
+  public Map<String, Object> metrics() {
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("enabled", properties.isEnabled());
+    metrics.put("file", current != null ? current.toString() : path != null ? path.toString() : null);
+    metrics.put("position", position);
+    metrics.put("bytesRead", bytesRead);
+    metrics.put("lines", lines);
+    metrics.put("events", events);
+    metrics.put("rotations", rotations);
+    metrics.put("truncations", truncations);
+    metrics.putAll(stats.metrics());
+    Map<String, Object> alerts = new LinkedHashMap<>();
+    List<String> active = new ArrayList<>();
+    if (p99Firing) {
+      active.add("p99-pause-millis");
+    }
+    if (overheadFiring) {
+      active.add("gc-overhead-percent");
+    }
+    alerts.put("active", active);
+    synchronized (recentAlerts) {
+      alerts.put("recent", new ArrayList<>(recentAlerts));
+    }
+    metrics.put("alerts", alerts);
+    return metrics;
+  }
+
+  private void closeChannel() {
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        // 읽기만 했으므로 무시한다.
+      }
+      channel = null;
+    }
+  }
+
+  private void closeWatchService() {
+    if (watchService != null) {
+      try {
+        watchService.close();
+      } catch (IOException e) {
+        // 무시한다.
+      }
+      watchService = null;
+    }
+  }
+
+  @PreDestroy
+  public void close() throws InterruptedException {
+    running = false;
+    if (tailer != null) {
+      tailer.interrupt();
+      tailer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+    closeWatchService();
+    synchronized (this) {
+      closeChannel();
+    }
+  }
+}
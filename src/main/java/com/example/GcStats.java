@@ -0,0 +1,272 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GcLogParser 가 넘겨주는 GC 이벤트로 최근 windowSeconds 동안의 pause 분포, GC 부하, 할당/승격 속도를 구한다.
+ *
+ * 시간은 벽시계가 아니라 GC 로그에 찍힌 시각을 쓴다. 그래서 오래된 로그를 처음부터 다시 읽어도 그때의 속도가 나온다.
+ * 창(window)은 slices 개의 시간 조각으로 나눈 링이고, 조각마다 pause 히스토그램과 합계를 가진다.
+ * 새 조각에 들어가면 창에서 밀려난 조각을 지우고 다시 쓰기 때문에 이벤트 수와 관계없이 메모리가 일정하다.
+ *
+ * pause 히스토그램의 구간은 10us 부터 2^(1/8) 배씩 커지므로 백분위의 오차는 9% 이내이다.
+ *
+ * - 할당량: 이번 GC 직전의 young(모르면 전체 힙) 크기 - 지난 GC 직후의 크기
+ * - 승격량: young 에서 줄어든 크기 - 전체 힙에서 줄어든 크기 (young GC 만)
+ * - GC 부하: 창 안의 pause 시간 합 / 창이 덮는 시간
+ *
+ * 로그의 시각이 한 조각 이상 거꾸로 가면 JVM 이 다시 시작한 것으로 보고 창을 비운다. 누적 합계(total)는 남긴다.
+ */
+class GcStats implements GcLogParser.Listener {
+  private static final long[] BOUNDS;
+
+  static {
+    List<Long> bounds = new ArrayList<>();
+    double bound = 10;
+    // 10분을 넘는 pause 는 마지막 구간에 넣는다.
+    while (bound < 600_000_000) {
+      long rounded = (long) Math.ceil(bound);
+      if (bounds.isEmpty() || bounds.get(bounds.size() - 1) < rounded) {
+        bounds.add(rounded);
+      }
+      bound *= Math.pow(2, 1.0 / 8);
+    }
+    bounds.add(Long.MAX_VALUE);
+    BOUNDS = new long[bounds.size()];
+    for (int i = 0; i < BOUNDS.length; i++) {
+      BOUNDS[i] = bounds.get(i);
+    }
+  }
+
+  private final double windowSeconds;
+  private final double sliceSeconds;
+  private final Slice[] slices;
+  private final Slice total = new Slice();
+
+  // 창을 비운 뒤 처음 본 시각과 가장 최근 시각
+  private double since = Double.NaN;
+  private double latest = Double.NaN;
+  private long lastYoungAfter = -1;
+  private long lastHeapAfter = -1;
+  private long resets;
+
+  GcStats(long windowSeconds, int slices) {
+    if (windowSeconds <= 0 || slices < 2) {
+      throw new IllegalArgumentException("windowSeconds must be positive and slices at least 2");
+    }
+    this.windowSeconds = windowSeconds;
+    this.sliceSeconds = (double) windowSeconds / slices;
+    this.slices = new Slice[slices];
+    for (int i = 0; i < slices; i++) {
+      this.slices[i] = new Slice();
+    }
+  }
+
+  @Override
+  public synchronized void pause(double time, long micros, boolean full) {
+    Slice slice = advance(time);
+    slice.pause(micros, full);
+    total.pause(micros, full);
+  }
+
+  @Override
+  public synchronized void heap(double time, boolean full, long youngBefore, long youngAfter, long heapBefore, long heapAfter) {
+    Slice slice = advance(time);
+    long allocated = -1;
+    if (youngBefore >= 0 && lastYoungAfter >= 0) {
+      allocated = youngBefore - lastYoungAfter;
+    } else if (lastHeapAfter >= 0) {
+      allocated = heapBefore - lastHeapAfter;
+    }
+    if (allocated > 0) {
+      slice.allocated += allocated;
+      total.allocated += allocated;
+    }
+    if (!full && youngBefore >= 0 && youngAfter >= 0) {
+      long promoted = (youngBefore - youngAfter) - (heapBefore - heapAfter);
+      if (promoted > 0) {
+        slice.promoted += promoted;
+        total.promoted += promoted;
+      }
+    }
+    lastYoungAfter = youngAfter;
+    lastHeapAfter = heapAfter;
+  }
+
+  private Slice advance(double time) {
+    if (Double.isNaN(latest) || time < latest - sliceSeconds) {
+      if (!Double.isNaN(latest)) {
+        resets++;
+        for (Slice slice : slices) {
+          slice.clear(Long.MIN_VALUE);
+        }
+        lastYoungAfter = -1;
+        lastHeapAfter = -1;
+      }
+      since = time;
+      latest = time;
+    }
+    latest = Math.max(latest, time);
+    long index = (long) Math.floor(time / sliceSeconds);
+    Slice slice = slices[(int) Math.floorMod(index, (long) slices.length)];
+    if (slice.index != index) {
+      slice.clear(index);
+    }
+    return slice;
+  }
+
+  /**
+   * 지금 창의 통계
+   */
+  synchronized Window window() {
+    Window window = new Window();
+    window.buckets = new long[BOUNDS.length];
+    if (Double.isNaN(latest)) {
+      return window;
+    }
+    long latestIndex = (long) Math.floor(latest / sliceSeconds);
+    long oldestIndex = latestIndex - slices.length + 1;
+    for (Slice slice : slices) {
+      if (slice.index < oldestIndex || slice.index > latestIndex) {
+        continue;
+      }
+      window.pauses += slice.pauses;
+      window.fullPauses += slice.fullPauses;
+      window.pauseMicros += slice.pauseMicros;
+      window.maxPauseMicros = Math.max(window.maxPauseMicros, slice.maxPauseMicros);
+      window.allocated += slice.allocated;
+      window.promoted += slice.promoted;
+      for (int i = 0; i < BOUNDS.length; i++) {
+        window.buckets[i] += slice.buckets[i];
+      }
+    }
+    window.latest = latest;
+    window.start = Math.max(since, oldestIndex * sliceSeconds);
+    return window;
+  }
+
+  synchronized Map<String, Object> metrics() {
+    Window window = window();
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("windowSeconds", windowSeconds);
+    metrics.put("logTime", Double.isNaN(window.latest) ? null : window.latest);
+    metrics.put("coveredSeconds", window.span());
+    metrics.put("pauses", window.pauses);
+    metrics.put("fullPauses", window.fullPauses);
+    Map<String, Object> pauseMillis = new LinkedHashMap<>();
+    pauseMillis.put("p50", millis(window.percentileMicros(0.5)));
+    pauseMillis.put("p90", millis(window.percentileMicros(0.9)));
+    pauseMillis.put("p99", millis(window.percentileMicros(0.99)));
+    pauseMillis.put("p999", millis(window.percentileMicros(0.999)));
+    pauseMillis.put("max", millis(window.maxPauseMicros));
+    pauseMillis.put("total", millis(window.pauseMicros));
+    metrics.put("pauseMillis", pauseMillis);
+    metrics.put("gcOverheadPercent", window.overheadPercent());
+    metrics.put("allocationRateBytesPerSecond", window.rate(window.allocated));
+    metrics.put("promotionRateBytesPerSecond", window.rate(window.promoted));
+    List<Map<String, Object>> histogram = new ArrayList<>();
+    for (int i = 0; i < BOUNDS.length; i++) {
+      if (window.buckets[i] > 0) {
+        Map<String, Object> bucket = new LinkedHashMap<>();
+        bucket.put("leMillis", i == BOUNDS.length - 1 ? null : millis(BOUNDS[i]));
+        bucket.put("count", window.buckets[i]);
+        histogram.add(bucket);
+      }
+    }
+    metrics.put("histogram", histogram);
+
+    Map<String, Object> totals = new LinkedHashMap<>();
+    totals.put("pauses", total.pauses);
+    totals.put("fullPauses", total.fullPauses);
+    totals.put("pauseMillis", millis(total.pauseMicros));
+    totals.put("maxPauseMillis", millis(total.maxPauseMicros));
+    totals.put("allocatedBytes", total.allocated);
+    totals.put("promotedBytes", total.promoted);
+    totals.put("resets", resets);
+    metrics.put("total", totals);
+    return metrics;
+  }
+
+  private static double millis(long micros) {
+    return micros / 1000.0;
+  }
+
+  static final class Window {
+    double latest = Double.NaN;
+    double start = Double.NaN;
+    long pauses;
+    long fullPauses;
+    long pauseMicros;
+    long maxPauseMicros;
+    long allocated;
+    long promoted;
+    long[] buckets;
+
+    double span() {
+      return Double.isNaN(latest) ? 0 : latest - start;
+    }
+
+    // 구간의 위쪽 경계를 돌려주므로 실제보다 조금 크다. 단, 가장 긴 pause 보다 크게 말하지는 않는다.
+    long percentileMicros(double quantile) {
+      if (pauses == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(quantile * pauses));
+      long seen = 0;
+      for (int i = 0; i < buckets.length; i++) {
+        seen += buckets[i];
+        if (seen >= rank) {
+          return Math.min(BOUNDS[i], maxPauseMicros);
+        }
+      }
+      return maxPauseMicros;
+    }
+
+    double overheadPercent() {
+      double span = span();
+      return span <= 0 ? 0 : pauseMicros / 1e6 / span * 100;
+    }
+
+    double rate(long bytes) {
+      double span = span();
+      return span <= 0 ? 0 : bytes / span;
+    }
+  }
+
+  private static final class Slice {
+    long index = Long.MIN_VALUE;
+    final long[] buckets = new long[BOUNDS.length];
+    long pauses;
+    long fullPauses;
+    long pauseMicros;
+    long maxPauseMicros;
+    long allocated;
+    long promoted;
+
+    void pause(long micros, boolean full) {
+      int bucket = Arrays.binarySearch(BOUNDS, micros);
+      buckets[bucket >= 0 ? bucket : -bucket - 1]++;
+      pauses++;
+      if (full) {
+        fullPauses++;
+      }
+      pauseMicros += micros;
+      maxPauseMicros = Math.max(maxPauseMicros, micros);
+    }
+
+    void clear(long index) {
+      this.index = index;
+      Arrays.fill(buckets, 0);
+      pauses = 0;
+      fullPauses = 0;
+      pauseMicros = 0;
+      maxPauseMicros = 0;
+      allocated = 0;
+      promoted = 0;
+    }
+  }
+}
@@ -0,0 +1,138 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Article, Comment 의 id 를 나눠주는 할당기
+ *
+ * 스레드마다 blockSize 개의 id 를 한 번에 예약해 두고 그 안에서는 다른 스레드와 아무것도 공유하지 않고 id 를 꺼낸다.
+ * 공유하는 카운터(reserved)는 블록을 다 썼을 때만 getAndAdd 한 번으로 올리므로 락이 없고,
+ * 스레드가 많아도 blockSize 개에 한 번만 같은 캐시 라인을 두고 다툰다.
+ * 그래서 id 는 스레드 안에서는 계속 커지지만 여러 스레드 사이에서는 만든 순서와 id 순서가 다를 수 있고, 재시작하면 쓰지 않은 블록만큼 건너뛴다.
+ *
+ * file 이 있으면 지금까지 예약할 수 있는 한계(high-water mark)를 파일에 남긴다. 한계는 leaseSize 만큼 앞서서 올리고 fsync 하므로
+ * 디스크에 쓰는 것은 leaseSize 개에 한 번이고, 그때만 synchronized 로 기다린다.
+ * 다시 시작하면 파일의 한계부터 나눠주므로 이전에 나눠준 id 를 다시 쓰지 않는다.
+ */
+final class IdAllocator {
+  private final String name;
+  private final Path file;
+  private final int blockSize;
+  private final long leaseSize;
+
+  // 다음에 예약할 블록의 시작 id. 이보다 작은 id 는 모두 어떤 스레드에 예약되었다.
+  private final AtomicLong reserved = new AtomicLong(1);
+  // 파일에 남긴 한계. 이보다 작은 id 는 재시작한 뒤에도 다시 나오지 않는다.
+  private volatile long leased;
+  private final ThreadLocal<Block> blocks = ThreadLocal.withInitial(Block::new);
+
+  private final AtomicLong blocksReserved = new AtomicLong();
+  private final AtomicLong leases = new AtomicLong();
+
+  /**
+   * @param file high-water mark 를 남길 파일. null 이면 메모리에서만 센다.
+   */
+  IdAllocator(String name, Path file, int blockSize, long leaseSize) throws IOException {
+    this.name = name;
+    this.file = file;
+    this.blockSize = Math.max(1, blockSize);
+    this.leaseSize = Math.max(this.blockSize, leaseSize);
+    if (file != null && Files.exists(file)) {
+      leased = ByteBuffer.wrap(Files.readAllBytes(file)).getLong();
+      reserved.set(Math.max(1, leased));
+    } else {
+      leased = file == null ? Long.MAX_VALUE : 0;
+    }
+  }
+
+  /**
+   * 메모리에서만 세는 할당기. 저장소를 쓰지 않을 때 사용한다.
+   */
+  static IdAllocator inMemory(String name, int blockSize) {
+    try {
+      return new IdAllocator(name, null, blockSize, blockSize);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  long next() {
+    Block block = blocks.get();
+    if (block.next == block.end) {
+      long start = reserved.getAndAdd(blockSize);
+      long end = start + blockSize;
+      if (end > leased) {
+        lease(end);
+      }
+      block.next = start;
+      block.end = end;
+      blocksReserved.incrementAndGet();
+    }
+    return block.next++;
+  }
+
+  /**
+   * 앞으로 나눠주는 id 가 id 보다 크게 한다. 직접 id 를 지정한 글이나 디스크에서 읽은 글에 대해 부른다.
+   * 이미 스레드에 예약된 블록은 그대로이므로, 실행 중에 id 를 직접 지정하는 글과 섞이면 호출하는 쪽에서 겹치는 id 를 건너뛰어야 한다.
+   */
+  void advance(long id) {
+    long current;
+    while ((current = reserved.get()) <= id) {
+      if (reserved.compareAndSet(current, id + 1)) {
+        if (id + 1 > leased) {
+          lease(id + 1);
+        }
+        return;
+      }
+    }
+  }
+
+  // end 까지의 id 가 재시작한 뒤에도 다시 나오지 않도록 한계를 leaseSize 만큼 앞서서 파일에 남긴다.
+  private synchronized void lease(long end) {
+    if (end <= leased) {
+      return;
+    }
+    long next = end + leaseSize;
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+        ByteBuffer buffer = ByteBuffer.allocate(8).putLong(0, next);
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+        channel.force(true);
+      }
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new UncheckedIOException("failed to persist " + name + " id high-water mark", e);
+    }
+    leased = next;
+    leases.incrementAndGet();
+  }
+
+  Map<String, Object> metrics() {
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("reserved", reserved.get() - 1);
+    metrics.put("leased", file == null ? null : leased);
+    metrics.put("blockSize", blockSize);
+    metrics.put("blocks", blocksReserved.get());
+    metrics.put("leases", leases.get());
+    return metrics;
+  }
+
+  private static final class Block {
+    long next;
+    long end;
+  }
+}
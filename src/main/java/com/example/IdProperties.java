@@ -0,0 +1,34 @@
+package com.example;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * application.properties 의 ids.* 설정
+ * 글과 댓글의 id 를 나눠주는 IdAllocator 의 설정이다.
+ */
+@Component
+@ConfigurationProperties(prefix = "ids")
+public class IdProperties {
+  // 스레드가 공유 카운터에서 한 번에 예약하는 id 수. 클수록 덜 다투지만 재시작할 때 건너뛰는 id 가 많아진다.
+  private int blockSize = 64;
+
+  // articles.store.enabled 일 때 high-water mark 를 이만큼 앞서서 디스크에 남긴다. 이만큼의 id 를 쓸 때마다 fsync 한 번이다.
+  private long leaseSize = 100000;
+
+  public int getBlockSize() {
+    return blockSize;
+  }
+
+  public void setBlockSize(int blockSize) {
+    this.blockSize = blockSize;
+  }
+
+  public long getLeaseSize() {
+    return leaseSize;
+  }
+
+  public void setLeaseSize(long leaseSize) {
+    this.leaseSize = leaseSize;
+  }
+}
@@ -0,0 +1,388 @@
+package com.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 이미지 첨부 파일의 썸네일과 크기 정보를 백그라운드에서 만드는 파이프라인
+ *
+ * 업로드 요청은 submit() 으로 작업 파일(derivatives/jobs/{hash}) 만 만들고 PENDING 을 받아서 바로 응답한다.
+ * 작업은 CPU 코어 수만큼의 스레드와 크기가 정해진 큐에서 처리하고, 큐가 가득 차면 작업 파일만 남겨둔다.
+ * sweeper 가 sweepIntervalMillis 마다(그리고 시작할 때) 남은 작업 파일을 다시 큐에 넣기 때문에 재시작해도 작업이 사라지지 않는다.
+ *
+ * 결과는 같은 hash 로 한 번만 만들어서 derivatives/{hash}/ 에 {width}.jpg(또는 .png) 와 meta.json 으로 저장하고,
+ * AttachmentRepository.updateImage() 로 같은 내용을 가진 모든 첨부 파일의 image 를 바꾼다.
+ *
+ * 원본은 ImageReader 의 subsampling 으로 필요한 크기 가까이만 디코딩하고, 반씩 여러 번 줄여서 bilinear 로도 계단 현상이 없게 한다.
+ * 투명도가 있으면 PNG, 없으면 JPEG 로 저장한다.
+ */
+@Component
+public class ImageDerivatives {
+  private static final Logger logger = LoggerFactory.getLogger(ImageDerivatives.class);
+  private static final String META = "meta.json";
+
+  @Autowired
+  ImageProperties properties;
+
+  @Autowired
+  BlobStore blobStore;
+
+  @Autowired
+  AttachmentRepository attachmentRepository;
+
+  @Autowired
+  ObjectMapper objectMapper;
+
+  private Path derivatives;
+  private Path jobs;
+  private ThreadPoolExecutor workers;
+  private ScheduledExecutorService sweeper;
+  // 큐에 들어갔거나 처리 중인 hash. 같은 작업이 큐에 두 번 들어가지 않게 한다.
+  private final Set<String> queued = ConcurrentHashMap.newKeySet();
+  // 끝난 작업의 결과. 없으면 meta.json 에서 읽는다.
+  private final ConcurrentHashMap<String, ImageInfo> results = new ConcurrentHashMap<>();
+
+  private final AtomicLong submitted = new AtomicLong();
+  private final AtomicLong completed = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+  private final AtomicLong sweeps = new AtomicLong();
+
+  @PostConstruct
+  public void start() throws IOException {
+    derivatives = blobStore.directory().resolve("derivatives");
+    jobs = derivatives.resolve("jobs");
+    if (!properties.isEnabled()) {
+      return;
+    }
+    Files.createDirectories(jobs);
+    int threads = properties.getWorkers() > 0 ? properties.getWorkers() : Runtime.getRuntime().availableProcessors();
+    AtomicInteger threadNumber = new AtomicInteger();
+    workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<>(properties.getQueueCapacity()), runnable -> {
+      Thread thread = new Thread(runnable, "image-derivatives-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      // 썸네일은 요청 처리보다 급하지 않다.
+      thread.setPriority(Thread.MIN_PRIORITY);
+      return thread;
+    });
+    sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "image-derivatives-sweeper");
+      thread.setDaemon(true);
+      return thread;
+    });
+    sweeper.scheduleWithFixedDelay(this::sweep, 0, properties.getSweepIntervalMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  public boolean isEnabled() {
+    return properties.isEnabled();
+  }
+
+  /**
+   * hash 의 썸네일 작업을 예약한다. 이미 만들어져 있으면 그 결과를, 아니면 PENDING 을 바로 돌려준다.
+   *
+   * @return 꺼져 있으면 null
+   */
+  public ImageInfo submit(String hash) throws IOException {
+    if (!properties.isEnabled()) {
+      return null;
+    }
+    ImageInfo done = result(hash);
+    if (done != null) {
+      return done;
+    }
+    try {
+      Files.createFile(jobs.resolve(hash));
+      submitted.incrementAndGet();
+    } catch (FileAlreadyExistsException e) {
+      // 같은 내용의 작업이 이미 기다리고 있다.
+    }
+    enqueue(hash);
+    return ImageInfo.pending();
+  }
+
+  /**
+   * 끝난 작업의 결과. 아직 끝나지 않았거나 작업이 없으면 null
+   */
+  public ImageInfo result(String hash) throws IOException {
+    ImageInfo info = results.get(hash);
+    if (info != null) {
+      return info;
+    }
+    Path meta = derivatives.resolve(hash).resolve(META);
+    if (!Files.isRegularFile(meta)) {
+      return null;
+    }
+    info = objectMapper.readValue(meta.toFile(), ImageInfo.class);
+    results.putIfAbsent(hash, info);
+    return info;
+  }
+
+  /**
+   * hash 의 width 썸네일 파일. 없으면 null
+   */
+  public Path thumbnail(String hash, int width) throws IOException {
+    if (!BlobStore.isHash(hash)) {
+      return null;
+    }
+    ImageInfo info = result(hash);
+    if (info == null || info.getThumbnails() == null) {
+      return null;
+    }
+    for (ImageInfo.Thumbnail thumbnail : info.getThumbnails()) {
+      if (thumbnail.getWidth() == width) {
+        return derivatives.resolve(hash).resolve(fileName(width, thumbnail.getContentType()));
+      }
+    }
+    return null;
+  }
+
+  // 남아 있는 작업 파일을 모두 큐에 넣는다. 큐가 가득 차면 다음 sweep 을 기다린다.
+  void sweep() {
+    sweeps.incrementAndGet();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(jobs)) {
+      for (Path file : files) {
+        String hash = file.getFileName().toString();
+        if (BlobStore.isHash(hash) && !enqueue(hash)) {
+          return;
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      logger.warn("image derivative sweep failed", e);
+    }
+  }
+
+  // @return 큐가 가득 차서 넣지 못했으면 false
+  private boolean enqueue(String hash) {
+    if (!queued.add(hash)) {
+      return true;
+    }
+    try {
+      workers.execute(() -> process(hash));
+      return true;
+    } catch (RejectedExecutionException e) {
+      queued.remove(hash);
+      rejected.incrementAndGet();
+      return false;
+    }
+  }
+
+  private void process(String hash) {
+    try {
+      Path job = jobs.resolve(hash);
+      if (!Files.exists(job)) {
+        return;
+      }
+      ImageInfo info;
+      try {
+        info = derive(hash);
+        completed.incrementAndGet();
+      } catch (IOException | RuntimeException e) {
+        if (Thread.currentThread().isInterrupted()) {
+          // 종료 중이다. 작업 파일을 남겨두고 다음 시작할 때 다시 한다.
+          return;
+        }
+        // 디코딩할 수 없는 파일은 다시 해도 같으므로 FAILED 로 끝낸다.
+        logger.warn("failed to create thumbnails of {}: {}", hash, e.toString());
+        info = ImageInfo.failed();
+        failed.incrementAndGet();
+      }
+      writeMeta(hash, info);
+      results.put(hash, info);
+      attachmentRepository.updateImage(hash, info);
+      Files.deleteIfExists(job);
+    } catch (IOException | RuntimeException e) {
+      // 결과를 저장하지 못했으면 작업 파일이 남아 있으므로 다음 sweep 에서 다시 한다.
+      logger.error("failed to store thumbnails of {}", hash, e);
+    } finally {
+      queued.remove(hash);
+    }
+  }
+
+  private ImageInfo derive(String hash) throws IOException {
+    try (ImageInputStream in = ImageIO.createImageInputStream(blobStore.path(hash).toFile())) {
+      if (in == null) {
+        throw new NoSuchFileException(hash);
+      }
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+      if (!readers.hasNext()) {
+        throw new IOException("unsupported image format");
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(in, true, true);
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+        if ((long) width * height > properties.getMaxPixels()) {
+          throw new IOException(width + "x" + height + " image is larger than " + properties.getMaxPixels() + " pixels");
+        }
+
+        int[] targets = targetWidths(width);
+        List<ImageInfo.Thumbnail> thumbnails = new ArrayList<>(targets.length);
+        if (targets.length > 0) {
+          // 가장 큰 썸네일보다 작아지지 않는 만큼만 건너뛰며 디코딩한다. 큰 원본도 메모리에 통째로 올리지 않는다.
+          ImageReadParam param = reader.getDefaultReadParam();
+          int subsampling = Math.max(1, width / targets[0]);
+          param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+          BufferedImage image = reader.read(0, param);
+          boolean alpha = image.getColorModel().hasAlpha();
+          String contentType = alpha ? "image/png" : "image/jpeg";
+          Path directory = Files.createDirectories(derivatives.resolve(hash));
+          // 큰 썸네일부터 만들고, 작은 썸네일은 바로 앞의 썸네일을 줄여서 만든다.
+          for (int target : targets) {
+            int targetHeight = Math.max(1, (int) Math.round((double) height * target / width));
+            image = scale(image, target, targetHeight, alpha);
+            write(image, contentType, directory.resolve(fileName(target, contentType)));
+            ImageInfo.Thumbnail thumbnail = new ImageInfo.Thumbnail();
+            thumbnail.setWidth(target);
+            thumbnail.setHeight(targetHeight);
+            thumbnail.setContentType(contentType);
+            thumbnail.setUrl("/api/images/" + hash + "/" + target);
+            thumbnails.add(thumbnail);
+          }
+        }
+
+        ImageInfo info = new ImageInfo();
+        info.setStatus(ImageInfo.Status.READY);
+        info.setFormat(reader.getFormatName().toLowerCase());
+        info.setWidth(width);
+        info.setHeight(height);
+        info.setThumbnails(thumbnails);
+        return info;
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  // 원본보다 작은 썸네일 크기를 큰 것부터
+  private int[] targetWidths(int width) {
+    return Arrays.stream(properties.getThumbnailWidths())
+      .filter(target -> target > 0 && target < width)
+      .distinct()
+      .map(target -> -target).sorted().map(target -> -target)
+      .toArray();
+  }
+
+  // 한 번에 크게 줄이면 bilinear 가 건너뛰는 픽셀이 생기므로 목표 크기의 두 배가 될 때까지는 반씩 줄인다.
+  private static BufferedImage scale(BufferedImage image, int width, int height, boolean alpha) {
+    BufferedImage current = image;
+    do {
+      int nextWidth = current.getWidth() / 2 >= width * 2 ? current.getWidth() / 2 : width;
+      int nextHeight = nextWidth == width ? height : Math.max(height, current.getHeight() / 2);
+      BufferedImage next = new BufferedImage(nextWidth, nextHeight, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+      Graphics2D graphics = next.createGraphics();
+      try {
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        graphics.drawImage(current, 0, 0, nextWidth, nextHeight, null);
+      } finally {
+        graphics.dispose();
+      }
+      current = next;
+    } while (current.getWidth() != width || current.getHeight() != height);
+    return current;
+  }
+
+  // 임시 파일에 다 쓴 뒤 옮기기 때문에 읽는 쪽은 반쯤 쓰인 썸네일을 보지 않는다.
+  private void write(BufferedImage image, String contentType, Path file) throws IOException {
+    ImageWriter writer = ImageIO.getImageWritersByMIMEType(contentType).next();
+    Path temp = Files.createTempFile(file.getParent(), "thumbnail", ".tmp");
+    try {
+      try (ImageOutputStream out = ImageIO.createImageOutputStream(temp.toFile())) {
+        writer.setOutput(out);
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if ("image/jpeg".equals(contentType)) {
+          param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+          param.setCompressionQuality(properties.getJpegQuality());
+        }
+        writer.write(null, new IIOImage(image, null, null), param);
+      } finally {
+        writer.dispose();
+      }
+      Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private void writeMeta(String hash, ImageInfo info) throws IOException {
+    Path directory = Files.createDirectories(derivatives.resolve(hash));
+    Path temp = Files.createTempFile(directory, "meta", ".tmp");
+    try {
+      objectMapper.writeValue(temp.toFile(), info);
+      Files.move(temp, directory.resolve(META), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private static String fileName(int width, String contentType) {
+    return width + ("image/png".equals(contentType) ? ".png" : ".jpg");
+  }
+
+  public Map<String, Object> metrics() {
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("enabled", properties.isEnabled());
+    metrics.put("workers", workers == null ? 0 : workers.getPoolSize());
+    metrics.put("active", workers == null ? 0 : workers.getActiveCount());
+    metrics.put("queued", workers == null ? 0 : workers.getQueue().size());
+    metrics.put("submitted", submitted.get());
+    metrics.put("completed", completed.get());
+    metrics.put("failed", failed.get());
+    metrics.put("rejected", rejected.get());
+    metrics.put("sweeps", sweeps.get());
+    return metrics;
+  }
+
+  // 처리 중이던 작업은 작업 파일이 남아 있으므로 다음 시작할 때 다시 한다.
+  @PreDestroy
+  public void close() {
+    if (sweeper != null) {
+      sweeper.shutdownNow();
+    }
+    if (workers != null) {
+      workers.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package com.example;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 이미지 첨부 파일의 크기와 썸네일 목록. 첨부 파일 JSON 의 image 로 나간다.
+ *
+ * 업로드 직후에는 PENDING 이고, 백그라운드 작업이 끝나면 READY(썸네일 있음) 또는 FAILED(디코딩 실패) 가 된다.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ImageInfo implements Serializable {
+  public enum Status {
+    PENDING, READY, FAILED
+  }
+
+  private Status status;
+  private String format;
+  private Integer width;
+  private Integer height;
+  private List<Thumbnail> thumbnails;
+
+  public static ImageInfo pending() {
+    ImageInfo info = new ImageInfo();
+    info.setStatus(Status.PENDING);
+    return info;
+  }
+
+  public static ImageInfo failed() {
+    ImageInfo info = new ImageInfo();
+    info.setStatus(Status.FAILED);
+    return info;
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  public void setStatus(Status status) {
+    this.status = status;
+  }
+
+  public String getFormat() {
+    return format;
+  }
+
+  public void setFormat(String format) {
+    this.format = format;
+  }
+
+  public Integer getWidth() {
+    return width;
+  }
+
+  public void setWidth(Integer width) {
+    this.width = width;
+  }
+
+  public Integer getHeight() {
+    return height;
+  }
+
+  public void setHeight(Integer height) {
+    this.height = height;
+  }
+
+  public List<Thumbnail> getThumbnails() {
+    return thumbnails;
+  }
+
+  public void setThumbnails(List<Thumbnail> thumbnails) {
+    this.thumbnails = thumbnails == null ? null : Collections.unmodifiableList(thumbnails);
+  }
+
+  /**
+   * 원본을 width 로 줄인 이미지. url 은 /api/images/{hash}/{width} 이다.
+   */
+  public static class Thumbnail implements Serializable {
+    private int width;
+    private int height;
+    private String contentType;
+    private String url;
+
+    public int getWidth() {
+      return width;
+    }
+
+    public void setWidth(int width) {
+      this.width = width;
+    }
+
+    public int getHeight() {
+      return height;
+    }
+
+    public void setHeight(int height) {
+      this.height = height;
+    }
+
+    public String getContentType() {
+      return contentType;
+    }
+
+    public void setContentType(String contentType) {
+      this.contentType = contentType;
+    }
+
+    public String getUrl() {
+      return url;
+    }
+
+    public void setUrl(String url) {
+      this.url = url;
+    }
+  }
+}
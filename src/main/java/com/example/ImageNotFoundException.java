@@ -0,0 +1,14 @@
+package com.example;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 아직 만들어지지 않았거나 없는 썸네일을 요청했을 때 던지는 예외 (404 Not Found)
+ */
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class ImageNotFoundException extends RuntimeException {
+  public ImageNotFoundException(String hash, int width) {
+    super("thumbnail not found: " + hash + "/" + width);
+  }
+}
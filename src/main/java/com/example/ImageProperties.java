@@ -0,0 +1,88 @@
+package com.example;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * application.properties 의 images.* 설정
+ * 이미지 첨부 파일의 썸네일을 만드는 ImageDerivatives 의 설정이다.
+ */
+@Component
+@ConfigurationProperties(prefix = "images")
+public class ImageProperties {
+  private boolean enabled = true;
+
+  // 만들 썸네일의 가로 크기(px). 원본보다 작은 것만 만든다.
+  private int[] thumbnailWidths = {320, 1280};
+
+  // 썸네일을 만드는 스레드 수. 0 이면 CPU 코어 수
+  private int workers = 0;
+
+  // 스레드를 기다리는 작업의 최대 수. 넘치는 작업은 디스크의 작업 파일로 남아 있다가 sweep 때 다시 들어간다.
+  private int queueCapacity = 256;
+
+  // 디스크에 남은 작업 파일을 다시 큐에 넣는 주기(ms)
+  private long sweepIntervalMillis = 10000;
+
+  // JPEG 썸네일의 품질(0.0 ~ 1.0)
+  private float jpegQuality = 0.85f;
+
+  // 디코딩할 원본의 최대 픽셀 수. 넘으면 압축 폭탄으로 보고 FAILED 로 처리한다.
+  private long maxPixels = 100_000_000L;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public int[] getThumbnailWidths() {
+    return thumbnailWidths;
+  }
+
+  public void setThumbnailWidths(int[] thumbnailWidths) {
+    this.thumbnailWidths = thumbnailWidths;
+  }
+
+  public int getWorkers() {
+    return workers;
+  }
+
+  public void setWorkers(int workers) {
+    this.workers = workers;
+  }
+
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  public void setQueueCapacity(int queueCapacity) {
+    this.queueCapacity = queueCapacity;
+  }
+
+  public long getSweepIntervalMillis() {
+    return sweepIntervalMillis;
+  }
+
+  public void setSweepIntervalMillis(long sweepIntervalMillis) {
+    this.sweepIntervalMillis = sweepIntervalMillis;
+  }
+
+  public float getJpegQuality() {
+    return jpegQuality;
+  }
+
+  public void setJpegQuality(float jpegQuality) {
+    this.jpegQuality = jpegQuality;
+  }
+
+  public long getMaxPixels() {
+    return maxPixels;
+  }
+
+  public void setMaxPixels(long maxPixels) {
+    this.maxPixels = maxPixels;
+  }
+}
@@ -0,0 +1,43 @@
+package com.example;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ImageDerivatives 가 만든 썸네일을 내려주는 컨트롤러
+ *
+ * 썸네일은 원본 hash 와 크기로 정해지고 한 번 만들면 바뀌지 않으므로 1년 동안 캐시해도 된다.
+ * 목록 화면은 글 JSON 의 attachments[].image.thumbnails[].url 을 그대로 쓰면 된다.
+ */
+@Controller
+public class ImagesController {
+  @Autowired
+  ImageDerivatives imageDerivatives;
+
+  // ResponseEntity 에 ETag 가 있으면 Spring MVC 가 If-None-Match 를 보고 304 로 응답한다.
+  @RequestMapping(value = "/api/images/{hash}/{width}", method = RequestMethod.GET)
+  public ResponseEntity<Resource> thumbnail(@PathVariable(value = "hash") String hash,
+                                            @PathVariable(value = "width") int width) throws IOException {
+    Path file = imageDerivatives.thumbnail(hash, width);
+    if (file == null) {
+      throw new ImageNotFoundException(hash, width);
+    }
+    return ResponseEntity.ok()
+      .eTag("\"" + hash + "-" + width + "\"")
+      .cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic())
+      .contentType(MediaType.parseMediaType(file.getFileName().toString().endsWith(".png") ? "image/png" : "image/jpeg"))
+      .body(new FileSystemResource(file.toFile()));
+  }
+}
@@ -0,0 +1,86 @@
+package com.example;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * 여러 스레드가 쓰고 한 스레드가 읽는 크기가 정해진 링 버퍼. 가득 차면 쓰는 쪽이 기다리지 않고 가장 오래된 값을 덮어쓴다.
+ *
+ * offer() 는 순번 하나를 getAndIncrement 로 받아서 그 칸에 (순번, 값) 을 넣기만 하므로 락도 없고 기다리지도 않는다.
+ * drain() 은 다음에 읽을 순번의 칸을 보고,
+ * - 칸의 순번이 더 작으면 아직 쓰는 중이라 멈추고,
+ * - 더 크면 한 바퀴 이상 앞질러져 덮어쓰인 것이므로 잃어버린 수를 세고 남아 있는 가장 오래된 순번으로 건너뛴다.
+ * 칸에 넣는 Slot 은 불변이기 때문에 읽는 도중에 덮어쓰여도 읽은 값이 섞이지 않는다.
+ */
+final class LossyRingBuffer<T> {
+  private final AtomicReferenceArray<Slot<T>> slots;
+  private final int mask;
+  private final AtomicLong head = new AtomicLong();
+  // 아래 두 값은 읽는 스레드만 바꾼다.
+  private long next;
+  private volatile long lost;
+
+  LossyRingBuffer(int size) {
+    int capacity = Integer.highestOneBit(Math.max(2, size - 1)) << 1;
+    this.slots = new AtomicReferenceArray<>(capacity);
+    this.mask = capacity - 1;
+  }
+
+  int capacity() {
+    return mask + 1;
+  }
+
+  void offer(T value) {
+    long sequence = head.getAndIncrement();
+    // 읽는 쪽은 순번으로 완성 여부를 판단하므로 쓰기 순서만 보장하면 된다.
+    slots.lazySet((int) (sequence & mask), new Slot<>(sequence, value));
+  }
+
+  /**
+   * 쌓인 값을 최대 max 개까지 순서대로 consumer 에 넘긴다. 한 스레드에서만 호출해야 한다.
+   */
+  int drain(Consumer<? super T> consumer, int max) {
+    int drained = 0;
+    while (drained < max) {
+      Slot<T> slot = slots.get((int) (next & mask));
+      if (slot == null || slot.sequence < next) {
+        break;
+      }
+      if (slot.sequence > next) {
+        long oldest = Math.max(next + 1, head.get() - capacity());
+        lost += oldest - next;
+        next = oldest;
+        continue;
+      }
+      consumer.accept(slot.value);
+      next++;
+      drained++;
+    }
+    return drained;
+  }
+
+  /**
+   * 지금까지 offer 된 값의 수
+   */
+  long offered() {
+    return head.get();
+  }
+
+  /**
+   * 읽기 전에 덮어쓰여서 잃어버린 값의 수
+   */
+  long lost() {
+    return lost;
+  }
+
+  private static final class Slot<T> {
+    final long sequence;
+    final T value;
+
+    Slot(long sequence, T value) {
+      this.sequence = sequence;
+      this.value = value;
+    }
+  }
+}
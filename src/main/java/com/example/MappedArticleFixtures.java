@@ -0,0 +1,229 @@
+package com.example;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 메모리 맵(FileChannel.map)으로 읽는 바이너리 fixture 파일
+ *
+ * fixtures.yml 을 SnakeYAML 로 바인딩하면 시작할 때 모든 Article 과 Comment 객체가 힙에 만들어진다.
+ * 이 형식은 파일을 통째로 매핑하고 id 인덱스만 훑어서 시작하기 때문에 시작 시간이 Article 수와 거의 무관하고,
+ * 요청받기 전까지 Article 은 힙이 아니라 페이지 캐시에만 있다.
+ * 댓글도 글을 디코딩할 때까지 읽지 않으므로, 댓글 id 할당기를 올릴 수 있도록 가장 큰 댓글 id 를 헤더에 둔다.
+ *
+ * 파일 형식 (모두 big-endian)
+ *   header : long magic, int format, int count, long indexOffset, long maxCommentId
+ *   records: ArticleCodec 으로 인코딩한 Article 들
+ *   index  : id 오름차순으로 (long id, long offset, int length) * count
+ *
+ * FixtureConverter 로 fixtures.yml 에서 만들 수 있다.
+ */
+public class MappedArticleFixtures implements Closeable {
+  private static final long MAGIC = 0x4152544649585431L; // "ARTFIXT1"
+  private static final int FORMAT = 4;
+  private static final int HEADER_SIZE = 8 + 4 + 4 + 8 + 8;
+  private static final int INDEX_ENTRY_SIZE = 8 + 8 + 4;
+  // MappedByteBuffer 하나는 2GB 를 넘을 수 없어서 레코드 영역은 이 크기 단위로 나눠서 매핑한다.
+  private static final long CHUNK_SIZE = 1L << 30;
+
+  private final FileChannel channel;
+  private final int count;
+  private final long maxCommentId;
+  private final MappedByteBuffer index;
+  private final MappedByteBuffer[] chunks;
+
+  private MappedArticleFixtures(FileChannel channel) throws IOException {
+    this.channel = channel;
+    ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+    if (header.getLong() != MAGIC || header.getInt() != FORMAT) {
+      throw new IOException("not a binary article fixture file");
+    }
+    this.count = header.getInt();
+    long indexOffset = header.getLong();
+    this.maxCommentId = header.getLong();
+    if (count < 0 || count > Integer.MAX_VALUE / INDEX_ENTRY_SIZE) {
+      throw new IOException("fixture index of " + count + " entries does not fit in one mapping");
+    }
+    this.index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, (long) count * INDEX_ENTRY_SIZE);
+
+    int chunkCount = (int) ((indexOffset + CHUNK_SIZE - 1) / CHUNK_SIZE);
+    this.chunks = new MappedByteBuffer[chunkCount];
+    for (int i = 0; i < chunkCount; i++) {
+      long start = i * CHUNK_SIZE;
+      chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, indexOffset - start));
+    }
+  }
+
+  public static MappedArticleFixtures open(Path file) throws IOException {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      return new MappedArticleFixtures(channel);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  public int size() {
+    return count;
+  }
+
+  /**
+   * fixture 의 댓글 중 가장 큰 id. 댓글이 없으면 0
+   */
+  public long maxCommentId() {
+    return maxCommentId;
+  }
+
+  public long idAt(int position) {
+    return index.getLong(entryOffset(position));
+  }
+
+  // 인덱스는 2GB 보다 작게 매핑되지만 position * INDEX_ENTRY_SIZE 는 int 로 넘칠 수 있으므로 long 으로 계산하고 범위를 확인한다.
+  private int entryOffset(int position) {
+    long offset = (long) position * INDEX_ENTRY_SIZE;
+    if (position < 0 || offset > index.capacity() - INDEX_ENTRY_SIZE) {
+      throw new IndexOutOfBoundsException("fixture index position " + position + " of " + count);
+    }
+    return (int) offset;
+  }
+
+  /**
+   * 인덱스의 id 들을 정렬된 배열로 복사한다. 저장소가 스냅샷을 만들 때 한번 사용한다.
+   */
+  public long[] ids() {
+    long[] ids = new long[count];
+    for (int i = 0; i < count; i++) {
+      ids[i] = idAt(i);
+    }
+    return ids;
+  }
+
+  /**
+   * 매핑된 인덱스에서 바로 이진 탐색한다. 없으면 -1
+   */
+  public int indexOf(long id) {
+    int low = 0;
+    int high = count - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      long midId = idAt(mid);
+      if (midId < id) {
+        low = mid + 1;
+      } else if (midId > id) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * id 에 해당하는 Article 을 디코딩한다. 호출할 때마다 새로운 객체를 만든다. 없으면 null
+   */
+  public Article find(long id) {
+    int position = indexOf(id);
+    return position < 0 ? null : decode(position);
+  }
+
+  public Article decode(int position) {
+    int entry = entryOffset(position);
+    long offset = index.getLong(entry + 8);
+    int length = index.getInt(entry + 16);
+    byte[] bytes = new byte[length];
+    read(offset, bytes);
+    return ArticleCodec.decode(bytes);
+  }
+
+  // 레코드가 두 청크에 걸쳐 있을 수 있으므로 청크 경계를 넘어가며 복사한다.
+  private void read(long offset, byte[] target) {
+    int copied = 0;
+    while (copied < target.length) {
+      long position = offset + copied;
+      ByteBuffer chunk = chunks[(int) (position / CHUNK_SIZE)].duplicate();
+      chunk.position((int) (position % CHUNK_SIZE));
+      int length = Math.min(target.length - copied, chunk.remaining());
+      chunk.get(target, copied, length);
+      copied += length;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Article 들을 바이너리 fixture 파일로 쓴다. 입력 순서와 상관없이 인덱스는 id 순으로 정렬된다.
+   */
+  public static void write(Path file, Iterable<Article> articles) throws IOException {
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    long[] ids = new long[1024];
+    long[] offsets = new long[1024];
+    int[] lengths = new int[1024];
+    int count = 0;
+    long maxCommentId = 0;
+
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      channel.position(HEADER_SIZE);
+      OutputStream raw = Channels.newOutputStream(channel);
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(raw, 64 * 1024));
+      long offset = HEADER_SIZE;
+      for (Article article : articles) {
+        byte[] encoded = ArticleCodec.encode(article);
+        if (count == ids.length) {
+          ids = Arrays.copyOf(ids, count * 2);
+          offsets = Arrays.copyOf(offsets, count * 2);
+          lengths = Arrays.copyOf(lengths, count * 2);
+        }
+        if (article.getComments() != null) {
+          for (Comment comment : article.getComments()) {
+            maxCommentId = Math.max(maxCommentId, comment.getId());
+          }
+        }
+        ids[count] = article.getId();
+        offsets[count] = offset;
+        lengths[count] = encoded.length;
+        count++;
+        out.write(encoded);
+        offset += encoded.length;
+      }
+
+      Integer[] order = new Integer[count];
+      for (int i = 0; i < count; i++) {
+        order[i] = i;
+      }
+      final long[] sortIds = ids;
+      Arrays.sort(order, (a, b) -> Long.compare(sortIds[a], sortIds[b]));
+      for (int i = 0; i < count; i++) {
+        int at = order[i];
+        if (i > 0 && ids[order[i - 1]] == ids[at]) {
+          throw new IOException("duplicated article id: " + ids[at]);
+        }
+        out.writeLong(ids[at]);
+        out.writeLong(offsets[at]);
+        out.writeInt(lengths[at]);
+      }
+      out.flush();
+
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putLong(MAGIC).putInt(FORMAT).putInt(count).putLong(offset).putLong(maxCommentId).flip();
+      channel.write(header, 0);
+      channel.force(true);
+    }
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+}
@@ -0,0 +1,53 @@
+package com.example;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * application.properties 의 metrics.* 설정
+ * 요청별 지연 시간과 상태 코드를 모으는 RequestMetrics 의 설정이다.
+ */
+@Component
+@ConfigurationProperties(prefix = "metrics")
+public class MetricsProperties {
+  private boolean enabled = true;
+
+  // 백분위와 초당 요청 수를 구하는 최근 구간(초)과 그 구간을 나누는 조각 수. 조각 하나만큼씩 창이 밀린다.
+  private long windowSeconds = 60;
+  private int windowSlices = 6;
+
+  // 히스토그램을 나눠 둘 stripe 수. 0 이면 CPU 코어 수. 2의 거듭제곱으로 올림한다.
+  private int stripes = 0;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public long getWindowSeconds() {
+    return windowSeconds;
+  }
+
+  public void setWindowSeconds(long windowSeconds) {
+    this.windowSeconds = windowSeconds;
+  }
+
+  public int getWindowSlices() {
+    return windowSlices;
+  }
+
+  public void setWindowSlices(int windowSlices) {
+    this.windowSlices = windowSlices;
+  }
+
+  public int getStripes() {
+    return stripes;
+  }
+
+  public void setStripes(int stripes) {
+    this.stripes = stripes;
+  }
+}
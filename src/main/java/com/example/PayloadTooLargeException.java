@@ -0,0 +1,14 @@
+package com.example;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 올린 파일이 blobs.max-blob-bytes 보다 클 때 던지는 예외. 413 Payload Too Large 로 응답한다.
+ */
+@ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+public class PayloadTooLargeException extends RuntimeException {
+  public PayloadTooLargeException(String message) {
+    super(message);
+  }
+}
@@ -1,38 +1,60 @@
 package com.example;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
-import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.ModelAndView;
+
+import java.util.concurrent.TimeoutException;
 
 @Controller
 @EnableAutoConfiguration
 public class PostController {
+  // 원격 API 응답이 늦어도 DeferredResult 가 영원히 남아있지 않도록 클라이언트 타임아웃보다 조금 더 기다린다.
+  private static final long TIMEOUT_MARGIN_MILLIS = 1000;
+
+  @Autowired
+  ResilientPostsClient postsClient;
+
+  @Autowired
+  RequestLog requestLog;
+
   @RequestMapping(value = "/posts/new", method = RequestMethod.GET)
   public String newPost(Model model) {
     model.addAttribute("post", new Post());
     return "new";
   }
 
+  // 예전에는 요청마다 RestTemplate 을 새로 만들고 원격 서버가 응답할 때까지 톰캣 워커 스레드가 기다렸다.
+  // 이제는 공유하는 PostsClient 로 non-blocking 요청을 보내고 DeferredResult 를 바로 반환한다.
+  // 요청 스레드는 컨테이너로 돌아가고, 원격 응답이 오면 HttpAsyncClient 의 IO 스레드가 결과를 채워서 "show" 뷰를 렌더링하게 한다.
+  // 원격 API 가 느리거나 죽어 있으면 ResilientPostsClient 가 빠르게 실패시키고, 작성한 내용을 그대로 담은 "unavailable" 뷰를 보여준다.
   @RequestMapping(value = "/posts", method = RequestMethod.POST)
-  public String createPost(@ModelAttribute Post post, Model model) {
-//    model.addAttribute("post", post);
+  public DeferredResult<ModelAndView> createPost(@ModelAttribute Post post) {
+    DeferredResult<ModelAndView> result = new DeferredResult<>(postsClient.maxRequestMillis() + TIMEOUT_MARGIN_MILLIS);
+    result.onTimeout(() -> result.setResult(unavailable(post, new BadGatewayException("posts API did not answer in time", new TimeoutException()))));
 
-    // RestTemplate는 REST API 요청을 간단히 처리할 수 있도록 설계된 모듈이다. Spring IO 기반으로 프로젝트를 진행한다면 내부적으로 REST API를 요청할 때 매우 유용하게 사용할 수 있을 것이다.
-    RestTemplate restTemplate = new RestTemplate();                            // 내부적으로 새로운 서버에 REST API 요청을 하기 위한 Rest Template 도구
-    restTemplate.getMessageConverters().add(new StringHttpMessageConverter());
-
-    String url = "https://rest-api-ko-donghyun.c9users.io/posts.json";         // 새로운 서버의 URL 변경
-    Post postObj = restTemplate.postForObject(url, post, Post.class);          // 새로운 서버의 JSON 결과를 POJO로 매핑
-    model.addAttribute("post", postObj);                                       // View 업데이트를 위한 Model에 POJO 객체 저장
-
-    System.out.println(postObj.getTitle());
-    System.out.println(postObj.getContent());
+    postsClient.createPost(post).whenComplete((postObj, failure) -> {
+      if (failure != null) {
+        result.setResult(unavailable(post, failure));
+        return;
+      }
+      requestLog.event("post.create", "title", postObj.getTitle(), "content", postObj.getContent());
+      result.setResult(new ModelAndView("show", "post", postObj));       // View 업데이트를 위한 Model에 POJO 객체 저장
+    });
+    return result;
+  }
 
-    return "show";
+  // 거절(서킷 브레이커, bulkhead)은 503, 원격 실패와 타임아웃은 502 로 응답한다.
+  private ModelAndView unavailable(Post post, Throwable failure) {
+    ModelAndView mav = new ModelAndView("unavailable", "post", post);
+    mav.setStatus(failure instanceof ServiceUnavailableException ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.BAD_GATEWAY);
+    return mav;
   }
 }
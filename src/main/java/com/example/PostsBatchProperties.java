@@ -0,0 +1,77 @@
+package com.example;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * application.properties 의 posts.batch.* 설정
+ * 켜면 /posts 로 들어온 글을 큐에 모았다가 PostsBatcher 가 bulk 요청 하나로 보낸다.
+ */
+@Component
+@ConfigurationProperties(prefix = "posts.batch")
+public class PostsBatchProperties {
+  private boolean enabled = false;
+
+  // 한 번의 bulk 요청에 담을 최대 글 수. 이만큼 모이면 바로 보낸다.
+  private int maxBatchSize = 50;
+
+  // 첫 글이 들어온 뒤 다른 글을 더 모으려고 기다리는 시간(ms). 이 시간이 지나면 모인 만큼만 보낸다.
+  private long lingerMillis = 10;
+
+  // 보내기를 기다리는 글의 최대 수
+  private int queueCapacity = 1000;
+
+  // 큐가 가득 찼을 때 자리가 날 때까지 기다리는 시간(ms). 0 이면 기다리지 않고 바로 거절(503)한다.
+  private long enqueueTimeoutMillis = 0;
+
+  // 동시에 응답을 기다릴 수 있는 bulk 요청 수. 모두 사용 중이면 다음 배치는 큐에 쌓이고, 큐가 차면 거절된다.
+  private int maxInFlightBatches = 4;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  public void setMaxBatchSize(int maxBatchSize) {
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  public long getLingerMillis() {
+    return lingerMillis;
+  }
+
+  public void setLingerMillis(long lingerMillis) {
+    this.lingerMillis = lingerMillis;
+  }
+
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  public void setQueueCapacity(int queueCapacity) {
+    this.queueCapacity = queueCapacity;
+  }
+
+  public long getEnqueueTimeoutMillis() {
+    return enqueueTimeoutMillis;
+  }
+
+  public void setEnqueueTimeoutMillis(long enqueueTimeoutMillis) {
+    this.enqueueTimeoutMillis = enqueueTimeoutMillis;
+  }
+
+  public int getMaxInFlightBatches() {
+    return maxInFlightBatches;
+  }
+
+  public void setMaxInFlightBatches(int maxInFlightBatches) {
+    this.maxInFlightBatches = maxInFlightBatches;
+  }
+}
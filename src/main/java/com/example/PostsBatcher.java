@@ -0,0 +1,196 @@
+package com.example;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * /posts 로 들어온 글을 모아서 bulk 요청 하나로 원격 API 에 보내는 배처
+ *
+ * 요청 스레드는 submit() 으로 글을 크기가 정해진 큐에 넣고 future 만 받아간다.
+ * flusher 스레드 하나가 큐에서 maxBatchSize 개가 모이거나 첫 글 뒤로 lingerMillis 가 지나면 모인 글을 PostsClient.createPosts() 로 보내고,
+ * 응답 배열의 i 번째 글로 i 번째 future 를 끝낸다. 트래픽이 몰릴 때 커넥션/TLS 비용과 왕복 수가 글 수가 아니라 배치 수에 비례하게 된다.
+ *
+ * 응답을 기다리는 bulk 요청이 maxInFlightBatches 개를 넘으면 flusher 가 멈추고 큐가 쌓인다.
+ * 큐가 가득 차면 enqueueTimeoutMillis 만큼 기다렸다가 그래도 자리가 없으면 ServiceUnavailableException 으로 거절한다.
+ */
+@Component
+public class PostsBatcher {
+  // 큐가 비어 있을 때 종료 여부를 확인하는 주기(ms)
+  private static final long IDLE_POLL_MILLIS = 100;
+
+  private final PostsClient postsClient;
+  private final PostsBatchProperties properties;
+  private final BlockingQueue<PendingPost> queue;
+  private final Semaphore inFlight;
+  private final Thread flusher;
+  private volatile boolean running = true;
+
+  private final AtomicLong batches = new AtomicLong();
+  private final AtomicLong batchedPosts = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+
+  @Autowired
+  public PostsBatcher(PostsClient postsClient, PostsBatchProperties properties) {
+    this.postsClient = postsClient;
+    this.properties = properties;
+    this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+    this.inFlight = new Semaphore(properties.getMaxInFlightBatches());
+    this.flusher = new Thread(this::run, "posts-batcher");
+    this.flusher.setDaemon(true);
+    if (properties.isEnabled()) {
+      flusher.start();
+    }
+  }
+
+  public boolean isEnabled() {
+    return properties.isEnabled();
+  }
+
+  public CompletableFuture<Post> submit(Post post) {
+    PendingPost pending = new PendingPost(post);
+    boolean accepted;
+    try {
+      accepted = properties.getEnqueueTimeoutMillis() > 0
+        ? queue.offer(pending, properties.getEnqueueTimeoutMillis(), TimeUnit.MILLISECONDS)
+        : queue.offer(pending);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      accepted = false;
+    }
+    if (!accepted) {
+      rejected.incrementAndGet();
+      pending.future.completeExceptionally(new ServiceUnavailableException("posts batch queue is full"));
+    }
+    return pending.future;
+  }
+
+  private void run() {
+    List<PendingPost> batch = new ArrayList<>(properties.getMaxBatchSize());
+    while (running) {
+      try {
+        PendingPost first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        collect(batch);
+        inFlight.acquire();
+        flush(batch);
+        batch = new ArrayList<>(properties.getMaxBatchSize());
+      } catch (InterruptedException e) {
+        break;
+      }
+    }
+    failAll(batch);
+  }
+
+  // 이미 쌓인 글은 drainTo 로 한 번에 가져오고, 모자라면 lingerMillis 가 끝날 때까지 더 기다린다.
+  private void collect(List<PendingPost> batch) throws InterruptedException {
+    int max = properties.getMaxBatchSize();
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getLingerMillis());
+    while (batch.size() < max) {
+      if (queue.drainTo(batch, max - batch.size()) > 0) {
+        continue;
+      }
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return;
+      }
+      PendingPost next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+      if (next == null) {
+        return;
+      }
+      batch.add(next);
+    }
+  }
+
+  private void flush(List<PendingPost> batch) {
+    // 기다리다 타임아웃으로 취소된 글은 보내지 않는다.
+    batch.removeIf(pending -> pending.future.isDone());
+    if (batch.isEmpty()) {
+      inFlight.release();
+      return;
+    }
+    List<Post> posts = new ArrayList<>(batch.size());
+    for (PendingPost pending : batch) {
+      posts.add(pending.post);
+    }
+    batches.incrementAndGet();
+    batchedPosts.addAndGet(posts.size());
+
+    // 요청을 보내기도 전에 예외가 나도 flusher 는 살아 있어야 하고, 허가를 돌려주고 배치의 future 를 모두 끝내야 한다.
+    CompletableFuture<List<Post>> response;
+    try {
+      response = postsClient.createPosts(posts);
+    } catch (RuntimeException e) {
+      complete(batch, null, e);
+      return;
+    }
+    response.whenComplete((created, failure) -> complete(batch, created, failure));
+  }
+
+  private void complete(List<PendingPost> batch, List<Post> created, Throwable failure) {
+    inFlight.release();
+    if (failure == null && created.size() != batch.size()) {
+      failure = new BadGatewayException("posts API returned " + created.size() + " posts for a batch of " + batch.size(), null);
+    }
+    for (int i = 0; i < batch.size(); i++) {
+      if (failure != null) {
+        batch.get(i).future.completeExceptionally(failure);
+      } else {
+        batch.get(i).future.complete(created.get(i));
+      }
+    }
+  }
+
+  private void failAll(List<PendingPost> batch) {
+    ServiceUnavailableException closed = new ServiceUnavailableException("posts batcher is shutting down");
+    queue.drainTo(batch);
+    for (PendingPost pending : batch) {
+      pending.future.completeExceptionally(closed);
+    }
+  }
+
+  public Map<String, Object> metrics() {
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("enabled", properties.isEnabled());
+    metrics.put("queued", queue.size());
+    metrics.put("batches", batches.get());
+    metrics.put("batchedPosts", batchedPosts.get());
+    metrics.put("averageBatchSize", batches.get() == 0 ? 0 : (double) batchedPosts.get() / batches.get());
+    metrics.put("inFlightBatches", properties.getMaxInFlightBatches() - inFlight.availablePermits());
+    metrics.put("rejected", rejected.get());
+    return metrics;
+  }
+
+  @PreDestroy
+  public void close() throws InterruptedException {
+    running = false;
+    if (flusher.isAlive()) {
+      flusher.interrupt();
+      flusher.join(TimeUnit.SECONDS.toMillis(5));
+    }
+    failAll(new ArrayList<>());
+  }
+
+  private static final class PendingPost {
+    final Post post;
+    final CompletableFuture<Post> future = new CompletableFuture<>();
+
+    PendingPost(Post post) {
+      this.post = post;
+    }
+  }
+}
@@ -0,0 +1,131 @@
+package com.example;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.HttpComponentsAsyncClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.client.AsyncRestTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 원격 posts REST API 를 호출하는 클라이언트
+ *
+ * 예전에는 요청마다 RestTemplate 을 새로 만들고 postForObject 로 응답이 올 때까지 톰캣 워커 스레드를 붙잡고 있었다.
+ * 이 클라이언트는 애플리케이션에 하나만 만들어지고, Apache HttpAsyncClient 의 커넥션 풀과 IO reactor 스레드 위에서
+ * AsyncRestTemplate 으로 요청을 보낸다. 그래서 커넥션은 keep-alive 로 재사용되고, 응답을 기다리는 동안 요청 스레드는 반납된다.
+ *
+ * 타임아웃, 최대 커넥션 수, keep-alive 시간은 PostsClientProperties(posts.client.*) 로 설정한다.
+ */
+@Component
+public class PostsClient {
+  static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+  private final PostsClientProperties properties;
+  private final CloseableHttpAsyncClient httpClient;
+  private final AsyncRestTemplate restTemplate;
+
+  @Autowired
+  public PostsClient(PostsClientProperties properties) throws IOReactorException {
+    this.properties = properties;
+
+    IOReactorConfig reactorConfig = IOReactorConfig.custom()
+      .setConnectTimeout(properties.getConnectTimeoutMillis())
+      .setSoTimeout(properties.getReadTimeoutMillis())
+      .build();
+    PoolingNHttpClientConnectionManager connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(reactorConfig));
+    connectionManager.setMaxTotal(properties.getMaxConnections());
+    connectionManager.setDefaultMaxPerRoute(properties.getMaxConnectionsPerRoute());
+
+    RequestConfig requestConfig = RequestConfig.custom()
+      .setConnectTimeout(properties.getConnectTimeoutMillis())
+      .setSocketTimeout(properties.getReadTimeoutMillis())
+      .setConnectionRequestTimeout(properties.getConnectionRequestTimeoutMillis())
+      .build();
+
+    // 서버가 Keep-Alive: timeout=n 을 보내면 그 값과 설정값 중 작은 값만큼, 보내지 않으면 설정값만큼 커넥션을 재사용한다.
+    ConnectionKeepAliveStrategy keepAlive = (response, context) -> {
+      long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+      return duration > 0 ? Math.min(duration, properties.getKeepAliveMillis()) : properties.getKeepAliveMillis();
+    };
+
+    this.httpClient = HttpAsyncClients.custom()
+      .setConnectionManager(connectionManager)
+      .setDefaultRequestConfig(requestConfig)
+      .setKeepAliveStrategy(keepAlive)
+      .build();
+    this.httpClient.start();
+    this.restTemplate = new AsyncRestTemplate(new HttpComponentsAsyncClientHttpRequestFactory(httpClient));
+  }
+
+  /**
+   * Post 를 원격 API 에 생성한다. 반환된 future 는 HttpAsyncClient 의 IO 스레드에서 완료된다.
+   * 실패하면 BadGatewayException 으로 완료된다.
+   */
+  public CompletableFuture<Post> createPost(Post post) {
+    return createPost(post, null);
+  }
+
+  /**
+   * idempotencyKey 가 있으면 Idempotency-Key 헤더로 보낸다. 같은 글을 두 번 보내도(hedging) 원격 API 가 중복을 거를 수 있게 한다.
+   * 반환된 future 를 cancel() 하면 진행 중인 HTTP 요청도 취소해서 커넥션을 풀에 돌려준다.
+   */
+  public CompletableFuture<Post> createPost(Post post, String idempotencyKey) {
+    HttpHeaders headers = new HttpHeaders();
+    if (idempotencyKey != null) {
+      headers.set(IDEMPOTENCY_KEY, idempotencyKey);
+    }
+    CompletableFuture<Post> result = new CompletableFuture<>();
+    ListenableFuture<ResponseEntity<Post>> request = restTemplate.postForEntity(properties.getUrl(), new HttpEntity<>(post, headers), Post.class);
+    request.addCallback(
+      response -> result.complete(response.getBody()),
+      failure -> result.completeExceptionally(new BadGatewayException("failed to create post at " + properties.getUrl(), failure)));
+    result.whenComplete((created, failure) -> {
+      if (failure instanceof CancellationException) {
+        request.cancel(true);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * 여러 글을 bulkUrl 에 한 번의 요청으로 생성한다. 응답 배열은 요청과 같은 순서여야 한다.
+   */
+  public CompletableFuture<List<Post>> createPosts(List<Post> posts) {
+    CompletableFuture<List<Post>> result = new CompletableFuture<>();
+    restTemplate.postForEntity(properties.getBulkUrl(), new HttpEntity<>(posts), Post[].class).addCallback(
+      response -> result.complete(response.getBody() == null ? Collections.<Post>emptyList() : Arrays.asList(response.getBody())),
+      failure -> result.completeExceptionally(new BadGatewayException("failed to create " + posts.size() + " posts at " + properties.getBulkUrl(), failure)));
+    return result;
+  }
+
+  /**
+   * 요청 하나가 끝날 때까지 걸릴 수 있는 최대 시간(ms). DeferredResult 의 타임아웃으로 사용한다.
+   */
+  public long maxRequestMillis() {
+    return (long) properties.getConnectionRequestTimeoutMillis() + properties.getConnectTimeoutMillis() + properties.getReadTimeoutMillis();
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    httpClient.close();
+  }
+}
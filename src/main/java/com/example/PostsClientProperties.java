@@ -0,0 +1,97 @@
+package com.example;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * application.properties 의 posts.client.* 설정
+ */
+@Component
+@ConfigurationProperties(prefix = "posts.client")
+public class PostsClientProperties {
+  // 글을 생성하는 원격 REST API 의 URL
+  private String url = "https://rest-api-ko-donghyun.c9users.io/posts.json";
+
+  // 여러 글을 JSON 배열 하나로 생성하는 원격 API 의 URL. 응답도 같은 순서의 배열이다. (posts.batch.enabled=true 일 때 사용)
+  private String bulkUrl = "https://rest-api-ko-donghyun.c9users.io/posts/bulk.json";
+
+  // TCP 연결을 맺을 때까지 기다리는 시간(ms)
+  private int connectTimeoutMillis = 2000;
+
+  // 응답 데이터를 기다리는 시간(ms). 이 시간 동안 아무것도 오지 않으면 요청이 실패한다.
+  private int readTimeoutMillis = 5000;
+
+  // 풀에서 커넥션을 빌릴 때까지 기다리는 시간(ms). 경로당 커넥션이 모두 사용 중이면 이 시간 뒤에 실패한다.
+  private int connectionRequestTimeoutMillis = 1000;
+
+  // 전체 / 경로(host:port)당 최대 커넥션 수
+  private int maxConnections = 200;
+  private int maxConnectionsPerRoute = 50;
+
+  // 서버가 Keep-Alive 헤더로 알려주지 않을 때 유휴 커넥션을 재사용할 최대 시간(ms)
+  private long keepAliveMillis = 30000;
+
+  public String getUrl() {
+    return url;
+  }
+
+  public void setUrl(String url) {
+    this.url = url;
+  }
+
+  public String getBulkUrl() {
+    return bulkUrl;
+  }
+
+  public void setBulkUrl(String bulkUrl) {
+    this.bulkUrl = bulkUrl;
+  }
+
+  public int getConnectTimeoutMillis() {
+    return connectTimeoutMillis;
+  }
+
+  public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+    this.connectTimeoutMillis = connectTimeoutMillis;
+  }
+
+  public int getReadTimeoutMillis() {
+    return readTimeoutMillis;
+  }
+
+  public void setReadTimeoutMillis(int readTimeoutMillis) {
+    this.readTimeoutMillis = readTimeoutMillis;
+  }
+
+  public int getConnectionRequestTimeoutMillis() {
+    return connectionRequestTimeoutMillis;
+  }
+
+  public void setConnectionRequestTimeoutMillis(int connectionRequestTimeoutMillis) {
+    this.connectionRequestTimeoutMillis = connectionRequestTimeoutMillis;
+  }
+
+  public int getMaxConnections() {
+    return maxConnections;
+  }
+
+  public void setMaxConnections(int maxConnections) {
+    this.maxConnections = maxConnections;
+  }
+
+  public int getMaxConnectionsPerRoute() {
+    return maxConnectionsPerRoute;
+  }
+
+  public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+    this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+  }
+
+  public long getKeepAliveMillis() {
+    return keepAliveMillis;
+  }
+
+  public void setKeepAliveMillis(long keepAliveMillis) {
+    this.keepAliveMillis = keepAliveMillis;
+  }
+}
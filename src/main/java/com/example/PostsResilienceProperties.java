@@ -0,0 +1,127 @@
+package com.example;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * application.properties 의 posts.resilience.* 설정
+ * ResilientPostsClient 의 타임아웃, bulkhead, 서킷 브레이커, hedging 동작을 정한다.
+ */
+@Component
+@ConfigurationProperties(prefix = "posts.resilience")
+public class PostsResilienceProperties {
+  // 호출 하나를 기다리는 최대 시간(ms). 이 시간이 지나면 원격 요청을 취소하고 대체 화면을 보여준다.
+  private long callTimeoutMillis = 3000;
+
+  // 동시에 진행할 수 있는 원격 호출 수. 넘치는 요청은 기다리지 않고 바로 거절한다.
+  private int maxConcurrentCalls = 20;
+
+  // 서킷 브레이커가 판단에 쓰는 최근 호출 수와, 판단을 시작하기 위한 최소 호출 수
+  private int slidingWindowSize = 50;
+  private int minimumCalls = 10;
+
+  // 실패율(%)이 이 값 이상이면 브레이커를 연다.
+  private double failureRateThreshold = 50;
+
+  // slowCallMillis 이상 걸린 호출을 느린 호출로 보고, 그 비율(%)이 slowCallRateThreshold 이상이면 브레이커를 연다.
+  private long slowCallMillis = 2000;
+  private double slowCallRateThreshold = 80;
+
+  // 브레이커가 열린 뒤 시험 호출을 허용하기까지 기다리는 시간(ms)과 시험 호출 수
+  private long openMillis = 10000;
+  private int halfOpenCalls = 3;
+
+  // hedging: 첫 요청이 최근 p95 지연보다 오래 걸리면 같은 Idempotency-Key 로 요청을 하나 더 보내고 먼저 온 응답을 쓴다.
+  // 글 생성은 멱등이 아니므로 원격 API 가 Idempotency-Key 로 중복을 걸러줄 때만 켜야 한다.
+  private boolean hedgeEnabled = false;
+  // p95 가 이 값보다 작아도 최소 이만큼은 기다린 뒤 두 번째 요청을 보낸다(ms).
+  private long hedgeMinDelayMillis = 50;
+
+  public long getCallTimeoutMillis() {
+    return callTimeoutMillis;
+  }
+
+  public void setCallTimeoutMillis(long callTimeoutMillis) {
+    this.callTimeoutMillis = callTimeoutMillis;
+  }
+
+  public int getMaxConcurrentCalls() {
+    return maxConcurrentCalls;
+  }
+
+  public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+    this.maxConcurrentCalls = maxConcurrentCalls;
+  }
+
+  public int getSlidingWindowSize() {
+    return slidingWindowSize;
+  }
+
+  public void setSlidingWindowSize(int slidingWindowSize) {
+    this.slidingWindowSize = slidingWindowSize;
+  }
+
+  public int getMinimumCalls() {
+    return minimumCalls;
+  }
+
+  public void setMinimumCalls(int minimumCalls) {
+    this.minimumCalls = minimumCalls;
+  }
+
+  public double getFailureRateThreshold() {
+    return failureRateThreshold;
+  }
+
+  public void setFailureRateThreshold(double failureRateThreshold) {
+    this.failureRateThreshold = failureRateThreshold;
+  }
+
+  public long getSlowCallMillis() {
+    return slowCallMillis;
+  }
+
+  public void setSlowCallMillis(long slowCallMillis) {
+    this.slowCallMillis = slowCallMillis;
+  }
+
+  public double getSlowCallRateThreshold() {
+    return slowCallRateThreshold;
+  }
+
+  public void setSlowCallRateThreshold(double slowCallRateThreshold) {
+    this.slowCallRateThreshold = slowCallRateThreshold;
+  }
+
+  public long getOpenMillis() {
+    return openMillis;
+  }
+
+  public void setOpenMillis(long openMillis) {
+    this.openMillis = openMillis;
+  }
+
+  public int getHalfOpenCalls() {
+    return halfOpenCalls;
+  }
+
+  public void setHalfOpenCalls(int halfOpenCalls) {
+    this.halfOpenCalls = halfOpenCalls;
+  }
+
+  public boolean isHedgeEnabled() {
+    return hedgeEnabled;
+  }
+
+  public void setHedgeEnabled(boolean hedgeEnabled) {
+    this.hedgeEnabled = hedgeEnabled;
+  }
+
+  public long getHedgeMinDelayMillis() {
+    return hedgeMinDelayMillis;
+  }
+
+  public void setHedgeMinDelayMillis(long hedgeMinDelayMillis) {
+    this.hedgeMinDelayMillis = hedgeMinDelayMillis;
+  }
+}
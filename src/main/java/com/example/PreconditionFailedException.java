@@ -0,0 +1,15 @@
+package com.example;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * If-Match 로 받은 ETag 가 현재 버전과 다를 때 던지는 예외. 412 Precondition Failed 로 응답한다.
+ * 다른 사용자가 먼저 글을 고쳤다는 뜻이므로 클라이언트는 글을 다시 읽고 패치를 다시 보내야 한다.
+ */
+@ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+public class PreconditionFailedException extends RuntimeException {
+  public PreconditionFailedException(String message) {
+    super(message);
+  }
+}
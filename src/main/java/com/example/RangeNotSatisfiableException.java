@@ -0,0 +1,21 @@
+package com.example;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Range 헤더의 범위가 파일 밖일 때 던지는 예외. 416 Requested Range Not Satisfiable 로 응답한다.
+ */
+@ResponseStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+public class RangeNotSatisfiableException extends RuntimeException {
+  private final long length;
+
+  public RangeNotSatisfiableException(String range, long length) {
+    super("range not satisfiable: " + range + " (length " + length + ")");
+    this.length = length;
+  }
+
+  public long getLength() {
+    return length;
+  }
+}
@@ -0,0 +1,310 @@
+package com.example;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 요청 경로에서 남기는 이벤트 로그. 한 줄에 JSON 객체 하나씩 파일에 쓴다.
+ *
+ * 예전에는 컨트롤러가 System.out.println 으로 글 내용이나 파일 이름을 찍었는데, System.out 은 println 마다 락을 잡고 바로 flush 하므로
+ * 요청이 몰리면 모든 요청 스레드가 콘솔 쓰기 하나를 두고 줄을 섰다.
+ *
+ * 이제 요청 스레드는 미리 만들어 둔 Event 칸 하나를 CAS 로 차지해서 필드를 채우고 순번을 적어(publish) 두기만 한다. 객체를 만들지도, 락을 잡지도 않는다.
+ * "request-log" 스레드 하나가 publish 된 칸을 순서대로 batchSize 개까지 JSON 으로 옮긴 다음 칸을 돌려주고, 모은 바이트를 파일에 한번에 쓴다.
+ * 파일이 maxFileBytes 를 넘으면 file.1, file.2 ... 로 밀어낸다.
+ *
+ * 칸이 모두 차 있으면 whenFull 에 따라 이벤트를 버리거나(DROP) 빈 칸이 생길 때까지 기다린다(BLOCK).
+ */
+@Component
+public class RequestLog {
+  private static final Logger logger = LoggerFactory.getLogger(RequestLog.class);
+  // BLOCK 일 때 빈 칸을 기다리며 쉬는 시간
+  private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  @Autowired
+  RequestLogProperties properties;
+
+  private Event[] events;
+  // 칸마다 마지막으로 publish 된 순번. 읽는 스레드는 기다리는 순번과 같을 때만 읽는다.
+  private AtomicLongArray published;
+  private int mask;
+  // 다음에 나눠 줄 순번
+  private final AtomicLong claimed = new AtomicLong();
+  // 이보다 작은 순번의 칸은 다 읽었으므로 다시 쓸 수 있다. 읽는 스레드만 바꾼다.
+  private volatile long consumed;
+  private final AtomicLong dropped = new AtomicLong();
+  private final AtomicLong waited = new AtomicLong();
+
+  // 아래는 drain() 락 안에서만 쓴다.
+  private final ByteArrayOutputStream batch = new ByteArrayOutputStream();
+  private JsonGenerator generator;
+  private Path file;
+  private OutputStream out;
+  private long fileBytes;
+  private long written;
+  private long rolls;
+  private long writeErrors;
+
+  private Thread writer;
+  private volatile boolean running;
+
+  @PostConstruct
+  public void start() throws IOException {
+    int capacity = Integer.highestOneBit(Math.max(2, properties.getBufferSize() - 1)) << 1;
+    events = new Event[capacity];
+    published = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      events[i] = new Event();
+      published.set(i, -1);
+    }
+    mask = capacity - 1;
+    if (!properties.isEnabled()) {
+      return;
+    }
+    file = Paths.get(properties.getFile()).toAbsolutePath();
+    Files.createDirectories(file.getParent());
+    open();
+    generator = new JsonFactory().createGenerator(batch);
+    generator.setRootValueSeparator(null);
+
+    running = true;
+    writer = new Thread(this::run, "request-log");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  public void event(String type, String key, String value) {
+    publish(type, 1, key, value, null, null);
+  }
+
+  public void event(String type, String key1, String value1, String key2, String value2) {
+    publish(type, 2, key1, value1, key2, value2);
+  }
+
+  private void publish(String type, int fields, String key1, String value1, String key2, String value2) {
+    if (!properties.isEnabled()) {
+      return;
+    }
+    long sequence = claim();
+    if (sequence < 0) {
+      return;
+    }
+    int index = (int) (sequence & mask);
+    Event event = events[index];
+    event.time = System.currentTimeMillis();
+    event.thread = Thread.currentThread();
+    event.type = type;
+    event.fields = fields;
+    event.key1 = key1;
+    event.value1 = value1;
+    event.key2 = key2;
+    event.value2 = value2;
+    // 읽는 쪽은 순번이 보일 때 위의 필드도 모두 보인다.
+    published.lazySet(index, sequence);
+  }
+
+  // 빈 칸의 순번을 받는다. DROP 이면서 빈 칸이 없으면 -1
+  private long claim() {
+    boolean counted = false;
+    while (true) {
+      long sequence = claimed.get();
+      if (sequence - consumed >= events.length) {
+        if (properties.getWhenFull() == RequestLogProperties.WhenFull.DROP || !running) {
+          dropped.incrementAndGet();
+          return -1;
+        }
+        if (!counted) {
+          waited.incrementAndGet();
+          counted = true;
+        }
+        LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        continue;
+      }
+      if (claimed.compareAndSet(sequence, sequence + 1)) {
+        return sequence;
+      }
+    }
+  }
+
+  private void run() {
+    long interval = TimeUnit.MILLISECONDS.toNanos(properties.getFlushIntervalMillis());
+    while (running) {
+      LockSupport.parkNanos(this, interval);
+      drainAll();
+    }
+    drainAll();
+  }
+
+  private void drainAll() {
+    try {
+      while (drain() > 0) {
+        // 쌓인 이벤트가 batchSize 보다 많으면 쉬지 않고 이어서 쓴다.
+      }
+    } catch (RuntimeException e) {
+      logger.error("failed to write request log", e);
+    }
+  }
+
+  /**
+   * publish 된 이벤트를 batchSize 개까지 파일에 쓴다. 쓰는 스레드와 close() 가 부르므로 락을 건다. 이벤트를 남기는 쪽은 이 락과 관계없다.
+   */
+  synchronized int drain() {
+    long next = consumed;
+    int count = 0;
+    try {
+      while (count < properties.getBatchSize() && published.get((int) (next & mask)) == next) {
+        Event event = events[(int) (next & mask)];
+        format(event);
+        event.clear();
+        next++;
+        count++;
+      }
+      if (count == 0) {
+        return 0;
+      }
+      generator.flush();
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      // 파일에 쓰기 전에 칸부터 돌려준다.
+      consumed = next;
+    }
+    try {
+      if (fileBytes > 0 && fileBytes + batch.size() > properties.getMaxFileBytes()) {
+        roll();
+      }
+      batch.writeTo(out);
+      fileBytes += batch.size();
+      written += count;
+    } catch (IOException e) {
+      writeErrors++;
+      logger.error("failed to write {} events to {}", count, file, e);
+    } finally {
+      batch.reset();
+    }
+    return count;
+  }
+
+  private void format(Event event) throws IOException {
+    generator.writeStartObject();
+    generator.writeStringField("time", DateTimeFormatter.ISO_INSTANT.format(Instant.ofEpochMilli(event.time)));
+    generator.writeStringField("thread", event.thread.getName());
+    generator.writeStringField("event", event.type);
+    writeField(event.key1, event.value1);
+    if (event.fields > 1) {
+      writeField(event.key2, event.value2);
+    }
+    generator.writeEndObject();
+    generator.writeRaw('\n');
+  }
+
+  private void writeField(String key, String value) throws IOException {
+    int max = properties.getMaxValueChars();
+    if (value != null && value.length() > max) {
+      value = value.substring(0, max) + "...";
+    }
+    generator.writeStringField(key, value);
+  }
+
+  private void open() throws IOException {
+    out = new FileOutputStream(file.toFile(), true);
+    fileBytes = Files.size(file);
+  }
+
+  // file.(maxFiles - 1) -> file.maxFiles, ..., file -> file.1 로 밀어내고 새 파일을 연다.
+  private void roll() throws IOException {
+    out.close();
+    for (int i = properties.getMaxFiles() - 1; i >= 1; i--) {
+      Path older = rolled(i);
+      if (Files.exists(older)) {
+        Files.move(older, rolled(i + 1), StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    if (properties.getMaxFiles() > 0) {
+      Files.move(file, rolled(1), StandardCopyOption.REPLACE_EXISTING);
+    } else {
+      Files.delete(file);
+    }
+    open();
+    rolls++;
+  }
+
+  private Path rolled(int index) {
+    return file.resolveSibling(file.getFileName() + "." + index);
+  }
+
+  public synchronized Map<String, Object> metrics() {
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("enabled", properties.isEnabled());
+    metrics.put("file", file == null ? null : file.toString());
+    metrics.put("whenFull", properties.getWhenFull());
+    metrics.put("capacity", events.length);
+    metrics.put("published", claimed.get());
+    metrics.put("pending", claimed.get() - consumed);
+    metrics.put("written", written);
+    metrics.put("dropped", dropped.get());
+    metrics.put("waited", waited.get());
+    metrics.put("rolls", rolls);
+    metrics.put("writeErrors", writeErrors);
+    return metrics;
+  }
+
+  /**
+   * 남은 이벤트를 모두 쓰고 파일을 닫는다. 이후의 이벤트는 BLOCK 이어도 기다리지 않고 버린다.
+   */
+  @PreDestroy
+  public void close() throws IOException, InterruptedException {
+    running = false;
+    if (writer != null) {
+      LockSupport.unpark(writer);
+      writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+    synchronized (this) {
+      if (out != null) {
+        out.close();
+      }
+    }
+  }
+
+  // 칸 하나. 필드 수를 고정해서 남기는 쪽이 배열이나 Map 을 만들지 않게 한다.
+  private static final class Event {
+    long time;
+    Thread thread;
+    String type;
+    int fields;
+    String key1;
+    String value1;
+    String key2;
+    String value2;
+
+    // 다 쓴 값을 붙잡고 있지 않도록 지운다.
+    void clear() {
+      thread = null;
+      value1 = null;
+      value2 = null;
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package com.example;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * application.properties 의 request-log.* 설정
+ * 요청 경로에서 남기는 이벤트 로그(RequestLog)의 설정이다.
+ */
+@Component
+@ConfigurationProperties(prefix = "request-log")
+public class RequestLogProperties {
+  /**
+   * 링 버퍼가 가득 찼을 때 요청 스레드가 할 일
+   */
+  public enum WhenFull {
+    // 기다리지 않고 이벤트를 버리고 dropped 로 센다.
+    DROP,
+    // 빈 칸이 생길 때까지 기다린다. 로그를 잃지 않지만 파일 쓰기가 느려지면 요청도 느려진다.
+    BLOCK
+  }
+
+  private boolean enabled = true;
+
+  // 로그 파일. 크기가 maxFileBytes 를 넘으면 file.1, file.2 ... 로 밀어내고 새로 쓴다.
+  private String file = "data/logs/requests.log";
+  private long maxFileBytes = 10 * 1024 * 1024;
+  // 남겨 둘 지난 파일 수
+  private int maxFiles = 5;
+
+  // 미리 만들어 두는 이벤트 칸 수. 2의 거듭제곱으로 올림한다.
+  private int bufferSize = 8192;
+  private WhenFull whenFull = WhenFull.DROP;
+
+  // 쓰는 스레드가 한번에 모아서 파일에 쓰는 최대 이벤트 수와 쌓인 이벤트가 없을 때 다시 볼 때까지 쉬는 시간(ms)
+  private int batchSize = 512;
+  private long flushIntervalMillis = 10;
+
+  // 값이 이보다 길면 잘라서 쓴다. 글 본문이 통째로 로그에 남지 않게 한다.
+  private int maxValueChars = 256;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public String getFile() {
+    return file;
+  }
+
+  public void setFile(String file) {
+    this.file = file;
+  }
+
+  public long getMaxFileBytes() {
+    return maxFileBytes;
+  }
+
+  public void setMaxFileBytes(long maxFileBytes) {
+    this.maxFileBytes = maxFileBytes;
+  }
+
+  public int getMaxFiles() {
+    return maxFiles;
+  }
+
+  public void setMaxFiles(int maxFiles) {
+    this.maxFiles = maxFiles;
+  }
+
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  public void setBufferSize(int bufferSize) {
+    this.bufferSize = bufferSize;
+  }
+
+  public WhenFull getWhenFull() {
+    return whenFull;
+  }
+
+  public void setWhenFull(WhenFull whenFull) {
+    this.whenFull = whenFull;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public void setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  public long getFlushIntervalMillis() {
+    return flushIntervalMillis;
+  }
+
+  public void setFlushIntervalMillis(long flushIntervalMillis) {
+    this.flushIntervalMillis = flushIntervalMillis;
+  }
+
+  public int getMaxValueChars() {
+    return maxValueChars;
+  }
+
+  public void setMaxValueChars(int maxValueChars) {
+    this.maxValueChars = maxValueChars;
+  }
+}
@@ -0,0 +1,362 @@
+package com.example;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 요청 경로(route)별 지연 시간 히스토그램과 상태 코드별 응답 수
+ *
+ * route 는 "GET /api/articles/{id}" 처럼 HTTP 메소드와 @RequestMapping 의 패턴이라서 경로 변수가 달라도 하나로 묶인다.
+ * 원격 API 호출(outbound)도 이름별로 같은 방법으로 모은다.
+ *
+ * route 마다 LatencyHistogram 을 (windowSlices + 1) 개 돌려 쓴다. 기록은 지금 조각에만 하고, 조각 하나가 지날 때마다
+ * ticker 가 가장 오래된 조각을 비워서 다음 조각으로 만든다. 그래서 최근 windowSeconds 의 백분위와 초당 요청 수는 조각을 더하기만 하면 되고,
+ * 시작한 뒤 전체(total) 히스토그램도 따로 하나 있다.
+ *
+ * 기록은 route 를 찾는 맵 조회 두 번과 AtomicLongArray 몇 칸을 올리는 것뿐이고 객체를 만들지 않는다.
+ * 읽기(metrics(), prometheus())는 관리용이라 조각과 stripe 를 모두 더한다.
+ */
+@Component
+public class RequestMetrics {
+  private static final HttpMethod[] METHODS = HttpMethod.values();
+  // HttpMethod 에 없는 메소드는 마지막 칸에 모은다.
+  private static final int OTHER_METHOD = METHODS.length;
+  private static final String[] STATUS_CLASSES = {"1xx", "2xx", "3xx", "4xx", "5xx"};
+  // Prometheus histogram 으로 내보낼 구간 경계(초)
+  private static final double[] PROMETHEUS_BUCKETS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30};
+
+  @Autowired
+  MetricsProperties properties;
+
+  private int stripes;
+  private int slots;
+  private long sliceNanos;
+  private long startedAt;
+  private volatile int current;
+  private volatile long sliceStartedAt;
+  private ScheduledExecutorService ticker;
+
+  // 패턴 -> 메소드별 Route
+  private final ConcurrentHashMap<String, AtomicReferenceArray<Route>> routes = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Route> outbound = new ConcurrentHashMap<>();
+
+  @PostConstruct
+  public void start() {
+    int stripes = properties.getStripes() > 0 ? properties.getStripes() : Runtime.getRuntime().availableProcessors();
+    this.stripes = Integer.highestOneBit(Math.max(1, Math.min(stripes, 64) - 1)) << 1;
+    this.slots = properties.getWindowSlices() + 1;
+    this.sliceNanos = TimeUnit.SECONDS.toNanos(properties.getWindowSeconds()) / properties.getWindowSlices();
+    this.startedAt = System.nanoTime();
+    this.sliceStartedAt = startedAt;
+    if (!properties.isEnabled()) {
+      return;
+    }
+    ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "request-metrics");
+      thread.setDaemon(true);
+      return thread;
+    });
+    ticker.scheduleAtFixedRate(this::tick, sliceNanos, sliceNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public boolean isEnabled() {
+    return properties.isEnabled();
+  }
+
+  /**
+   * 컨트롤러 요청 하나를 기록한다.
+   *
+   * @param route @RequestMapping 의 패턴
+   */
+  public void record(String method, String route, long nanos, int status) {
+    if (!properties.isEnabled()) {
+      return;
+    }
+    AtomicReferenceArray<Route> byMethod = routes.get(route);
+    if (byMethod == null) {
+      byMethod = routes.computeIfAbsent(route, key -> new AtomicReferenceArray<>(METHODS.length + 1));
+    }
+    HttpMethod httpMethod = HttpMethod.resolve(method);
+    int index = httpMethod == null ? OTHER_METHOD : httpMethod.ordinal();
+    Route metrics = byMethod.get(index);
+    if (metrics == null) {
+      byMethod.compareAndSet(index, null, new Route(httpMethod == null ? "OTHER" : httpMethod.name(), route, slots, stripes));
+      metrics = byMethod.get(index);
+    }
+    metrics.record(current, nanos, status);
+  }
+
+  /**
+   * 원격 API 호출 하나를 기록한다. 응답을 받지 못한 실패는 502(연결, 응답 오류)나 504(타임아웃)처럼 상태 코드로 바꿔서 넘긴다.
+   */
+  public void recordOutbound(String name, long nanos, int status) {
+    if (!properties.isEnabled()) {
+      return;
+    }
+    Route metrics = outbound.get(name);
+    if (metrics == null) {
+      metrics = outbound.computeIfAbsent(name, key -> new Route(null, key, slots, stripes));
+    }
+    metrics.record(current, nanos, status);
+  }
+
+  /**
+   * 가장 오래된 조각을 비우고 다음 조각으로 넘어간다. 조각이 바뀌는 순간에 기록하던 요청은 이전 조각에 들어가도 괜찮다.
+   */
+  void tick() {
+    int next = (current + 1) % slots;
+    for (AtomicReferenceArray<Route> byMethod : routes.values()) {
+      for (int i = 0; i < byMethod.length(); i++) {
+        Route route = byMethod.get(i);
+        if (route != null) {
+          route.slots[next].clear();
+        }
+      }
+    }
+    for (Route route : outbound.values()) {
+      route.slots[next].clear();
+    }
+    sliceStartedAt = System.nanoTime();
+    current = next;
+  }
+
+  // 창이 실제로 덮는 시간(초). 시작한 지 얼마 안 됐으면 windowSeconds 보다 짧다.
+  private double coveredSeconds() {
+    long now = System.nanoTime();
+    long covered = Math.min(now - startedAt, (slots - 1) * sliceNanos + (now - sliceStartedAt));
+    return Math.max(covered, 1) / 1e9;
+  }
+
+  private List<Route> inboundRoutes() {
+    List<Route> list = new ArrayList<>();
+    for (AtomicReferenceArray<Route> byMethod : routes.values()) {
+      for (int i = 0; i < byMethod.length(); i++) {
+        if (byMethod.get(i) != null) {
+          list.add(byMethod.get(i));
+        }
+      }
+    }
+    list.sort(Comparator.comparing((Route route) -> route.name).thenComparing(route -> route.method));
+    return list;
+  }
+
+  private List<Route> outboundRoutes() {
+    List<Route> list = new ArrayList<>(outbound.values());
+    list.sort(Comparator.comparing(route -> route.name));
+    return list;
+  }
+
+  public Map<String, Object> metrics() {
+    double covered = coveredSeconds();
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("enabled", properties.isEnabled());
+    metrics.put("windowSeconds", properties.getWindowSeconds());
+    metrics.put("coveredSeconds", covered);
+    List<Map<String, Object>> inbound = new ArrayList<>();
+    for (Route route : inboundRoutes()) {
+      Map<String, Object> entry = new LinkedHashMap<>();
+      entry.put("method", route.method);
+      entry.put("route", route.name);
+      route.describe(entry, covered);
+      inbound.add(entry);
+    }
+    metrics.put("routes", inbound);
+    List<Map<String, Object>> outboundList = new ArrayList<>();
+    for (Route route : outboundRoutes()) {
+      Map<String, Object> entry = new LinkedHashMap<>();
+      entry.put("name", route.name);
+      route.describe(entry, covered);
+      outboundList.add(entry);
+    }
+    metrics.put("outbound", outboundList);
+    return metrics;
+  }
+
+  /**
+   * Prometheus text format(0.0.4)
+   *
+   * 시작한 뒤 전체는 histogram 과 상태 코드별 counter 로, 최근 windowSeconds 는 summary(quantile) 로 내보낸다.
+   * histogram 의 le 는 PROMETHEUS_BUCKETS 로 줄이고, le 경계에 걸친 LatencyHistogram 구간은 위쪽 le 에 센다.
+   */
+  public String prometheus() {
+    StringBuilder out = new StringBuilder();
+    List<Route> inbound = inboundRoutes();
+    List<Route> outboundList = outboundRoutes();
+    writeFamily(out, "http_server_requests", "controller requests", inbound);
+    writeFamily(out, "http_client_requests", "outbound API calls", outboundList);
+    return out.toString();
+  }
+
+  private void writeFamily(StringBuilder out, String family, String description, List<Route> list) {
+    if (list.isEmpty()) {
+      return;
+    }
+    out.append("# HELP ").append(family).append("_seconds Latency of ").append(description).append(" since start\n");
+    out.append("# TYPE ").append(family).append("_seconds histogram\n");
+    for (Route route : list) {
+      long[] total = route.total.merge(new long[LatencyHistogram.LENGTH]);
+      String labels = route.labels();
+      int bucket = 0;
+      long cumulative = 0;
+      for (double le : PROMETHEUS_BUCKETS) {
+        long limit = (long) (le * 1_000_000);
+        while (bucket < LatencyHistogram.BUCKETS && LatencyHistogram.upperBound(bucket) <= limit) {
+          cumulative += total[bucket++];
+        }
+        out.append(family).append("_seconds_bucket{").append(labels).append(",le=\"").append(le).append("\"} ").append(cumulative).append('\n');
+      }
+      out.append(family).append("_seconds_bucket{").append(labels).append(",le=\"+Inf\"} ").append(total[LatencyHistogram.COUNT]).append('\n');
+      out.append(family).append("_seconds_sum{").append(labels).append("} ").append(total[LatencyHistogram.SUM] / 1e6).append('\n');
+      out.append(family).append("_seconds_count{").append(labels).append("} ").append(total[LatencyHistogram.COUNT]).append('\n');
+    }
+
+    out.append("# HELP ").append(family).append("_total Responses of ").append(description).append(" by status code since start\n");
+    out.append("# TYPE ").append(family).append("_total counter\n");
+    for (Route route : list) {
+      long[] statuses = route.statuses();
+      for (int i = 0; i < statuses.length; i++) {
+        if (statuses[i] > 0) {
+          out.append(family).append("_total{").append(route.labels()).append(",status=\"").append(i + 100).append("\"} ")
+            .append(statuses[i]).append('\n');
+        }
+      }
+    }
+
+    out.append("# HELP ").append(family).append("_window_seconds Latency of ").append(description)
+      .append(" over the last ").append(properties.getWindowSeconds()).append("s\n");
+    out.append("# TYPE ").append(family).append("_window_seconds summary\n");
+    for (Route route : list) {
+      long[] window = route.window();
+      String labels = route.labels();
+      for (double quantile : new double[]{0.5, 0.9, 0.99, 0.999}) {
+        out.append(family).append("_window_seconds{").append(labels).append(",quantile=\"").append(quantile).append("\"} ")
+          .append(LatencyHistogram.percentile(window, quantile) / 1e6).append('\n');
+      }
+      out.append(family).append("_window_seconds_sum{").append(labels).append("} ").append(window[LatencyHistogram.SUM] / 1e6).append('\n');
+      out.append(family).append("_window_seconds_count{").append(labels).append("} ").append(window[LatencyHistogram.COUNT]).append('\n');
+    }
+  }
+
+  @PreDestroy
+  public void close() {
+    if (ticker != null) {
+      ticker.shutdownNow();
+    }
+  }
+
+  private static Map<String, Object> latency(long[] merged) {
+    Map<String, Object> latency = new LinkedHashMap<>();
+    long count = merged[LatencyHistogram.COUNT];
+    latency.put("mean", count == 0 ? 0 : merged[LatencyHistogram.SUM] / 1000.0 / count);
+    latency.put("p50", LatencyHistogram.percentile(merged, 0.5) / 1000.0);
+    latency.put("p90", LatencyHistogram.percentile(merged, 0.9) / 1000.0);
+    latency.put("p99", LatencyHistogram.percentile(merged, 0.99) / 1000.0);
+    latency.put("p999", LatencyHistogram.percentile(merged, 0.999) / 1000.0);
+    latency.put("max", merged[LatencyHistogram.MAX] / 1000.0);
+    return latency;
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  private static final class Route {
+    // outbound 는 null
+    final String method;
+    final String name;
+    final LatencyHistogram[] slots;
+    final LatencyHistogram total;
+    // 상태 코드(100 ~ 599) 별 응답 수. stripe 별로 나눠 둔다.
+    final AtomicLongArray[] statuses;
+
+    Route(String method, String name, int slots, int stripes) {
+      this.method = method;
+      this.name = name;
+      this.slots = new LatencyHistogram[slots];
+      for (int i = 0; i < slots; i++) {
+        this.slots[i] = new LatencyHistogram(stripes);
+      }
+      this.total = new LatencyHistogram(stripes);
+      this.statuses = new AtomicLongArray[stripes];
+      for (int i = 0; i < stripes; i++) {
+        this.statuses[i] = new AtomicLongArray(500);
+      }
+    }
+
+    void record(int slot, long nanos, int status) {
+      int stripe = (int) Thread.currentThread().getId();
+      long micros = nanos / 1000;
+      slots[slot].record(stripe, micros, status);
+      total.record(stripe, micros, status);
+      if (status >= 100 && status < 600) {
+        statuses[stripe & (statuses.length - 1)].incrementAndGet(status - 100);
+      }
+    }
+
+    long[] window() {
+      long[] merged = new long[LatencyHistogram.LENGTH];
+      for (LatencyHistogram slot : slots) {
+        slot.merge(merged);
+      }
+      return merged;
+    }
+
+    long[] statuses() {
+      long[] merged = new long[500];
+      for (AtomicLongArray counts : statuses) {
+        for (int i = 0; i < merged.length; i++) {
+          merged[i] += counts.get(i);
+        }
+      }
+      return merged;
+    }
+
+    String labels() {
+      return method == null ? "name=\"" + escape(name) + "\"" : "method=\"" + method + "\",route=\"" + escape(name) + "\"";
+    }
+
+    void describe(Map<String, Object> entry, double covered) {
+      long[] total = this.total.merge(new long[LatencyHistogram.LENGTH]);
+      entry.put("requests", total[LatencyHistogram.COUNT]);
+      Map<String, Long> statusCounts = new LinkedHashMap<>();
+      long[] statuses = statuses();
+      for (int i = 0; i < statuses.length; i++) {
+        if (statuses[i] > 0) {
+          statusCounts.put(String.valueOf(i + 100), statuses[i]);
+        }
+      }
+      entry.put("statuses", statusCounts);
+      entry.put("latencyMillis", latency(total));
+
+      long[] window = window();
+      Map<String, Object> recent = new LinkedHashMap<>();
+      recent.put("requests", window[LatencyHistogram.COUNT]);
+      recent.put("ratePerSecond", window[LatencyHistogram.COUNT] / covered);
+      Map<String, Double> statusRates = new LinkedHashMap<>();
+      for (int i = 0; i < STATUS_CLASSES.length; i++) {
+        long count = window[LatencyHistogram.STATUS_CLASSES + i];
+        if (count > 0) {
+          statusRates.put(STATUS_CLASSES[i], count / covered);
+        }
+      }
+      recent.put("statusRates", statusRates);
+      recent.put("latencyMillis", latency(window));
+      entry.put("window", recent);
+    }
+  }
+}
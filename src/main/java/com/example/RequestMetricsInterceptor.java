@@ -0,0 +1,56 @@
+package com.example;
+
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 컨트롤러 요청마다 걸린 시간과 응답 상태 코드를 RequestMetrics 에 기록한다.
+ *
+ * 시작 시각은 스레드마다 하나씩 있는 long[1] 에 적어 두므로 요청마다 객체를 만들지 않는다.
+ * DeferredResult 를 돌려주는 비동기 요청은 응답이 다른 스레드(ASYNC dispatch)에서 끝나므로 그때만 시작 시각을 request 속성으로 옮긴다.
+ * 예외 때문에 /error 로 넘어간 ERROR dispatch 는 원래 요청에서 이미 기록했으므로 건너뛴다.
+ */
+class RequestMetricsInterceptor extends HandlerInterceptorAdapter {
+  private static final String ASYNC_STARTED_AT = RequestMetricsInterceptor.class.getName() + ".startedAt";
+  private static final String UNKNOWN_ROUTE = "unknown";
+  private static final ThreadLocal<long[]> STARTED_AT = ThreadLocal.withInitial(() -> new long[1]);
+
+  private final RequestMetrics metrics;
+
+  RequestMetricsInterceptor(RequestMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+    if (request.getDispatcherType() == DispatcherType.REQUEST) {
+      STARTED_AT.get()[0] = System.nanoTime();
+    }
+    return true;
+  }
+
+  @Override
+  public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+    request.setAttribute(ASYNC_STARTED_AT, STARTED_AT.get()[0]);
+  }
+
+  @Override
+  public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+    if (request.getDispatcherType() == DispatcherType.ERROR || !metrics.isEnabled()) {
+      return;
+    }
+    Object asyncStartedAt = request.getAttribute(ASYNC_STARTED_AT);
+    long startedAt = asyncStartedAt != null ? (Long) asyncStartedAt : STARTED_AT.get()[0];
+    Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+    int status = response.getStatus();
+    // 처리하지 못한 예외는 이 뒤에 컨테이너가 500 으로 바꾼다.
+    if (ex != null && status < 400) {
+      status = 500;
+    }
+    metrics.record(request.getMethod(), pattern != null ? pattern.toString() : UNKNOWN_ROUTE, System.nanoTime() - startedAt, status);
+  }
+}
@@ -0,0 +1,262 @@
+package com.example;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PostsClient 앞에 붙는 장애 격리 계층
+ *
+ * 원격 posts API 가 느려지면 예전에는 모든 /posts 요청이 소켓 타임아웃까지 기다렸다. 이 클래스는 호출마다
+ * 1) bulkhead: 동시 호출 수를 maxConcurrentCalls 로 제한하고, 넘치면 기다리지 않고 거절한다.
+ * 2) 서킷 브레이커: 최근 호출의 실패율/느린 호출 비율이 높으면 한동안 원격 호출 없이 바로 거절한다.
+ * 3) 타임아웃: callTimeoutMillis 안에 끝나지 않으면 요청을 취소하고 실패로 끝낸다.
+ * 4) hedging(선택): 최근 p95 지연보다 오래 걸리면 같은 Idempotency-Key 로 요청을 하나 더 보내고 먼저 온 응답을 쓴다.
+ * 를 적용한다. 거절은 ServiceUnavailableException, 원격 실패와 타임아웃은 BadGatewayException 으로 future 를 끝낸다.
+ * posts.batch.enabled=true 이면 실제 전송은 PostsBatcher 가 bulk 요청으로 모아서 한다.
+ *
+ * 상태와 거절 수는 metrics() 로 보고, /admin/posts-client 에서 JSON 으로 볼 수 있다.
+ */
+@Component
+public class ResilientPostsClient {
+  // p95 를 계산할 최근 성공 호출 수
+  private static final int LATENCY_SAMPLES = 256;
+
+  private final PostsClient postsClient;
+  private final PostsBatcher batcher;
+  private final PostsResilienceProperties properties;
+  private final CircuitBreaker breaker;
+  private final Semaphore bulkhead;
+  private final LatencyWindow latencies = new LatencyWindow(LATENCY_SAMPLES);
+  // 타임아웃과 hedge 요청을 예약하는 스레드. 실제 HTTP 처리는 HttpAsyncClient 의 IO 스레드가 한다.
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "posts-resilience");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final AtomicLong calls = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+  private final AtomicLong timeouts = new AtomicLong();
+  private final AtomicLong bulkheadRejected = new AtomicLong();
+  private final AtomicLong hedgesSent = new AtomicLong();
+  private final AtomicLong hedgesWon = new AtomicLong();
+
+  // 호출마다 걸린 시간과 결과를 outbound "posts.createPost" 로 기록한다.
+  @Autowired(required = false)
+  RequestMetrics requestMetrics;
+
+  public ResilientPostsClient(PostsClient postsClient, PostsResilienceProperties properties) {
+    this(postsClient, null, properties);
+  }
+
+  @Autowired
+  public ResilientPostsClient(PostsClient postsClient, PostsBatcher batcher, PostsResilienceProperties properties) {
+    this.postsClient = postsClient;
+    this.batcher = batcher;
+    this.properties = properties;
+    this.breaker = new CircuitBreaker(properties.getSlidingWindowSize(), properties.getMinimumCalls(),
+      properties.getFailureRateThreshold(), properties.getSlowCallRateThreshold(), properties.getSlowCallMillis(),
+      properties.getOpenMillis(), properties.getHalfOpenCalls(), System::currentTimeMillis);
+    this.bulkhead = new Semaphore(properties.getMaxConcurrentCalls());
+  }
+
+  public CompletableFuture<Post> createPost(Post post) {
+    if (!bulkhead.tryAcquire()) {
+      bulkheadRejected.incrementAndGet();
+      return failed(new ServiceUnavailableException("too many concurrent calls to posts API"));
+    }
+    if (!breaker.tryAcquire()) {
+      bulkhead.release();
+      return failed(new ServiceUnavailableException("posts API circuit breaker is open"));
+    }
+    calls.incrementAndGet();
+
+    long startedAt = System.nanoTime();
+    CompletableFuture<Post> result = new CompletableFuture<>();
+    result.whenComplete((created, failure) -> {
+      long nanos = System.nanoTime() - startedAt;
+      long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+      bulkhead.release();
+      breaker.onResult(millis, failure != null);
+      if (failure == null) {
+        latencies.record(millis);
+      } else {
+        failures.incrementAndGet();
+      }
+      if (requestMetrics != null) {
+        requestMetrics.recordOutbound("posts.createPost", nanos, status(failure));
+      }
+    });
+
+    ScheduledFuture<?> timeout = scheduler.schedule(() -> {
+      if (result.completeExceptionally(new BadGatewayException("posts API did not answer within " + properties.getCallTimeoutMillis() + "ms", new TimeoutException()))) {
+        timeouts.incrementAndGet();
+      }
+    }, properties.getCallTimeoutMillis(), TimeUnit.MILLISECONDS);
+    result.whenComplete((created, failure) -> timeout.cancel(false));
+
+    // 원격 API 가 중복 요청을 알아볼 수 있도록 hedge 요청도 같은 키를 쓴다.
+    String idempotencyKey = UUID.randomUUID().toString();
+    // 아직 응답을 기다리는 시도 수. 0 이 되면 모든 시도가 실패한 것이다.
+    AtomicInteger outstanding = new AtomicInteger(1);
+    send(post, idempotencyKey, result, outstanding, false);
+
+    long hedgeDelay = hedgeDelayMillis();
+    if (hedgeDelay > 0) {
+      ScheduledFuture<?> hedge = scheduler.schedule(() -> {
+        int current;
+        do {
+          current = outstanding.get();
+          if (current == 0 || result.isDone()) {
+            return;
+          }
+        } while (!outstanding.compareAndSet(current, current + 1));
+        hedgesSent.incrementAndGet();
+        send(post, idempotencyKey, result, outstanding, true);
+      }, hedgeDelay, TimeUnit.MILLISECONDS);
+      result.whenComplete((created, failure) -> hedge.cancel(false));
+    }
+    return result;
+  }
+
+  private void send(Post post, String idempotencyKey, CompletableFuture<Post> result, AtomicInteger outstanding, boolean hedged) {
+    CompletableFuture<Post> attempt = batching() ? batcher.submit(post) : postsClient.createPost(post, idempotencyKey);
+    attempt.whenComplete((created, failure) -> {
+      if (failure == null) {
+        if (result.complete(created) && hedged) {
+          hedgesWon.incrementAndGet();
+        }
+      } else if (outstanding.decrementAndGet() == 0) {
+        result.completeExceptionally(failure);
+      }
+    });
+    // 결과가 정해지면(다른 시도의 성공, 타임아웃) 남은 요청은 취소해서 커넥션을 돌려준다.
+    result.whenComplete((created, failure) -> attempt.cancel(true));
+  }
+
+  /**
+   * hedge 요청을 보내기 전에 기다릴 시간. hedging 이 꺼져 있거나, 표본이 모자라거나, 브레이커가 닫혀 있지 않으면 0 이다.
+   * 원격 서버가 이미 힘들어할 때 요청을 두 배로 보내지 않도록 CLOSED 상태에서만 hedge 한다.
+   * bulk 요청에는 글마다 Idempotency-Key 를 붙일 수 없으므로 배치 모드에서도 hedge 하지 않는다.
+   */
+  long hedgeDelayMillis() {
+    if (!properties.isHedgeEnabled() || batching() || breaker.getState() != CircuitBreaker.State.CLOSED) {
+      return 0;
+    }
+    long p95 = latencies.p95(properties.getMinimumCalls());
+    if (p95 < 0) {
+      return 0;
+    }
+    long delay = Math.max(p95, properties.getHedgeMinDelayMillis());
+    return delay < properties.getCallTimeoutMillis() ? delay : 0;
+  }
+
+  private boolean batching() {
+    return batcher != null && batcher.isEnabled();
+  }
+
+  /**
+   * 요청 하나가 끝날 때까지 걸릴 수 있는 최대 시간(ms). DeferredResult 의 타임아웃으로 사용한다.
+   */
+  public long maxRequestMillis() {
+    return properties.getCallTimeoutMillis();
+  }
+
+  public CircuitBreaker.State state() {
+    return breaker.getState();
+  }
+
+  public Map<String, Object> metrics() {
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("state", breaker.getState());
+    metrics.put("failureRate", breaker.failureRate());
+    metrics.put("slowCallRate", breaker.slowCallRate());
+    metrics.put("calls", calls.get());
+    metrics.put("failures", failures.get());
+    metrics.put("timeouts", timeouts.get());
+    metrics.put("breakerOpened", breaker.getOpenedCount());
+    metrics.put("breakerRejected", breaker.getNotPermitted());
+    metrics.put("bulkheadRejected", bulkheadRejected.get());
+    metrics.put("bulkheadAvailable", bulkhead.availablePermits());
+    metrics.put("hedgesSent", hedgesSent.get());
+    metrics.put("hedgesWon", hedgesWon.get());
+    metrics.put("p95Millis", latencies.p95(1));
+    return metrics;
+  }
+
+  @PreDestroy
+  public void close() {
+    scheduler.shutdownNow();
+  }
+
+  // 응답을 받지 못한 실패도 컨트롤러가 돌려줄 상태 코드로 바꿔서 기록한다. 타임아웃은 504, 그 밖의 원격 실패는 502
+  private static int status(Throwable failure) {
+    if (failure == null) {
+      return 200;
+    }
+    if (failure instanceof CompletionException && failure.getCause() != null) {
+      failure = failure.getCause();
+    }
+    if (failure.getCause() instanceof TimeoutException) {
+      return 504;
+    }
+    return failure instanceof ServiceUnavailableException ? 503 : 502;
+  }
+
+  private static <T> CompletableFuture<T> failed(Throwable failure) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    future.completeExceptionally(failure);
+    return future;
+  }
+
+  /**
+   * 최근 성공 호출의 지연 시간 링 버퍼. p95 는 기록할 때마다 정렬하지 않고 RECOMPUTE_EVERY 번마다 다시 계산한다.
+   */
+  private static final class LatencyWindow {
+    private static final int RECOMPUTE_EVERY = 16;
+
+    private final long[] samples;
+    private int next;
+    private int count;
+    private int sinceComputed;
+    private long p95 = -1;
+
+    LatencyWindow(int size) {
+      this.samples = new long[size];
+    }
+
+    synchronized void record(long millis) {
+      samples[next] = millis;
+      next = (next + 1) % samples.length;
+      if (count < samples.length) {
+        count++;
+      }
+      if (++sinceComputed >= RECOMPUTE_EVERY || count <= RECOMPUTE_EVERY) {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        p95 = sorted[(int) Math.ceil(count * 0.95) - 1];
+        sinceComputed = 0;
+      }
+    }
+
+    synchronized long p95(int minimumSamples) {
+      return count < minimumSamples ? -1 : p95;
+    }
+  }
+}
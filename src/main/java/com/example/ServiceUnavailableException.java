@@ -0,0 +1,15 @@
+package com.example;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 서킷 브레이커가 열려 있거나 동시 호출 수(bulkhead)가 가득 차서 원격 API 를 부르지 않고 거절할 때 던지는 예외.
+ * 503 Service Unavailable 로 응답한다.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ServiceUnavailableException extends RuntimeException {
+  public ServiceUnavailableException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,14 @@
+package com.example;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 없거나 이미 끝난 이어 올리기(upload) 를 요청했을 때 던지는 예외 (404 Not Found)
+ */
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class UploadNotFoundException extends RuntimeException {
+  public UploadNotFoundException(String id) {
+    super("upload not found: " + id);
+  }
+}
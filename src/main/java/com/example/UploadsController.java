@@ -0,0 +1,74 @@
+package com.example;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 큰 첨부 파일을 조각으로 나눠 올리는 이어 올리기(resumable upload) 컨트롤러
+ *
+ * 1) POST /api/uploads 로 upload 를 만든다. Location 과 Upload-Offset: 0 을 돌려준다.
+ * 2) PATCH /api/uploads/{id} 에 Upload-Offset 헤더와 조각을 본문으로 보낸다. 응답의 Upload-Offset 이 다음 위치이다.
+ * 3) 연결이 끊기면 HEAD /api/uploads/{id} 로 받은 위치를 확인하고 그 위치부터 다시 보낸다.
+ * 4) 다 보내면 POST /api/articles/{articleId}/attachments?upload={id}&filename=... 로 글에 붙인다.
+ */
+@Controller
+public class UploadsController {
+  static final String UPLOAD_OFFSET = "Upload-Offset";
+
+  @Autowired
+  BlobStore blobStore;
+
+  @RequestMapping(value = "/api/uploads", method = RequestMethod.POST)
+  public ResponseEntity<Map<String, Object>> create() throws IOException {
+    String id = blobStore.createUpload();
+    return ResponseEntity.created(URI.create("/api/uploads/" + id))
+      .header(UPLOAD_OFFSET, "0")
+      .body(status(id, 0));
+  }
+
+  @RequestMapping(value = "/api/uploads/{id}", method = {RequestMethod.GET, RequestMethod.HEAD})
+  public ResponseEntity<Map<String, Object>> show(@PathVariable(value = "id") String id) throws IOException {
+    long offset = blobStore.uploadOffset(id);
+    return ResponseEntity.ok()
+      .header(UPLOAD_OFFSET, Long.toString(offset))
+      .header(HttpHeaders.CACHE_CONTROL, "no-store")
+      .body(status(id, offset));
+  }
+
+  // Upload-Offset 이 서버가 받은 크기와 다르면 409 Conflict 이다. 클라이언트는 HEAD 로 위치를 다시 확인해야 한다.
+  @RequestMapping(value = "/api/uploads/{id}", method = RequestMethod.PATCH)
+  public ResponseEntity<Void> append(@PathVariable(value = "id") String id,
+                                     @RequestHeader(value = UPLOAD_OFFSET) long offset,
+                                     HttpServletRequest request) throws IOException {
+    long next;
+    try (InputStream in = request.getInputStream()) {
+      next = blobStore.appendUpload(id, offset, Channels.newChannel(in));
+    }
+    return ResponseEntity.noContent().header(UPLOAD_OFFSET, Long.toString(next)).build();
+  }
+
+  @RequestMapping(value = "/api/uploads/{id}", method = RequestMethod.DELETE)
+  @ResponseStatus(HttpStatus.NO_CONTENT)
+  public void destroy(@PathVariable(value = "id") String id) throws IOException {
+    blobStore.deleteUpload(id);
+  }
+
+  private static Map<String, Object> status(String id, long offset) {
+    Map<String, Object> status = new LinkedHashMap<>();
+    status.put("id", id);
+    status.put("offset", offset);
+    return status;
+  }
+}
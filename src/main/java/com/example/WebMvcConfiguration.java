@@ -0,0 +1,63 @@
+package com.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.util.List;
+
+/**
+ * Spring MVC 설정. 컨트롤러 요청을 RequestMetrics 에 기록하는 인터셉터와 글 API 에 Vary: Accept 를 붙이는 인터셉터를 등록하고,
+ * @RequestBody/@ResponseBody 가 Smile 과 CBOR 도 읽고 쓸 수 있도록 메시지 컨버터를 더한다.
+ */
+@Configuration
+public class WebMvcConfiguration extends WebMvcConfigurerAdapter {
+  @Autowired
+  RequestMetrics requestMetrics;
+
+  @Autowired
+  ArticleFormats articleFormats;
+
+  @Override
+  public void addInterceptors(InterceptorRegistry registry) {
+    registry.addInterceptor(new RequestMetricsInterceptor(requestMetrics));
+    // 글 API 는 Accept 로 JSON, Smile, CBOR 중 하나를 고르므로 공유 캐시가 포맷을 섞지 않도록 Vary: Accept 를 보낸다.
+    // 첨부 파일, NDJSON 스트림과 bulk 는 포맷을 고르지 않는다.
+    registry.addInterceptor(new VaryAcceptInterceptor())
+      .addPathPatterns("/api/articles", "/api/articles/**")
+      .excludePathPatterns("/api/articles/*/attachments", "/api/articles/*/attachments/**", "/api/articles/stream", "/api/articles/_bulk");
+  }
+
+  // 바이너리 컨버터는 맨 뒤에 둔다. Accept 가 없거나 */* 이면 앞에 있는 컨버터가 고르므로 지금처럼 JSON 으로 응답한다.
+  // HttpMessageConverter 빈으로 등록하면 Spring Boot 가 기본 컨버터보다 앞에 넣기 때문에 여기서 더한다.
+  @Override
+  public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+    converters.add(new BinaryJacksonConverter(articleFormats.mapper(ArticleFormat.SMILE), ArticleFormat.SMILE_VALUE));
+    converters.add(new BinaryJacksonConverter(articleFormats.mapper(ArticleFormat.CBOR), ArticleFormat.CBOR_VALUE));
+  }
+
+  static final class VaryAcceptInterceptor extends HandlerInterceptorAdapter {
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+      response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+      return true;
+    }
+  }
+
+  // Spring 4.3 에는 Smile/CBOR 컨버터가 없으므로 바이너리 ObjectMapper 와 미디어 타입만 정해서 쓴다.
+  static final class BinaryJacksonConverter extends AbstractJackson2HttpMessageConverter {
+    BinaryJacksonConverter(ObjectMapper objectMapper, String mediaType) {
+      super(objectMapper, MediaType.valueOf(mediaType));
+    }
+  }
+}
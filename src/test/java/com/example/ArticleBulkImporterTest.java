@@ -0,0 +1,269 @@
+package com.example;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class ArticleBulkImporterTest {
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private ArticleBulkProperties properties;
+  private ArticleRepository repository;
+  private ArticleBulkImporter importer;
+
+  @Before
+  public void setUp() throws Exception {
+    repository = new ArticleRepository();
+    repository.fixturesProperty = new FixturesProperty();
+    repository.load();
+    properties = new ArticleBulkProperties();
+    properties.setBatchSize(3);
+    properties.setParserThreads(2);
+    properties.setMaxInFlightBatches(2);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (importer != null) {
+      importer.close();
+    }
+    repository.close();
+  }
+
+  private ArticleBulkImporter start() {
+    importer = new ArticleBulkImporter();
+    importer.properties = properties;
+    importer.articleRepository = repository;
+    importer.objectMapper = objectMapper;
+    importer.start();
+    return importer;
+  }
+
+  private List<JsonNode> run(String body) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    importer.importArticles(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), out);
+    List<JsonNode> results = new ArrayList<>();
+    for (String line : new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n")) {
+      results.add(objectMapper.readTree(line));
+    }
+    return results;
+  }
+
+  private static String article(long id, String title) {
+    return "{\"id\":" + id + ",\"title\":\"" + title + "\",\"content\":\"content" + id + "\"}";
+  }
+
+  // 여러 묶음으로 나뉘어 동시에 파싱되어도 결과는 줄 순서대로 나오고, 잘못된 줄은 그 줄만 실패한다.
+  @Test
+  public void testResultsInLineOrder() throws Exception {
+    start();
+    StringBuilder body = new StringBuilder();
+    for (int id = 1; id <= 20; id++) {
+      if (id == 5) {
+        body.append("{not json\n");
+      } else if (id == 9) {
+        body.append("{\"id\":9}\r\n");
+      } else if (id == 12) {
+        body.append("\n   \n");
+      }
+      body.append(article(id, "title" + id)).append("\r\n");
+    }
+    body.append(article(3, "again"));
+
+    List<JsonNode> results = run(body.toString());
+    JsonNode summary = results.remove(results.size() - 1);
+    assertThat(summary.get("lines").asLong(), is(23L));
+    assertThat(summary.get("created").asLong(), is(20L));
+    assertThat(summary.get("replaced").asLong(), is(1L));
+    assertThat(summary.get("failed").asLong(), is(2L));
+
+    long previous = 0;
+    for (JsonNode result : results) {
+      assertTrue(result.get("line").asLong() > previous);
+      previous = result.get("line").asLong();
+    }
+    assertThat(results.get(4).get("status").asInt(), is(400));
+    assertThat(results.get(4).get("line").asLong(), is(5L));
+    assertThat(results.get(9).get("error").asText(), is("title must not be blank"));
+    assertThat(results.get(results.size() - 1).get("status").asInt(), is(200));
+    // 빈 줄 두 개도 줄 번호에는 들어간다.
+    assertThat(results.get(results.size() - 1).get("line").asLong(), is(25L));
+
+    assertThat(repository.count(), is(20));
+    assertThat(repository.findOne(3).getTitle(), is("again"));
+    assertThat(repository.findOne(3).getVersion(), is(2L));
+    assertThat(repository.findOne(20).getContent(), is("content20"));
+    assertThat(importer.metrics().get("batches"), is((Object) 8L));
+  }
+
+  // 파싱이나 id 할당에서 RuntimeException 이 나도 그 줄만 400 이 되고 나머지 줄은 저장된다.
+  @Test
+  public void testRuntimeExceptionFailsOnlyThatLine() throws Exception {
+    repository.close();
+    repository = new ArticleRepository() {
+      @Override
+      public void assignId(Article article) {
+        if ("no id".equals(article.getTitle())) {
+          throw new IllegalStateException("id allocator is closed");
+        }
+        super.assignId(article);
+      }
+    };
+    repository.fixturesProperty = new FixturesProperty();
+    repository.load();
+    // 역직렬화 중의 예외를 JsonMappingException 으로 감싸지 않으면 RuntimeException 그대로 올라온다.
+    ObjectMapper failingMapper = new ObjectMapper().disable(DeserializationFeature.WRAP_EXCEPTIONS)
+      .registerModule(new SimpleModule().addDeserializer(Comment.class, new JsonDeserializer<Comment>() {
+        @Override
+        public Comment deserialize(JsonParser parser, DeserializationContext context) {
+          throw new IllegalArgumentException("comment rejected");
+        }
+      }));
+    importer = new ArticleBulkImporter();
+    importer.properties = properties;
+    importer.articleRepository = repository;
+    importer.objectMapper = failingMapper;
+    importer.start();
+
+    String body = article(1, "first") + "\n"
+      + "{\"title\":\"bad\",\"comments\":[{\"content\":\"x\"}]}\n"
+      + "{\"title\":\"no id\"}\n"
+      + article(2, "second") + "\n";
+    List<JsonNode> results = run(body);
+    assertThat(results.get(0).get("status").asInt(), is(201));
+    assertThat(results.get(1).get("status").asInt(), is(400));
+    assertThat(results.get(1).get("error").asText(), is("comment rejected"));
+    assertThat(results.get(2).get("status").asInt(), is(400));
+    assertThat(results.get(2).get("error").asText(), is("id allocator is closed"));
+    assertThat(results.get(3).get("status").asInt(), is(201));
+    assertThat(repository.count(), is(2));
+  }
+
+  @Test
+  public void testLongLineIsSkipped() throws Exception {
+    properties.setMaxLineBytes(100);
+    start();
+    StringBuilder longTitle = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      longTitle.append('x');
+    }
+    List<JsonNode> results = run(article(1, longTitle.toString()) + "\n" + article(2, "short") + "\n");
+    assertThat(results.get(0).get("status").asInt(), is(400));
+    assertThat(results.get(1).get("status").asInt(), is(201));
+    assertThat(results.get(1).get("id").asLong(), is(2L));
+    assertFalse(repository.exists(1));
+  }
+
+  // 창이 가득 차면 본문을 더 읽지 않는다. 저장소가 느려도 읽어 둔 줄은 batch-size * max-in-flight-batches 를 넘지 않는다.
+  @Test
+  public void testBackpressure() throws Exception {
+    start();
+    AtomicLong served = new AtomicLong();
+    long total = 10000;
+    InputStream body = new InputStream() {
+      private byte[] line = new byte[0];
+      private int position;
+
+      @Override
+      public int read() {
+        if (position == line.length) {
+          long id = served.get() + 1;
+          if (id > total) {
+            return -1;
+          }
+          served.set(id);
+          line = (article(id, "title" + id) + "\n").getBytes(StandardCharsets.UTF_8);
+          position = 0;
+        }
+        return line[position++];
+      }
+
+      // 한 번에 한 줄씩만 내준다.
+      @Override
+      public int read(byte[] buffer, int offset, int length) {
+        int first = read();
+        if (first < 0) {
+          return -1;
+        }
+        buffer[offset] = (byte) first;
+        int count = 1;
+        while (count < length && position < line.length) {
+          buffer[offset + count++] = line[position++];
+        }
+        return count;
+      }
+    };
+    long[] maxAhead = new long[1];
+    ByteArrayOutputStream out = new ByteArrayOutputStream() {
+      private long committed;
+
+      @Override
+      public synchronized void flush() {
+        committed = repository.count();
+        maxAhead[0] = Math.max(maxAhead[0], served.get() - committed);
+      }
+    };
+    Map<String, Object> summary = importer.importArticles(body, out);
+    assertThat(summary.get("created"), is((Object) total));
+    long window = (long) properties.getBatchSize() * (properties.getMaxInFlightBatches() + 1);
+    assertTrue("read " + maxAhead[0] + " lines ahead", maxAhead[0] <= window);
+  }
+
+  @Test
+  public void testRejectsWhenBusy() throws Exception {
+    properties.setMaxConcurrentRequests(1);
+    start();
+    CountDownLatch reading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread first = new Thread(() -> {
+      try {
+        importer.importArticles(new InputStream() {
+          @Override
+          public int read() {
+            reading.countDown();
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            return -1;
+          }
+        }, new ByteArrayOutputStream());
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    first.start();
+    reading.await();
+    try {
+      run(article(1, "title"));
+      fail();
+    } catch (ServiceUnavailableException e) {
+      assertThat(importer.metrics().get("rejected"), is((Object) 1L));
+    } finally {
+      release.countDown();
+      first.join();
+    }
+    assertThat(run(article(1, "title")).get(0).get("status").asInt(), is(201));
+  }
+}
@@ -0,0 +1,96 @@
+package com.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 댓글이 달린 Article 을 JSON, Smile, CBOR 로 쓰고 읽는 비용과 본문 크기를 비교하는 벤치마크
+ *
+ * ObjectMapper 는 애플리케이션과 같이 ArticleFormats 에서 가져온다. JSON 은 Jackson2ObjectMapperBuilder 의 기본 설정이다.
+ * 글의 모양은 ArticleJsonBenchmark 와 같다(title 30자, content 400자, 댓글 100자).
+ * 본문 크기(byte)는 조합마다 Setup 에서 INFO 로그로 남긴다.
+ *
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="ArticleFormatBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArticleFormatBenchmark {
+  private static final Logger logger = LoggerFactory.getLogger(ArticleFormatBenchmark.class);
+
+  @Param({"JSON", "SMILE", "CBOR"})
+  ArticleFormat format;
+
+  @Param({"0", "10", "100"})
+  int comments;
+
+  private ObjectWriter writer;
+  private ObjectReader reader;
+  private Article article;
+  private byte[] payload;
+
+  private static String text(String prefix, int length) {
+    StringBuilder text = new StringBuilder(prefix);
+    while (text.length() < length) {
+      text.append(" 한글과 English 가 섞인 본문");
+    }
+    return text.substring(0, length);
+  }
+
+  @Setup
+  public void setUp() throws Exception {
+    ArticleFormats formats = new ArticleFormats();
+    formats.objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    ObjectMapper mapper = formats.mapper(format);
+    writer = mapper.writerFor(Article.class);
+    reader = mapper.readerFor(Article.class);
+
+    article = new Article();
+    article.setId(123456);
+    article.setTitle(text("title", 30));
+    article.setContent(text("content", 400));
+    List<Comment> list = new ArrayList<>();
+    for (int i = 0; i < comments; i++) {
+      Comment comment = new Comment();
+      comment.setId(1234560 + i);
+      comment.setArticleId(123456);
+      comment.setContent(text("comment" + i, 100));
+      list.add(comment);
+    }
+    article.setComments(list);
+    payload = writer.writeValueAsBytes(article);
+    logger.info("payload format={} comments={} bytes={}", format, comments, payload.length);
+  }
+
+  @Benchmark
+  public byte[] encode() throws Exception {
+    return writer.writeValueAsBytes(article);
+  }
+
+  @Benchmark
+  public Article decode() throws Exception {
+    return reader.readValue(payload);
+  }
+}
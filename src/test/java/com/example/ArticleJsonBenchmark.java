@@ -0,0 +1,86 @@
+package com.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 댓글이 달린 Article 을 Jackson 으로 JSON 으로 쓰고 읽는 비용을 재는 벤치마크
+ *
+ * ObjectMapper 는 Spring Boot 가 MappingJackson2HttpMessageConverter 에 넣는 것과 같이 Jackson2ObjectMapperBuilder 로 만든다.
+ * 요청마다 타입을 다시 찾지 않도록 Article 용 ObjectWriter/ObjectReader 를 미리 만들어 둔다.
+ * 본문 길이는 title 이 30자, content 가 400자, 댓글이 100자 정도로 실제 글과 비슷하게 맞췄다.
+ *
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="ArticleJsonBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArticleJsonBenchmark {
+  @Param({"0", "10", "100"})
+  int comments;
+
+  private ObjectWriter writer;
+  private ObjectReader reader;
+  private Article article;
+  private byte[] json;
+
+  private static String text(String prefix, int length) {
+    StringBuilder text = new StringBuilder(prefix);
+    while (text.length() < length) {
+      text.append(" 한글과 English 가 섞인 본문");
+    }
+    return text.substring(0, length);
+  }
+
+  @Setup
+  public void setUp() throws Exception {
+    ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    writer = objectMapper.writerFor(Article.class);
+    reader = objectMapper.readerFor(Article.class);
+
+    article = new Article();
+    article.setId(123456);
+    article.setTitle(text("title", 30));
+    article.setContent(text("content", 400));
+    List<Comment> list = new ArrayList<>();
+    for (int i = 0; i < comments; i++) {
+      Comment comment = new Comment();
+      comment.setId(1234560 + i);
+      comment.setArticleId(123456);
+      comment.setContent(text("comment" + i, 100));
+      list.add(comment);
+    }
+    article.setComments(list);
+    json = writer.writeValueAsBytes(article);
+  }
+
+  @Benchmark
+  public byte[] serialize() throws Exception {
+    return writer.writeValueAsBytes(article);
+  }
+
+  @Benchmark
+  public Article deserialize() throws Exception {
+    return reader.readValue(json);
+  }
+}
@@ -0,0 +1,107 @@
+package com.example;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+public class ArticlePatchTest {
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  private Article article() {
+    Article article = new Article();
+    article.setId(1);
+    article.setVersion(3);
+    article.setTitle("title1");
+    article.setContent("content1");
+    List<Comment> comments = new ArrayList<>();
+    for (long id = 10; id <= 11; id++) {
+      Comment comment = new Comment();
+      comment.setId(id);
+      comment.setArticleId(1);
+      comment.setContent("comment" + id);
+      comments.add(comment);
+    }
+    article.setComments(comments);
+    return article;
+  }
+
+  private JsonNode json(String json) throws Exception {
+    return mapper.readTree(json.replace('\'', '"'));
+  }
+
+  // 패치에 없는 필드와 댓글 목록은 저장된 것을 그대로 쓰고, 원래 Article 은 바뀌지 않아야 한다.
+  @Test
+  public void testMergePatch() throws Exception {
+    Article current = article();
+    ArticlePatch.Result result = ArticlePatch.mergePatch(json("{'title': 'changed', 'content': null}"), mapper).apply(current);
+
+    Article next = result.getArticle();
+    assertThat(next.getTitle(), is("changed"));
+    assertThat(next.getContent(), is(nullValue()));
+    assertThat(next.getVersion(), is(4L));
+    assertThat(next.getComments(), is(sameInstance(current.getComments())));
+    assertThat(result.isCommentsReplaced(), is(false));
+    assertThat(result.getChangedComments().isEmpty(), is(true));
+    assertThat(current.getTitle(), is("title1"));
+  }
+
+  @Test
+  public void testMergePatchReplacesComments() throws Exception {
+    ArticlePatch.Result result = ArticlePatch.mergePatch(json("{'comments': [{'content': 'only'}]}"), mapper).apply(article());
+    assertThat(result.isCommentsReplaced(), is(true));
+    assertThat(result.getArticle().getComments().size(), is(1));
+    assertThat(result.getArticle().getComments().get(0).getArticleId(), is(1L));
+  }
+
+  @Test(expected = BadRequestException.class)
+  public void testMergePatchUnknownField() throws Exception {
+    ArticlePatch.mergePatch(json("{'version': 1}"), mapper);
+  }
+
+  @Test(expected = BadRequestException.class)
+  public void testIdCannotChange() throws Exception {
+    ArticlePatch.mergePatch(json("{'id': 2}"), mapper).apply(article());
+  }
+
+  // 댓글 하나를 추가/수정/삭제하면 바뀐 댓글만 결과에 담긴다.
+  @Test
+  public void testJsonPatchComments() throws Exception {
+    Article current = article();
+    JsonNode patch = json("["
+      + "{'op': 'test', 'path': '/comments/0/id', 'value': 10},"
+      + "{'op': 'replace', 'path': '/comments/0/content', 'value': 'edited'},"
+      + "{'op': 'remove', 'path': '/comments/1'},"
+      + "{'op': 'add', 'path': '/comments/-', 'value': {'content': 'new'}},"
+      + "{'op': 'copy', 'from': '/title', 'path': '/content'}"
+      + "]");
+    ArticlePatch.Result result = ArticlePatch.jsonPatch(patch, mapper).apply(current);
+
+    assertThat(result.isCommentsReplaced(), is(false));
+    assertThat(result.getRemovedCommentIds(), is(Arrays.asList(11L)));
+    List<Comment> changed = result.getChangedComments();
+    assertThat(changed.size(), is(2));
+    assertThat(changed.get(0).getId(), is(10L));
+    assertThat(changed.get(0).getContent(), is("edited"));
+    assertThat(changed.get(1).getId(), is(0L));
+    assertThat(changed.get(1).getContent(), is("new"));
+    assertThat(result.getArticle().getContent(), is("title1"));
+    assertThat(current.getComments().get(0).getContent(), is("comment10"));
+  }
+
+  @Test(expected = ConflictException.class)
+  public void testJsonPatchTestFails() throws Exception {
+    ArticlePatch.jsonPatch(json("[{'op': 'test', 'path': '/title', 'value': 'other'}]"), mapper).apply(article());
+  }
+
+  @Test(expected = BadRequestException.class)
+  public void testJsonPatchUnsupportedPath() throws Exception {
+    ArticlePatch.jsonPatch(json("[{'op': 'remove', 'path': '/comments/0/id/x'}]"), mapper);
+  }
+}
@@ -0,0 +1,159 @@
+package com.example;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+public class ArticleResponseCacheTest {
+  private ArticleResponseCacheProperties properties;
+
+  @Before
+  public void setUp() {
+    properties = new ArticleResponseCacheProperties();
+    properties.setGzipMinBytes(16);
+  }
+
+  private ArticleResponseCache start() {
+    ArticleResponseCache cache = new ArticleResponseCache();
+    cache.properties = properties;
+    cache.start();
+    return cache;
+  }
+
+  private static byte[] json(int length) {
+    byte[] json = new byte[length];
+    Arrays.fill(json, (byte) 'a');
+    return json;
+  }
+
+  private static void put(ArticleResponseCache cache, long id, String etag, int length) {
+    cache.put(cache.encode(ArticleFormat.JSON, id, etag, json(length)));
+  }
+
+  // 같은 ETag 로 다시 찾으면 같은 바이트를 돌려주고, ETag 가 다르면 찾지 못한다.
+  @Test
+  public void testHitOnlyForSameVersion() {
+    ArticleResponseCache cache = start();
+    assertThat(cache.get(ArticleFormat.JSON, 1, "\"1\""), nullValue());
+    ArticleResponseCache.Entry entry = cache.encode(ArticleFormat.JSON, 1, "\"1\"", "{\"id\":1}".getBytes(StandardCharsets.UTF_8));
+    cache.put(entry);
+
+    assertThat(cache.get(ArticleFormat.JSON, 1, "\"1\""), sameInstance(entry));
+    assertThat(cache.get(ArticleFormat.JSON, 1, "\"2\""), nullValue());
+    assertThat(cache.metrics().get("hits"), is((Object) 1L));
+    assertThat(cache.metrics().get("misses"), is((Object) 2L));
+    assertThat(cache.metrics().get("hitRatio"), is((Object) (1.0 / 3)));
+  }
+
+  @Test
+  public void testInvalidate() {
+    ArticleResponseCache cache = start();
+    put(cache, 1, "\"1\"", 10);
+    cache.invalidate(1);
+    assertThat(cache.get(ArticleFormat.JSON, 1, "\"1\""), nullValue());
+    assertThat(cache.metrics().get("entries"), is((Object) 0));
+    assertThat(cache.metrics().get("bytes"), is((Object) 0L));
+    assertThat(cache.metrics().get("invalidations"), is((Object) 1L));
+  }
+
+  // 같은 글을 다른 포맷으로 쓴 본문은 따로 캐시하고, invalidate 는 모든 포맷을 지운다.
+  @Test
+  public void testFormatsCachedSeparately() {
+    properties.setGzip(false);
+    ArticleResponseCache cache = start();
+    put(cache, 1, "\"1\"", 10);
+    cache.put(cache.encode(ArticleFormat.SMILE, 1, "\"1-smile\"", json(6)));
+    assertThat(cache.get(ArticleFormat.SMILE, 1, "\"1-smile\"").getBody().length, is(6));
+    assertThat(cache.get(ArticleFormat.JSON, 1, "\"1\"").getBody().length, is(10));
+    assertThat(cache.get(ArticleFormat.CBOR, 1, "\"1-cbor\""), nullValue());
+    assertThat(cache.metrics().get("entries"), is((Object) 2));
+
+    cache.invalidate(1);
+    assertThat(cache.metrics().get("entries"), is((Object) 0));
+    assertThat(cache.metrics().get("bytes"), is((Object) 0L));
+  }
+
+  // 같은 id 의 새 버전을 넣으면 이전 버전의 바이트는 빠진다.
+  @Test
+  public void testReplaceKeepsByteCount() {
+    properties.setGzip(false);
+    ArticleResponseCache cache = start();
+    put(cache, 1, "\"1\"", 10);
+    put(cache, 1, "\"2\"", 30);
+    assertThat(cache.metrics().get("entries"), is((Object) 1));
+    assertThat(cache.metrics().get("bytes"), is((Object) 30L));
+  }
+
+  // 한 번만 읽힌 글이 많이 들어와도 여러 번 읽힌 글은 protected 구간에 남는다.
+  @Test
+  public void testFrequentlyReadEntriesSurviveScan() {
+    properties.setGzip(false);
+    properties.setMaxBytes(1000);
+    properties.setReadBufferSize(4);
+    ArticleResponseCache cache = start();
+    put(cache, 1, "\"1\"", 100);
+    for (int i = 0; i < 32; i++) {
+      assertThat(cache.get(ArticleFormat.JSON, 1, "\"1\""), notNullValue());
+    }
+    for (long id = 2; id < 100; id++) {
+      put(cache, id, "\"1\"", 100);
+    }
+    assertThat(cache.get(ArticleFormat.JSON, 1, "\"1\""), notNullValue());
+    assertThat(cache.get(ArticleFormat.JSON, 2, "\"1\""), nullValue());
+    assertThat((Long) cache.metrics().get("bytes") <= 1000, is(true));
+    assertThat((Long) cache.metrics().get("evictions") > 0, is(true));
+  }
+
+  // maxBytes 보다 큰 응답은 넣지 않는다.
+  @Test
+  public void testRejectsOversizedEntry() {
+    properties.setGzip(false);
+    properties.setMaxBytes(100);
+    ArticleResponseCache cache = start();
+    put(cache, 1, "\"1\"", 101);
+    assertThat(cache.get(ArticleFormat.JSON, 1, "\"1\""), nullValue());
+    assertThat(cache.metrics().get("bytes"), is((Object) 0L));
+  }
+
+  @Test
+  public void testGzipPrecompressed() throws Exception {
+    ArticleResponseCache cache = start();
+    ArticleResponseCache.Entry entry = cache.encode(ArticleFormat.JSON, 1, "\"1\"", json(4096));
+    assertThat(entry.getGzip(), notNullValue());
+    assertThat(entry.getGzip().length < entry.getBody().length, is(true));
+    assertThat(gunzip(entry.getGzip()), is(entry.getBody()));
+
+    // 작은 본문은 압축하지 않는다.
+    assertThat(cache.encode(ArticleFormat.JSON, 2, "\"1\"", json(8)).getGzip(), nullValue());
+  }
+
+  @Test
+  public void testAcceptsGzip() {
+    assertThat(ArticleResponseCache.acceptsGzip(null), is(false));
+    assertThat(ArticleResponseCache.acceptsGzip("gzip, deflate, br"), is(true));
+    assertThat(ArticleResponseCache.acceptsGzip("deflate;q=1, GZIP;q=0.5"), is(true));
+    assertThat(ArticleResponseCache.acceptsGzip("gzip;q=0"), is(false));
+    assertThat(ArticleResponseCache.acceptsGzip("identity"), is(false));
+  }
+
+  private static byte[] gunzip(byte[] gzip) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+      byte[] buffer = new byte[1024];
+      int read;
+      while ((read = in.read(buffer)) > 0) {
+        out.write(buffer, 0, read);
+      }
+    }
+    return out.toByteArray();
+  }
+}
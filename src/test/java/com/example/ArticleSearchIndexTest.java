@@ -0,0 +1,154 @@
+package com.example;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class ArticleSearchIndexTest {
+  private ArticleSearchProperties properties;
+  private ArticleSearchIndex index;
+
+  @Before
+  public void setUp() {
+    properties = new ArticleSearchProperties();
+    index = new ArticleSearchIndex();
+    index.properties = properties;
+  }
+
+  private static Article article(long id, String title, String content, String... comments) {
+    Article article = new Article();
+    article.setId(id);
+    article.setTitle(title);
+    article.setContent(content);
+    List<Comment> list = new ArrayList<>();
+    for (String text : comments) {
+      Comment comment = new Comment();
+      comment.setArticleId(id);
+      comment.setContent(text);
+      list.add(comment);
+    }
+    article.setComments(list);
+    return article;
+  }
+
+  private long[] ids(String query) {
+    return index.search(query, 10).ids;
+  }
+
+  @Test
+  public void testTokenizer() {
+    assertThat(ArticleTokenizer.tokenize("Spring Boot 1.4 에러로그"), is(Arrays.asList("spring", "boot", "1", "4", "에러", "러로", "로그")));
+    // 전각 문자는 NFKC 로 바꾸고, 한 글자짜리 한글은 그대로 둔다.
+    assertThat(ArticleTokenizer.tokenize("ＪＡＶＡ 글, 東京タワー"), is(Arrays.asList("java", "글", "東京", "京タ", "タワ", "ワー")));
+    assertThat(ArticleTokenizer.tokenize(null).isEmpty(), is(true));
+  }
+
+  @Test
+  public void testRanking() {
+    index.rebuild(Arrays.asList(
+      article(3, "spring", "spring boot spring"),
+      article(1, "java", "spring"),
+      article(2, "boot", "java java java"),
+      article(4, "none", "nothing here")));
+    // 제목의 토큰이 더 무겁고 tf 가 높을수록 앞선다.
+    assertArrayEquals(new long[]{3, 1}, ids("spring"));
+    assertArrayEquals(new long[]{2, 1}, ids("java"));
+    // 여러 토큰이면 점수를 더하고, 하나라도 맞으면 결과에 나온다.
+    ArticleSearchIndex.Hits hits = index.search("spring boot", 10);
+    assertThat(hits.total, is(3));
+    assertThat(hits.ids[0], is(3L));
+    assertTrue(hits.scores[0] >= hits.scores[1] && hits.scores[1] >= hits.scores[2]);
+    // limit 만큼만 고르지만 total 은 전체 수다.
+    hits = index.search("spring boot", 1);
+    assertThat(hits.ids.length, is(1));
+    assertThat(hits.total, is(3));
+    assertThat(ids("missing").length, is(0));
+  }
+
+  @Test
+  public void testKorean() {
+    index.rebuild(Arrays.asList(
+      article(1, "스프링 부트 에러로그", "예외를 모아서 보여준다"),
+      article(2, "검색", "스프링에서 역색인을 만든다")));
+    assertArrayEquals(new long[]{1, 2}, ids("스프링"));
+    assertArrayEquals(new long[]{1}, ids("에러 로그"));
+    assertArrayEquals(new long[]{2}, ids("역색인"));
+  }
+
+  @Test
+  public void testUpdateAndRemove() {
+    index.rebuild(Collections.singletonList(article(1, "first", "alpha")));
+    index.index(article(2, "second", "alpha beta"));
+    assertArrayEquals(new long[]{1, 2}, ids("alpha"));
+
+    index.index(article(1, "first", "gamma"));
+    assertArrayEquals(new long[]{2}, ids("alpha"));
+    assertArrayEquals(new long[]{1}, ids("gamma"));
+
+    index.remove(2);
+    assertThat(ids("alpha").length, is(0));
+    assertThat(ids("second").length, is(0));
+    assertThat(index.metrics().get("documents"), is((Object) 1L));
+    assertThat(index.metrics().get("terms"), is((Object) 2));
+  }
+
+  @Test
+  public void testComments() {
+    index.rebuild(Collections.singletonList(article(1, "title", "content", "old comment")));
+    assertArrayEquals(new long[]{1}, ids("old"));
+    index.addText(1, "new comment");
+    assertArrayEquals(new long[]{1}, ids("new"));
+    index.removeText(1, "old comment");
+    assertThat(ids("old").length, is(0));
+    // 다른 댓글에도 있는 토큰은 남는다.
+    assertArrayEquals(new long[]{1}, ids("comment"));
+  }
+
+  // 블록이 두 배를 넘으면 나뉘고, 비면 빠진다. 중간의 id 를 고쳐도 순서가 유지되어야 한다.
+  @Test
+  public void testBlocks() {
+    List<Article> articles = new ArrayList<>();
+    for (long id = 0; id < 1000; id += 2) {
+      articles.add(article(id, "even", "common"));
+    }
+    index.rebuild(articles);
+    for (long id = 1; id < 1000; id += 2) {
+      index.index(article(id, "odd", "common"));
+    }
+    ArticleSearchIndex.Hits hits = index.search("common", 1000);
+    assertThat(hits.total, is(1000));
+    long[] sorted = hits.ids.clone();
+    Arrays.sort(sorted);
+    for (int i = 0; i < 1000; i++) {
+      assertThat(sorted[i], is((long) i));
+    }
+    // 점수가 같으면 id 순서다.
+    assertThat(hits.ids[0], is(0L));
+
+    for (long id = 0; id < 1000; id++) {
+      if (id % 3 != 0) {
+        index.remove(id);
+      }
+    }
+    hits = index.search("common", 1000);
+    assertThat(hits.total, is(334));
+    for (long id : hits.ids) {
+      assertThat(id % 3, is(0L));
+    }
+  }
+
+  @Test
+  public void testDisabled() {
+    properties.setEnabled(false);
+    index.rebuild(Collections.singletonList(article(1, "title", "content")));
+    index.index(article(2, "title", "content"));
+    assertThat(ids("title").length, is(0));
+  }
+}
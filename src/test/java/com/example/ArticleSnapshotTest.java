@@ -0,0 +1,91 @@
+package com.example;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+public class ArticleSnapshotTest {
+
+  private Article article(long id) {
+    Article article = new Article();
+    article.setId(id);
+    article.setTitle("title" + id);
+    return article;
+  }
+
+  @Test
+  public void testSortedById() {
+    ArticleSnapshot snapshot = ArticleSnapshot.of(1, new Article[]{article(3), article(1), article(2)});
+    List<Article> articles = snapshot.asList();
+    assertThat(articles.get(0).getId(), is(1L));
+    assertThat(articles.get(1).getId(), is(2L));
+    assertThat(articles.get(2).getId(), is(3L));
+  }
+
+  // 새 버전을 만들어도 이전 스냅샷을 읽고 있던 쪽은 영향을 받지 않아야 한다.
+  @Test
+  public void testCopyOnWrite() {
+    ArticleSnapshot v1 = ArticleSnapshot.of(1, new Article[]{article(1), article(3)});
+    ArticleSnapshot v2 = v1.withArticle(article(2));
+    ArticleSnapshot v3 = v2.withoutArticle(1);
+
+    assertThat(v1.size(), is(2));
+    assertThat(v2.size(), is(3));
+    assertThat(v3.size(), is(2));
+    assertThat(v2.asList().get(1).getId(), is(2L));
+    assertThat(v3.asList().get(0).getId(), is(2L));
+    assertThat(v3.getVersion(), is(3L));
+  }
+
+  @Test
+  public void testReplaceKeepsOrder() {
+    ArticleSnapshot v1 = ArticleSnapshot.of(1, new Article[]{article(1), article(2)});
+    Article replaced = article(2);
+    ArticleSnapshot v2 = v1.withArticle(replaced);
+    assertThat(v2.size(), is(2));
+    assertThat(v2.asList().get(1), is(sameInstance(replaced)));
+    assertThat(v1.withoutArticle(99), is(sameInstance(v1)));
+  }
+
+  // 여러 글을 한 번에 병합한다. 같은 id 가 batch 안에 여러 번 있으면 나중 것이 남는다.
+  @Test
+  public void testWithArticles() {
+    ArticleSnapshot v1 = ArticleSnapshot.of(1, new Article[]{article(2), article(4), article(6)});
+    Article replaced = article(4);
+    Article last = article(7);
+    ArticleSnapshot v2 = v1.withArticles(Arrays.asList(article(7), article(1), replaced, article(5), last));
+    assertThat(v2.size(), is(6));
+    assertThat(v2.getVersion(), is(2L));
+    long[] ids = new long[v2.size()];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = v2.asList().get(i).getId();
+    }
+    assertArrayEquals(new long[]{1, 2, 4, 5, 6, 7}, ids);
+    assertThat(v2.asList().get(2), is(sameInstance(replaced)));
+    assertThat(v2.asList().get(5), is(sameInstance(last)));
+    assertThat(v1.size(), is(3));
+  }
+
+  // 커서가 가리키는 글이 삭제되어도 그 다음 id 부터 이어서 읽어야 한다.
+  @Test
+  public void testAfterDeletedCursor() {
+    ArticleSnapshot v1 = ArticleSnapshot.of(1, new Article[]{article(1), article(2), article(3), article(4)});
+    List<Article> firstPage = v1.first(2);
+    long lastId = firstPage.get(firstPage.size() - 1).getId();
+
+    ArticleSnapshot v2 = v1.withoutArticle(lastId).withoutArticle(3);
+    List<Article> nextPage = v2.after(lastId, 2);
+    assertThat(nextPage.size(), is(1));
+    assertThat(nextPage.get(0).getId(), is(4L));
+    assertThat(v2.hasAfter(4), is(false));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testReadOnlyView() {
+    ArticleSnapshot.of(1, new Article[]{article(1)}).asList().add(article(2));
+  }
+}
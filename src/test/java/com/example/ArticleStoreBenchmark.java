@@ -0,0 +1,75 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 디스크에 저장하는 ArticleRepository 의 쓰기 처리량(초당 변경 수)을 측정하는 벤치마크
+ *
+ * 스레드마다 매번 fsync 를 기다리는 저장(syncWrites=true)을 하지만 group commit 덕분에
+ * 동시에 들어온 쓰기들이 하나의 fsync 를 나눠 쓰기 때문에 처리량이 스레드 수에 따라 늘어난다.
+ *
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="ArticleStoreBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(32)
+public class ArticleStoreBenchmark {
+  @Param({"true", "false"})
+  boolean syncWrites;
+
+  private ArticleRepository articleRepository;
+  private Article article;
+
+  @Setup
+  public void setUp() throws Exception {
+    ArticleStoreProperties properties = new ArticleStoreProperties();
+    properties.setEnabled(true);
+    properties.setSyncWrites(syncWrites);
+    properties.setDirectory(Files.createTempDirectory("article-store-benchmark").toString());
+    // 벤치마크 도중에는 컴팩션이 끼어들지 않게 한다.
+    properties.setCompactionLogBytes(Long.MAX_VALUE);
+
+    articleRepository = new ArticleRepository();
+    articleRepository.fixturesProperty = new FixturesProperty();
+    articleRepository.storeProperties = properties;
+    articleRepository.load();
+
+    article = new Article();
+    article.setTitle("benchmark");
+    article.setContent("누구보다 빠르게 난 남들과는 다르게");
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    articleRepository.close();
+  }
+
+  @Benchmark
+  public Article save() {
+    Article copy = new Article();
+    copy.setId(ThreadLocalRandom.current().nextInt(10000));
+    copy.setTitle(article.getTitle());
+    copy.setContent(article.getContent());
+    return articleRepository.save(copy);
+  }
+}
@@ -0,0 +1,235 @@
+package com.example;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+public class ArticleStoreTest {
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path directory;
+  private ArticleStore store;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = temporaryFolder.newFolder("articles").toPath();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (store != null) {
+      store.close();
+    }
+  }
+
+  private Article article(long id, String title) {
+    Article article = new Article();
+    article.setId(id);
+    article.setTitle(title);
+    article.setContent("누구보다 빠르게 " + id);
+    Comment comment = new Comment();
+    comment.setId(id * 10);
+    comment.setArticleId(id);
+    comment.setContent("comment" + id);
+    article.setComments(new ArrayList<>(Arrays.asList(comment)));
+    return article;
+  }
+
+  private ConcurrentLongHashMap<Article> reopen() throws IOException {
+    store.close();
+    store = new ArticleStore(directory, 16);
+    ConcurrentLongHashMap<Article> recovered = new ConcurrentLongHashMap<>();
+    assertThat(store.open(recovered), is(true));
+    return recovered;
+  }
+
+  @Test
+  public void testEmptyDirectory() throws Exception {
+    store = new ArticleStore(directory, 16);
+    assertThat(store.open(new ConcurrentLongHashMap<>()), is(false));
+  }
+
+  @Test
+  public void testRecoverFromLog() throws Exception {
+    store = new ArticleStore(directory, 16);
+    store.open(new ConcurrentLongHashMap<>());
+
+    List<CompletableFuture<Void>> writes = new ArrayList<>();
+    for (long id = 1; id <= 100; id++) {
+      writes.add(store.appendPut(ArticleCodec.encode(article(id, "title" + id))));
+    }
+    writes.add(store.appendPut(ArticleCodec.encode(article(7, "updated"))));
+    writes.add(store.appendDelete(8));
+    CompletableFuture.allOf(writes.toArray(new CompletableFuture[writes.size()])).join();
+
+    ConcurrentLongHashMap<Article> recovered = reopen();
+    assertThat(recovered.size(), is(99));
+    assertThat(recovered.get(7).getTitle(), is("updated"));
+    assertThat(recovered.get(8), is(nullValue()));
+    assertThat(recovered.get(1).getContent(), is("누구보다 빠르게 1"));
+    assertThat(recovered.get(1).getComments().get(0).getArticleId(), is(1L));
+  }
+
+  // 댓글 레코드는 복구할 때 해당 Article 의 comments 에 반영된다.
+  @Test
+  public void testRecoverCommentRecords() throws Exception {
+    store = new ArticleStore(directory, 16);
+    store.open(new ConcurrentLongHashMap<>());
+    store.appendPut(ArticleCodec.encode(article(1, "one"))).join();
+
+    Comment comment = new Comment();
+    comment.setId(11);
+    comment.setArticleId(1);
+    comment.setContent("added");
+    store.appendCommentPut(ArticleCodec.encodeComment(comment), 2, 1000L).join();
+    store.appendCommentDelete(1, 10, 3, 2000L).join();
+
+    ConcurrentLongHashMap<Article> recovered = reopen();
+    List<Comment> comments = recovered.get(1).getComments();
+    assertThat(comments.size(), is(1));
+    assertThat(comments.get(0).getId(), is(11L));
+    assertThat(comments.get(0).getContent(), is("added"));
+    assertThat(recovered.get(1).getLastModified(), is(2000L));
+    assertThat(recovered.get(1).getVersion(), is(3L));
+  }
+
+  // compact() 는 roll 한 뒤 락 밖에서 스냅샷을 쓰므로 그 사이에 추가한 댓글이 스냅샷과 로그에 모두 들어갈 수 있다.
+  // 복구할 때 댓글 레코드가 다시 적용되어도 버전이 한 번 더 올라가면 안 된다.
+  @Test
+  public void testCommentAddedDuringCompaction() throws Exception {
+    store = new ArticleStore(directory, 16);
+    store.open(new ConcurrentLongHashMap<>());
+    Article live = article(1, "one");
+    live.setVersion(1);
+    store.appendPut(ArticleCodec.encode(live)).join();
+
+    long rollSeq = store.roll().join();
+    // roll 뒤에 라이브 경로처럼 같은 Article 에 댓글을 더하고 버전을 올린 다음 기록한다.
+    Comment comment = new Comment();
+    comment.setId(11);
+    comment.setArticleId(1);
+    comment.setContent("during compaction");
+    live.getComments().add(comment);
+    live.setVersion(2);
+    live.setLastModified(1000L);
+    store.appendCommentPut(ArticleCodec.encodeComment(comment), 2, 1000L).join();
+    store.writeSnapshot(rollSeq - 1, Arrays.asList(live));
+
+    ConcurrentLongHashMap<Article> recovered = reopen();
+    assertThat(recovered.get(1).getVersion(), is(2L));
+    assertThat(recovered.get(1).getComments().size(), is(2));
+    assertThat(recovered.get(1).getLastModified(), is(1000L));
+  }
+
+  // PATCH 레코드는 저장된 댓글을 그대로 두고 필드와 버전만 바꾼다.
+  @Test
+  public void testRecoverPatchRecord() throws Exception {
+    store = new ArticleStore(directory, 16);
+    store.open(new ConcurrentLongHashMap<>());
+    store.appendPut(ArticleCodec.encode(article(1, "one"))).join();
+
+    Article patched = article(1, "patched");
+    patched.setVersion(5);
+    store.appendPatch(ArticleCodec.encodeWithoutComments(patched)).join();
+
+    ConcurrentLongHashMap<Article> recovered = reopen();
+    assertThat(recovered.get(1).getTitle(), is("patched"));
+    assertThat(recovered.get(1).getVersion(), is(5L));
+    assertThat(recovered.get(1).getComments().size(), is(1));
+  }
+
+  @Test
+  public void testSnapshotCompaction() throws Exception {
+    store = new ArticleStore(directory, 16);
+    store.open(new ConcurrentLongHashMap<>());
+    store.appendPut(ArticleCodec.encode(article(1, "one"))).join();
+    store.appendPut(ArticleCodec.encode(article(2, "two"))).join();
+
+    long rollSeq = store.roll().join();
+    store.writeSnapshot(rollSeq - 1, Arrays.asList(article(1, "one"), article(2, "two")));
+    store.appendDelete(1).join();
+
+    File[] segments = directory.toFile().listFiles((dir, name) -> name.startsWith("segment-"));
+    assertThat(segments.length, is(1));
+
+    ConcurrentLongHashMap<Article> recovered = reopen();
+    assertThat(recovered.size(), is(1));
+    assertThat(recovered.get(2).getTitle(), is("two"));
+  }
+
+  // close() 뒤의 쓰기는 큐에 들어가 영원히 기다리지 않고 바로 실패한다.
+  @Test
+  public void testAppendAfterCloseFails() throws Exception {
+    store = new ArticleStore(directory, 16);
+    store.open(new ConcurrentLongHashMap<>());
+    store.close();
+
+    assertFailed(store.appendPut(ArticleCodec.encode(article(1, "one"))), IOException.class);
+    assertFailed(store.roll(), IOException.class);
+  }
+
+  // writer 스레드에서 IOException 이 아닌 예외가 나도 기다리던 쓰기는 실패로 끝나고, 이후의 쓰기는 바로 거절된다.
+  @Test
+  public void testWriterRuntimeFailureFailsPendingWrites() throws Exception {
+    store = new ArticleStore(directory, 16);
+    store.open(new ConcurrentLongHashMap<>());
+
+    // payload 가 null 이면 writer 스레드에서 NullPointerException 이 난다.
+    assertFailed(store.appendPut(null), IOException.class);
+    assertFailed(store.appendPut(ArticleCodec.encode(article(1, "one"))), IOException.class);
+    store.close();
+  }
+
+  private void assertFailed(CompletableFuture<?> future, Class<? extends Throwable> cause) throws Exception {
+    try {
+      future.get(5, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), is(instanceOf(cause)));
+    }
+  }
+
+  // 마지막 레코드를 쓰다가 죽은 경우를 흉내내기 위해 세그먼트 끝에 잘린 레코드를 붙인다.
+  @Test
+  public void testTornTailIsTruncated() throws Exception {
+    store = new ArticleStore(directory, 16);
+    store.open(new ConcurrentLongHashMap<>());
+    store.appendPut(ArticleCodec.encode(article(1, "one"))).join();
+    store.close();
+
+    File segment = directory.toFile().listFiles((dir, name) -> name.startsWith("segment-"))[0];
+    long validLength = segment.length();
+    try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+      file.seek(validLength);
+      file.writeInt(1000);
+      file.writeInt(12345);
+      file.write(new byte[]{1, 2, 3});
+    }
+
+    store = new ArticleStore(directory, 16);
+    ConcurrentLongHashMap<Article> recovered = new ConcurrentLongHashMap<>();
+    store.open(recovered);
+    assertThat(recovered.size(), is(1));
+    assertThat(segment.length(), is(validLength));
+
+    store.appendPut(ArticleCodec.encode(article(2, "two"))).join();
+    assertThat(reopen().size(), is(2));
+  }
+}
@@ -0,0 +1,74 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+/**
+ * GET /api/articles/{id} 를 DispatcherServlet 부터 JSON 을 쓸 때까지 처리하는 비용을 재는 벤치마크
+ *
+ * 애플리케이션 전체를 띄운 다음 ArticlesControllerTest 와 같이 MockMvc 로 요청한다. 소켓과 Tomcat 은 거치지 않지만
+ * 핸들러 매핑, 인터셉터(RequestMetrics), ETag 확인, 메시지 컨버터는 실제 요청과 같다.
+ * show 는 200, showNotModified 는 If-None-Match 가 맞아서 304, showNotFound 는 ArticleNotFoundException 으로 404 가 된다.
+ *
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="ArticlesControllerBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArticlesControllerBenchmark {
+  private ConfigurableApplicationContext context;
+  private MockMvc mockMvc;
+  private String etag;
+
+  @Setup
+  public void setUp() throws Exception {
+    // 벤치마크 중에는 포트를 쓰지 않으므로 아무 빈 포트나 쓰고, 요청마다 남는 로그는 줄인다.
+    context = new SpringApplicationBuilder(SpringBootProjectApplication.class)
+      .properties("server.port=0", "logging.level.root=WARN")
+      .run();
+    mockMvc = webAppContextSetup((WebApplicationContext) context).build();
+    etag = mockMvc.perform(get("/api/articles/{id}", 1)).andReturn().getResponse().getHeader("ETag");
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public MvcResult show() throws Exception {
+    return mockMvc.perform(get("/api/articles/{id}", 1)).andReturn();
+  }
+
+  @Benchmark
+  public MvcResult showNotModified() throws Exception {
+    return mockMvc.perform(get("/api/articles/{id}", 1).header("If-None-Match", etag)).andReturn();
+  }
+
+  @Benchmark
+  public MvcResult showNotFound() throws Exception {
+    return mockMvc.perform(get("/api/articles/{id}", 987654321)).andReturn();
+  }
+}
@@ -1,6 +1,7 @@
 package com.example;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.log4j.Logger;
 import org.junit.Before;
@@ -10,18 +11,30 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.context.WebApplicationContext;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -62,6 +75,15 @@ public class ArticlesControllerTest {
   @Autowired
   private ArticlesService articlesService;
 
+  @Autowired
+  private FragmentCache fragmentCache;
+
+  @Autowired
+  private ArticleResponseCache articleResponseCache;
+
+  @Autowired
+  private ArticleFormats articleFormats;
+
   @Before
   public void setUp() throws Exception {
 //    mockMvc = standaloneSetup(articlesController).build();
@@ -88,6 +110,32 @@ public class ArticlesControllerTest {
     logger.info(result.getResponse().getContentAsString());
   }
 
+  // 글 목록 페이지의 목록 조각은 글이 바뀌지 않으면 캐시한 HTML 을 그대로 쓰고, 글이 바뀌면 다시 렌더링한다.
+  @Test
+  public void testListPage() throws Exception {
+    mockMvc.perform(get("/articles"))
+      .andExpect(status().isOk())
+      .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_HTML))
+      .andExpect(content().string(containsString("title: " + articlesService.getArticle(2).getTitle())));
+    long hits = (Long) fragmentCache.metrics().get("hits");
+    mockMvc.perform(get("/articles"))
+      .andExpect(status().isOk());
+    assertThat(fragmentCache.metrics().get("hits"), is((Object) (hits + 1)));
+
+    Article article = new Article();
+    article.setId(System.nanoTime());
+    article.setTitle("fragment cache " + article.getId());
+    mockMvc.perform(post("/api/articles")
+      .contentType(MediaType.APPLICATION_JSON)
+      .content(jsonStringFromObject(article)))
+      .andExpect(status().isOk());
+    mockMvc.perform(get("/articles"))
+      .andExpect(status().isOk())
+      .andExpect(content().string(containsString("title: " + article.getTitle())));
+    assertThat(fragmentCache.metrics().get("hits"), is((Object) (hits + 1)));
+    articlesService.deleteArticle(article.getId());
+  }
+
   @Test
   public void testFileUpload() throws Exception {
     MockMultipartFile file = new MockMultipartFile("file", "filename.txt", "text/plain", "some xml".getBytes());
@@ -122,6 +170,72 @@ public class ArticlesControllerTest {
     logger.info(result.getResponse().getContentAsString());
   }
 
+  // 커서를 따라가며 모든 페이지를 읽으면 전체 목록과 같은 id 들이 순서대로 나와야 하고, projection 한 필드 외에는 없어야 한다.
+  @Test
+  public void testIndexPage() throws Exception {
+    List<Article> articles = articlesService.getArticles();
+    ObjectMapper mapper = new ObjectMapper();
+
+    List<Long> ids = new ArrayList<>();
+    String cursor = null;
+    do {
+      MockHttpServletRequestBuilder request = get("/api/articles").param("size", "2").param("fields", "id,title");
+      if (cursor != null) {
+        request.param("cursor", cursor);
+      }
+      MvcResult result = mockMvc.perform(request)
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.articles[0].title").exists())
+        .andExpect(jsonPath("$.articles[0].comments").doesNotExist())
+        .andReturn();
+
+      JsonNode page = mapper.readTree(result.getResponse().getContentAsString());
+      for (JsonNode article : page.get("articles")) {
+        ids.add(article.get("id").asLong());
+      }
+      cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+    } while (cursor != null);
+
+    assertThat(ids.size(), is(articles.size()));
+    for (int i = 0; i < ids.size(); i++) {
+      assertThat(ids.get(i), is(articles.get(i).getId()));
+    }
+  }
+
+  @Test
+  public void testIndexPageBadRequest() throws Exception {
+    mockMvc.perform(get("/api/articles").param("cursor", "not-a-cursor"))
+      .andExpect(status().isBadRequest());
+    mockMvc.perform(get("/api/articles").param("fields", "id,password"))
+      .andExpect(status().isBadRequest());
+    mockMvc.perform(get("/api/articles").param("size", "0"))
+      .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void testStream() throws Exception {
+    List<Article> articles = articlesService.getArticles();
+    StringBuilder expected = new StringBuilder();
+    for (Article article : articles) {
+      expected.append(this.jsonStringFromObject(article)).append('\n');
+    }
+
+    // StreamingResponseBody 는 비동기로 처리되고 원래 요청의 응답에 바로 쓰기 때문에
+    // getAsyncResult() 로 스트리밍이 끝날 때까지 기다린 다음 응답을 확인한다.
+    for (MockHttpServletRequestBuilder builder : Arrays.asList(
+      get("/api/articles/stream"),
+      get("/api/articles").accept(ArticleNdjsonWriter.APPLICATION_NDJSON))) {
+      MvcResult result = mockMvc.perform(builder)
+        .andExpect(request().asyncStarted())
+        .andReturn();
+      result.getAsyncResult();
+
+      assertThat(result.getResponse().getStatus(), is(200));
+      assertThat(MediaType.valueOf(result.getResponse().getContentType()).isCompatibleWith(ArticleNdjsonWriter.APPLICATION_NDJSON), is(true));
+      assertThat(result.getResponse().getContentAsString(), is(equalTo(expected.toString())));
+    }
+  }
+
   @Test
   public void testShow() throws Exception {
     long id = 1;
@@ -134,6 +248,271 @@ public class ArticlesControllerTest {
       .andExpect(content().string(equalTo(jsonString)));
   }
 
+  // 바뀌지 않은 글을 같은 ETag 로 다시 요청하면 본문 없이 304 로 응답해야 한다.
+  @Test
+  public void testShowNotModified() throws Exception {
+    MvcResult result = mockMvc.perform(get("/api/articles/{id}", 1))
+      .andExpect(status().isOk())
+      .andExpect(header().string("ETag", notNullValue()))
+      .andReturn();
+
+    mockMvc.perform(get("/api/articles/{id}", 1).header("If-None-Match", result.getResponse().getHeader("ETag")))
+      .andExpect(status().isNotModified())
+      .andExpect(content().string(""));
+  }
+
+  // 같은 버전의 글은 캐시한 바이트로 응답하고, 글을 바꾸면 새 본문으로 응답한다. gzip 을 받는 요청에는 미리 압축한 본문을 보낸다.
+  @Test
+  public void testShowFromResponseCache() throws Exception {
+    long id = System.nanoTime();
+    char[] content = new char[4096];
+    Arrays.fill(content, 'x');
+    mockMvc.perform(post("/api/articles")
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"id\":" + id + ",\"title\":\"cached\",\"content\":\"" + new String(content) + "\"}"))
+      .andExpect(status().isOk());
+
+    String json = mockMvc.perform(get("/api/articles/{id}", id))
+      .andExpect(status().isOk())
+      .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+      .andExpect(header().string("Vary", "Accept, Accept-Encoding"))
+      .andReturn().getResponse().getContentAsString();
+    long hits = (Long) articleResponseCache.metrics().get("hits");
+    mockMvc.perform(get("/api/articles/{id}", id))
+      .andExpect(status().isOk())
+      .andExpect(content().string(json));
+    assertThat(articleResponseCache.metrics().get("hits"), is((Object) (hits + 1)));
+
+    MvcResult gzipResult = mockMvc.perform(get("/api/articles/{id}", id).header("Accept-Encoding", "gzip"))
+      .andExpect(status().isOk())
+      .andExpect(header().string("Content-Encoding", "gzip"))
+      .andExpect(header().string("ETag", containsString("-gzip")))
+      .andReturn();
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipResult.getResponse().getContentAsByteArray()))) {
+      assertThat(StreamUtils.copyToString(in, StandardCharsets.UTF_8), is(json));
+    }
+    // gzip 본문의 ETag 로 원래 본문을 요청하면 304 가 아니라 본문을 받는다.
+    mockMvc.perform(get("/api/articles/{id}", id).header("If-None-Match", gzipResult.getResponse().getHeader("ETag")))
+      .andExpect(status().isOk())
+      .andExpect(content().string(json));
+    mockMvc.perform(get("/api/articles/{id}", id).header("Accept-Encoding", "gzip")
+      .header("If-None-Match", gzipResult.getResponse().getHeader("ETag")))
+      .andExpect(status().isNotModified());
+
+    mockMvc.perform(put("/api/articles/{id}", id)
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"title\":\"updated\"}"))
+      .andExpect(status().isOk());
+    mockMvc.perform(get("/api/articles/{id}", id))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.title").value("updated"));
+    articlesService.deleteArticle(id);
+  }
+
+  // Smile, CBOR 로 보낸 글은 JSON 으로 보낸 글과 같이 저장되고, Accept 에 맞는 포맷으로 응답한다.
+  @Test
+  public void testBinaryFormats() throws Exception {
+    for (ArticleFormat format : Arrays.asList(ArticleFormat.SMILE, ArticleFormat.CBOR)) {
+      ObjectMapper mapper = articleFormats.mapper(format);
+      long id = System.nanoTime();
+      Article article = new Article();
+      article.setId(id);
+      article.setTitle("binary " + format.getVariant());
+      Comment comment = new Comment();
+      comment.setContent("binary comment");
+      article.setComments(new ArrayList<>(Arrays.asList(comment)));
+
+      byte[] created = mockMvc.perform(post("/api/articles")
+        .contentType(format.getMediaType())
+        .accept(format.getMediaType())
+        .content(mapper.writeValueAsBytes(article)))
+        .andExpect(status().isOk())
+        .andExpect(content().contentTypeCompatibleWith(format.getMediaType()))
+        .andReturn().getResponse().getContentAsByteArray();
+      assertThat(mapper.readValue(created, Article.class).getComments().get(0).getContent(), is("binary comment"));
+
+      MvcResult result = mockMvc.perform(get("/api/articles/{id}", id).accept(format.getMediaType()))
+        .andExpect(status().isOk())
+        .andExpect(content().contentTypeCompatibleWith(format.getMediaType()))
+        .andExpect(header().string("ETag", containsString(format.getVariant())))
+        .andReturn();
+      Article shown = mapper.readValue(result.getResponse().getContentAsByteArray(), Article.class);
+      assertThat(jsonStringFromObject(shown), is(jsonStringFromObject(articlesService.getArticle(id))));
+      mockMvc.perform(get("/api/articles/{id}", id).accept(format.getMediaType())
+        .header("If-None-Match", result.getResponse().getHeader("ETag")))
+        .andExpect(status().isNotModified());
+
+      mockMvc.perform(patch("/api/articles/{id}", id)
+        .contentType(format.getMediaType())
+        .accept(format.getMediaType())
+        .header("If-Match", result.getResponse().getHeader("ETag"))
+        .content(mapper.writeValueAsBytes(Collections.singletonMap("title", "patched"))))
+        .andExpect(status().isOk())
+        .andExpect(header().string("ETag", containsString(format.getVariant())));
+      assertThat(articlesService.getArticle(id).getTitle(), is("patched"));
+      articlesService.deleteArticle(id);
+    }
+
+    mockMvc.perform(get("/api/articles/{id}", 1).accept(MediaType.TEXT_PLAIN))
+      .andExpect(status().isNotAcceptable());
+  }
+
+  // 목록의 ETag 는 포맷마다 다르므로 JSON 목록의 ETag 로 CBOR 목록을 요청하면 304 가 아니라 CBOR 본문을 받는다.
+  @Test
+  public void testCollectionETagPerFormat() throws Exception {
+    String json = mockMvc.perform(get("/api/articles"))
+      .andExpect(status().isOk())
+      .andExpect(header().string("Vary", "Accept"))
+      .andReturn().getResponse().getHeader("ETag");
+    String cbor = mockMvc.perform(get("/api/articles").accept(ArticleFormat.CBOR.getMediaType()))
+      .andExpect(status().isOk())
+      .andExpect(header().string("Vary", "Accept"))
+      .andReturn().getResponse().getHeader("ETag");
+    assertThat(cbor, not(json));
+
+    mockMvc.perform(get("/api/articles").accept(ArticleFormat.CBOR.getMediaType()).header("If-None-Match", json))
+      .andExpect(status().isOk())
+      .andExpect(content().contentTypeCompatibleWith(ArticleFormat.CBOR.getMediaType()));
+    mockMvc.perform(get("/api/articles").accept(ArticleFormat.CBOR.getMediaType()).header("If-None-Match", cbor))
+      .andExpect(status().isNotModified())
+      .andExpect(header().string("Vary", "Accept"));
+  }
+
+  // NDJSON 으로 보낸 글은 줄마다 결과가 나오고 바로 조회할 수 있다.
+  @Test
+  public void testBulk() throws Exception {
+    long id = System.nanoTime();
+    String body = "{\"id\":" + id + ",\"title\":\"bulk1\",\"content\":\"c\",\"comments\":[{\"content\":\"bulk comment\"}]}\n"
+      + "not json\n"
+      + "{\"id\":" + (id + 1) + ",\"title\":\"bulk2\"}\n";
+    MvcResult result = mockMvc.perform(post("/api/articles/_bulk")
+      .contentType(ArticleNdjsonWriter.APPLICATION_NDJSON)
+      .content(body))
+      .andExpect(status().isOk())
+      .andExpect(content().contentTypeCompatibleWith(ArticleNdjsonWriter.APPLICATION_NDJSON))
+      .andReturn();
+    String[] lines = result.getResponse().getContentAsString().split("\n");
+    assertThat(lines.length, is(4));
+    ObjectMapper mapper = new ObjectMapper();
+    assertThat(mapper.readTree(lines[0]).get("status").asInt(), is(201));
+    assertThat(mapper.readTree(lines[1]).get("status").asInt(), is(400));
+    assertThat(mapper.readTree(lines[2]).get("id").asLong(), is(id + 1));
+    assertThat(mapper.readTree(lines[3]).get("failed").asLong(), is(1L));
+
+    mockMvc.perform(get("/api/articles/{id}", id))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.title").value("bulk1"))
+      .andExpect(jsonPath("$.comments[0].content").value("bulk comment"));
+    mockMvc.perform(get("/admin/article-bulk"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.requests").value(1));
+  }
+
+  // 새 글과 댓글은 바로 검색되고, 지운 글은 검색되지 않는다.
+  @Test
+  public void testSearch() throws Exception {
+    mockMvc.perform(get("/api/articles/search").param("q", "comment22"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.hits[0].id").value(2))
+      .andExpect(jsonPath("$.hits[0].title").value("title2"));
+
+    long id = System.nanoTime();
+    mockMvc.perform(post("/api/articles")
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"id\":" + id + ",\"title\":\"스프링 부트 검색\",\"content\":\"역색인으로 찾는다\"}"))
+      .andExpect(status().isOk());
+    mockMvc.perform(get("/api/articles/search").param("q", "부트").param("size", "5"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.total").value(1))
+      .andExpect(jsonPath("$.hits[0].id").value(id));
+
+    mockMvc.perform(delete("/api/articles/{id}", id)).andExpect(status().isOk());
+    mockMvc.perform(get("/api/articles/search").param("q", "부트"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.total").value(0));
+
+    mockMvc.perform(get("/api/articles/search").param("q", " ")).andExpect(status().isBadRequest());
+    mockMvc.perform(get("/api/articles/search").param("q", "title").param("size", "101")).andExpect(status().isBadRequest());
+    mockMvc.perform(get("/admin/search-index"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.documents").exists());
+  }
+
+  // 요청은 경로 변수가 아니라 @RequestMapping 의 패턴으로 묶어서 상태 코드별로 센다.
+  @Test
+  public void testRequestMetrics() throws Exception {
+    mockMvc.perform(get("/api/articles/{id}", 1)).andExpect(status().isOk());
+    mockMvc.perform(get("/api/articles/{id}", 987654321)).andExpect(status().isNotFound());
+
+    String json = mockMvc.perform(get("/admin/metrics"))
+      .andExpect(status().isOk())
+      .andReturn().getResponse().getContentAsString();
+    JsonNode show = null;
+    for (JsonNode route : new ObjectMapper().readTree(json).get("routes")) {
+      if (route.get("route").asText().equals("/api/articles/{id}") && route.get("method").asText().equals("GET")) {
+        show = route;
+      }
+    }
+    assertThat(show, notNullValue());
+    assertThat(show.get("statuses").get("404").asLong() >= 1, is(true));
+    assertThat(show.get("window").get("requests").asLong() >= 2, is(true));
+    assertThat(show.get("window").get("statusRates").has("2xx"), is(true));
+
+    mockMvc.perform(get("/admin/metrics/prometheus"))
+      .andExpect(status().isOk())
+      .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_PLAIN))
+      .andExpect(content().string(containsString("http_server_requests_total{method=\"GET\",route=\"/api/articles/{id}\",status=\"404\"}")))
+      .andExpect(content().string(containsString("http_server_requests_seconds_bucket{method=\"GET\",route=\"/api/articles/{id}\",le=\"+Inf\"}")));
+  }
+
+  // 목록의 ETag 는 글이나 댓글이 바뀌면 달라져야 하고, 페이지/projection 마다 달라야 한다.
+  @Test
+  @DirtiesContext
+  public void testIndexNotModified() throws Exception {
+    String etag = mockMvc.perform(get("/api/articles"))
+      .andExpect(status().isOk())
+      .andReturn().getResponse().getHeader("ETag");
+    String pageEtag = mockMvc.perform(get("/api/articles").param("size", "2"))
+      .andExpect(status().isOk())
+      .andReturn().getResponse().getHeader("ETag");
+    assertThat(etag.equals(pageEtag), is(false));
+
+    mockMvc.perform(get("/api/articles").header("If-None-Match", etag))
+      .andExpect(status().isNotModified())
+      .andExpect(content().string(""));
+
+    mockMvc.perform(post("/api/articles/{articleId}/comments", 1)
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"content\":\"changes the list\"}"))
+      .andExpect(status().isCreated());
+
+    mockMvc.perform(get("/api/articles").header("If-None-Match", etag))
+      .andExpect(status().isOk())
+      .andExpect(header().string("ETag", not(etag)));
+  }
+
+  @Test
+  public void testShowNotFound() throws Exception {
+    mockMvc.perform(get("/api/articles/{id}", Long.MAX_VALUE))
+      .andExpect(status().isNotFound());
+  }
+
+  // ErrorCaptureAdvice 는 예외를 기록만 하고 다시 던지므로 응답 상태는 그대로이고, /admin/errors 에 집계가 나타난다.
+  @Test
+  public void testErrorsAreCaptured() throws Exception {
+    mockMvc.perform(get("/api/articles/{id}", Long.MAX_VALUE - 1))
+      .andExpect(status().isNotFound());
+    mockMvc.perform(get("/api/articles/{id}", Long.MAX_VALUE - 1))
+      .andExpect(status().isNotFound());
+    mockMvc.perform(get("/admin/errors").param("limit", "100"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.top[?(@.lastRequest == 'GET /api/articles/" + (Long.MAX_VALUE - 1) + "')].type")
+        .value(ArticleNotFoundException.class.getName()))
+      .andExpect(jsonPath("$.top[?(@.lastRequest == 'GET /api/articles/" + (Long.MAX_VALUE - 1) + "')].lastStatus").value(404));
+    mockMvc.perform(get("/admin/errors").param("limit", "0"))
+      .andExpect(status().isBadRequest());
+  }
+
   @Test
   public void testCreate() throws Exception {
     Article article = new Article();
@@ -153,7 +532,18 @@ public class ArticlesControllerTest {
       .contentType(MediaType.APPLICATION_JSON)
       .content(jsonString))
       .andExpect(status().isOk())
-      .andExpect(content().string(equalTo(jsonString))).andReturn();
+      .andReturn();
+
+    // id 가 없는 글과 댓글에는 저장소가 새 id 를 붙이므로, 응답의 id 를 기대값에 넣고 비교한다.
+    JsonNode created = new ObjectMapper().readTree(result.getResponse().getContentAsString());
+    long articleId = created.path("id").asLong();
+    long commentId = created.path("comments").path(0).path("id").asLong();
+    assertThat(articleId > 0, is(true));
+    assertThat(commentId > 0, is(true));
+    article.setId(articleId);
+    comment.setId(commentId);
+    comment.setArticleId(articleId);
+    assertThat(result.getResponse().getContentAsString(), is(equalTo(this.jsonStringFromObject(article))));
 
     logger.info(result.getResponse().getContentAsString());
   }
@@ -176,6 +566,59 @@ public class ArticlesControllerTest {
     logger.info(result.getResponse().getContentAsString());
   }
 
+  // ETag 로 받은 버전이 다른 수정으로 바뀌었으면 412 로 거절해야 한다.
+  @Test
+  @DirtiesContext
+  public void testPatchIfMatch() throws Exception {
+    long id = 2;
+    String etag = mockMvc.perform(get("/api/articles/{id}", id))
+      .andExpect(status().isOk())
+      .andReturn().getResponse().getHeader("ETag");
+
+    String newEtag = mockMvc.perform(patch("/api/articles/{id}", id)
+      .contentType(ArticlePatch.MERGE_PATCH_VALUE)
+      .header("If-Match", etag)
+      .content("{\"title\":\"first editor\"}"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.title").value("first editor"))
+      .andExpect(jsonPath("$.content").value("content2"))
+      .andExpect(jsonPath("$.comments[1].content").value("comment22"))
+      .andReturn().getResponse().getHeader("ETag");
+    assertThat(newEtag.equals(etag), is(false));
+
+    // 버전이 같아도 재시작 전(다른 instanceId)의 ETag 는 맞지 않는다.
+    String version = newEtag.substring(newEtag.indexOf('-') + 1, newEtag.length() - 1);
+    mockMvc.perform(patch("/api/articles/{id}", id)
+      .contentType(ArticlePatch.MERGE_PATCH_VALUE)
+      .header("If-Match", "\"restarted-" + version + "\"")
+      .content("{\"title\":\"stale editor\"}"))
+      .andExpect(status().isPreconditionFailed());
+
+    mockMvc.perform(patch("/api/articles/{id}", id)
+      .contentType(ArticlePatch.MERGE_PATCH_VALUE)
+      .header("If-Match", etag)
+      .content("{\"title\":\"second editor\"}"))
+      .andExpect(status().isPreconditionFailed());
+    assertThat(articlesService.getArticle(id).getTitle(), is("first editor"));
+  }
+
+  @Test
+  @DirtiesContext
+  public void testJsonPatch() throws Exception {
+    long id = 3;
+    mockMvc.perform(patch("/api/articles/{id}", id)
+      .contentType(ArticlePatch.JSON_PATCH_VALUE)
+      .content("[{\"op\":\"add\",\"path\":\"/comments/-\",\"value\":{\"content\":\"patched\"}}]"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.comments[2].content").value("patched"));
+    assertThat(articlesService.getArticle(id).getComments().size(), is(3));
+
+    mockMvc.perform(patch("/api/articles/{id}", id)
+      .contentType(ArticlePatch.JSON_PATCH_VALUE)
+      .content("[{\"op\":\"test\",\"path\":\"/title\",\"value\":\"nope\"}]"))
+      .andExpect(status().isConflict());
+  }
+
   @Test
   public void testUpdate() throws Exception {
     long id = 1;
@@ -194,7 +637,36 @@ public class ArticlesControllerTest {
     logger.info(result.getResponse().getContentAsString());
   }
 
+  // 다른 글의 댓글 id 를 PUT 으로 보내면 새 id 를 받고, 원래 글의 댓글은 바뀌지 않는다.
+  @Test
+  public void testUpdateWithForeignCommentId() throws Exception {
+    long owner = System.nanoTime();
+    long other = owner + 1;
+    for (long id : Arrays.asList(owner, other)) {
+      mockMvc.perform(post("/api/articles")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"id\":" + id + ",\"title\":\"foreign\",\"comments\":[{\"content\":\"comment" + id + "\"}]}"))
+        .andExpect(status().isOk());
+    }
+    long commentId = articlesService.getArticle(owner).getComments().get(0).getId();
+
+    mockMvc.perform(put("/api/articles/{id}", other)
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"title\":\"foreign\",\"comments\":[{\"id\":" + commentId + ",\"content\":\"stolen\"}]}"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.comments[0].content").value("stolen"));
+    assertThat(articlesService.getArticle(other).getComments().get(0).getId(), not(equalTo(commentId)));
+
+    mockMvc.perform(get("/api/articles/{id}", owner))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.comments[0].content").value("comment" + owner));
+    assertThat(articlesService.getArticle(owner).getComments().get(0).getId(), is(commentId));
+    articlesService.deleteArticle(owner);
+    articlesService.deleteArticle(other);
+  }
+
   @Test
+  @DirtiesContext
   public void testDestroy() throws Exception {
     long id = 1;
     List<Article> articles = articlesService.deleteArticle(id);
@@ -0,0 +1,69 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GET /api/articles 가 목록을 가져올 때 요청마다 얼마나 할당하는지 비교하는 벤치마크
+ *
+ * copyList 는 예전 ArticlesService.getArticles() 처럼 매번 new ArrayList<>(fixtures) 를 만들고,
+ * snapshot 은 ArticleRepository 의 copy-on-write 스냅샷을 그대로 공유한다.
+ * -prof gc 로 실행하면 gc.alloc.rate.norm(요청 한번당 할당 바이트)을 비교할 수 있다.
+ *
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="ArticlesListBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArticlesListBenchmark {
+  @Param({"1000", "100000"})
+  int size;
+
+  private FixturesProperty fixturesProperty;
+  private ArticlesService articlesService;
+
+  @Setup
+  public void setUp() throws Exception {
+    fixturesProperty = new FixturesProperty();
+    for (long id = 1; id <= size; id++) {
+      Article article = new Article();
+      article.setId(id);
+      article.setTitle("title" + id);
+      article.setContent("content" + id);
+      fixturesProperty.getArticles().add(article);
+    }
+
+    ArticleRepository articleRepository = new ArticleRepository();
+    articleRepository.fixturesProperty = fixturesProperty;
+    articleRepository.load();
+
+    articlesService = new ArticlesService();
+    articlesService.articleRepository = articleRepository;
+  }
+
+  @Benchmark
+  public List<Article> copyList() {
+    return new ArrayList<>(fixturesProperty.getArticles());
+  }
+
+  @Benchmark
+  public List<Article> snapshot() {
+    return articlesService.getArticles();
+  }
+}
@@ -0,0 +1,104 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ArticlesService 의 조회/삭제가 글 수에 따라 어떻게 변하는지 재는 벤치마크
+ *
+ * 글마다 fixtures.yml 처럼 댓글이 2개 있다. 조회할 id 는 미리 섞어 둔 배열을 돌아가며 쓴다.
+ * deleteAndRecreate 는 글 하나를 지운 다음(스냅샷에서 빠진 목록을 돌려받는다) 같은 글을 다시 저장해서 글 수를 유지한다.
+ * 저장된 글의 comments 는 CommentStore 의 view 라서 지우면 비어버리므로, 다시 저장할 글은 매번 setUp 과 같은 모양으로 새로 만든다.
+ * Throughput 과 SampleTime(p50 ~ p99.99) 을 함께 보고, 기본 jmh.args 의 -prof gc 로 호출 한번당 할당 바이트(gc.alloc.rate.norm)도 본다.
+ *
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="ArticlesServiceBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ArticlesServiceBenchmark {
+  private static final int IDS = 1024;
+
+  @Param({"10", "1000", "100000", "1000000"})
+  int size;
+
+  private ArticlesService articlesService;
+  private final long[] ids = new long[IDS];
+  private int next;
+
+  private static Article article(long id) {
+    Article article = new Article();
+    article.setId(id);
+    article.setTitle("title" + id);
+    article.setContent("content" + id);
+    List<Comment> comments = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      Comment comment = new Comment();
+      comment.setId(id * 10 + i);
+      comment.setArticleId(id);
+      comment.setContent("comment" + id + i);
+      comments.add(comment);
+    }
+    article.setComments(comments);
+    return article;
+  }
+
+  @Setup
+  public void setUp() throws Exception {
+    FixturesProperty fixturesProperty = new FixturesProperty();
+    for (long id = 1; id <= size; id++) {
+      fixturesProperty.getArticles().add(article(id));
+    }
+
+    ArticleRepository articleRepository = new ArticleRepository();
+    articleRepository.fixturesProperty = fixturesProperty;
+    articleRepository.load();
+
+    articlesService = new ArticlesService();
+    articlesService.articleRepository = articleRepository;
+
+    Random random = new Random(42);
+    for (int i = 0; i < IDS; i++) {
+      ids[i] = 1 + random.nextInt(size);
+    }
+  }
+
+  private int nextIndex() {
+    next = (next + 1) & (IDS - 1);
+    return next;
+  }
+
+  @Benchmark
+  public List<Article> getArticles() {
+    return articlesService.getArticles();
+  }
+
+  @Benchmark
+  public Article getArticle() {
+    return articlesService.getArticle(ids[nextIndex()]);
+  }
+
+  @Benchmark
+  public Article deleteAndRecreate() {
+    long id = ids[nextIndex()];
+    articlesService.deleteArticle(id);
+    return articlesService.createArticle(article(id));
+  }
+}
@@ -4,6 +4,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
@@ -50,12 +51,33 @@ public class ArticlesServiceTest {
     assertThat(article.getId(), is(equalTo(demoArticle.getId())));
   }
 
+  @Test(expected = ArticleNotFoundException.class)
+  public void testGetArticleNotFound() throws Exception {
+    articlesService.getArticle(Long.MAX_VALUE);
+  }
+
+  // 없는 글을 수정하면 404 이고, 그 id 로 글이 만들어지지도 않는다.
+  @Test
+  public void testUpdateArticleNotFound() throws Exception {
+    Article article = new Article();
+    article.setTitle("missing");
+    try {
+      articlesService.updateArticle(Long.MAX_VALUE - 1, article);
+      fail("expected ArticleNotFoundException");
+    } catch (ArticleNotFoundException e) {
+      assertThat(articlesService.getArticles().size(), is(3));
+    }
+  }
+
+  // 삭제가 실제로 저장소에 반영되기 때문에 다른 테스트가 같은 컨텍스트를 쓰지 않도록 한다.
   @Test
+  @DirtiesContext
   public void testDeleteArticle() throws Exception {
     long id = 1;
     List<Article> demoArticles = new ArrayList<>(fixturesProperty.getArticles());
     List<Article> articles = articlesService.deleteArticle(id);
     assertThat(articles.size(), not(demoArticles.size()));
+    assertThat(articlesService.getArticles().size(), is(demoArticles.size() - 1));
   }
 
 }
\ No newline at end of file
@@ -0,0 +1,222 @@
+package com.example;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.context.WebApplicationContext;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+/**
+ * 첨부 파일 업로드/다운로드와 이어 올리기를 테스트한다. 파일은 target/test-blobs 에 저장된다.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringBootProjectApplication.class)
+@WebAppConfiguration
+@TestPropertySource(properties = "blobs.directory=target/test-blobs")
+public class AttachmentsControllerTest {
+
+  private MockMvc mockMvc;
+
+  @Autowired
+  WebApplicationContext wac;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private byte[] data;
+
+  @Before
+  public void setUp() throws Exception {
+    mockMvc = webAppContextSetup(wac).build();
+    data = new byte[100000];
+    new Random(System.nanoTime()).nextBytes(data);
+  }
+
+  private String upload(long articleId, byte[] bytes, String filename) throws Exception {
+    MvcResult result = mockMvc.perform(post("/api/articles/{articleId}/attachments", articleId)
+      .param("filename", filename)
+      .contentType("image/png")
+      .content(bytes))
+      .andExpect(status().isCreated())
+      .andExpect(jsonPath("$.filename").value(filename))
+      .andExpect(jsonPath("$.contentType").value("image/png"))
+      .andExpect(jsonPath("$.size").value(bytes.length))
+      .andReturn();
+    return objectMapper.readTree(result.getResponse().getContentAsString()).get("hash").asText();
+  }
+
+  @Test
+  public void testUploadAndDownload() throws Exception {
+    String hash = upload(1, data, "배경화면.png");
+
+    mockMvc.perform(get("/api/articles/{articleId}/attachments", 1))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$[?(@.hash == '" + hash + "')].filename").value("배경화면.png"));
+
+    MvcResult result = mockMvc.perform(get("/api/articles/{articleId}/attachments/{hash}", 1, hash))
+      .andExpect(status().isOk())
+      .andExpect(header().string("Content-Type", "image/png"))
+      .andExpect(header().string("Content-Length", String.valueOf(data.length)))
+      .andExpect(header().string("Accept-Ranges", "bytes"))
+      .andExpect(header().string("ETag", "\"" + hash + "\""))
+      .andReturn();
+    assertArrayEquals(data, result.getResponse().getContentAsByteArray());
+
+    mockMvc.perform(get("/api/articles/{articleId}/attachments/{hash}", 1, hash).header("If-None-Match", "\"" + hash + "\""))
+      .andExpect(status().isNotModified());
+  }
+
+  @Test
+  public void testRangeDownload() throws Exception {
+    String hash = upload(2, data, "range.png");
+
+    MvcResult result = mockMvc.perform(get("/api/articles/{articleId}/attachments/{hash}", 2, hash).header("Range", "bytes=1000-1999"))
+      .andExpect(status().isPartialContent())
+      .andExpect(header().string("Content-Range", "bytes 1000-1999/" + data.length))
+      .andExpect(header().string("Content-Length", "1000"))
+      .andReturn();
+    assertArrayEquals(Arrays.copyOfRange(data, 1000, 2000), result.getResponse().getContentAsByteArray());
+
+    result = mockMvc.perform(get("/api/articles/{articleId}/attachments/{hash}", 2, hash).header("Range", "bytes=-10"))
+      .andExpect(status().isPartialContent())
+      .andReturn();
+    assertArrayEquals(Arrays.copyOfRange(data, data.length - 10, data.length), result.getResponse().getContentAsByteArray());
+
+    // If-Range 가 다른 ETag 이면 전체를 보낸다.
+    mockMvc.perform(get("/api/articles/{articleId}/attachments/{hash}", 2, hash).header("Range", "bytes=0-9").header("If-Range", "\"other\""))
+      .andExpect(status().isOk());
+
+    mockMvc.perform(get("/api/articles/{articleId}/attachments/{hash}", 2, hash).header("Range", "bytes=" + data.length + "-"))
+      .andExpect(status().isRequestedRangeNotSatisfiable())
+      .andExpect(header().string("Content-Range", "bytes */" + data.length));
+  }
+
+  @Test
+  public void testResumableUpload() throws Exception {
+    MvcResult created = mockMvc.perform(post("/api/uploads"))
+      .andExpect(status().isCreated())
+      .andExpect(header().string("Upload-Offset", "0"))
+      .andReturn();
+    String id = objectMapper.readTree(created.getResponse().getContentAsString()).get("id").asText();
+
+    mockMvc.perform(patch("/api/uploads/{id}", id).header("Upload-Offset", 0).content(Arrays.copyOfRange(data, 0, 60000)))
+      .andExpect(status().isNoContent())
+      .andExpect(header().string("Upload-Offset", "60000"));
+    // 잘못된 위치에서 이어 보내면 409 이다.
+    mockMvc.perform(patch("/api/uploads/{id}", id).header("Upload-Offset", 0).content(Arrays.copyOfRange(data, 0, 10)))
+      .andExpect(status().isConflict());
+    mockMvc.perform(head("/api/uploads/{id}", id))
+      .andExpect(status().isOk())
+      .andExpect(header().string("Upload-Offset", "60000"));
+    mockMvc.perform(patch("/api/uploads/{id}", id).header("Upload-Offset", 60000).content(Arrays.copyOfRange(data, 60000, data.length)))
+      .andExpect(status().isNoContent())
+      .andExpect(header().string("Upload-Offset", String.valueOf(data.length)));
+
+    MvcResult attached = mockMvc.perform(post("/api/articles/{articleId}/attachments", 3).param("upload", id).param("filename", "big.jpg"))
+      .andExpect(status().isCreated())
+      .andExpect(jsonPath("$.contentType").value("image/jpeg"))
+      .andExpect(jsonPath("$.size").value(data.length))
+      .andReturn();
+    String hash = objectMapper.readTree(attached.getResponse().getContentAsString()).get("hash").asText();
+
+    MvcResult result = mockMvc.perform(get("/api/articles/{articleId}/attachments/{hash}", 3, hash))
+      .andExpect(status().isOk())
+      .andReturn();
+    assertArrayEquals(data, result.getResponse().getContentAsByteArray());
+
+    mockMvc.perform(head("/api/uploads/{id}", id))
+      .andExpect(status().isNotFound());
+  }
+
+  @Test
+  public void testMultipartUpload() throws Exception {
+    MockMultipartFile file = new MockMultipartFile("file", "note.txt", "text/plain", "누구보다 빠르게".getBytes(StandardCharsets.UTF_8));
+    mockMvc.perform(fileUpload("/api/articles/{articleId}/attachments", 1).file(file))
+      .andExpect(status().isCreated())
+      .andExpect(jsonPath("$.filename").value("note.txt"))
+      .andExpect(jsonPath("$.contentType").value("text/plain"));
+
+    // /articles 폼 제출도 파일을 저장하고 attachments 로 돌려준다.
+    mockMvc.perform(fileUpload("/articles").file(file).param("title", "제목"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.title").value("제목"))
+      .andExpect(jsonPath("$.attachments[0].filename").value("note.txt"));
+  }
+
+  @Test
+  public void testDeleteAndNotFound() throws Exception {
+    String hash = upload(1, "delete me".getBytes(StandardCharsets.UTF_8), "delete.png");
+    mockMvc.perform(delete("/api/articles/{articleId}/attachments/{hash}", 1, hash))
+      .andExpect(status().isNoContent());
+    mockMvc.perform(get("/api/articles/{articleId}/attachments/{hash}", 1, hash))
+      .andExpect(status().isNotFound());
+    mockMvc.perform(post("/api/articles/{articleId}/attachments", Long.MAX_VALUE).content(data))
+      .andExpect(status().isNotFound());
+  }
+
+  // 업로드는 썸네일을 기다리지 않고 PENDING 으로 응답하고, 작업이 끝나면 글 JSON 에 썸네일이 나타난다.
+  @Test
+  public void testImageThumbnails() throws Exception {
+    BufferedImage image = new BufferedImage(1600, 900, BufferedImage.TYPE_INT_RGB);
+    image.setRGB(0, 0, System.identityHashCode(this));
+    ByteArrayOutputStream png = new ByteArrayOutputStream();
+    ImageIO.write(image, "png", png);
+
+    String hash = upload(3, png.toByteArray(), "wallpaper.png");
+    String etag = null;
+    long deadline = System.currentTimeMillis() + 10000;
+    while (true) {
+      MvcResult result = mockMvc.perform(get("/api/articles/{id}", 3)).andExpect(status().isOk()).andReturn();
+      JsonNode article = objectMapper.readTree(result.getResponse().getContentAsString());
+      JsonNode attachment = null;
+      for (JsonNode node : article.get("attachments")) {
+        if (node.get("hash").asText().equals(hash)) {
+          attachment = node;
+        }
+      }
+      String status = attachment.get("image").get("status").asText();
+      if (status.equals("READY")) {
+        assertThat(attachment.get("image").get("width").asInt(), is(1600));
+        assertThat(attachment.get("image").get("thumbnails").get(1).get("url").asText(), is("/api/images/" + hash + "/320"));
+        // 썸네일이 생기면 글의 버전은 그대로지만 ETag 는 바뀐다.
+        assertThat(result.getResponse().getHeader("ETag").equals(etag), is(false));
+        break;
+      }
+      assertThat(status, is("PENDING"));
+      etag = result.getResponse().getHeader("ETag");
+      assertThat(System.currentTimeMillis() < deadline, is(true));
+      Thread.sleep(20);
+    }
+
+    mockMvc.perform(get("/api/images/{hash}/{width}", hash, 320))
+      .andExpect(status().isOk())
+      .andExpect(header().string("Content-Type", "image/jpeg"))
+      .andExpect(header().string("ETag", "\"" + hash + "-320\""))
+      .andExpect(header().string("Cache-Control", "max-age=31536000, public"));
+    mockMvc.perform(get("/api/images/{hash}/{width}", hash, 320).header("If-None-Match", "\"" + hash + "-320\""))
+      .andExpect(status().isNotModified());
+    mockMvc.perform(get("/api/images/{hash}/{width}", hash, 100))
+      .andExpect(status().isNotFound());
+  }
+}
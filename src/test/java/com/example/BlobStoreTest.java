@@ -0,0 +1,120 @@
+package com.example;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class BlobStoreTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private BlobStoreProperties properties;
+  private byte[] data;
+
+  @Before
+  public void setUp() {
+    properties = new BlobStoreProperties();
+    properties.setDirectory(folder.getRoot().getPath());
+    // 여러 번 나눠 읽도록 버퍼를 작게 한다.
+    properties.setBufferBytes(1000);
+    data = new byte[10000];
+    new Random(1).nextBytes(data);
+  }
+
+  private BlobStore blobStore() {
+    BlobStore blobStore = new BlobStore();
+    blobStore.properties = properties;
+    blobStore.init();
+    return blobStore;
+  }
+
+  private static ReadableByteChannel channel(byte[] bytes, int from, int to) {
+    return Channels.newChannel(new ByteArrayInputStream(Arrays.copyOfRange(bytes, from, to)));
+  }
+
+  private static String sha256(byte[] bytes) throws Exception {
+    return BlobStore.toHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+  }
+
+  @Test
+  public void testPutIsContentAddressed() throws Exception {
+    BlobStore blobStore = blobStore();
+    Blob blob = blobStore.put(channel(data, 0, data.length));
+    assertThat(blob.getHash(), is(sha256(data)));
+    assertThat(blob.getSize(), is((long) data.length));
+    assertArrayEquals(data, Files.readAllBytes(blobStore.path(blob.getHash())));
+
+    // 같은 내용은 한 번만 저장된다.
+    Blob again = blobStore.put(channel(data, 0, data.length));
+    assertThat(again.getHash(), is(blob.getHash()));
+    assertThat(Files.list(blobStore.path(blob.getHash()).getParent()).count(), is(1L));
+    assertThat(Files.list(folder.getRoot().toPath().resolve("tmp")).count(), is(0L));
+  }
+
+  // 재시작해서 해시 상태가 없어져도 받은 부분부터 이어 올릴 수 있다.
+  @Test
+  public void testResumableUploadAcrossRestart() throws Exception {
+    BlobStore blobStore = blobStore();
+    String id = blobStore.createUpload();
+    assertThat(blobStore.appendUpload(id, 0, channel(data, 0, 4000)), is(4000L));
+
+    BlobStore restarted = blobStore();
+    assertThat(restarted.uploadOffset(id), is(4000L));
+    assertThat(restarted.appendUpload(id, 4000, channel(data, 4000, 7000)), is(7000L));
+    assertThat(restarted.appendUpload(id, 7000, channel(data, 7000, data.length)), is((long) data.length));
+
+    Blob blob = restarted.completeUpload(id);
+    assertThat(blob.getHash(), is(sha256(data)));
+    assertArrayEquals(data, Files.readAllBytes(restarted.path(blob.getHash())));
+    try {
+      restarted.uploadOffset(id);
+      fail("upload should be gone after completion");
+    } catch (UploadNotFoundException e) {
+      // expected
+    }
+  }
+
+  @Test(expected = ConflictException.class)
+  public void testAppendAtWrongOffset() throws Exception {
+    BlobStore blobStore = blobStore();
+    String id = blobStore.createUpload();
+    blobStore.appendUpload(id, 0, channel(data, 0, 100));
+    blobStore.appendUpload(id, 50, channel(data, 50, 100));
+  }
+
+  @Test(expected = PayloadTooLargeException.class)
+  public void testMaxBlobBytes() throws Exception {
+    properties.setMaxBlobBytes(5000);
+    blobStore().put(channel(data, 0, data.length));
+  }
+
+  @Test
+  public void testByteRange() {
+    assertThat(ByteRange.parse("bytes=0-99", 1000).contentRange(1000), is("bytes 0-99/1000"));
+    assertThat(ByteRange.parse("bytes=900-", 1000).length(), is(100L));
+    assertThat(ByteRange.parse("bytes=-100", 1000).getStart(), is(900L));
+    assertThat(ByteRange.parse("bytes=990-2000", 1000).getEnd(), is(999L));
+    // 여러 범위나 잘못된 형식은 무시하고 전체를 보낸다.
+    assertNull(ByteRange.parse("bytes=0-1,5-6", 1000));
+    assertNull(ByteRange.parse("bytes=abc", 1000));
+    assertNull(ByteRange.parse(null, 1000));
+    try {
+      ByteRange.parse("bytes=1000-", 1000);
+      fail("range outside of the blob");
+    } catch (RangeNotSatisfiableException e) {
+      assertThat(e.getLength(), is(1000L));
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package com.example;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+  private final AtomicLong now = new AtomicLong(1000);
+
+  // 윈도 10, 최소 4회, 실패율 50%, 100ms 이상이면 느린 호출(80%), 열린 뒤 1000ms, 시험 호출 2회
+  private CircuitBreaker breaker() {
+    return new CircuitBreaker(10, 4, 50, 80, 100, 1000, 2, now::get);
+  }
+
+  private void call(CircuitBreaker breaker, long millis, boolean failed) {
+    assertTrue(breaker.tryAcquire());
+    breaker.onResult(millis, failed);
+  }
+
+  @Test
+  public void testOpensOnFailureRate() {
+    CircuitBreaker breaker = breaker();
+    call(breaker, 10, true);
+    call(breaker, 10, true);
+    call(breaker, 10, false);
+    // 아직 최소 호출 수(4)가 안 됐으므로 닫혀 있다.
+    assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+    call(breaker, 10, false);
+    assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+
+    assertFalse(breaker.tryAcquire());
+    assertThat(breaker.getNotPermitted(), is(1L));
+  }
+
+  @Test
+  public void testSlidingWindowForgetsOldFailures() {
+    CircuitBreaker breaker = breaker();
+    call(breaker, 10, true);
+    for (int i = 0; i < 10; i++) {
+      call(breaker, 10, false);
+      assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+    }
+    assertThat(breaker.failureRate(), is(0.0));
+  }
+
+  @Test
+  public void testOpensOnSlowCalls() {
+    CircuitBreaker breaker = breaker();
+    for (int i = 0; i < 4; i++) {
+      call(breaker, 150, false);
+    }
+    assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+  }
+
+  @Test
+  public void testHalfOpenCloses() {
+    CircuitBreaker breaker = breaker();
+    for (int i = 0; i < 4; i++) {
+      call(breaker, 10, true);
+    }
+    now.addAndGet(1000);
+
+    // 시험 호출은 2번만 허용한다.
+    assertTrue(breaker.tryAcquire());
+    assertTrue(breaker.tryAcquire());
+    assertFalse(breaker.tryAcquire());
+    assertThat(breaker.getState(), is(CircuitBreaker.State.HALF_OPEN));
+
+    breaker.onResult(10, false);
+    breaker.onResult(10, false);
+    assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+    assertThat(breaker.failureRate(), is(0.0));
+  }
+
+  @Test
+  public void testHalfOpenFailureReopens() {
+    CircuitBreaker breaker = breaker();
+    for (int i = 0; i < 4; i++) {
+      call(breaker, 10, true);
+    }
+    now.addAndGet(1000);
+
+    call(breaker, 10, true);
+    assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+    assertThat(breaker.getOpenedCount(), is(2L));
+    assertFalse(breaker.tryAcquire());
+  }
+}
@@ -0,0 +1,144 @@
+package com.example;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+public class CommentStoreTest {
+
+  private Comment comment(long id, String content) {
+    Comment comment = new Comment();
+    comment.setId(id);
+    comment.setContent(content);
+    return comment;
+  }
+
+  @Test
+  public void testAssignIdsContinuesAfterExisting() {
+    CommentStore store = new CommentStore();
+    List<Comment> comments = new ArrayList<>(Arrays.asList(comment(10, "a"), comment(0, "b")));
+    store.assignIds(1, comments);
+    store.replace(1, comments);
+
+    assertThat(comments.get(1).getId(), is(11L));
+    assertThat(comments.get(1).getArticleId(), is(1L));
+    assertThat(store.count(1), is(2));
+  }
+
+  // 다른 글의 댓글 id 를 쓴 댓글은 새 id 를 받고, 원래 글의 댓글은 그대로 남는다.
+  @Test
+  public void testAssignIdsReassignsForeignId() {
+    CommentStore store = new CommentStore();
+    List<Comment> first = new ArrayList<>(Arrays.asList(comment(5, "a")));
+    store.assignIds(1, first);
+    store.replace(1, first);
+
+    List<Comment> second = new ArrayList<>(Arrays.asList(comment(5, "b")));
+    store.assignIds(2, second);
+    store.replace(2, second);
+
+    assertThat(second.get(0).getId(), is(not(5L)));
+    assertThat(store.get(5).getContent(), is("a"));
+    assertThat(store.get(5).getArticleId(), is(1L));
+    assertThat(store.count(1), is(1));
+  }
+
+  // 새 id 만 붙인 경우와 다른 글의 id 를 바꾼 경우를 구분한다. 바꾼 경우에만 다시 인코딩해야 한다.
+  @Test
+  public void testAssignIdsReportsReassignment() {
+    CommentStore store = new CommentStore();
+    List<Comment> first = new ArrayList<>(Arrays.asList(comment(5, "a"), comment(0, "b")));
+    assertThat(store.assignIds(1, first), is(false));
+    store.replace(1, first);
+
+    assertThat(store.assignIds(1, new ArrayList<>(Arrays.asList(comment(5, "c")))), is(false));
+    assertThat(store.assignIds(2, new ArrayList<>(Arrays.asList(comment(5, "d")))), is(true));
+  }
+
+  // 락 밖에서 확인한 뒤 다른 글이 같은 id 를 가져갔으면 add 는 덮어쓰지 않고 실패한다.
+  @Test
+  public void testAddRejectsForeignId() {
+    CommentStore store = new CommentStore();
+    Comment first = comment(5, "a");
+    first.setArticleId(1);
+    store.add(first);
+
+    Comment second = comment(5, "b");
+    second.setArticleId(2);
+    try {
+      store.add(second);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    assertThat(store.get(5).getContent(), is("a"));
+    assertThat(store.count(2), is(0));
+  }
+
+  // Article 에 들어있는 view 는 추가/삭제가 바로 보여야 한다.
+  @Test
+  public void testViewIsLive() {
+    CommentStore store = new CommentStore();
+    List<Comment> view = store.view(1);
+    assertThat(view.isEmpty(), is(true));
+
+    Comment added = comment(5, "a");
+    added.setArticleId(1);
+    store.add(added);
+    assertThat(view.size(), is(1));
+    assertThat(view.get(0), is(sameInstance(added)));
+
+    store.remove(1, 5);
+    assertThat(view.isEmpty(), is(true));
+    assertThat(store.get(5), is(nullValue()));
+  }
+
+  // 순회 중에 댓글이 지워져도 예외 없이 남은 댓글만 읽는다.
+  @Test
+  public void testIteratorSkipsRemoved() {
+    CommentStore store = new CommentStore();
+    List<Comment> comments = Arrays.asList(comment(1, "a"), comment(2, "b"), comment(3, "c"));
+    store.assignIds(7, comments);
+    store.replace(7, comments);
+
+    Iterator<Comment> iterator = store.view(7).iterator();
+    assertThat(iterator.next().getId(), is(1L));
+    store.remove(7, 2);
+    assertThat(iterator.next().getId(), is(3L));
+    assertThat(iterator.hasNext(), is(false));
+  }
+
+  @Test
+  public void testPage() {
+    CommentStore store = new CommentStore();
+    List<Comment> comments = Arrays.asList(comment(1, "a"), comment(2, "b"), comment(3, "c"));
+    store.assignIds(1, comments);
+    store.replace(1, comments);
+
+    List<Comment> first = store.page(1, 0, 2);
+    assertThat(first.size(), is(2));
+    assertThat(store.hasAfter(1, first.get(1).getId()), is(true));
+    List<Comment> second = store.page(1, 2, 2);
+    assertThat(second.size(), is(1));
+    assertThat(second.get(0).getId(), is(3L));
+    assertThat(store.hasAfter(1, 3), is(false));
+  }
+
+  @Test
+  public void testRemoveArticle() {
+    CommentStore store = new CommentStore();
+    List<Comment> comments = Arrays.asList(comment(1, "a"), comment(2, "b"));
+    store.assignIds(1, comments);
+    store.replace(1, comments);
+
+    store.removeArticle(1);
+    assertThat(store.count(1), is(0));
+    assertThat(store.get(1), is(nullValue()));
+    assertThat(store.remove(1, 2), is(false));
+  }
+}
@@ -0,0 +1,89 @@
+package com.example;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.context.WebApplicationContext;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringBootProjectApplication.class)
+@WebAppConfiguration
+public class CommentsControllerTest {
+
+  private MockMvc mockMvc;
+
+  @Autowired
+  WebApplicationContext wac;
+
+  @Autowired
+  ArticlesService articlesService;
+
+  @Before
+  public void setUp() throws Exception {
+    mockMvc = webAppContextSetup(wac).build();
+  }
+
+  @Test
+  public void testIndex() throws Exception {
+    mockMvc.perform(get("/api/articles/{articleId}/comments", 2).param("size", "1"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.comments[0].id").value(20))
+      .andExpect(jsonPath("$.comments[0].content").value("comment21"))
+      .andExpect(jsonPath("$.nextCursor").exists());
+  }
+
+  @Test
+  public void testShow() throws Exception {
+    mockMvc.perform(get("/api/articles/{articleId}/comments/{commentId}", 3, 31))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.content").value("comment32"));
+  }
+
+  @Test
+  public void testNotFound() throws Exception {
+    mockMvc.perform(get("/api/articles/{articleId}/comments/{commentId}", 3, 20))
+      .andExpect(status().isNotFound());
+    mockMvc.perform(get("/api/articles/{articleId}/comments", Long.MAX_VALUE))
+      .andExpect(status().isNotFound());
+  }
+
+  // 추가/삭제한 댓글이 Article 의 comments 에도 바로 보여야 한다.
+  @Test
+  @DirtiesContext
+  public void testCreateAndDelete() throws Exception {
+    long articleId = 1;
+    int before = articlesService.getArticle(articleId).getComments().size();
+
+    MvcResult result = mockMvc.perform(post("/api/articles/{articleId}/comments", articleId)
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"content\":\"new comment\"}"))
+      .andExpect(status().isCreated())
+      .andExpect(jsonPath("$.articleId").value((int) articleId))
+      .andReturn();
+    JsonNode created = new ObjectMapper().readTree(result.getResponse().getContentAsString());
+    long commentId = created.get("id").asLong();
+    assertThat(articlesService.getArticle(articleId).getComments().size(), is(before + 1));
+
+    mockMvc.perform(delete("/api/articles/{articleId}/comments/{commentId}", articleId, commentId))
+      .andExpect(status().isNoContent());
+    mockMvc.perform(delete("/api/articles/{articleId}/comments/{commentId}", articleId, commentId))
+      .andExpect(status().isNoContent());
+    assertThat(articlesService.getArticle(articleId).getComments().size(), is(before));
+  }
+}
@@ -0,0 +1,116 @@
+package com.example;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+public class ConcurrentLongHashMapTest {
+
+  @Test
+  public void testPutGetRemove() {
+    ConcurrentLongHashMap<String> map = new ConcurrentLongHashMap<>();
+    assertThat(map.put(1, "a"), is(nullValue()));
+    assertThat(map.put(1, "b"), is("a"));
+    assertThat(map.putIfAbsent(1, "c"), is("b"));
+    assertThat(map.get(1), is("b"));
+    assertThat(map.get(2), is(nullValue()));
+    assertThat(map.size(), is(1));
+
+    assertThat(map.remove(1), is("b"));
+    assertThat(map.get(1), is(nullValue()));
+    assertThat(map.isEmpty(), is(true));
+  }
+
+  @Test
+  public void testZeroAndNegativeKeys() {
+    ConcurrentLongHashMap<String> map = new ConcurrentLongHashMap<>();
+    map.put(0, "zero");
+    map.put(-1, "minus");
+    map.put(Long.MIN_VALUE, "min");
+    assertThat(map.get(0), is("zero"));
+    assertThat(map.get(-1), is("minus"));
+    assertThat(map.get(Long.MIN_VALUE), is("min"));
+  }
+
+  @Test
+  public void testConditionalOperations() {
+    ConcurrentLongHashMap<String> map = new ConcurrentLongHashMap<>();
+    String a = "a";
+    map.put(1, a);
+    assertThat(map.replace(1, "other", "b"), is(false));
+    assertThat(map.replace(1, a, "b"), is(true));
+    assertThat(map.remove(1, a), is(false));
+    assertThat(map.get(1), is("b"));
+  }
+
+  // 삭제 후에도 linear probing 체인이 끊어지지 않는지 HashMap 과 비교하며 확인한다.
+  @Test
+  public void testRandomOperationsAgainstHashMap() {
+    ConcurrentLongHashMap<Long> map = new ConcurrentLongHashMap<>(4, 2);
+    Map<Long, Long> expected = new HashMap<>();
+    Random random = new Random(42);
+
+    for (int i = 0; i < 200000; i++) {
+      long key = random.nextInt(5000);
+      if (random.nextInt(3) == 0) {
+        assertThat(map.remove(key), is(expected.remove(key)));
+      } else {
+        assertThat(map.put(key, (long) i), is(expected.put(key, (long) i)));
+      }
+    }
+
+    assertThat(map.size(), is(expected.size()));
+    for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+      assertThat(map.get(entry.getKey()), is(entry.getValue()));
+    }
+    Map<Long, Long> visited = new HashMap<>();
+    map.forEach(visited::put);
+    assertThat(visited, is(equalTo(expected)));
+  }
+
+  @Test
+  public void testConcurrentPuts() throws Exception {
+    ConcurrentLongHashMap<Long> map = new ConcurrentLongHashMap<>();
+    int threads = 8;
+    int perThread = 20000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch start = new CountDownLatch(1);
+
+    // 작업 안의 assertThat 실패는 Future 에만 남으므로 get() 으로 꺼내야 테스트가 실패한다.
+    List<Future<Void>> futures = new ArrayList<>(threads);
+    for (int t = 0; t < threads; t++) {
+      long base = (long) t * perThread;
+      futures.add(executor.submit(() -> {
+        start.await();
+        for (long k = base; k < base + perThread; k++) {
+          map.put(k, k);
+          assertThat(map.get(k), is(k));
+        }
+        return null;
+      }));
+    }
+    start.countDown();
+    executor.shutdown();
+    for (Future<Void> future : futures) {
+      future.get(30, TimeUnit.SECONDS);
+    }
+    assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+    assertThat(map.size(), is(threads * perThread));
+    for (long k = 0; k < threads * perThread; k++) {
+      assertThat(map.get(k), is(k));
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 예외가 쏟아질 때 요청 스레드가 ErrorCapture.record() 에 쓰는 시간을 재는 벤치마크
+ *
+ * 8개 스레드가 쉬지 않고 같은 예외를 기록하는 동안 집계 스레드는 기본 설정대로 100ms 마다 링 버퍼를 비운다.
+ * 예외 객체는 미리 만들어 두므로 스택 트레이스를 만드는 비용(예외를 던지는 쪽의 비용)은 포함하지 않는다.
+ *
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="ErrorCaptureBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class ErrorCaptureBenchmark {
+  private ErrorCapture errorCapture;
+  private final RuntimeException error = new IndexOutOfBoundsException("Index: 9, Size: 3");
+
+  @Setup
+  public void setUp() {
+    errorCapture = new ErrorCapture();
+    errorCapture.properties = new ErrorCaptureProperties();
+    errorCapture.start();
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    errorCapture.close();
+  }
+
+  @Benchmark
+  public void record() {
+    errorCapture.record(error, 500, "GET /api/articles/9");
+  }
+}
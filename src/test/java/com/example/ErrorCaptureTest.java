@@ -0,0 +1,194 @@
+package com.example;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.junit.Assert.*;
+
+public class ErrorCaptureTest {
+  private ErrorCaptureProperties properties;
+  private ErrorCapture errorCapture;
+
+  @Before
+  public void setUp() {
+    properties = new ErrorCaptureProperties();
+    properties.setDrainIntervalMillis(5);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (errorCapture != null) {
+      errorCapture.close();
+    }
+  }
+
+  private ErrorCapture start() {
+    errorCapture = new ErrorCapture();
+    errorCapture.properties = properties;
+    errorCapture.start();
+    return errorCapture;
+  }
+
+  private static RuntimeException notFound(long id) {
+    return new ArticleNotFoundException(id);
+  }
+
+  private static RuntimeException outOfBounds() {
+    return new IndexOutOfBoundsException("Index: 9, Size: 3");
+  }
+
+  @Test
+  public void testFingerprintGroupsSameTypeAndFrames() {
+    start();
+    for (long id = 1; id <= 3; id++) {
+      errorCapture.record(notFound(id), 404, "GET /api/articles/" + id);
+    }
+    errorCapture.record(outOfBounds(), 500, "GET /api/articles/9");
+
+    List<ErrorFingerprint> top = errorCapture.top(10);
+    assertThat(top.size(), is(2));
+    ErrorFingerprint first = top.get(0);
+    assertThat(first.getType(), is(ArticleNotFoundException.class.getName()));
+    assertThat(first.getCount(), is(3L));
+    assertThat(first.getMessage(), is("article not found: 3"));
+    assertThat(first.getLastStatus(), is(404));
+    assertThat(first.getLastRequest(), is("GET /api/articles/3"));
+    assertThat(first.getFrames().size(), is(5));
+    assertThat(first.getFrames().get(0), startsWith(ErrorCaptureTest.class.getName() + ".notFound:"));
+    assertTrue(first.getFirstSeen() <= first.getLastSeen());
+
+    assertThat(top.get(1).getType(), is(IndexOutOfBoundsException.class.getName()));
+    assertThat(top.get(1).getCount(), is(1L));
+    assertThat(errorCapture.top(1).size(), is(1));
+  }
+
+  @Test
+  public void testDifferentThrowSitesAreDifferentFingerprints() {
+    start();
+    errorCapture.record(illegalState(), 500, "GET /a");
+    errorCapture.record(illegalState(), 500, "GET /a");
+    errorCapture.record(anotherIllegalState(), 500, "GET /b");
+    List<ErrorFingerprint> top = errorCapture.top(10);
+    assertThat(top.size(), is(2));
+    assertThat(top.get(0).getCount(), is(2L));
+    assertThat(top.get(0).getLastRequest(), is("GET /a"));
+  }
+
+  // 컨트롤러 메소드를 여러 번 부르면 리플렉션 frame 이 GeneratedMethodAccessor 로 바뀌지만 같은 fingerprint 여야 한다.
+  @Test
+  public void testReflectionFramesAreIgnored() {
+    start();
+    errorCapture.record(invokedThrough("sun.reflect.NativeMethodAccessorImpl", "invoke0"), 404, "GET /api/articles/9");
+    errorCapture.record(invokedThrough("sun.reflect.GeneratedMethodAccessor42", "invoke"), 404, "GET /api/articles/9");
+    List<ErrorFingerprint> top = errorCapture.top(10);
+    assertThat(top.size(), is(1));
+    assertThat(top.get(0).getCount(), is(2L));
+    assertThat(top.get(0).getFrames().get(2), startsWith("org.springframework.web.method.support.InvocableHandlerMethod.doInvoke:"));
+  }
+
+  private static RuntimeException invokedThrough(String accessor, String method) {
+    RuntimeException error = new ArticleNotFoundException(9);
+    error.setStackTrace(new StackTraceElement[]{
+      new StackTraceElement("com.example.ArticlesService", "getArticle", "ArticlesService.java", 87),
+      new StackTraceElement("com.example.ArticlesController", "show", "ArticlesController.java", 120),
+      new StackTraceElement(accessor, method, null, -1),
+      new StackTraceElement("java.lang.reflect.Method", "invoke", "Method.java", 498),
+      new StackTraceElement("org.springframework.web.method.support.InvocableHandlerMethod", "doInvoke", "InvocableHandlerMethod.java", 221),
+      new StackTraceElement("org.springframework.web.method.support.InvocableHandlerMethod", "invokeForRequest", "InvocableHandlerMethod.java", 136)
+    });
+    return error;
+  }
+
+  private static RuntimeException illegalState() {
+    return new IllegalStateException("a");
+  }
+
+  private static RuntimeException anotherIllegalState() {
+    return new IllegalStateException("b");
+  }
+
+  @Test
+  public void testOverflowDropsOldest() {
+    // 집계 스레드가 깨어나기 전에 버퍼만 채운다.
+    properties.setBufferSize(8);
+    properties.setDrainIntervalMillis(TimeUnit.HOURS.toMillis(1));
+    start();
+    for (int i = 0; i < 20; i++) {
+      errorCapture.record(outOfBounds(), 500, "GET /" + i);
+    }
+    assertThat(errorCapture.drain(), is(8));
+    assertThat(errorCapture.metrics().get("dropped"), is((Object) 12L));
+    assertThat(errorCapture.top(1).get(0).getLastRequest(), is("GET /19"));
+  }
+
+  @Test
+  public void testMaxFingerprintsEvictsLeastRecentlySeen() {
+    properties.setMaxFingerprints(2);
+    start();
+    List<RuntimeException> errors = new ArrayList<>();
+    errors.add(new IllegalStateException());
+    errors.add(new IllegalArgumentException());
+    errors.add(new UnsupportedOperationException());
+    for (RuntimeException error : errors) {
+      errorCapture.record(error, 500, "GET /");
+    }
+    List<ErrorFingerprint> top = errorCapture.top(10);
+    assertThat(top.size(), is(2));
+    for (ErrorFingerprint fingerprint : top) {
+      assertFalse(fingerprint.getType().equals(IllegalStateException.class.getName()));
+    }
+  }
+
+  @Test
+  public void testDisabled() {
+    properties.setEnabled(false);
+    start();
+    errorCapture.record(outOfBounds(), 500, "GET /");
+    assertThat(errorCapture.top(10).size(), is(0));
+  }
+
+  // 여러 스레드가 동시에 쏟아내도 잃어버린 것까지 포함하면 기록한 수와 맞아야 한다.
+  @Test
+  public void testErrorStorm() throws Exception {
+    properties.setBufferSize(1024);
+    start();
+    int threads = 8;
+    int perThread = 20000;
+    RuntimeException error = outOfBounds();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch startLatch = new CountDownLatch(1);
+    for (int t = 0; t < threads; t++) {
+      executor.execute(() -> {
+        try {
+          startLatch.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        for (int i = 0; i < perThread; i++) {
+          errorCapture.record(error, 500, "GET /storm");
+        }
+      });
+    }
+    startLatch.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+    List<ErrorFingerprint> top = errorCapture.top(10);
+    long aggregated = (Long) errorCapture.metrics().get("aggregated");
+    long dropped = (Long) errorCapture.metrics().get("dropped");
+    assertThat(errorCapture.metrics().get("captured"), is((Object) (long) (threads * perThread)));
+    assertThat(aggregated + dropped, is((long) threads * perThread));
+    assertThat(top.size(), is(1));
+    assertThat(top.get(0).getCount(), is(aggregated));
+  }
+}
@@ -0,0 +1,120 @@
+package com.example;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class GcLogParserTest {
+  private static final long K = 1024;
+  private static final long M = 1024 * 1024;
+
+  private final List<String> events = new ArrayList<>();
+  private final GcLogParser parser = new GcLogParser(new GcLogParser.Listener() {
+    @Override
+    public void pause(double time, long micros, boolean full) {
+      events.add("pause " + time + " " + micros + (full ? " full" : ""));
+    }
+
+    @Override
+    public void heap(double time, boolean full, long youngBefore, long youngAfter, long heapBefore, long heapAfter) {
+      events.add("heap " + time + " " + youngBefore + " " + youngAfter + " " + heapBefore + " " + heapAfter);
+    }
+  });
+
+  @Test
+  public void testParallel() {
+    assertTrue(parser.parse("2016-10-18T10:00:00.123+0900: 1.234: [GC (Allocation Failure) [PSYoungGen: 65536K->10720K(76288K)] "
+      + "65536K->10728K(251392K), 0.0123456 secs] [Times: user=0.03 sys=0.01, real=0.01 secs] "));
+    assertTrue(parser.parse("2016-10-18T10:00:01.000+0900: 2.111: [Full GC (Ergonomics) [PSYoungGen: 10720K->0K(76288K)] "
+      + "[ParOldGen: 8K->10500K(175104K)] 10728K->10500K(251392K), [Metaspace: 3000K->3000K(1056768K)], 0.0500000 secs] "
+      + "[Times: user=0.10 sys=0.00, real=0.05 secs] "));
+    assertThat(events.get(0), is("pause 1.234 12346"));
+    assertThat(events.get(1), is("heap 1.234 " + 65536 * K + " " + 10720 * K + " " + 65536 * K + " " + 10728 * K));
+    assertThat(events.get(2), is("pause 2.111 50000 full"));
+    assertThat(events.get(3), is("heap 2.111 " + 10720 * K + " 0 " + 10728 * K + " " + 10500 * K));
+  }
+
+  @Test
+  public void testCms() {
+    assertTrue(parser.parse("1.500: [GC (Allocation Failure) 1.500: [ParNew: 69952K->8704K(78656K), 0.0201000 secs] "
+      + "69952K->12345K(253440K), 0.0203000 secs] [Times: user=0.05 sys=0.01, real=0.02 secs]"));
+    assertTrue(parser.parse("2.000: [GC (CMS Initial Mark) [1 CMS-initial-mark: 3641K(174784K)] 12345K(253440K), 0.0010000 secs] "
+      + "[Times: user=0.00 sys=0.00, real=0.00 secs]"));
+    assertFalse(parser.parse("2.001: [CMS-concurrent-mark-start]"));
+    assertFalse(parser.parse("2.010: [CMS-concurrent-mark: 0.009/0.009 secs] [Times: user=0.02 sys=0.00, real=0.01 secs]"));
+    // 로케일에 따라 소수점이 ',' 로 찍힌다.
+    assertTrue(parser.parse("3,000: [GC (Allocation Failure) 3,000: [ParNew: 78656K->8704K(78656K), 0,0300000 secs] "
+      + "82297K->20000K(253440K), 0,0310000 secs] [Times: user=0,05 sys=0,01, real=0,03 secs]"));
+    assertThat(events.get(0), is("pause 1.5 20300"));
+    assertThat(events.get(1), is("heap 1.5 " + 69952 * K + " " + 8704 * K + " " + 69952 * K + " " + 12345 * K));
+    assertThat(events.get(2), is("pause 2.0 1000"));
+    assertThat(events.get(3), is("pause 3.0 31000"));
+    assertThat(events.size(), is(5));
+  }
+
+  // 동시 단계의 출력이 끼어들어 GC 한 번이 두 줄로 나뉜다.
+  @Test
+  public void testCmsInterleavedLine() {
+    assertFalse(parser.parse("2016-10-18T10:00:00.602+0900: 0.171: [CMS-concurrent-sweep: 0.003/0.003 secs]"
+      + "2016-10-18T10:00:00.602+0900: 0.172: [GC (Allocation Failure) 2016-10-18T10:00:00.602+0900: 0.172: [ParNew"
+      + " [Times: user=0.01 sys=0.00, real=0.01 secs] "));
+    assertTrue(parser.parse(": 14784K->1600K(14784K), 0.0056129 secs] 19406K->17786K(63936K), 0.0056595 secs] "
+      + "[Times: user=0.00 sys=0.00, real=0.00 secs] "));
+    assertFalse(parser.parse("2016-10-18T10:00:00.608+0900: 0.177: [CMS-concurrent-reset-start]"));
+    assertThat(events.get(0), is("pause 0.172 5660"));
+    assertThat(events.get(1), is("heap 0.172 " + 14784 * K + " " + 1600 * K + " " + 19406 * K + " " + 17786 * K));
+    assertThat(events.size(), is(2));
+  }
+
+  @Test
+  public void testG1Details() {
+    assertTrue(parser.parse("2016-10-18T10:00:00.123+0900: 0.512: [GC pause (G1 Evacuation Pause) (young), 0.0123456 secs]"));
+    assertFalse(parser.parse("   [Parallel Time: 10.5 ms, GC Workers: 4]"));
+    assertFalse(parser.parse("      [GC Worker Start (ms): Min: 512.1, Avg: 512.2, Max: 512.3, Diff: 0.2]"));
+    assertTrue(parser.parse("   [Eden: 24.0M(24.0M)->0.0B(13.0M) Survivors: 0.0B->3072.0K Heap: 24.0M(256.0M)->4088.0K(256.0M)]"));
+    assertFalse(parser.parse(" [Times: user=0.03 sys=0.00, real=0.01 secs] "));
+    assertFalse(parser.parse("0.600: [GC concurrent-root-region-scan-end, 0.0001000 secs]"));
+    assertTrue(parser.parse("0.700: [GC remark 0.700: [Finalize Marking, 0.0000692 secs] 0.700: [GC ref-proc, 0.0000270 secs] "
+      + "0.700: [Unloading, 0.0009575 secs], 0.0020000 secs]"));
+    // Full GC 는 두 줄에 모두 힙 크기가 있지만 한번만 센다.
+    assertTrue(parser.parse("0.800: [Full GC (Allocation Failure)  65536K->19349K(64512K), 0.0128547 secs]"));
+    assertFalse(parser.parse("   [Eden: 0.0B(16384.0K)->0.0B(16384.0K) Survivors: 0.0B->0.0B Heap: 65536.0K(65536.0K)->19349.1K(64512.0K)], "
+      + "[Metaspace: 2668K->2668K(1056768K)]"));
+    assertThat(events.get(0), is("pause 0.512 12346"));
+    assertThat(events.get(1), is("heap 0.512 " + 24 * M + " " + 3072 * K + " " + 24 * M + " " + 4088 * K));
+    assertThat(events.get(2), is("pause 0.7 2000"));
+    assertThat(events.get(3), is("pause 0.8 12855 full"));
+    assertThat(events.get(4), is("heap 0.8 -1 -1 " + 65536 * K + " " + 19349 * K));
+    assertThat(events.size(), is(5));
+  }
+
+  @Test
+  public void testUnified() {
+    assertTrue(parser.parse("[2016-10-18T10:00:00.123+0900][0.512s][info][gc] GC(0) Pause Young (Normal) (G1 Evacuation Pause) "
+      + "24M->4M(256M) 12.345ms"));
+    assertFalse(parser.parse("[0.600s][info][gc,start] GC(1) Pause Young (Normal) (G1 Evacuation Pause)"));
+    assertFalse(parser.parse("[0.650s][info][gc] GC(1) Concurrent Cycle 5.000ms"));
+    assertTrue(parser.parse("[1200ms][info][gc] GC(2) Pause Full (System.gc()) 100M->20M(256M) 150.000ms"));
+    assertThat(events.get(0), is("pause 0.512 12345"));
+    assertThat(events.get(1), is("heap 0.512 -1 -1 " + 24 * M + " " + 4 * M));
+    assertThat(events.get(2), is("pause 1.2 150000 full"));
+    assertThat(events.get(3), is("heap 1.2 -1 -1 " + 100 * M + " " + 20 * M));
+  }
+
+  @Test
+  public void testLogFileFromJvmArguments() {
+    List<String> arguments = new ArrayList<>();
+    assertNull(GcLogTailer.logFile(arguments));
+    arguments.add("-Xmx512m");
+    arguments.add("-Xloggc:logs/gc.log");
+    assertThat(GcLogTailer.logFile(arguments), is("logs/gc.log"));
+    arguments.add("-Xlog:gc*:file=logs/gc9.log:time,uptime:filecount=5,filesize=10m");
+    assertThat(GcLogTailer.logFile(arguments), is("logs/gc9.log"));
+    arguments.add("-Xlog:safepoint:file=logs/safepoint.log");
+    assertThat(GcLogTailer.logFile(arguments), is("logs/gc9.log"));
+  }
+}
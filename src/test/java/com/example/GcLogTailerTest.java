@@ -0,0 +1,203 @@
+package com.example;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.Assert.*;
+
+public class GcLogTailerTest {
+  private static final double M = 1024 * 1024;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private GcLogProperties properties;
+  private GcLogTailer tailer;
+  private Path log;
+
+  @Before
+  public void setUp() {
+    log = folder.getRoot().toPath().resolve("gc.log");
+    properties = new GcLogProperties();
+    properties.setFile(log.toString());
+    // 테스트에서 poll() 을 직접 부른다.
+    properties.setPollIntervalMillis(60000);
+    // 줄이 버퍼 경계에 걸치게 한다.
+    properties.setReadBufferBytes(64);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (tailer != null) {
+      tailer.close();
+    }
+  }
+
+  private GcLogTailer start() throws Exception {
+    tailer = new GcLogTailer();
+    tailer.properties = properties;
+    tailer.start();
+    return tailer;
+  }
+
+  // Parallel GC 의 young GC 한 줄. 크기는 MB
+  private static String young(double time, double secs, long youngBefore, long youngAfter, long heapBefore, long heapAfter) {
+    return String.format(Locale.ROOT, "%.3f: [GC (Allocation Failure) [PSYoungGen: %dK->%dK(76288K)] %dK->%dK(251392K), %.7f secs] "
+        + "[Times: user=0.03 sys=0.01, real=0.01 secs] \n",
+      time, youngBefore * 1024, youngAfter * 1024, heapBefore * 1024, heapAfter * 1024, secs);
+  }
+
+  private static void append(Path file, String text) throws Exception {
+    Files.write(file, text.getBytes(StandardCharsets.US_ASCII), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+  }
+
+  private static Object get(Map<String, Object> metrics, String path) {
+    Object value = metrics;
+    for (String key : path.split("\\.")) {
+      value = ((Map<?, ?>) value).get(key);
+    }
+    return value;
+  }
+
+  @Test
+  public void testTailsAppendedLines() throws Exception {
+    append(log, "Java HotSpot(TM) 64-Bit Server VM (25.102-b14)\n" + young(1, 0.01, 64, 8, 64, 9));
+    start().poll();
+    assertThat(tailer.metrics().get("events"), is((Object) 1L));
+
+    // 아직 끝나지 않은 줄은 다음에 읽는다.
+    String line = young(2, 0.02, 64, 8, 65, 10);
+    append(log, line.substring(0, 50));
+    tailer.poll();
+    assertThat(tailer.metrics().get("events"), is((Object) 1L));
+    append(log, line.substring(50));
+    tailer.poll();
+
+    Map<String, Object> metrics = tailer.metrics();
+    assertThat(metrics.get("events"), is((Object) 2L));
+    assertThat(metrics.get("lines"), is((Object) 3L));
+    assertThat(metrics.get("position"), is((Object) Files.size(log)));
+    assertThat(get(metrics, "pauseMillis.max"), is((Object) 20.0));
+    assertThat(get(metrics, "total.pauses"), is((Object) 2L));
+  }
+
+  @Test
+  public void testLongLinesAreCut() throws Exception {
+    properties.setMaxLineBytes(256);
+    StringBuilder noise = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      noise.append("x");
+    }
+    append(log, noise + "\n" + young(1, 0.01, 64, 8, 64, 9));
+    start().poll();
+    assertThat(tailer.metrics().get("lines"), is((Object) 2L));
+    assertThat(tailer.metrics().get("events"), is((Object) 1L));
+  }
+
+  @Test
+  public void testRotationAndTruncation() throws Exception {
+    append(log, young(100, 0.01, 64, 8, 64, 9));
+    start().poll();
+
+    // 옮겨진 파일에 남은 줄을 끝까지 읽은 뒤 같은 이름의 새 파일로 넘어간다.
+    append(log, young(101, 0.01, 64, 8, 65, 10));
+    Files.move(log, log.resolveSibling("gc.log.0"));
+    append(log, young(102, 0.01, 64, 8, 66, 11) + young(103, 0.01, 64, 8, 67, 12));
+    tailer.poll();
+    Map<String, Object> metrics = tailer.metrics();
+    assertThat(metrics.get("events"), is((Object) 4L));
+    assertThat(metrics.get("rotations"), is((Object) 1L));
+
+    // JVM 이 다시 시작하면서 파일을 비우고 처음부터 쓴다.
+    Files.write(log, young(0.5, 0.01, 64, 8, 64, 9).getBytes(StandardCharsets.US_ASCII), StandardOpenOption.TRUNCATE_EXISTING);
+    tailer.poll();
+    metrics = tailer.metrics();
+    assertThat(metrics.get("events"), is((Object) 5L));
+    assertThat(metrics.get("truncations"), is((Object) 1L));
+    // 로그의 시각이 거꾸로 가면 창을 비운다.
+    assertThat(get(metrics, "pauses"), is((Object) 1L));
+    assertThat(get(metrics, "total.pauses"), is((Object) 5L));
+    assertThat(get(metrics, "total.resets"), is((Object) 1L));
+  }
+
+  // -XX:+UseGCLogFileRotation 이면 gc.log 는 없고 gc.log.N.current 에 쓴다.
+  @Test
+  public void testFollowsCurrentRotationFile() throws Exception {
+    Path first = log.resolveSibling("gc.log.0.current");
+    append(first, young(1, 0.01, 64, 8, 64, 9));
+    Files.setLastModifiedTime(first, FileTime.fromMillis(System.currentTimeMillis() - 10000));
+    start().poll();
+    assertThat(tailer.metrics().get("file"), is((Object) first.toString()));
+
+    append(first, young(2, 0.01, 64, 8, 65, 10));
+    Files.move(first, log.resolveSibling("gc.log.0"));
+    Path second = log.resolveSibling("gc.log.1.current");
+    append(second, young(3, 0.01, 64, 8, 66, 11));
+    tailer.poll();
+    Map<String, Object> metrics = tailer.metrics();
+    assertThat(metrics.get("file"), is((Object) second.toString()));
+    assertThat(metrics.get("events"), is((Object) 3L));
+  }
+
+  @Test
+  public void testRatesAndAlerts() throws Exception {
+    properties.setWindowSeconds(100);
+    properties.setWindowSlices(10);
+    start();
+    // 1초마다 young GC. young 에서 56MB 가 비워지고 전체 힙은 55MB 만 줄어드므로 1MB 씩 승격된다.
+    StringBuilder text = new StringBuilder();
+    for (int i = 1; i <= 99; i++) {
+      text.append(young(i, 0.01, 64, 8, 64 + i, 9 + i));
+    }
+    append(log, text.toString());
+    tailer.poll();
+
+    Map<String, Object> metrics = tailer.metrics();
+    assertThat(metrics.get("pauses"), is((Object) 99L));
+    assertThat((Double) get(metrics, "pauseMillis.p99"), closeTo(10.0, 1.0));
+    assertThat((Double) metrics.get("gcOverheadPercent"), closeTo(1.0, 0.05));
+    assertThat((Double) metrics.get("allocationRateBytesPerSecond") / M, closeTo(56.0, 0.1));
+    assertThat((Double) metrics.get("promotionRateBytesPerSecond") / M, closeTo(99.0 / 98.0, 0.01));
+    assertThat(((List<?>) get(metrics, "alerts.active")).size(), is(0));
+
+    // 긴 pause 두 번이면 p99 가 500ms 를 넘는다.
+    append(log, young(100, 0.8, 64, 8, 164, 109) + young(101, 0.8, 64, 8, 165, 110));
+    tailer.poll();
+    metrics = tailer.metrics();
+    assertThat((Double) get(metrics, "pauseMillis.p99"), closeTo(800.0, 80.0));
+    assertThat(get(metrics, "alerts.active"), is((Object) Collections.singletonList("p99-pause-millis")));
+
+    // 긴 pause 가 창에서 빠지면 해제된다.
+    append(log, young(300, 0.01, 64, 8, 64, 9));
+    tailer.poll();
+    metrics = tailer.metrics();
+    assertThat(((List<?>) get(metrics, "alerts.active")).size(), is(0));
+    List<?> recent = (List<?>) get(metrics, "alerts.recent");
+    assertThat(recent.size(), is(2));
+    assertThat(((Map<?, ?>) recent.get(0)).get("state"), is((Object) "resolved"));
+    assertThat(((Map<?, ?>) recent.get(1)).get("state"), is((Object) "firing"));
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    properties.setEnabled(false);
+    append(log, young(1, 0.01, 64, 8, 64, 9));
+    start().poll();
+    assertThat(tailer.metrics().get("events"), is((Object) 0L));
+  }
+}
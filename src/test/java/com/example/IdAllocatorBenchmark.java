@@ -0,0 +1,79 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 64개 스레드가 동시에 id 를 꺼낼 때의 처리량을 비교하는 벤치마크
+ *
+ * - allocator: IdAllocator. blockSize 개마다 한 번만 공유 카운터를 올리고 high-water mark 를 파일에 남긴다.
+ * - atomicLong: 모든 스레드가 하나의 AtomicLong 을 incrementAndGet 한다(CommentStore 의 이전 방식).
+ * - lockedMaxPlusOne: 락을 잡고 가장 큰 id + 1 을 구한다.
+ *
+ * blockSize 가 1 이면 allocator 도 매번 공유 카운터를 올리므로 블록 예약의 효과를 따로 볼 수 있다.
+ *
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="IdAllocatorBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(64)
+@Fork(1)
+public class IdAllocatorBenchmark {
+  @Param({"1", "64", "1024"})
+  int blockSize;
+
+  private Path directory;
+  private IdAllocator allocator;
+  private final AtomicLong sequence = new AtomicLong();
+  private final Object lock = new Object();
+  private long maxId;
+
+  @Setup
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("ids");
+    allocator = new IdAllocator("benchmark", directory.resolve("article-ids"), blockSize, 100000);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(directory.resolve("article-ids"));
+    Files.deleteIfExists(directory);
+  }
+
+  @Benchmark
+  public long allocator() {
+    return allocator.next();
+  }
+
+  @Benchmark
+  public long atomicLong() {
+    return sequence.incrementAndGet();
+  }
+
+  @Benchmark
+  public long lockedMaxPlusOne() {
+    synchronized (lock) {
+      return ++maxId;
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package com.example;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class IdAllocatorTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testBlocksPerThread() throws Exception {
+    IdAllocator allocator = IdAllocator.inMemory("test", 4);
+    assertThat(allocator.next(), is(1L));
+    assertThat(allocator.next(), is(2L));
+
+    // 다른 스레드는 다음 블록을 받는다.
+    long[] other = new long[1];
+    Thread thread = new Thread(() -> other[0] = allocator.next());
+    thread.start();
+    thread.join();
+    assertThat(other[0], is(5L));
+
+    assertThat(allocator.next(), is(3L));
+    assertThat(allocator.next(), is(4L));
+    assertThat(allocator.next(), is(9L));
+    assertThat(allocator.metrics().get("blocks"), is((Object) 3L));
+  }
+
+  // 여러 스레드가 동시에 꺼내도 id 는 겹치지 않고, 스레드 안에서는 계속 커진다.
+  @Test
+  public void testConcurrentIdsAreUnique() throws Exception {
+    IdAllocator allocator = IdAllocator.inMemory("test", 16);
+    int threads = 8;
+    int perThread = 10000;
+    CountDownLatch start = new CountDownLatch(1);
+    ConcurrentHashMap<Long, Boolean> seen = new ConcurrentHashMap<>();
+    List<Thread> workers = new ArrayList<>();
+    List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+    for (int t = 0; t < threads; t++) {
+      Thread worker = new Thread(() -> {
+        try {
+          start.await();
+          long previous = 0;
+          for (int i = 0; i < perThread; i++) {
+            long id = allocator.next();
+            assertTrue(id > previous);
+            assertNull(seen.put(id, Boolean.TRUE));
+            previous = id;
+          }
+        } catch (Throwable e) {
+          errors.add(e);
+        }
+      });
+      worker.start();
+      workers.add(worker);
+    }
+    start.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    assertThat(errors.toString(), errors.isEmpty(), is(true));
+    assertThat(seen.size(), is(threads * perThread));
+  }
+
+  @Test
+  public void testAdvance() throws Exception {
+    IdAllocator allocator = IdAllocator.inMemory("test", 4);
+    allocator.advance(100);
+    assertThat(allocator.next(), is(101L));
+    // 이미 지난 id 로는 되돌아가지 않는다.
+    allocator.advance(50);
+    assertThat(allocator.next(), is(102L));
+  }
+
+  // 다시 시작하면 디스크에 남긴 한계부터 나눠주므로 이전에 나눠준 id 는 다시 나오지 않는다.
+  @Test
+  public void testHighWaterMarkSurvivesRestart() throws Exception {
+    Path file = folder.getRoot().toPath().resolve("article-ids");
+    IdAllocator first = new IdAllocator("test", file, 4, 10);
+    long last = 0;
+    for (int i = 0; i < 25; i++) {
+      last = first.next();
+    }
+    assertThat(last, is(25L));
+    // 한계는 leaseSize 만큼 앞서서 올리므로 25 개를 쓰는 동안 fsync 는 세 번이다.
+    assertThat(first.metrics().get("leases"), is((Object) 3L));
+
+    IdAllocator second = new IdAllocator("test", file, 4, 10);
+    long next = second.next();
+    assertTrue(next > last);
+    assertThat(next, is((Long) first.metrics().get("leased")));
+
+    second.advance(1000);
+    IdAllocator third = new IdAllocator("test", file, 4, 10);
+    assertThat(third.next() > 1000, is(true));
+  }
+
+  // 저장소를 쓰면 재시작한 뒤에도 새 글과 댓글의 id 가 이전 것과 겹치지 않는다.
+  @Test
+  public void testRepositoryIdsAfterRestart() throws Exception {
+    ArticleStoreProperties storeProperties = new ArticleStoreProperties();
+    storeProperties.setEnabled(true);
+    storeProperties.setDirectory(folder.getRoot().toString());
+    List<Long> ids = new ArrayList<>();
+    for (int restart = 0; restart < 2; restart++) {
+      ArticleRepository repository = new ArticleRepository();
+      repository.fixturesProperty = new FixturesProperty();
+      repository.storeProperties = storeProperties;
+      repository.load();
+      try {
+        for (int i = 0; i < 3; i++) {
+          Article article = new Article();
+          article.setTitle("title");
+          Comment comment = new Comment();
+          comment.setContent("comment");
+          article.setComments(new ArrayList<>(Collections.singletonList(comment)));
+          repository.assignId(article);
+          repository.save(article);
+          ids.add(article.getId());
+          ids.add(-article.getComments().get(0).getId());
+        }
+      } finally {
+        repository.close();
+      }
+    }
+    long[] articleIds = ids.stream().filter(id -> id > 0).mapToLong(Long::longValue).toArray();
+    long[] commentIds = ids.stream().filter(id -> id < 0).mapToLong(id -> -id).toArray();
+    assertThat(Arrays.stream(articleIds).distinct().count(), is(6L));
+    assertThat(Arrays.stream(commentIds).distinct().count(), is(6L));
+    assertTrue(articleIds[3] > articleIds[2]);
+    assertTrue(commentIds[3] > commentIds[2]);
+  }
+}
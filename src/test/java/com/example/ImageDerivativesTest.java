@@ -0,0 +1,194 @@
+package com.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.*;
+
+public class ImageDerivativesTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private ImageProperties properties;
+  private BlobStore blobStore;
+  private AttachmentRepository attachmentRepository;
+  private final List<ImageDerivatives> started = new ArrayList<>();
+
+  @Before
+  public void setUp() throws Exception {
+    BlobStoreProperties blobProperties = new BlobStoreProperties();
+    blobProperties.setDirectory(folder.getRoot().getPath());
+    blobStore = new BlobStore();
+    blobStore.properties = blobProperties;
+    blobStore.init();
+
+    attachmentRepository = new AttachmentRepository();
+    attachmentRepository.blobStore = blobStore;
+    attachmentRepository.objectMapper = objectMapper;
+    attachmentRepository.load();
+
+    properties = new ImageProperties();
+    properties.setWorkers(2);
+    properties.setSweepIntervalMillis(50);
+  }
+
+  @After
+  public void tearDown() {
+    for (ImageDerivatives derivatives : started) {
+      derivatives.close();
+    }
+  }
+
+  private ImageDerivatives start() throws Exception {
+    ImageDerivatives derivatives = new ImageDerivatives();
+    derivatives.properties = properties;
+    derivatives.blobStore = blobStore;
+    derivatives.attachmentRepository = attachmentRepository;
+    derivatives.objectMapper = objectMapper;
+    derivatives.start();
+    started.add(derivatives);
+    return derivatives;
+  }
+
+  private String put(byte[] bytes) throws Exception {
+    return blobStore.put(Channels.newChannel(new ByteArrayInputStream(bytes))).getHash();
+  }
+
+  private static byte[] png(int width, int height, boolean alpha) throws Exception {
+    BufferedImage image = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+    Graphics2D graphics = image.createGraphics();
+    graphics.setColor(alpha ? new Color(0, 0, 255, 128) : Color.BLUE);
+    graphics.fillRect(0, 0, width / 2, height);
+    graphics.dispose();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ImageIO.write(image, "png", out);
+    return out.toByteArray();
+  }
+
+  private static ImageInfo await(ImageDerivatives derivatives, String hash) throws Exception {
+    long deadline = System.currentTimeMillis() + 10000;
+    ImageInfo info;
+    while ((info = derivatives.result(hash)) == null) {
+      assertTrue("thumbnails of " + hash + " were not created in time", System.currentTimeMillis() < deadline);
+      Thread.sleep(10);
+    }
+    return info;
+  }
+
+  @Test
+  public void testThumbnails() throws Exception {
+    ImageDerivatives derivatives = start();
+    String hash = put(png(2000, 1000, false));
+    Attachment attachment = new Attachment();
+    attachment.setHash(hash);
+    attachment.setFilename("배경화면.png");
+    attachment.setContentType("image/png");
+    attachment.setImage(derivatives.submit(hash));
+    attachmentRepository.save(1, attachment);
+    assertThat(attachment.getImage().getStatus(), is(ImageInfo.Status.PENDING));
+    long revision = attachmentRepository.revision(1);
+
+    ImageInfo info = await(derivatives, hash);
+    assertThat(info.getStatus(), is(ImageInfo.Status.READY));
+    assertThat(info.getFormat(), is("png"));
+    assertThat(info.getWidth(), is(2000));
+    assertThat(info.getHeight(), is(1000));
+    assertThat(info.getThumbnails().size(), is(2));
+    assertThat(info.getThumbnails().get(0).getWidth(), is(1280));
+    assertThat(info.getThumbnails().get(0).getHeight(), is(640));
+    assertThat(info.getThumbnails().get(1).getWidth(), is(320));
+    assertThat(info.getThumbnails().get(1).getHeight(), is(160));
+    assertThat(info.getThumbnails().get(1).getContentType(), is("image/jpeg"));
+    assertThat(info.getThumbnails().get(1).getUrl(), is("/api/images/" + hash + "/320"));
+
+    BufferedImage thumbnail = ImageIO.read(derivatives.thumbnail(hash, 320).toFile());
+    assertThat(thumbnail.getWidth(), is(320));
+    assertThat(thumbnail.getHeight(), is(160));
+    assertThat(derivatives.thumbnail(hash, 100), is(nullValue()));
+
+    // 작업이 끝나면 작업 파일이 지워지고, 첨부 파일 목록에도 결과가 들어간다.
+    assertFalse(Files.exists(blobStore.directory().resolve("derivatives/jobs").resolve(hash)));
+    assertThat(attachmentRepository.findOne(1, hash).getImage().getStatus(), is(ImageInfo.Status.READY));
+    assertTrue(attachmentRepository.revision(1) > revision);
+
+    // 같은 내용을 다시 올리면 만들어 둔 결과를 바로 돌려준다.
+    assertThat(derivatives.submit(hash).getStatus(), is(ImageInfo.Status.READY));
+  }
+
+  @Test
+  public void testTransparentImageStaysPng() throws Exception {
+    ImageDerivatives derivatives = start();
+    String hash = put(png(500, 400, true));
+    derivatives.submit(hash);
+
+    ImageInfo info = await(derivatives, hash);
+    assertThat(info.getThumbnails().size(), is(1));
+    assertThat(info.getThumbnails().get(0).getContentType(), is("image/png"));
+    Path file = derivatives.thumbnail(hash, 320);
+    assertTrue(file.toString().endsWith("320.png"));
+    assertTrue(ImageIO.read(file.toFile()).getColorModel().hasAlpha());
+  }
+
+  @Test
+  public void testNotAnImageFails() throws Exception {
+    ImageDerivatives derivatives = start();
+    String hash = put("not an image".getBytes("UTF-8"));
+    derivatives.submit(hash);
+
+    assertThat(await(derivatives, hash).getStatus(), is(ImageInfo.Status.FAILED));
+    assertThat(derivatives.metrics().get("failed"), is((Object) 1L));
+  }
+
+  // 이전 프로세스가 남긴 작업 파일은 시작할 때 다시 처리한다.
+  @Test
+  public void testJobsSurviveRestart() throws Exception {
+    String hash = put(png(800, 600, false));
+    Path jobs = Files.createDirectories(blobStore.directory().resolve("derivatives/jobs"));
+    Files.createFile(jobs.resolve(hash));
+
+    ImageDerivatives derivatives = start();
+    assertThat(await(derivatives, hash).getStatus(), is(ImageInfo.Status.READY));
+
+    // 결과는 디스크에 있으므로 다시 시작해도 meta.json 에서 읽는다.
+    ImageDerivatives restarted = start();
+    assertThat(restarted.result(hash).getThumbnails().get(0).getWidth(), is(320));
+  }
+
+  // 큐가 가득 차서 넘친 작업도 작업 파일이 남아 있어서 sweep 으로 결국 처리된다.
+  @Test
+  public void testOverflowingJobsAreSwept() throws Exception {
+    properties.setWorkers(1);
+    properties.setQueueCapacity(1);
+    ImageDerivatives derivatives = start();
+    List<String> hashes = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      hashes.add(put(png(1000 + i, 700, false)));
+    }
+    for (String hash : hashes) {
+      assertThat(derivatives.submit(hash).getStatus(), is(ImageInfo.Status.PENDING));
+    }
+    for (String hash : hashes) {
+      assertThat(await(derivatives, hash).getStatus(), is(ImageInfo.Status.READY));
+    }
+    assertTrue((Long) derivatives.metrics().get("rejected") > 0);
+  }
+}
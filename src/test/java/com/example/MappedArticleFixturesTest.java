@@ -0,0 +1,147 @@
+package com.example;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+public class MappedArticleFixturesTest {
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private List<Article> readFixturesYaml() throws Exception {
+    try (InputStream in = getClass().getResourceAsStream("/fixtures.yml")) {
+      return FixtureConverter.readYaml(in);
+    }
+  }
+
+  private Path writeFixtures(List<Article> articles) throws Exception {
+    Path file = temporaryFolder.getRoot().toPath().resolve("fixtures.bin");
+    MappedArticleFixtures.write(file, articles);
+    return file;
+  }
+
+  @Test
+  public void testConvertFixturesYaml() throws Exception {
+    List<Article> articles = readFixturesYaml();
+    assertThat(articles.size(), is(3));
+
+    try (MappedArticleFixtures fixtures = MappedArticleFixtures.open(writeFixtures(articles))) {
+      assertThat(fixtures.size(), is(3));
+      Article article = fixtures.find(2);
+      assertThat(article.getTitle(), is("title2"));
+      assertThat(article.getComments().size(), is(2));
+      assertThat(article.getComments().get(1).getContent(), is("comment22"));
+      assertThat(fixtures.find(99), is(nullValue()));
+    }
+  }
+
+  @Test
+  public void testIndexIsSortedById() throws Exception {
+    List<Article> articles = new ArrayList<>();
+    for (long id = 1000; id > 0; id--) {
+      Article article = new Article();
+      article.setId(id * 3);
+      article.setTitle("title" + id);
+      articles.add(article);
+    }
+
+    try (MappedArticleFixtures fixtures = MappedArticleFixtures.open(writeFixtures(articles))) {
+      long[] ids = fixtures.ids();
+      for (int i = 1; i < ids.length; i++) {
+        assertTrue(ids[i - 1] < ids[i]);
+      }
+      assertThat(fixtures.find(300).getTitle(), is("title100"));
+      assertThat(fixtures.indexOf(301), is(-1));
+      for (int position : new int[]{-1, fixtures.size(), Integer.MAX_VALUE / 4}) {
+        try {
+          fixtures.idAt(position);
+          fail("expected IndexOutOfBoundsException for " + position);
+        } catch (IndexOutOfBoundsException e) {
+          // 인덱스 밖의 위치는 다른 entry 를 읽지 않고 거절한다.
+        }
+      }
+    }
+  }
+
+  // 바이너리 fixture 로 시작한 저장소는 요청받은 글만 디코딩하고, 삭제한 글은 다시 나타나지 않아야 한다.
+  @Test
+  public void testRepositoryWithBinaryFixtures() throws Exception {
+    FixturesProperty fixturesProperty = new FixturesProperty();
+    fixturesProperty.setBinary(writeFixtures(readFixturesYaml()).toString());
+
+    ArticleRepository repository = new ArticleRepository();
+    repository.fixturesProperty = fixturesProperty;
+    repository.load();
+    try {
+      assertThat(repository.count(), is(3));
+      assertThat(repository.findAll().get(0).getTitle(), is("title1"));
+      assertThat(repository.findOne(3).getContent(), is("content3"));
+      assertThat(repository.findOne(3), is(sameInstance(repository.findOne(3))));
+
+      assertThat(repository.delete(2), is(true));
+      assertThat(repository.findOne(2), is(nullValue()));
+      assertThat(repository.exists(2), is(false));
+      assertThat(repository.findAll().size(), is(2));
+    } finally {
+      repository.close();
+    }
+  }
+
+  // 바이너리 fixture 의 검색 색인은 시작한 뒤 별도 스레드에서 만들고, 그 사이에 지운 글은 색인에도 남지 않는다.
+  @Test
+  public void testSearchIndexBuiltInBackground() throws Exception {
+    FixturesProperty fixturesProperty = new FixturesProperty();
+    fixturesProperty.setBinary(writeFixtures(readFixturesYaml()).toString());
+    ArticleSearchIndex searchIndex = new ArticleSearchIndex();
+    searchIndex.properties = new ArticleSearchProperties();
+
+    ArticleRepository repository = new ArticleRepository();
+    repository.fixturesProperty = fixturesProperty;
+    repository.searchIndex = searchIndex;
+    repository.load();
+    try {
+      assertThat(repository.delete(2), is(true));
+      long deadline = System.currentTimeMillis() + 5000;
+      while (!repository.isSearchReady() && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertThat(repository.isSearchReady(), is(true));
+      assertThat(repository.search("comment32", 10).ids.length, is(1));
+      assertThat(repository.search("title3", 10).ids[0], is(3L));
+      assertThat(repository.search("title2", 10).ids.length, is(0));
+    } finally {
+      repository.close();
+    }
+  }
+
+  // 디코딩하지 않은 fixture 의 댓글 id 와 겹치지 않도록 새 댓글은 헤더의 가장 큰 댓글 id 다음부터 받는다.
+  @Test
+  public void testCommentIdsStartAfterFixtureComments() throws Exception {
+    FixturesProperty fixturesProperty = new FixturesProperty();
+    Path file = writeFixtures(readFixturesYaml());
+    fixturesProperty.setBinary(file.toString());
+    try (MappedArticleFixtures fixtures = MappedArticleFixtures.open(file)) {
+      assertThat(fixtures.maxCommentId(), is(31L));
+    }
+
+    ArticleRepository repository = new ArticleRepository();
+    repository.fixturesProperty = fixturesProperty;
+    repository.load();
+    try {
+      Comment comment = new Comment();
+      comment.setContent("new comment");
+      assertThat(repository.addComment(1, comment).getId() > 31, is(true));
+      assertThat(repository.findOne(3).getComments().get(1).getContent(), is("comment32"));
+    } finally {
+      repository.close();
+    }
+  }
+}
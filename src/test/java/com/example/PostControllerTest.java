@@ -0,0 +1,109 @@
+package com.example;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.standaloneSetup;
+
+/**
+ * 원격 API 대신 StubPostsServer 를 바라보는 PostsClient 로 PostController 의 비동기 처리를 테스트한다.
+ * 뷰 템플릿 렌더링은 필요 없으므로 standaloneSetup() 으로 컨트롤러만 올린다.
+ */
+public class PostControllerTest {
+  private StubPostsServer server;
+  private PostsClient client;
+  private ResilientPostsClient resilientClient;
+  private RequestLog requestLog;
+  private MockMvc mockMvc;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Before
+  public void setUp() throws Exception {
+    server = new StubPostsServer();
+    PostsClientProperties properties = new PostsClientProperties();
+    properties.setUrl(server.url());
+    client = new PostsClient(properties);
+    resilientClient = new ResilientPostsClient(client, new PostsResilienceProperties());
+
+    PostController controller = new PostController();
+    controller.postsClient = resilientClient;
+    RequestLogProperties logProperties = new RequestLogProperties();
+    logProperties.setFile(folder.getRoot().toPath().resolve("requests.log").toString());
+    requestLog = new RequestLog();
+    requestLog.properties = logProperties;
+    requestLog.start();
+    controller.requestLog = requestLog;
+    mockMvc = standaloneSetup(controller).build();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    requestLog.close();
+    resilientClient.close();
+    client.close();
+    server.close();
+  }
+
+  // 요청 스레드는 DeferredResult 를 반환하고 바로 끝나고(asyncStarted), 원격 응답이 오면 show 뷰로 dispatch 된다.
+  @Test
+  public void testCreatePost() throws Exception {
+    MvcResult result = mockMvc.perform(post("/posts").param("title", "title").param("content", "content"))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+
+    mockMvc.perform(asyncDispatch(result))
+      .andExpect(status().isOk())
+      .andExpect(view().name("show"))
+      .andExpect(model().attribute("post", org.hamcrest.Matchers.hasProperty("title", is("remote title"))));
+
+    // 만들어진 글은 System.out 대신 요청 로그에 남는다.
+    requestLog.drain();
+    String log = new String(Files.readAllBytes(folder.getRoot().toPath().resolve("requests.log")), StandardCharsets.UTF_8);
+    assertThat(log, containsString("\"event\":\"post.create\",\"title\":\"remote title\""));
+  }
+
+  @Test
+  public void testCreatePostRemoteFailure() throws Exception {
+    server.setStatus(503);
+    MvcResult result = mockMvc.perform(post("/posts").param("title", "title"))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+
+    mockMvc.perform(asyncDispatch(result))
+      .andExpect(status().isBadGateway())
+      .andExpect(view().name("unavailable"))
+      .andExpect(model().attribute("post", org.hamcrest.Matchers.hasProperty("title", is("title"))));
+  }
+
+  // 원격 서버가 느리면 소켓 타임아웃까지 기다리지 않고 callTimeoutMillis 뒤에 대체 화면을 보여준다.
+  @Test
+  public void testCreatePostSlowRemote() throws Exception {
+    server.setLatencyMillis(5000);
+    long started = System.currentTimeMillis();
+    MvcResult result = mockMvc.perform(post("/posts").param("title", "title"))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+
+    mockMvc.perform(asyncDispatch(result))
+      .andExpect(status().isBadGateway())
+      .andExpect(view().name("unavailable"));
+    assertThat(System.currentTimeMillis() - started, lessThan(4500L));
+  }
+}
@@ -0,0 +1,78 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 배치 크기에 따른 글 생성 처리량(초당 글 수)을 측정하는 벤치마크
+ *
+ * StubPostsServer 가 요청마다 5ms 늦게 응답하고, 동시에 보낼 수 있는 bulk 요청은 4개로 고정한다.
+ * 왕복 수가 처리량을 정하므로 처리량은 batchSize 에 거의 비례해서 늘어난다.
+ * (로컬에서 batchSize 1 / 10 / 50 일 때 약 66 / 598 / 959 ops/s. 50 에서는 64 스레드가 배치를 다 채우지 못한다.)
+ *
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="PostsBatchBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+public class PostsBatchBenchmark {
+  @Param({"1", "10", "50"})
+  int batchSize;
+
+  private StubPostsServer server;
+  private PostsClient client;
+  private PostsBatcher batcher;
+  private Post post;
+
+  @Setup
+  public void setUp() throws Exception {
+    server = new StubPostsServer();
+    server.setLatencyMillis(5);
+    PostsClientProperties clientProperties = new PostsClientProperties();
+    clientProperties.setUrl(server.url());
+    clientProperties.setBulkUrl(server.bulkUrl());
+    client = new PostsClient(clientProperties);
+
+    PostsBatchProperties properties = new PostsBatchProperties();
+    properties.setEnabled(true);
+    properties.setMaxBatchSize(batchSize);
+    properties.setLingerMillis(2);
+    properties.setMaxInFlightBatches(4);
+    // 벤치마크 스레드가 거절되지 않고 큐에 자리가 날 때까지 기다리게 한다.
+    properties.setEnqueueTimeoutMillis(10000);
+    batcher = new PostsBatcher(client, properties);
+
+    post = new Post();
+    post.setTitle("benchmark");
+    post.setContent("누구보다 빠르게 난 남들과는 다르게");
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    batcher.close();
+    client.close();
+    server.close();
+  }
+
+  @Benchmark
+  public Post submit() throws Exception {
+    return batcher.submit(post).get();
+  }
+}
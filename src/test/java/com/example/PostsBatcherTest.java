@@ -0,0 +1,156 @@
+package com.example;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.*;
+
+public class PostsBatcherTest {
+  private StubPostsServer server;
+  private PostsClient client;
+  private PostsBatchProperties properties;
+  private PostsBatcher batcher;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new StubPostsServer();
+    PostsClientProperties clientProperties = new PostsClientProperties();
+    clientProperties.setUrl(server.url());
+    clientProperties.setBulkUrl(server.bulkUrl());
+    client = new PostsClient(clientProperties);
+
+    properties = new PostsBatchProperties();
+    properties.setEnabled(true);
+    properties.setMaxBatchSize(10);
+    properties.setLingerMillis(200);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    batcher.close();
+    client.close();
+    server.close();
+  }
+
+  private PostsBatcher batcher() {
+    batcher = new PostsBatcher(client, properties);
+    return batcher;
+  }
+
+  private Post post(String title) {
+    Post post = new Post();
+    post.setTitle(title);
+    return post;
+  }
+
+  // 25개를 한꺼번에 넣으면 10, 10, 5 개씩 3번의 bulk 요청으로 보내고, 응답은 넣은 순서대로 각 future 에 돌아간다.
+  @Test
+  public void testCoalescesIntoBatches() throws Exception {
+    PostsBatcher batcher = batcher();
+    List<CompletableFuture<Post>> futures = new ArrayList<>();
+    for (int i = 0; i < 25; i++) {
+      futures.add(batcher.submit(post("title " + i)));
+    }
+    for (int i = 0; i < 25; i++) {
+      Post created = futures.get(i).get(5, TimeUnit.SECONDS);
+      assertThat(created.getTitle(), is("title " + i));
+      assertThat(created.getId(), is(greaterThan(0L)));
+    }
+    assertThat(server.bulkSizes().size(), is(3));
+    assertThat(server.bulkSizes().get(0), is(10));
+    assertThat(server.bulkSizes().get(1), is(10));
+    assertThat(server.bulkSizes().get(2), is(5));
+  }
+
+  // 글이 하나뿐이어도 lingerMillis 가 지나면 보낸다.
+  @Test
+  public void testFlushesAfterLinger() throws Exception {
+    PostsBatcher batcher = batcher();
+    Post created = batcher.submit(post("alone")).get(5, TimeUnit.SECONDS);
+    assertThat(created.getTitle(), is("alone"));
+    assertThat(server.bulkSizes().get(0), is(1));
+  }
+
+  @Test
+  public void testBatchFailure() throws Exception {
+    server.setStatus(500);
+    PostsBatcher batcher = batcher();
+    CompletableFuture<Post> first = batcher.submit(post("a"));
+    CompletableFuture<Post> second = batcher.submit(post("b"));
+    for (CompletableFuture<Post> future : Arrays.asList(first, second)) {
+      try {
+        future.get(5, TimeUnit.SECONDS);
+        fail("expected a failure");
+      } catch (ExecutionException e) {
+        assertThat(e.getCause(), is(instanceOf(BadGatewayException.class)));
+      }
+    }
+  }
+
+  // createPosts 가 바로 예외를 던지면 그 배치의 future 는 실패하고, 허가를 돌려받은 flusher 는 다음 배치를 보낸다.
+  @Test
+  public void testSynchronousClientFailure() throws Exception {
+    PostsClientProperties clientProperties = new PostsClientProperties();
+    clientProperties.setUrl(server.url());
+    clientProperties.setBulkUrl(server.bulkUrl());
+    client.close();
+    client = new PostsClient(clientProperties) {
+      private boolean failed;
+
+      @Override
+      public CompletableFuture<List<Post>> createPosts(List<Post> posts) {
+        if (!failed) {
+          failed = true;
+          throw new IllegalStateException("rejected before sending");
+        }
+        return super.createPosts(posts);
+      }
+    };
+    properties.setMaxInFlightBatches(1);
+    PostsBatcher batcher = batcher();
+    try {
+      batcher.submit(post("a")).get(5, TimeUnit.SECONDS);
+      fail("expected a failure");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), is(instanceOf(IllegalStateException.class)));
+    }
+    assertThat(batcher.submit(post("b")).get(5, TimeUnit.SECONDS).getTitle(), is("b"));
+  }
+
+  // 응답을 기다리는 bulk 요청이 가득 차면 큐가 쌓이고, 큐도 가득 차면 기다리지 않고 거절한다.
+  @Test
+  public void testRejectsWhenQueueIsFull() throws Exception {
+    server.setLatencyMillis(500);
+    properties.setMaxBatchSize(1);
+    properties.setLingerMillis(0);
+    properties.setMaxInFlightBatches(1);
+    properties.setQueueCapacity(2);
+    PostsBatcher batcher = batcher();
+
+    List<CompletableFuture<Post>> futures = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      futures.add(batcher.submit(post("title " + i)));
+    }
+    int rejected = 0;
+    for (CompletableFuture<Post> future : futures) {
+      try {
+        future.get(5, TimeUnit.SECONDS);
+      } catch (ExecutionException e) {
+        assertThat(e.getCause(), is(instanceOf(ServiceUnavailableException.class)));
+        rejected++;
+      }
+    }
+    assertTrue(rejected >= 6);
+    assertThat(batcher.metrics().get("rejected"), is((Object) (long) rejected));
+  }
+}
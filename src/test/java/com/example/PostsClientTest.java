@@ -0,0 +1,65 @@
+package com.example;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+public class PostsClientTest {
+  private StubPostsServer server;
+  private PostsClient client;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new StubPostsServer();
+    PostsClientProperties properties = new PostsClientProperties();
+    properties.setUrl(server.url());
+    client = new PostsClient(properties);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    client.close();
+    server.close();
+  }
+
+  private Post post() {
+    Post post = new Post();
+    post.setTitle("title");
+    post.setContent("content");
+    return post;
+  }
+
+  @Test
+  public void testCreatePost() throws Exception {
+    Post created = client.createPost(post()).get(5, TimeUnit.SECONDS);
+    assertThat(created.getId(), is(1L));
+    assertThat(created.getTitle(), is("remote title"));
+  }
+
+  // 순서대로 보낸 요청은 풀에 반납된 같은 커넥션을 keep-alive 로 재사용해야 한다.
+  @Test
+  public void testReusesConnection() throws Exception {
+    for (int i = 0; i < 5; i++) {
+      client.createPost(post()).get(5, TimeUnit.SECONDS);
+    }
+    assertThat(server.requests(), is(5));
+    assertThat(server.distinctConnections(), is(1));
+  }
+
+  @Test
+  public void testRemoteFailure() throws Exception {
+    server.setStatus(500);
+    try {
+      client.createPost(post()).get(5, TimeUnit.SECONDS);
+      fail("expected a failure");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), is(instanceOf(BadGatewayException.class)));
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 요청 스레드 8개가 동시에 로그를 남길 때 한 번에 걸리는 시간을 비교하는 벤치마크
+ *
+ * println 은 예전 컨트롤러의 System.out.println 과 같은 방식이다. System.out 처럼 작은 버퍼에 autoflush 로 만든 PrintStream 이지만
+ * 콘솔 대신 파일에 쓴다. drop 과 block 은 RequestLog 에 event() 를 남기고, 링 버퍼가 찼을 때의 정책만 다르다.
+ * SampleTime 이므로 평균과 함께 p99, p99.99 가 나온다. block 은 쓰는 스레드가 파일 쓰기를 따라가지 못하면 println 과 비슷해진다.
+ *
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="RequestLogBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class RequestLogBenchmark {
+  private static final String CONTENT = "누구보다 빠르게 난 남들과는 다르게";
+
+  @Param({"println", "drop", "block"})
+  String mode;
+
+  private Path directory;
+  private PrintStream out;
+  private RequestLog requestLog;
+
+  @Setup
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("request-log-benchmark");
+    Path file = directory.resolve("requests.log");
+    if (mode.equals("println")) {
+      out = new PrintStream(new BufferedOutputStream(new FileOutputStream(file.toFile()), 128), true, "UTF-8");
+      return;
+    }
+    RequestLogProperties properties = new RequestLogProperties();
+    properties.setFile(file.toString());
+    properties.setMaxFileBytes(64 * 1024 * 1024);
+    properties.setMaxFiles(1);
+    properties.setWhenFull(mode.equals("drop") ? RequestLogProperties.WhenFull.DROP : RequestLogProperties.WhenFull.BLOCK);
+    requestLog = new RequestLog();
+    requestLog.properties = properties;
+    requestLog.start();
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    if (out != null) {
+      out.close();
+    }
+    if (requestLog != null) {
+      requestLog.close();
+    }
+    FileSystemUtils.deleteRecursively(directory.toFile());
+  }
+
+  @Benchmark
+  public void log() {
+    if (out != null) {
+      out.println(CONTENT);
+    } else {
+      requestLog.event("article.create", "content", CONTENT);
+    }
+  }
+}
@@ -0,0 +1,150 @@
+package com.example;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class RequestLogTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private RequestLogProperties properties;
+  private RequestLog requestLog;
+  private Path log;
+
+  @Before
+  public void setUp() {
+    log = folder.getRoot().toPath().resolve("logs").resolve("requests.log");
+    properties = new RequestLogProperties();
+    properties.setFile(log.toString());
+    // 테스트에서 drain() 을 직접 부른다.
+    properties.setFlushIntervalMillis(60000);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (requestLog != null) {
+      requestLog.close();
+    }
+  }
+
+  private RequestLog start() throws Exception {
+    requestLog = new RequestLog();
+    requestLog.properties = properties;
+    requestLog.start();
+    return requestLog;
+  }
+
+  private List<String> lines(Path file) throws Exception {
+    return Files.readAllLines(file, StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testWritesJsonLines() throws Exception {
+    properties.setMaxValueChars(10);
+    start();
+    requestLog.event("article.create", "content", "누구보다 빠르게 난 남들과는 다르게");
+    requestLog.event("post.create", "title", "say \"hi\"", "content", null);
+    assertThat(requestLog.drain(), is(2));
+
+    List<String> lines = lines(log);
+    assertThat(lines.size(), is(2));
+    ObjectMapper mapper = new ObjectMapper();
+    JsonNode first = mapper.readTree(lines.get(0));
+    assertThat(first.get("event").asText(), is("article.create"));
+    assertThat(first.get("thread").asText(), is(Thread.currentThread().getName()));
+    assertThat(first.get("content").asText(), is("누구보다 빠르게 난..."));
+    assertTrue(first.get("time").asText().endsWith("Z"));
+    JsonNode second = mapper.readTree(lines.get(1));
+    assertThat(second.get("title").asText(), is("say \"hi\""));
+    assertTrue(second.get("content").isNull());
+    assertThat(requestLog.metrics().get("written"), is((Object) 2L));
+  }
+
+  @Test
+  public void testRollsFiles() throws Exception {
+    properties.setMaxFileBytes(200);
+    properties.setMaxFiles(2);
+    properties.setBatchSize(1);
+    start();
+    for (int i = 0; i < 10; i++) {
+      requestLog.event("article.submit", "filename", "file" + i + ".png");
+      requestLog.drain();
+    }
+    assertTrue(Files.size(log) <= 200);
+    assertTrue(Files.exists(log.resolveSibling("requests.log.1")));
+    assertTrue(Files.exists(log.resolveSibling("requests.log.2")));
+    assertFalse(Files.exists(log.resolveSibling("requests.log.3")));
+    List<String> current = lines(log);
+    assertTrue(current.get(current.size() - 1).contains("file9.png"));
+    assertTrue(lines(log.resolveSibling("requests.log.1")).get(0).contains("file"));
+  }
+
+  @Test
+  public void testDropsWhenFull() throws Exception {
+    properties.setBufferSize(4);
+    start();
+    for (int i = 0; i < 6; i++) {
+      requestLog.event("article.submit", "filename", "file" + i);
+    }
+    assertThat(requestLog.metrics().get("dropped"), is((Object) 2L));
+    assertThat(requestLog.drain(), is(4));
+    // 읽은 칸은 다시 쓸 수 있다.
+    requestLog.event("article.submit", "filename", "file6");
+    assertThat(requestLog.drain(), is(1));
+    List<String> lines = lines(log);
+    assertThat(lines.size(), is(5));
+    assertTrue(lines.get(3).contains("file3"));
+    assertTrue(lines.get(4).contains("file6"));
+  }
+
+  // 칸이 4개뿐이므로 100개를 남기는 스레드는 drain() 을 부를 때마다 조금씩 나아가고, 버리는 이벤트는 없다.
+  @Test
+  public void testBlocksWhenFull() throws Exception {
+    properties.setBufferSize(4);
+    properties.setWhenFull(RequestLogProperties.WhenFull.BLOCK);
+    start();
+    CompletableFuture<Void> producer = CompletableFuture.runAsync(() -> {
+      for (int i = 0; i < 100; i++) {
+        requestLog.event("article.submit", "filename", "file" + i);
+      }
+    });
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!producer.isDone() && System.currentTimeMillis() < deadline) {
+      requestLog.drain();
+      Thread.sleep(1);
+    }
+    producer.get(1, TimeUnit.SECONDS);
+    requestLog.drain();
+
+    List<String> lines = lines(log);
+    assertThat(lines.size(), is(100));
+    assertTrue(lines.get(99).contains("file99"));
+    assertThat(requestLog.metrics().get("dropped"), is((Object) 0L));
+    assertTrue((Long) requestLog.metrics().get("waited") > 0);
+  }
+
+  // 닫을 때 아직 쓰지 않은 이벤트도 파일에 남긴다.
+  @Test
+  public void testCloseFlushesPending() throws Exception {
+    start();
+    requestLog.event("article.create", "content", "content");
+    requestLog.close();
+    requestLog = null;
+    assertThat(lines(log).size(), is(1));
+  }
+}
@@ -0,0 +1,154 @@
+package com.example;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.Assert.*;
+
+public class RequestMetricsTest {
+  private MetricsProperties properties;
+  private RequestMetrics metrics;
+
+  @Before
+  public void setUp() {
+    properties = new MetricsProperties();
+    properties.setWindowSeconds(60);
+    properties.setWindowSlices(3);
+    properties.setStripes(4);
+  }
+
+  @After
+  public void tearDown() {
+    if (metrics != null) {
+      metrics.close();
+    }
+  }
+
+  private RequestMetrics start() {
+    metrics = new RequestMetrics();
+    metrics.properties = properties;
+    metrics.start();
+    return metrics;
+  }
+
+  private static long millis(long millis) {
+    return TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> route(Map<String, Object> metrics, String key, String name) {
+    for (Map<String, Object> route : (List<Map<String, Object>>) metrics.get(key)) {
+      if (route.get(key.equals("routes") ? "route" : "name").equals(name)) {
+        return route;
+      }
+    }
+    return null;
+  }
+
+  private static Object get(Map<String, Object> map, String path) {
+    Object value = map;
+    for (String key : path.split("\\.")) {
+      value = ((Map<?, ?>) value).get(key);
+    }
+    return value;
+  }
+
+  @Test
+  public void testBuckets() {
+    for (long micros : new long[]{0, 1, 7, 8, 9, 15, 16, 17, 1000, 123456, 1L << 40, Long.MAX_VALUE}) {
+      int bucket = LatencyHistogram.bucket(micros);
+      assertTrue(micros + " <= " + LatencyHistogram.upperBound(bucket), micros <= LatencyHistogram.upperBound(bucket) || bucket == LatencyHistogram.BUCKETS - 1);
+      // 구간의 폭은 값의 1/8 을 넘지 않는다.
+      if (bucket > 0 && bucket < LatencyHistogram.BUCKETS - 1) {
+        assertTrue(micros > LatencyHistogram.upperBound(bucket - 1));
+        assertTrue(LatencyHistogram.upperBound(bucket) - micros <= micros / 8);
+      }
+    }
+    for (int bucket = 1; bucket < LatencyHistogram.BUCKETS; bucket++) {
+      assertThat(LatencyHistogram.bucket(LatencyHistogram.upperBound(bucket)), is(bucket));
+      assertThat(LatencyHistogram.bucket(LatencyHistogram.upperBound(bucket - 1) + 1), is(bucket));
+    }
+  }
+
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram(4);
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i, i * 1000, 200);
+    }
+    long[] merged = histogram.merge(new long[LatencyHistogram.LENGTH]);
+    assertThat(merged[LatencyHistogram.COUNT], is(1000L));
+    assertThat(merged[LatencyHistogram.MAX], is(1_000_000L));
+    assertThat(merged[LatencyHistogram.STATUS_CLASSES + 1], is(1000L));
+    assertThat((double) LatencyHistogram.percentile(merged, 0.5), closeTo(500_000, 500_000 / 8.0));
+    assertThat((double) LatencyHistogram.percentile(merged, 0.99), closeTo(990_000, 990_000 / 8.0));
+    assertThat(LatencyHistogram.percentile(merged, 1.0), is(1_000_000L));
+  }
+
+  @Test
+  public void testWindowSlidesOut() {
+    start();
+    metrics.record("GET", "/api/articles/{id}", millis(5), 200);
+    metrics.record("GET", "/api/articles/{id}", millis(500), 500);
+    metrics.record("POST", "/api/articles", millis(20), 201);
+    metrics.recordOutbound("posts.createPost", millis(30), 504);
+
+    Map<String, Object> show = route(metrics.metrics(), "routes", "/api/articles/{id}");
+    assertThat(get(show, "requests"), is((Object) 2L));
+    assertThat(get(show, "statuses.500"), is((Object) 1L));
+    assertThat(get(show, "window.requests"), is((Object) 2L));
+    assertThat((Double) get(show, "window.latencyMillis.max"), closeTo(500.0, 0.001));
+    assertThat(get(route(metrics.metrics(), "outbound", "posts.createPost"), "statuses.504"), is((Object) 1L));
+
+    // 조각이 windowSlices 번 지나면 창에서 빠지지만 전체 수는 남는다.
+    for (int i = 0; i < properties.getWindowSlices(); i++) {
+      metrics.tick();
+    }
+    show = route(metrics.metrics(), "routes", "/api/articles/{id}");
+    assertThat(get(show, "window.requests"), is((Object) 2L));
+    metrics.tick();
+    show = route(metrics.metrics(), "routes", "/api/articles/{id}");
+    assertThat(get(show, "window.requests"), is((Object) 0L));
+    assertThat(get(show, "requests"), is((Object) 2L));
+    assertThat(get(show, "latencyMillis.max"), is((Object) 500.0));
+  }
+
+  @Test
+  public void testPrometheus() {
+    start();
+    metrics.record("GET", "/api/articles/{id}", millis(3), 200);
+    metrics.record("GET", "/api/articles/{id}", millis(70), 404);
+    metrics.record("PROPFIND", "unknown", millis(1), 405);
+    String text = metrics.prometheus();
+
+    String labels = "method=\"GET\",route=\"/api/articles/{id}\"";
+    assertThat(text, containsString("# TYPE http_server_requests_seconds histogram\n"));
+    assertThat(text, containsString("http_server_requests_seconds_bucket{" + labels + ",le=\"0.001\"} 0\n"));
+    assertThat(text, containsString("http_server_requests_seconds_bucket{" + labels + ",le=\"0.005\"} 1\n"));
+    assertThat(text, containsString("http_server_requests_seconds_bucket{" + labels + ",le=\"0.1\"} 2\n"));
+    assertThat(text, containsString("http_server_requests_seconds_bucket{" + labels + ",le=\"+Inf\"} 2\n"));
+    assertThat(text, containsString("http_server_requests_seconds_sum{" + labels + "} 0.073\n"));
+    assertThat(text, containsString("http_server_requests_seconds_count{" + labels + "} 2\n"));
+    assertThat(text, containsString("http_server_requests_total{" + labels + ",status=\"404\"} 1\n"));
+    assertThat(text, containsString("http_server_requests_total{method=\"OTHER\",route=\"unknown\",status=\"405\"} 1\n"));
+    assertThat(text, containsString("http_server_requests_window_seconds{" + labels + ",quantile=\"0.99\"} 0.07\n"));
+    // 원격 호출이 없으면 http_client_requests 는 내보내지 않는다.
+    assertFalse(text.contains("http_client_requests"));
+  }
+
+  @Test
+  public void testDisabled() {
+    properties.setEnabled(false);
+    start();
+    metrics.record("GET", "/api/articles/{id}", millis(3), 200);
+    assertThat(((List<?>) metrics.metrics().get("routes")).size(), is(0));
+  }
+}
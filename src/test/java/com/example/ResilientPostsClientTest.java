@@ -0,0 +1,138 @@
+package com.example;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.*;
+
+/**
+ * 지연과 오류를 넣을 수 있는 StubPostsServer 를 상대로 ResilientPostsClient 의 동작을 확인한다.
+ */
+public class ResilientPostsClientTest {
+  private StubPostsServer server;
+  private PostsClient client;
+  private PostsResilienceProperties properties;
+  private ResilientPostsClient resilientClient;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new StubPostsServer();
+    PostsClientProperties clientProperties = new PostsClientProperties();
+    clientProperties.setUrl(server.url());
+    client = new PostsClient(clientProperties);
+
+    properties = new PostsResilienceProperties();
+    properties.setCallTimeoutMillis(500);
+    properties.setMaxConcurrentCalls(2);
+    properties.setSlidingWindowSize(10);
+    properties.setMinimumCalls(4);
+    properties.setOpenMillis(60000);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    resilientClient.close();
+    client.close();
+    server.close();
+  }
+
+  private ResilientPostsClient resilientClient() {
+    resilientClient = new ResilientPostsClient(client, properties);
+    return resilientClient;
+  }
+
+  private Post post() {
+    Post post = new Post();
+    post.setTitle("title");
+    return post;
+  }
+
+  private Throwable failureOf(CompletableFuture<Post> future) throws Exception {
+    try {
+      future.get(5, TimeUnit.SECONDS);
+      fail("expected a failure");
+      return null;
+    } catch (ExecutionException e) {
+      return e.getCause();
+    }
+  }
+
+  // 지표는 future 를 끝낸 스레드가 뒤이어 갱신하므로, get() 이 돌아온 직후에는 잠깐 늦을 수 있다.
+  private void awaitMetric(ResilientPostsClient client, String name, Object expected) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 2000;
+    while (!expected.equals(client.metrics().get(name)) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(client.metrics().get(name), is(expected));
+  }
+
+  @Test
+  public void testBreakerOpensAndStopsCallingRemote() throws Exception {
+    ResilientPostsClient client = resilientClient();
+    server.setStatus(500);
+    for (int i = 0; i < 4; i++) {
+      assertThat(failureOf(client.createPost(post())), is(instanceOf(BadGatewayException.class)));
+    }
+    assertThat(client.state(), is(CircuitBreaker.State.OPEN));
+
+    // 열린 동안에는 원격 서버에 요청을 보내지 않고 바로 거절한다.
+    assertThat(failureOf(client.createPost(post())), is(instanceOf(ServiceUnavailableException.class)));
+    assertThat(server.requests(), is(4));
+    awaitMetric(client, "breakerRejected", 1L);
+  }
+
+  @Test
+  public void testTimeoutFailsFast() throws Exception {
+    ResilientPostsClient client = resilientClient();
+    server.setLatencyMillis(3000);
+    long started = System.currentTimeMillis();
+    assertThat(failureOf(client.createPost(post())), is(instanceOf(BadGatewayException.class)));
+    assertThat(System.currentTimeMillis() - started, lessThan(2000L));
+    awaitMetric(client, "timeouts", 1L);
+  }
+
+  @Test
+  public void testBulkheadRejectsExcessCalls() throws Exception {
+    ResilientPostsClient client = resilientClient();
+    server.setLatencyMillis(200);
+    CompletableFuture<Post> first = client.createPost(post());
+    CompletableFuture<Post> second = client.createPost(post());
+    assertThat(failureOf(client.createPost(post())), is(instanceOf(ServiceUnavailableException.class)));
+
+    first.get(5, TimeUnit.SECONDS);
+    second.get(5, TimeUnit.SECONDS);
+    awaitMetric(client, "bulkheadRejected", 1L);
+    awaitMetric(client, "bulkheadAvailable", 2);
+  }
+
+  // 첫 요청이 p95 보다 오래 걸리면 같은 Idempotency-Key 로 두 번째 요청을 보내고 먼저 온 응답을 쓴다.
+  @Test
+  public void testHedgedRequestWins() throws Exception {
+    properties.setHedgeEnabled(true);
+    properties.setHedgeMinDelayMillis(50);
+    properties.setCallTimeoutMillis(3000);
+    ResilientPostsClient client = resilientClient();
+    for (int i = 0; i < 20; i++) {
+      client.createPost(post()).get(5, TimeUnit.SECONDS);
+    }
+    assertTrue(client.hedgeDelayMillis() > 0);
+
+    // 느린 첫 요청은 아직 응답 전이므로 요청 수 대신 도착할 때 기록되는 Idempotency-Key 수로 센다.
+    int before = server.idempotencyKeys().size();
+    server.delayNext(2000);
+    long started = System.currentTimeMillis();
+    Post created = client.createPost(post()).get(5, TimeUnit.SECONDS);
+    assertThat(System.currentTimeMillis() - started, lessThan(1500L));
+    assertThat(created, is(notNullValue()));
+    assertThat(server.idempotencyKeys().size(), is(before + 2));
+    assertThat(server.idempotencyKeys().get(before), is(server.idempotencyKeys().get(before + 1)));
+    awaitMetric(client, "hedgesWon", 1L);
+  }
+}
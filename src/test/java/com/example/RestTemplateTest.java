@@ -15,6 +15,7 @@ import org.springframework.boot.test.IntegrationTest;
 import org.springframework.boot.test.WebIntegrationTest;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.*;
+import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.web.client.RestTemplate;
@@ -51,7 +52,8 @@ import static org.hamcrest.core.Is.is;
  * SpringBootTest.WebEnvironment.DEFINED_PORT 로 하게 되면 설정된 포트를 사용한다.
  */
 @RunWith(SpringJUnit4ClassRunner.class)
-@SpringBootTest(classes = {SpringBootProjectApplication.class}, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@SpringBootTest(classes = {SpringBootProjectApplication.class}, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+  properties = "blobs.directory=target/test-blobs")
 public class RestTemplateTest {
 
   Logger logger = Logger.getLogger(this.getClass());
@@ -177,6 +179,12 @@ public class RestTemplateTest {
     article.setComments(comments);
 
     String responseString = restTemplate.postForObject(uri, article, String.class);
+    // id 가 없는 글과 댓글에는 저장소가 새 id 를 붙인다.
+    Article resultArticle = new ObjectMapper().readValue(responseString, Article.class);
+    assertThat(resultArticle.getId() > 0, is(true));
+    article.setId(resultArticle.getId());
+    comment.setId(resultArticle.getComments().get(0).getId());
+    comment.setArticleId(resultArticle.getId());
     String jsonString = jsonStringFromObject(article);
 
     assertThat(responseString, is(equalTo(jsonString)));
@@ -200,6 +208,7 @@ public class RestTemplateTest {
    * 이유는 exchange()는 말 그대로 사용자가 직접 전달하는 것을 정의하여서 보내는 것이기 때문에 모둔 HttpMethod 에서 동일하게 사용할 수 있는 방법이다.
    */
   @Test
+  @DirtiesContext
   public void testDelete() throws Exception {
     long id = 1;
     URI uri = URI.create(baseUrl + "/api/articles/" + id);
@@ -246,4 +255,27 @@ public class RestTemplateTest {
     assertThat(responseEntity.getStatusCode(), is(HttpStatus.OK));
     assertThat(responseEntity.getBody(), is(equalTo(jsonString)));
   }
+
+  /**
+   * 실제 톰캣에서는 첨부 파일 다운로드가 sendfile 로 나간다. Range 요청의 본문이 정확히 그 범위인지 확인한다.
+   */
+  @Test
+  public void testAttachmentRange() throws Exception {
+    byte[] data = new byte[300000];
+    new java.util.Random(7).nextBytes(data);
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+    Attachment attachment = restTemplate.postForObject(URI.create(baseUrl + "/api/articles/1/attachments?filename=data.bin"),
+      new HttpEntity<>(data, headers), Attachment.class);
+
+    URI uri = URI.create(baseUrl + "/api/articles/1/attachments/" + attachment.getHash());
+    byte[] whole = restTemplate.getForObject(uri, byte[].class);
+    assertThat(Arrays.equals(whole, data), is(true));
+
+    HttpHeaders rangeHeaders = new HttpHeaders();
+    rangeHeaders.set(HttpHeaders.RANGE, "bytes=100000-199999");
+    ResponseEntity<byte[]> response = restTemplate.exchange(uri, HttpMethod.GET, new HttpEntity<>(rangeHeaders), byte[].class);
+    assertThat(response.getStatusCode(), is(HttpStatus.PARTIAL_CONTENT));
+    assertThat(Arrays.equals(response.getBody(), Arrays.copyOfRange(data, 100000, 200000)), is(true));
+  }
 }
@@ -0,0 +1,135 @@
+package com.example;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 원격 posts API 를 흉내내는 로컬 HTTP 서버
+ * POST /posts.json 에 id 가 붙은 Post JSON 으로 응답하고, 요청이 어떤 클라이언트 포트에서 왔는지 기록한다.
+ * POST /posts/bulk.json 은 받은 배열과 같은 순서로 id 를 붙인 배열을 돌려주고, 배치 크기를 기록한다.
+ * setLatencyMillis() / delayNext() 로 응답을 늦춰서 느린 원격 서버를 흉내낼 수 있다.
+ */
+class StubPostsServer implements AutoCloseable {
+  private final HttpServer server;
+  private final AtomicInteger requests = new AtomicInteger();
+  private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+  private final Queue<Long> nextDelays = new ConcurrentLinkedQueue<>();
+  private final List<Integer> bulkSizes = new CopyOnWriteArrayList<>();
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final List<String> idempotencyKeys = new CopyOnWriteArrayList<>();
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private volatile int status = 200;
+  private volatile long latencyMillis;
+
+  StubPostsServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/posts.json", exchange -> {
+      clientPorts.add(exchange.getRemoteAddress().getPort());
+      String key = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+      if (key != null) {
+        idempotencyKeys.add(key);
+      }
+      Long delay = nextDelays.poll();
+      sleep(delay != null ? delay : latencyMillis);
+      int id = requests.incrementAndGet();
+      byte[] body = status == 200
+        ? ("{\"id\":" + id + ",\"title\":\"remote title\",\"content\":\"remote content\"}").getBytes(StandardCharsets.UTF_8)
+        : "{}".getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "application/json");
+      exchange.sendResponseHeaders(status, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    server.createContext("/posts/bulk.json", exchange -> {
+      Long delay = nextDelays.poll();
+      sleep(delay != null ? delay : latencyMillis);
+      List<Map<String, Object>> posts = objectMapper.readValue(exchange.getRequestBody(), new TypeReference<List<Map<String, Object>>>() {});
+      bulkSizes.add(posts.size());
+      for (Map<String, Object> post : posts) {
+        post.put("id", requests.incrementAndGet());
+      }
+      byte[] body = status == 200 ? objectMapper.writeValueAsBytes(posts) : "[]".getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "application/json");
+      exchange.sendResponseHeaders(status, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  private static void sleep(long millis) {
+    if (millis <= 0) {
+      return;
+    }
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  String url() {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + "/posts.json";
+  }
+
+  String bulkUrl() {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + "/posts/bulk.json";
+  }
+
+  List<Integer> bulkSizes() {
+    return bulkSizes;
+  }
+
+  void setStatus(int status) {
+    this.status = status;
+  }
+
+  // 모든 요청을 millis 만큼 늦게 응답한다.
+  void setLatencyMillis(long millis) {
+    this.latencyMillis = millis;
+  }
+
+  // 다음 요청들을 주어진 순서대로 늦게 응답한다. 다 쓰고 나면 setLatencyMillis() 값을 쓴다.
+  void delayNext(long... millis) {
+    for (long m : millis) {
+      nextDelays.add(m);
+    }
+  }
+
+  List<String> idempotencyKeys() {
+    return idempotencyKeys;
+  }
+
+  int requests() {
+    return requests.get();
+  }
+
+  int distinctConnections() {
+    return clientPorts.size();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+}
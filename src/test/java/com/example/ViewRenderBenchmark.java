@@ -0,0 +1,134 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.web.context.support.StaticWebApplicationContext;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.View;
+import org.thymeleaf.spring4.SpringTemplateEngine;
+import org.thymeleaf.spring4.view.ThymeleafViewResolver;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 기존 Thymeleaf 템플릿의 렌더링 처리량을 dev 와 prod 설정으로 비교하는 벤치마크
+ *
+ * dev 는 application-dev.properties 처럼 템플릿 캐시와 조각 캐시를 끈 설정이고, 렌더링할 때마다 classpath 에서 템플릿을 다시 읽고 파싱한다.
+ * prod 는 파싱한 템플릿을 캐시하고, 글 목록 페이지(article)의 목록 조각은 FragmentCache 에서 가져온다.
+ * 뷰는 DispatcherServlet 과 같이 ThymeleafViewResolver 로 찾아서 MockHttpServletResponse 에 렌더링한다.
+ *
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="ViewRenderBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ViewRenderBenchmark {
+  // 글 목록 페이지에 넣을 글 수. 글마다 댓글이 2개 있다.
+  private static final int ARTICLES = 100;
+
+  @Param({"dev", "prod"})
+  String profile;
+
+  @Param({"articles/new", "new", "show", "article"})
+  String view;
+
+  private ThymeleafViewResolver viewResolver;
+  private FragmentCache fragmentCache;
+  private StaticWebApplicationContext applicationContext;
+  private Map<String, Object> model;
+  private List<Article> articles;
+
+  @Setup
+  public void setUp() {
+    boolean prod = profile.equals("prod");
+
+    ClassLoaderTemplateResolver templateResolver = new ClassLoaderTemplateResolver();
+    templateResolver.setPrefix("templates/");
+    templateResolver.setSuffix(".html");
+    templateResolver.setTemplateMode("HTML5");
+    templateResolver.setCharacterEncoding("UTF-8");
+    templateResolver.setCacheable(prod);
+    SpringTemplateEngine templateEngine = new SpringTemplateEngine();
+    templateEngine.setTemplateResolver(templateResolver);
+
+    MockServletContext servletContext = new MockServletContext();
+    applicationContext = new StaticWebApplicationContext();
+    applicationContext.setServletContext(servletContext);
+    applicationContext.refresh();
+
+    viewResolver = new ThymeleafViewResolver();
+    viewResolver.setTemplateEngine(templateEngine);
+    viewResolver.setCharacterEncoding("UTF-8");
+    viewResolver.setApplicationContext(applicationContext);
+    viewResolver.setCache(prod);
+
+    FragmentCacheProperties fragmentCacheProperties = new FragmentCacheProperties();
+    fragmentCacheProperties.setEnabled(prod);
+    fragmentCache = new FragmentCache();
+    fragmentCache.templateEngine = templateEngine;
+    fragmentCache.properties = fragmentCacheProperties;
+
+    articles = new ArrayList<>(ARTICLES);
+    for (long id = 1; id <= ARTICLES; id++) {
+      Article article = new Article();
+      article.setId(id);
+      article.setTitle("title" + id);
+      article.setContent("content" + id);
+      List<Comment> comments = new ArrayList<>();
+      for (long commentId = 1; commentId <= 2; commentId++) {
+        Comment comment = new Comment();
+        comment.setId(id * 10 + commentId);
+        comment.setArticleId(id);
+        comment.setContent("comment" + id + commentId);
+        comments.add(comment);
+      }
+      article.setComments(comments);
+      articles.add(article);
+    }
+
+    Post post = new Post();
+    post.setTitle("제목");
+    post.setContent("내용");
+    model = new HashMap<>();
+    model.put("article", new Article());
+    model.put("post", post);
+  }
+
+  @Benchmark
+  public MockHttpServletResponse render() throws Exception {
+    Map<String, Object> model = this.model;
+    if (view.equals("article")) {
+      // ArticlesController.list() 처럼 목록이 바뀌지 않았으면 같은 버전으로 조각을 요청한다.
+      model = new HashMap<>(model);
+      model.put("articleList", fragmentCache.render("articles/list", "list", "1", Collections.singletonMap("articles", articles)));
+    }
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+    request.setAttribute(DispatcherServlet.WEB_APPLICATION_CONTEXT_ATTRIBUTE, applicationContext);
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    View resolved = viewResolver.resolveViewName(view, Locale.KOREAN);
+    resolved.render(model, request, response);
+    return response;
+  }
+}